@@ -15,37 +15,47 @@
  */
 package io.soabase.asm.mirror.test.processor;
 
-import io.soabase.asm.mirror.MirrorClassReader;
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorClassWriter;
+import io.soabase.asm.mirror.MirrorIncrementalGenerator;
+import io.soabase.asm.mirror.MirrorMethodTable;
+import io.soabase.asm.mirror.MirrorMethodTableBuilder;
+import io.soabase.asm.mirror.MirrorTypeHierarchy;
 import io.soabase.asm.mirror.util.Util;
 import io.soabase.asm.mirror.test.processor.visitor.TestClassWriter;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.util.CheckMethodAdapter;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Set;
 
 @SupportedAnnotationTypes("io.soabase.asm.mirror.test.processor.GeneratorTest")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class TestGenerator extends AbstractProcessor {
+    private static final String GENERATOR_ID = "TestGenerator-1";
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+        MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+        MirrorMethodTableBuilder methodTableBuilder = new MirrorMethodTableBuilder(batchReader.getMirrorSignatures());
+        MirrorTypeHierarchy typeHierarchy = new MirrorTypeHierarchy(batchReader.getMirrorSignatures());
+        // classes are only regenerated (and rewritten) when the interface or its supertypes change
+        MirrorIncrementalGenerator incrementalGenerator = new MirrorIncrementalGenerator(batchReader, processingEnv.getFiler(), GENERATOR_ID);
         annotations.forEach(annotation -> {
-            Set<? extends Element> elementsAnnotatedWith = environment.getElementsAnnotatedWith(annotation);
-            elementsAnnotatedWith.forEach(element -> {
-                if (element.getKind() == ElementKind.INTERFACE) {
-                    TypeElement typeElement = (TypeElement) element;
-
+            for (TypeElement typeElement : ElementFilter.typesIn(environment.getElementsAnnotatedWith(annotation))) {
+                if (typeElement.getKind() == ElementKind.INTERFACE) {
                     String addValueDescriptor;
                     String ctorDescriptor;
                     try {
@@ -53,54 +63,144 @@ public class TestGenerator extends AbstractProcessor {
                         ctorDescriptor = Type.getConstructorDescriptor(GeneratorBase.class.getConstructor());
                     } catch (NoSuchMethodException e) {
                         processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
-                        return;
+                        continue;
                     }
 
                     String packageName = typeElement.getEnclosingElement().toString();
                     String className = typeElement.getSimpleName().toString() + "Gen";
                     String classFqn = packageName + "." + className;
-                    TestClassWriter classWriter = new TestClassWriter() {
-                        @Override
-                        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                            access = access & ~Opcodes.ACC_ABSTRACT;
-                            interfaces = new String[]{Util.toSlash(typeElement.getQualifiedName().toString())};
-                            superName = Util.toSlash(GeneratorBase.class.getName());
-                            super.visit(version, access, Util.toSlash(classFqn), signature, superName, interfaces);
-
-                            MethodVisitor methodVisitor = super.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
-                            methodVisitor.visitCode();
-                            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
-                            methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, Util.toSlash(GeneratorBase.class.getName()), "<init>", ctorDescriptor, false);
-                            methodVisitor.visitInsn(Opcodes.RETURN);
-                            methodVisitor.visitMaxs(1, 1);
-                            methodVisitor.visitEnd();
-                        }
+                    incrementalGenerator.generateClass(typeElement, classFqn, () -> {
+                        TestClassWriter classWriter = newClassWriter(typeElement, classFqn, addValueDescriptor, ctorDescriptor, methodTableBuilder, typeHierarchy);
+                        batchReader.newClassReader(typeElement).accept(classWriter);
+                        return classWriter.toBytes();
+                    });
+                }
+            }
+        });
+        return true;
+    }
+
+    private TestClassWriter newClassWriter(TypeElement typeElement, String classFqn, String addValueDescriptor, String ctorDescriptor, MirrorMethodTableBuilder methodTableBuilder, MirrorTypeHierarchy typeHierarchy) {
+        return new TestClassWriter(new MirrorClassWriter(typeHierarchy, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS)) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                access = (access & ~(Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE)) | Opcodes.ACC_SUPER;
+                interfaces = new String[]{Util.toSlash(typeElement.getQualifiedName().toString())};
+                superName = Util.toSlash(GeneratorBase.class.getName());
+                super.visit(version, access, Util.toSlash(classFqn), signature, superName, interfaces);
+
+                MethodVisitor methodVisitor = super.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+                methodVisitor.visitCode();
+                methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+                methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, Util.toSlash(GeneratorBase.class.getName()), "<init>", ctorDescriptor, false);
+                methodVisitor.visitInsn(Opcodes.RETURN);
+                methodVisitor.visitMaxs(1, 1);
+                methodVisitor.visitEnd();
+
+                // needs a frame that merges this (not yet existing) class with GeneratorBaseImpl
+                methodVisitor = super.visitMethod(Opcodes.ACC_PUBLIC, "chooseBase", "(Z)Ljava/lang/Object;", null, null);
+                methodVisitor.visitCode();
+                Label otherLabel = new Label();
+                Label returnLabel = new Label();
+                methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+                methodVisitor.visitJumpInsn(Opcodes.IFEQ, otherLabel);
+                methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+                methodVisitor.visitJumpInsn(Opcodes.GOTO, returnLabel);
+                methodVisitor.visitLabel(otherLabel);
+                methodVisitor.visitTypeInsn(Opcodes.NEW, Util.toSlash(GeneratorBaseImpl.class.getName()));
+                methodVisitor.visitInsn(Opcodes.DUP);
+                methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, Util.toSlash(GeneratorBaseImpl.class.getName()), "<init>", "()V", false);
+                methodVisitor.visitLabel(returnLabel);
+                methodVisitor.visitInsn(Opcodes.ARETURN);
+                methodVisitor.visitMaxs(0, 0);
+                methodVisitor.visitEnd();
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                access = access & ~Opcodes.ACC_ABSTRACT;
+                // checks that the reader's events and the body are visited in the order ASM requires
+                MethodVisitor methodVisitor = new CheckMethodAdapter(super.visitMethod(access, name, descriptor, signature, exceptions));
+                return new MethodVisitor(Opcodes.ASM7, methodVisitor) {
+                    @Override
+                    public void visitEnd() {
+                        // the body comes after any annotations
+                        visitCode();
+                        visitVarInsn(Opcodes.ALOAD, 0);
+                        visitLdcInsn("This is " + name);
+                        visitMethodInsn(Opcodes.INVOKEVIRTUAL, Util.toSlash(classFqn), "addValue", addValueDescriptor, false);
+                        Type returnType = Type.getReturnType(descriptor);
+                        switch (returnType.getSort()) {
+                            case Type.VOID: {
+                                break;
+                            }
+
+                            case Type.OBJECT:
+                            case Type.ARRAY: {
+                                visitInsn(Opcodes.ACONST_NULL);
+                                break;
+                            }
 
-                        @Override
-                        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                            access = access & ~Opcodes.ACC_ABSTRACT;
-                            MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
-                            methodVisitor.visitCode();
-                            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
-                            methodVisitor.visitLdcInsn("This is " + name);
-                            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Util.toSlash(classFqn), "addValue", addValueDescriptor, false);
-                            methodVisitor.visitInsn(Opcodes.RETURN);
-                            methodVisitor.visitMaxs(1, 1);
-                            methodVisitor.visitEnd();
-                            return methodVisitor;
+                            case Type.LONG: {
+                                visitInsn(Opcodes.LCONST_0);
+                                break;
+                            }
+
+                            case Type.FLOAT: {
+                                visitInsn(Opcodes.FCONST_0);
+                                break;
+                            }
+
+                            case Type.DOUBLE: {
+                                visitInsn(Opcodes.DCONST_0);
+                                break;
+                            }
+
+                            default: {
+                                visitInsn(Opcodes.ICONST_0);
+                                break;
+                            }
                         }
-                    };
-                    MirrorClassReader reader = new MirrorClassReader(processingEnv, typeElement);
-                    reader.accept(classWriter);
-
-                    try (OutputStream out = processingEnv.getFiler().createClassFile(classFqn).openOutputStream()) {
-                        out.write(classWriter.toBytes());
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
+                        visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+                        visitMaxs(0, 0);
+                        super.visitEnd();
                     }
+                };
+            }
+
+            @Override
+            public void visitEnd() {
+                // inherited methods and bridges
+                MirrorMethodTable methodTable = methodTableBuilder.build(typeElement);
+                for (MirrorMethodTable.Entry entry : methodTable.getEntries()) {
+                    if (entry.isAbstract() && (entry.getDeclaringType() != typeElement)) {
+                        visitMethod(entry.getAccess(), entry.getName(), entry.getDescriptor(), null, null).visitEnd();
+                    }
+                    entry.getBridgeDescriptors().forEach(bridgeDescriptor -> writeBridge(entry, bridgeDescriptor));
                 }
-            });
-        });
-        return true;
+
+                super.visitEnd();
+            }
+
+            private void writeBridge(MirrorMethodTable.Entry entry, String bridgeDescriptor) {
+                MethodVisitor methodVisitor = super.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE, entry.getName(), bridgeDescriptor, null, null);
+                methodVisitor.visitCode();
+                methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+                Type[] bridgeArguments = Type.getArgumentTypes(bridgeDescriptor);
+                Type[] arguments = Type.getArgumentTypes(entry.getDescriptor());
+                int local = 1;
+                for (int i = 0; i < arguments.length; ++i) {
+                    methodVisitor.visitVarInsn(bridgeArguments[i].getOpcode(Opcodes.ILOAD), local);
+                    if (!bridgeArguments[i].equals(arguments[i])) {
+                        methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, arguments[i].getInternalName());
+                    }
+                    local += bridgeArguments[i].getSize();
+                }
+                methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Util.toSlash(classFqn), entry.getName(), entry.getDescriptor(), false);
+                methodVisitor.visitInsn(Type.getReturnType(bridgeDescriptor).getOpcode(Opcodes.IRETURN));
+                methodVisitor.visitMaxs(0, 0);
+                methodVisitor.visitEnd();
+            }
+        };
     }
 }
@@ -15,6 +15,7 @@
  */
 package io.soabase.asm.mirror.test.processor;
 
+import io.soabase.asm.mirror.MirrorContext;
 import io.soabase.asm.mirror.MirrorType;
 import io.soabase.asm.mirror.test.processor.visitor.TypeVisitor;
 
@@ -27,9 +28,11 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.StandardLocation;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,10 +41,12 @@ import java.util.stream.Collectors;
 public class TestMirrorTypeProcessor extends AbstractProcessor {
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+        MirrorContext context = new MirrorContext(processingEnv);
         annotations.forEach(annotation -> {
             Set<? extends Element> elementsAnnotatedWith = environment.getElementsAnnotatedWith(annotation);
             elementsAnnotatedWith.forEach(element -> {
                 if (element.getKind() == ElementKind.CLASS) {
+                    // the static facades
                     TypeVisitor typeVisitor = new TypeVisitor();
 
                     typeVisitor.accept("== 01 class ==", MirrorType.getType(processingEnv, element.asType()));
@@ -57,15 +62,27 @@ public class TestMirrorTypeProcessor extends AbstractProcessor {
                             .filter(enclosed -> enclosed.getKind() == ElementKind.METHOD)
                             .map(enclosed -> MirrorType.getReturnType(processingEnv, (ExecutableElement) enclosed))
                             .collect(Collectors.toList()));
+                    writeResource("mirror", element, typeVisitor.toString().trim());
 
-                    try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "mirror", element.getSimpleName().toString() + ".txt").openWriter()) {
-                        out.write(typeVisitor.toString().trim());
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+                    // one context for all elements
+                    TypeVisitor contextVisitor = new TypeVisitor();
+                    List<ExecutableElement> methods = ElementFilter.methodsIn(element.getEnclosedElements());
+                    contextVisitor.accept("== 01 class ==", context.getType(element.asType()));
+                    contextVisitor.accept("== 02 ctors ==", context.getTypes(ElementFilter.constructorsIn(element.getEnclosedElements())));
+                    contextVisitor.accept("== 03 methods ==", context.getTypes(methods));
+                    contextVisitor.accept("== 04 returns ==", context.getReturnTypes(methods));
+                    writeResource("mirrorcontext", element, contextVisitor.toString().trim());
                 }
             });
         });
         return true;
     }
+
+    private void writeResource(String directory, Element element, String content) {
+        try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, directory, element.getSimpleName().toString() + ".txt").openWriter()) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
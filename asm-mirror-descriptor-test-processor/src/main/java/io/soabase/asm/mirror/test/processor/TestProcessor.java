@@ -15,7 +15,15 @@
  */
 package io.soabase.asm.mirror.test.processor;
 
+import io.soabase.asm.mirror.MirrorAbiHasher;
+import io.soabase.asm.mirror.MirrorBatchReader;
 import io.soabase.asm.mirror.MirrorClassReader;
+import io.soabase.asm.mirror.MirrorHeaderJar;
+import io.soabase.asm.mirror.MirrorModelReader;
+import io.soabase.asm.mirror.MirrorModelWriter;
+import io.soabase.asm.mirror.MirrorStubGenerator;
+import io.soabase.asm.mirror.MirrorSupertypeIndex;
+import io.soabase.asm.mirror.test.processor.visitor.SkippingClassVisitor;
 import io.soabase.asm.mirror.test.processor.visitor.TestClassVisitor;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -23,36 +31,97 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @SupportedAnnotationTypes("io.soabase.asm.mirror.test.processor.DescriptorTest")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class TestProcessor extends AbstractProcessor {
+    public static final int PARSING_OPTIONS = MirrorClassReader.SKIP_ANNOTATIONS | MirrorClassReader.SKIP_TYPE_ANNOTATIONS | MirrorClassReader.SKIP_SIGNATURES | MirrorClassReader.SKIP_PRIVATE | MirrorClassReader.SKIP_CONSTRUCTORS;
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+        MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
         annotations.forEach(annotation -> {
-            Set<? extends Element> elementsAnnotatedWith = environment.getElementsAnnotatedWith(annotation);
-            elementsAnnotatedWith.forEach(element -> {
-                if (element.getKind() == ElementKind.CLASS) {
-                    TypeElement typeElement = (TypeElement) element;
-                    MirrorClassReader reader = new MirrorClassReader(processingEnv, typeElement);
-                    TestClassVisitor testClassVisitor = new TestClassVisitor();
-                    reader.accept(testClassVisitor);
-
-                    try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "test", typeElement.getSimpleName().toString() + ".txt").openWriter()) {
-                        out.write(testClassVisitor.toString());
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            });
+            Set<TypeElement> elements = ElementFilter.typesIn(environment.getElementsAnnotatedWith(annotation));
+            batchReader.read(elements, element -> (element.getKind() == ElementKind.CLASS) ? newVisitor("test", element) : null);
+            batchReader.read(elements, PARSING_OPTIONS, member -> !member.getModifiers().contains(Modifier.STATIC), element -> (element.getKind() == ElementKind.CLASS) ? newVisitor("options", element) : null);
+
+            List<TypeElement> classes = elements.stream().filter(element -> element.getKind() == ElementKind.CLASS).collect(Collectors.toList());
+
+            // ancestors from the supertype index
+            MirrorSupertypeIndex supertypeIndex = new MirrorSupertypeIndex(batchReader.getMirrorSignatures());
+            supertypeIndex.addAll(classes);
+            for (TypeElement element : classes) {
+                String name = batchReader.getMirrorSignatures().internalName(element);
+                List<String> ancestors = supertypeIndex.toNames(supertypeIndex.getAncestors(name));
+                ancestors.sort(String::compareTo);
+                writeResource("supertypes", element, String.join("\n", ancestors));
+            }
+
+            // ABI stubs for every annotated type (and member types) in a header jar
+            try (OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "stubs", "stubs.jar").openOutputStream()) {
+                new MirrorHeaderJar(new MirrorStubGenerator(batchReader)).write(out, elements);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            // ABI hashes - compared with hashes of the compiled classes
+            for (TypeElement element : elements) {
+                writeResource("abihash", element, MirrorAbiHasher.hash(batchReader.newClassReader(element)).toString());
+            }
+
+            // serialize then replay from the bytes - in a direct buffer as if memory mapped
+            for (TypeElement element : classes) {
+                byte[] bytes = MirrorModelWriter.write(batchReader.newClassReader(element));
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes).flip();
+                MirrorModelReader modelReader = new MirrorModelReader(buffer);
+                TestClassVisitor modelVisitor = new TestClassVisitor();
+                modelReader.accept(modelVisitor);
+                writeResource("model", element, modelVisitor);
+                TestClassVisitor skippingVisitor = new TestClassVisitor();
+                modelReader.accept(new SkippingClassVisitor(skippingVisitor));
+                writeResource("modeloptions", element, skippingVisitor);
+            }
+            for (TypeElement element : elements) {
+                MirrorAbiHasher hasher = new MirrorAbiHasher();
+                new MirrorModelReader(MirrorModelWriter.write(batchReader.newClassReader(element), MirrorClassReader.SKIP_PRIVATE, null)).accept(hasher);
+                writeResource("modelabihash", element, hasher.getHash().toString());
+            }
         });
         return true;
     }
+
+    private TestClassVisitor newVisitor(String directory, TypeElement typeElement) {
+        return new TestClassVisitor() {
+            @Override
+            public void visitEnd() {
+                super.visitEnd();
+                writeResource(directory, typeElement, this);
+            }
+        };
+    }
+
+    private void writeResource(String directory, TypeElement typeElement, TestClassVisitor testClassVisitor) {
+        writeResource(directory, typeElement, testClassVisitor.toString());
+    }
+
+    private void writeResource(String directory, TypeElement typeElement, String content) {
+        try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, directory, typeElement.getSimpleName().toString() + ".txt").openWriter()) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -45,7 +45,8 @@ public class AnnotationDetails implements Comparable<AnnotationDetails> {
     }
 
     public void add(String name, String value) {
-        values.add(new NameValue(name, value));
+        // annotation defaults have no name
+        values.add(new NameValue(String.valueOf(name), value));
     }
 
     @Override
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.test.processor.visitor;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+// does what TestProcessor.PARSING_OPTIONS and its member filter do to MirrorClassReader
+public class SkippingClassVisitor extends ClassVisitor {
+    public SkippingClassVisitor(ClassVisitor classVisitor) {
+        super(Opcodes.ASM7, classVisitor);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        super.visit(version, access, name, null, superName, interfaces);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        return null;
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        if (isSkipped(access)) {
+            return null;
+        }
+        FieldVisitor fieldVisitor = super.visitField(access, name, descriptor, null, value);
+        return (fieldVisitor != null) ? new FieldVisitor(Opcodes.ASM7) {
+            // no annotations
+        } : null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        if (isSkipped(access) || name.equals("<init>")) {
+            return null;
+        }
+        MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, null, exceptions);
+        return (methodVisitor != null) ? new MethodVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                return methodVisitor.visitAnnotationDefault();
+            }
+        } : null;
+    }
+
+    private static boolean isSkipped(int access) {
+        return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC)) != 0;
+    }
+}
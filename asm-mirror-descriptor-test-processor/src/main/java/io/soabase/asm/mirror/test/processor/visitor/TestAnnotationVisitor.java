@@ -19,6 +19,11 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.TypePath;
 
+import java.lang.reflect.Array;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 public class TestAnnotationVisitor extends AnnotationVisitor {
     private final VisitDetails details;
     private final AnnotationDetails annotationDetails;
@@ -31,7 +36,15 @@ public class TestAnnotationVisitor extends AnnotationVisitor {
 
     @Override
     public void visit(String name, Object value) {
-        annotationDetails.add(name, String.valueOf(value));
+        if (value.getClass().isArray()) {
+            // ClassReader visits arrays of primitives as one value - format it the same as visitArray()
+            List<String> values = IntStream.range(0, Array.getLength(value))
+                    .mapToObj(index -> String.valueOf(Array.get(value, index)))
+                    .collect(Collectors.toList());
+            annotationDetails.add(name, values.toString());
+        } else {
+            annotationDetails.add(name, String.valueOf(value));
+        }
     }
 
     @Override
@@ -15,6 +15,7 @@
  */
 package io.soabase.asm.mirror.test.processor.visitor;
 
+import io.soabase.asm.mirror.MirrorClassWriter;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassVisitor;
@@ -28,9 +29,24 @@ import org.objectweb.asm.TypePath;
 public class TestClassWriter extends ClassVisitor {
     protected final ClassWriter classWriter;
 
+    private final ClassVisitor visitor;
+
     public TestClassWriter() {
+        this(new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS));
+    }
+
+    public TestClassWriter(ClassWriter classWriter) {
+        this(classWriter, classWriter);
+    }
+
+    public TestClassWriter(MirrorClassWriter classWriter) {
+        this(classWriter, classWriter.asClassVisitor());
+    }
+
+    private TestClassWriter(ClassWriter classWriter, ClassVisitor visitor) {
         super(Opcodes.ASM7);
-        classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        this.classWriter = classWriter;
+        this.visitor = visitor;
     }
 
     public byte[] toBytes() {
@@ -39,66 +55,66 @@ public class TestClassWriter extends ClassVisitor {
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-        classWriter.visit(version, access, name, signature, superName, interfaces);
+        visitor.visit(version, access, name, signature, superName, interfaces);
     }
 
     @Override
     public void visitSource(String source, String debug) {
-        classWriter.visitSource(source, debug);
+        visitor.visitSource(source, debug);
     }
 
     @Override
     public ModuleVisitor visitModule(String name, int access, String version) {
-        return classWriter.visitModule(name, access, version);
+        return visitor.visitModule(name, access, version);
     }
 
     @Override
     public void visitNestHost(String nestHost) {
-        classWriter.visitNestHost(nestHost);
+        visitor.visitNestHost(nestHost);
     }
 
     @Override
     public void visitOuterClass(String owner, String name, String descriptor) {
-        classWriter.visitOuterClass(owner, name, descriptor);
+        visitor.visitOuterClass(owner, name, descriptor);
     }
 
     @Override
     public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-        return classWriter.visitAnnotation(descriptor, visible);
+        return visitor.visitAnnotation(descriptor, visible);
     }
 
     @Override
     public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-        return classWriter.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+        return visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
     }
 
     @Override
     public void visitAttribute(Attribute attribute) {
-        classWriter.visitAttribute(attribute);
+        visitor.visitAttribute(attribute);
     }
 
     @Override
     public void visitNestMember(String nestMember) {
-        classWriter.visitNestMember(nestMember);
+        visitor.visitNestMember(nestMember);
     }
 
     @Override
     public void visitInnerClass(String name, String outerName, String innerName, int access) {
-        classWriter.visitInnerClass(name, outerName, innerName, access);
+        visitor.visitInnerClass(name, outerName, innerName, access);
     }
 
     @Override
     public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
-        return classWriter.visitField(access, name, descriptor, signature, value);
+        return visitor.visitField(access, name, descriptor, signature, value);
     }
 
     @Override
     public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-        return classWriter.visitMethod(access, name, descriptor, signature, exceptions);
+        return visitor.visitMethod(access, name, descriptor, signature, exceptions);
     }
 
     @Override
     public void visitEnd() {
-        classWriter.visitEnd();
+        visitor.visitEnd();
     }
 }
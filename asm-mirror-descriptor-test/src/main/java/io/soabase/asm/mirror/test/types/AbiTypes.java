@@ -0,0 +1,124 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.test.types;
+
+import io.soabase.asm.mirror.test.processor.DescriptorTest;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.List;
+
+@DescriptorTest
+@TestAnnotation("abi")
+public class AbiTypes<T extends Comparable<T>> implements Serializable {
+    public static final int INT_CONSTANT = 42;
+    public static final long LONG_CONSTANT = 42L;
+    public static final float FLOAT_CONSTANT = 1.5f;
+    public static final double DOUBLE_CONSTANT = 2.5;
+    public static final String STRING_CONSTANT = "abi";
+    public static final boolean BOOLEAN_CONSTANT = true;
+    public static final char CHAR_CONSTANT = 'x';
+    public static final byte BYTE_CONSTANT = 7;
+    public static final short SHORT_CONSTANT = 8;
+    public static Object notConstant;
+    protected final int instanceConstant = 3;
+    @TestAnnotation(choice = TestEnum.TWO)
+    protected List<T> values;
+    private int hidden;
+
+    public AbiTypes() {
+    }
+
+    protected AbiTypes(T value, String... names) {
+    }
+
+    private AbiTypes(int hidden) {
+        this.hidden = hidden;
+    }
+
+    public static int sum(int... values) {
+        return 0;
+    }
+
+    public synchronized T get() {
+        return null;
+    }
+
+    public native void nativeMethod();
+
+    public final <X extends Number> X convert(Class<X> type) throws IOException {
+        return null;
+    }
+
+    private void hiddenMethod() {
+    }
+
+    public interface Callback<R> {
+        R call(String name) throws Exception;
+
+        default R callDefault() {
+            return null;
+        }
+
+        static <R> Callback<R> empty() {
+            return null;
+        }
+    }
+
+    public enum Mode {
+        FAST,
+        SLOW;
+
+        public boolean isFast() {
+            return this == FAST;
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Config {
+        String name() default "config";
+
+        int[] sizes() default {1, 2};
+
+        Mode mode() default Mode.FAST;
+
+        Class<?> type() default Object.class;
+
+        TestAnnotation nested() default @TestAnnotation("nested");
+    }
+
+    protected abstract static class Base {
+        abstract void run();
+    }
+
+    @Config(name = "inner", type = String.class)
+    public class Inner {
+        public Inner(String name) {
+        }
+
+        public T outerValue() {
+            return null;
+        }
+    }
+
+    private static class Hidden {
+    }
+}
@@ -21,6 +21,7 @@ import javax.annotation.Resource;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @DescriptorTest
 public class ComplexGeneric<T extends List<Map<String, List<T>>>, U extends ComplexGeneric<T, U, V>, V> {
@@ -66,4 +67,11 @@ public class ComplexGeneric<T extends List<Map<String, List<T>>>, U extends Comp
 
     public <X extends Map<X, List<Y>>, Y> void somethingElse(Collection<? super X> hey) {
     }
+
+    public <X extends Exception> void fail(Supplier<X> supplier) throws X, InterruptedException {
+    }
+
+    public <N extends Number & Comparable<? super N>, C extends Collection<N> & Cloneable> N max(C values) {
+        return null;
+    }
 }
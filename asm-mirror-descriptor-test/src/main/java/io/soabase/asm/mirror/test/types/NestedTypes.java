@@ -0,0 +1,59 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.test.types;
+
+import io.soabase.asm.mirror.test.processor.DescriptorTest;
+
+import java.util.List;
+import java.util.Map;
+
+@DescriptorTest
+public class NestedTypes<T> {
+    public Map.Entry<String, T> entry;
+    public List<Map.Entry<String, ? extends T>> entries;
+    public StaticNested<T> staticNested;
+    public StaticNested<T>.Inner<String> staticNestedInner;
+    public Plain.PlainInner plainInner;
+    public NestedTypes<T>.Inner inner;
+
+    public <E extends Map.Entry<String, T>> StaticNested<E> convert(Map.Entry<String, T> entry, StaticNested.Kind kind) throws NestedException {
+        return null;
+    }
+
+    public void process(NestedTypes<T>.Inner inner, Plain.PlainInner plainInner) throws NestedException, RuntimeException {
+    }
+
+    public static class StaticNested<S> {
+        public class Inner<I> {
+        }
+
+        public enum Kind {
+            ONE,
+            TWO
+        }
+    }
+
+    public static class Plain {
+        public class PlainInner {
+        }
+    }
+
+    public class Inner {
+    }
+
+    public static class NestedException extends Exception {
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Non-caching {@link MirrorSignatures} that counts the field/annotation and method descriptors it generates. Readers
+ * generate exactly one descriptor per visited field, method and annotation so the count shows how much of the model
+ * was read.
+ */
+class CountingMirrorSignatures extends MirrorSignatures {
+    private int descriptorCount;
+
+    CountingMirrorSignatures(ProcessingEnvironment processingEnv) {
+        super(processingEnv, false);
+    }
+
+    int getDescriptorCount() {
+        return descriptorCount;
+    }
+
+    void resetDescriptorCount() {
+        descriptorCount = 0;
+    }
+
+    @Override
+    public String typeDescriptor(TypeMirror type) {
+        ++descriptorCount;
+        return super.typeDescriptor(type);
+    }
+
+    @Override
+    public String methodTypeDescriptor(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType) {
+        ++descriptorCount;
+        return super.methodTypeDescriptor(typeParameters, parameters, returnType);
+    }
+}
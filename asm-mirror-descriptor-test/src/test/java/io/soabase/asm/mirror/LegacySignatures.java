@@ -0,0 +1,291 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.Util;
+import org.objectweb.asm.signature.SignatureWriter;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import java.util.stream.Stream;
+
+/**
+ * The {@link SignatureWriter} based emitter that {@link io.soabase.asm.mirror.util.MirrorSignatures} used before it
+ * wrote directly into a StringBuilder. It's the reference for {@link TestSignatureEmitter}. Internal names and class
+ * type signatures of nested types follow the later switch to {@link javax.lang.model.util.Elements#getBinaryName(TypeElement)}
+ * (the original derived names from <code>TypeMirror.toString()</code> which produced '/' instead of '$'). Everything
+ * else - including the quirks - is unchanged.
+ */
+class LegacySignatures {
+    private final ProcessingEnvironment processingEnv;
+
+    private enum Mode {
+        DESCRIPTOR_EXCEPTION,
+        DESCRIPTOR,
+        SIGNATURE_WITH_TYPE_BOUNDS,
+        SIGNATURE,
+        SIGNATURE_SIMPLE
+    }
+
+    LegacySignatures(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+    }
+
+    String classSignature(TypeMirror type) {
+        type = unwrapType(type);
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declaredType = (DeclaredType) type;
+            TypeElement typeElement = (TypeElement) declaredType.asElement();
+            SignatureWriter writer = new SignatureWriter();
+            for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                internalType(writer, typeArgument, Mode.SIGNATURE_WITH_TYPE_BOUNDS);
+            }
+            writer.visitSuperclass();
+            internalType(writer, typeElement.getSuperclass(), Mode.SIGNATURE);
+            for (TypeMirror interfaceType : typeElement.getInterfaces()) {
+                internalType(writer, interfaceType, Mode.SIGNATURE);
+            }
+            return writer.toString();
+        }
+        return null;
+    }
+
+    String methodTypeDescriptor(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType) {
+        return methodType(typeParameters, parameters, returnType, Mode.DESCRIPTOR);
+    }
+
+    String methodTypeSignature(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType) {
+        return methodType(typeParameters, parameters, returnType, Mode.SIGNATURE);
+    }
+
+    String parametersTypeDescriptor(TypeMirror[] parameters) {
+        return parametersType(parameters, Mode.DESCRIPTOR);
+    }
+
+    String parametersTypeSignature(TypeMirror[] parameters) {
+        return parametersType(parameters, Mode.SIGNATURE);
+    }
+
+    String typeDescriptor(TypeMirror type) {
+        return type(type, Mode.DESCRIPTOR);
+    }
+
+    String typeSignature(TypeMirror type) {
+        return type(type, Mode.SIGNATURE);
+    }
+
+    String exception(TypeMirror type) {
+        type = unwrapType(type);
+
+        SignatureWriter writer = new SignatureWriter();
+        buildType(writer, type, Mode.DESCRIPTOR_EXCEPTION);
+        return writer.toString().substring(1);  // work around bug where the exception has the "L" prefix
+    }
+
+    private String type(TypeMirror type, Mode mode) {
+        type = unwrapType(type);
+
+        SignatureWriter writer = new SignatureWriter();
+        internalType(writer, type, mode);
+        return writer.toString();
+    }
+
+    private String parametersType(TypeMirror[] parameters, Mode mode) {
+        parameters = unwrapType(parameters);
+
+        SignatureWriter writer = new SignatureWriter();
+        internalParametersType(writer, parameters, mode);
+        return writer.toString();
+    }
+
+    private String methodType(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType, Mode mode) {
+        typeParameters = unwrapType(typeParameters);
+        parameters = unwrapType(parameters);
+        returnType = unwrapType(returnType);
+
+        SignatureWriter writer = new SignatureWriter();
+        if (mode != Mode.DESCRIPTOR) {
+            for (TypeMirror typeParameter : typeParameters) {
+                internalType(writer, typeParameter, Mode.SIGNATURE_WITH_TYPE_BOUNDS);
+            }
+        }
+        internalParametersType(writer, parameters, mode);
+        writer.visitReturnType();
+        internalType(writer, returnType, mode);
+        return writer.toString();
+    }
+
+    private void internalParametersType(SignatureWriter writer, TypeMirror[] parameters, Mode mode) {
+        for (TypeMirror parameter : parameters) {
+            writer.visitParameterType();
+            internalType(writer, parameter, mode);
+        }
+    }
+
+    private void internalType(SignatureWriter writer, TypeMirror type, Mode mode) {
+        Character baseType = Util.toBaseType(type.getKind());
+        if (baseType != null) {
+            writer.visitBaseType(baseType);
+        } else {
+            buildType(writer, type, mode);
+        }
+    }
+
+    private void buildType(SignatureWriter writer, TypeMirror type, Mode mode) {
+        switch (type.getKind()) {
+            case ARRAY: {
+                ArrayType arrayType = (ArrayType) type;
+                writer.visitArrayType();
+                internalType(writer, arrayType.getComponentType(), mode);
+                break;
+            }
+
+            case DECLARED: {
+                switch (mode) {
+                    case DESCRIPTOR_EXCEPTION: {
+                        writer.visitClassType(internalName(((DeclaredType) type).asElement()));
+                        break;
+                    }
+
+                    case DESCRIPTOR: {
+                        type = processingEnv.getTypeUtils().erasure(type);
+                        writer.visitClassType(internalName(((DeclaredType) type).asElement()));
+                        writer.visitEnd();
+                        break;
+                    }
+
+                    case SIGNATURE:
+                    case SIGNATURE_SIMPLE:
+                    case SIGNATURE_WITH_TYPE_BOUNDS: {
+                        buildDeclaredTypeSignature(writer, (DeclaredType) type, mode);
+                        writer.visitEnd();
+                        break;
+                    }
+                }
+                break;
+            }
+
+            case TYPEVAR: {
+                switch (mode) {
+                    case SIGNATURE_WITH_TYPE_BOUNDS: {
+                        TypeVariable typeVariable = (TypeVariable) type;
+                        TypeParameterElement typeParameterElement = (TypeParameterElement) typeVariable.asElement();
+                        writer.visitFormalTypeParameter(typeParameterElement.getSimpleName().toString());
+                        if (Util.isInterface(typeVariable.getUpperBound())) {
+                            writer.visitInterfaceBound();
+                        }
+                        internalType(writer, typeVariable.getUpperBound(), Mode.SIGNATURE);
+                        break;
+                    }
+
+                    case SIGNATURE_SIMPLE:
+                    case SIGNATURE: {
+                        TypeVariable typeVariable = (TypeVariable) type;
+                        TypeParameterElement typeParameterElement = (TypeParameterElement) typeVariable.asElement();
+                        writer.visitTypeVariable(typeParameterElement.getSimpleName().toString());
+                        break;
+                    }
+
+                    case DESCRIPTOR: {
+                        type = processingEnv.getTypeUtils().erasure(type);
+                        writer.visitClassType(internalName(((DeclaredType) type).asElement()));
+                        writer.visitEnd();
+                        break;
+                    }
+                }
+                break;
+            }
+
+            case WILDCARD: {
+                switch (mode) {
+                    case SIGNATURE_SIMPLE:
+                    case SIGNATURE:
+                    case SIGNATURE_WITH_TYPE_BOUNDS: {
+                        WildcardType wildcardType = (WildcardType) type;
+                        if (wildcardType.getSuperBound() != null) {
+                            writer.visitTypeArgument('-');
+                            internalType(writer, wildcardType.getSuperBound(), Mode.SIGNATURE);
+                        } else if (wildcardType.getExtendsBound() != null) {
+                            writer.visitTypeArgument('+');
+                            internalType(writer, wildcardType.getExtendsBound(), Mode.SIGNATURE);
+                        } else {
+                            writer.visitTypeArgument();
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    private void buildDeclaredTypeSignature(SignatureWriter writer, DeclaredType declaredType, Mode mode) {
+        TypeMirror enclosingType = declaredType.getEnclosingType();
+        if ((enclosingType.getKind() == TypeKind.DECLARED) && Util.hasTypeArguments((DeclaredType) enclosingType)) {
+            // inner classes of parameterized types are written as Outer<...>.Inner
+            buildDeclaredTypeSignature(writer, (DeclaredType) enclosingType, mode);
+            writer.visitInnerClassType(declaredType.asElement().getSimpleName().toString());
+        } else {
+            writer.visitClassType(internalName(declaredType.asElement()));
+        }
+        if (!declaredType.getTypeArguments().isEmpty()) {
+            writer.visitTypeArgument('=');
+            for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                internalType(writer, typeArgument, mode);
+            }
+        }
+    }
+
+    private String internalName(Element element) {
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString().replace('.', '/');
+    }
+
+    private TypeMirror[] unwrapType(TypeMirror[] types) {
+        return Stream.of(types)
+                .map(this::unwrapType)
+                .toArray(TypeMirror[]::new);
+    }
+
+    private TypeMirror unwrapType(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            if (!type.getAnnotationMirrors().isEmpty()) {
+                // same normalization as MirrorSignatures (which keeps the type arguments)
+                DeclaredType declaredType = (DeclaredType) type;
+                Element element = declaredType.asElement();
+                Element typeElement = processingEnv.getTypeUtils().asElement(element.asType());
+                if (typeElement != null) {
+                    TypeMirror[] typeArguments = declaredType.getTypeArguments().toArray(new TypeMirror[0]);
+                    TypeMirror enclosingType = declaredType.getEnclosingType();
+                    if ((enclosingType.getKind() == TypeKind.DECLARED) && Util.hasTypeArguments((DeclaredType) enclosingType)) {
+                        type = processingEnv.getTypeUtils().getDeclaredType((DeclaredType) enclosingType, (TypeElement) typeElement, typeArguments);
+                    } else {
+                        type = processingEnv.getTypeUtils().getDeclaredType((TypeElement) typeElement, typeArguments);
+                    }
+                }
+            }
+        }
+        return type;
+    }
+}
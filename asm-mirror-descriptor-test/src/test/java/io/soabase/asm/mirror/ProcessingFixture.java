@@ -0,0 +1,166 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.visitor.SkippingClassVisitor;
+import io.soabase.asm.mirror.test.types.AsmGuideTypes;
+import io.soabase.asm.mirror.test.types.ComplexExtends;
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimpleGeneric;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import org.junit.Assert;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs test code with a live javac model: the given sources are compiled in-process (annotation
+ * processing only unless other javac options are given) and the test code is called from the processing
+ * rounds. The test's classpath (e.g. the io.soabase.asm.mirror.test.types corpus) is the compilation's classpath.
+ */
+class ProcessingFixture {
+    // the test corpus used by the reader feature tests (snapshots, tapes, fan-out, members, etc.)
+    static final List<Class<?>> CORPUS = Collections.unmodifiableList(Arrays.asList(
+            SimplePojo.class,
+            SimpleGeneric.class,
+            HighlyAnnotated.class,
+            ComplexGeneric.class,
+            AsmGuideTypes.class,
+            ComplexExtends.class,
+            NestedTypes.class
+    ));
+
+    /**
+     * Calls the given proc with a new batch reader and the type elements of the {@link #CORPUS}
+     *
+     * @param proc test code
+     */
+    static void processCorpus(BiConsumer<MirrorBatchReader, List<TypeElement>> proc) {
+        process((processingEnv, environment) -> {
+            List<TypeElement> elements = CORPUS.stream()
+                    .map(clazz -> processingEnv.getElementUtils().getTypeElement(clazz.getCanonicalName()))
+                    .collect(Collectors.toList());
+            proc.accept(new MirrorBatchReader(processingEnv), elements);
+        });
+    }
+
+    /**
+     * Returns the ordered trace (see {@link Textifier}) of the events the given proc makes a visitor visit
+     *
+     * @param acceptProc e.g. <code>reader::accept</code>
+     * @return trace
+     */
+    static String trace(Consumer<ClassVisitor> acceptProc) {
+        StringWriter out = new StringWriter();
+        acceptProc.accept(new TraceClassVisitor(null, new Textifier(), new PrintWriter(out)));
+        return out.toString();
+    }
+
+    /**
+     * Same as {@link #trace(Consumer)} but through a {@link SkippingClassVisitor} (i.e. a visitor that
+     * returns {@literal null} for some members and annotations)
+     *
+     * @param acceptProc e.g. <code>reader::accept</code>
+     * @return trace
+     */
+    static String traceSkipping(Consumer<ClassVisitor> acceptProc) {
+        return trace(classVisitor -> acceptProc.accept(new SkippingClassVisitor(classVisitor)));
+    }
+
+    static void process(BiConsumer<ProcessingEnvironment, RoundEnvironment> proc) {
+        process(Collections.singletonList(source("fixture.Sample", "package fixture;\npublic class Sample {}\n")), proc);
+    }
+
+    static void process(List<JavaFileObject> sources, BiConsumer<ProcessingEnvironment, RoundEnvironment> proc) {
+        compile(sources, Arrays.asList("-proc:only", "-Xlint:none"), proc);
+    }
+
+    /**
+     * Compile the given sources in-process with the given javac options (e.g. <code>-proc:only</code> to only process,
+     * <code>-d</code> for a class output directory). The compilation must succeed. The given proc is called from each
+     * processing round other than the last.
+     *
+     * @param sources sources to compile
+     * @param options javac options
+     * @param proc test code
+     * @return the compilation's diagnostics
+     */
+    static List<Diagnostic<? extends JavaFileObject>> compile(List<JavaFileObject> sources, List<String> options, BiConsumer<ProcessingEnvironment, RoundEnvironment> proc) {
+        Processor processor = new AbstractProcessor() {
+            @Override
+            public Set<String> getSupportedAnnotationTypes() {
+                return Collections.singleton("*");
+            }
+
+            @Override
+            public SourceVersion getSupportedSourceVersion() {
+                return SourceVersion.latestSupported();
+            }
+
+            @Override
+            public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+                if (!environment.processingOver()) {
+                    proc.accept(processingEnv, environment);
+                }
+                return false;
+            }
+        };
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, sources);
+        task.setProcessors(Collections.singletonList(processor));
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        return diagnostics.getDiagnostics();
+    }
+
+    static JavaFileObject source(String className, String content) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    private ProcessingFixture() {
+    }
+}
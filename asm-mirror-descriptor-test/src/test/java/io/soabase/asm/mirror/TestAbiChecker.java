@@ -0,0 +1,194 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+public class TestAbiChecker {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String BASELINE_API = "package abi;\n"
+            + "public class Api {\n"
+            + "    public static final int VERSION = 1;\n"
+            + "    public static final String NAME = \"api\";\n"
+            + "    public int count;\n"
+            + "    public Api() {}\n"
+            + "    public void run() {}\n"
+            + "    public String name(int i) { return null; }\n"
+            + "    public void removed() {}\n"
+            + "    protected void hook() {}\n"
+            + "    public void extensible() {}\n"
+            + "    void packagePrivate() {}\n"
+            + "    public static class Nested { public void nested() {} }\n"
+            + "}\n";
+
+    private static final String CURRENT_API = "package abi;\n"
+            + "public class Api {\n"
+            + "    public static final int VERSION = 2;\n"
+            + "    public static final String NAME = \"api\";\n"
+            + "    public long count;\n"
+            + "    public Api() {}\n"
+            + "    public void run(int times) {}\n"
+            + "    public String name(int i) { return null; }\n"
+            + "    void hook() {}\n"
+            + "    public final void extensible() {}\n"
+            + "    void packagePrivateRenamed() {}\n"
+            + "    static class Nested { public void nested() {} }\n"
+            + "}\n";
+
+    private static final String SERVICE = "package abi;\n"
+            + "public interface Service { void call(); }\n";
+
+    private static final String GONE = "package abi;\n"
+            + "public class Gone {}\n";
+
+    // javac adds synthetic and implicit members to these: bridges, lambda bodies, enum $VALUES/values()/valueOf(),
+    // the enclosing instance parameter of inner class constructors, accessors, <clinit>, $SwitchMap classes, etc.
+    private static final String SHAPES = "package abi;\n"
+            + "import java.util.Comparator;\n"
+            + "import java.util.function.Supplier;\n"
+            + "public class Shapes implements Comparator<String> {\n"
+            + "    public static final boolean ENABLED = true;\n"
+            + "    public static final char SEPARATOR = ',';\n"
+            + "    public static final long MAX = 10L;\n"
+            + "    public static final double RATIO = 0.5;\n"
+            + "    public static final String NAME = \"shapes\";\n"
+            + "    public static final java.util.List<String> NAMES;\n"
+            + "    static { NAMES = java.util.Collections.singletonList(NAME); }\n"
+            + "    public final int size = 3;\n"
+            + "    private int secret;\n"
+            + "    public Shapes() {}\n"
+            + "    protected Shapes(int secret) { this.secret = secret; }\n"
+            + "    @Override public int compare(String a, String b) { return 0; }\n"
+            + "    public Supplier<String> supplier() { return () -> NAME + secret; }\n"
+            + "    public int corners(Kind kind) { switch (kind) { case ROUND: return 0; default: return kind.corners(); } }\n"
+            + "    public enum Kind { ROUND, SQUARE { @Override public int corners() { return 4; } }; public int corners() { return 0; } }\n"
+            + "    public class Inner { public Inner(String name) {} public int secret() { return secret; } }\n"
+            + "    protected static class Base<T> { public T get() { return null; } protected void hook() {} }\n"
+            + "    public static class Sub extends Base<String> { @Override public String get() { return \"\"; } }\n"
+            + "    public interface Shape { double area(); default String name() { return NAME; } static Shape unit() { return () -> 1; } }\n"
+            + "    private static class Hidden {}\n"
+            + "}\n";
+
+    private static final List<String> EXPECTED_CHANGES = Arrays.asList(
+            "CLASS_ACCESS_NARROWED abi/Api$Nested: access 0x1 -> 0x0",
+            "CLASS_REMOVED abi/Gone",
+            "CONSTANT_CHANGED abi/Api.VERSION:I: 1 -> 2",
+            "FIELD_DESCRIPTOR_CHANGED abi/Api.count:I: count:J",
+            "METHOD_ACCESS_NARROWED abi/Api.extensible()V: access 0x1 -> 0x11",
+            "METHOD_ACCESS_NARROWED abi/Api.hook()V: access 0x4 -> 0x0",
+            "METHOD_DESCRIPTOR_CHANGED abi/Api.run()V: run(I)V",
+            "METHOD_REMOVED abi/Api.removed()V"
+    );
+
+    @Test
+    public void testDiff() throws IOException {
+        File baselineJar = compiledJar(Arrays.asList(ProcessingFixture.source("abi.Api", BASELINE_API), ProcessingFixture.source("abi.Service", SERVICE), ProcessingFixture.source("abi.Gone", GONE)));
+        assertDiff(baselineJar);
+    }
+
+    @Test
+    public void testDiffWithHeaderJar() throws IOException {
+        File baselineJar = headerJar(Arrays.asList(ProcessingFixture.source("abi.Api", BASELINE_API), ProcessingFixture.source("abi.Service", SERVICE), ProcessingFixture.source("abi.Gone", GONE)));
+        assertDiff(baselineJar);
+    }
+
+    @Test
+    public void testNoChanges() throws IOException {
+        List<JavaFileObject> sources = Arrays.asList(ProcessingFixture.source("abi.Api", BASELINE_API), ProcessingFixture.source("abi.Service", SERVICE), ProcessingFixture.source("abi.Shapes", SHAPES));
+        File baselineJar = compiledJar(sources);
+        ProcessingFixture.compile(sources, Collections.singletonList("-proc:only"), (processingEnv, environment) -> {
+            try (MirrorAbiChecker checker = new MirrorAbiChecker(new MirrorBatchReader(processingEnv), baselineJar, Diagnostic.Kind.ERROR)) {
+                Assert.assertEquals(Collections.emptyList(), checker.check(ElementFilter.typesIn(environment.getRootElements())));
+                Assert.assertEquals(Collections.emptyList(), checker.finish());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void assertDiff(File baselineJar) {
+        List<MirrorAbiChange> changes = new ArrayList<>();
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = ProcessingFixture.compile(Arrays.asList(ProcessingFixture.source("abi.Api", CURRENT_API), ProcessingFixture.source("abi.Service", SERVICE)), Collections.singletonList("-proc:only"), (processingEnv, environment) -> {
+            try (MirrorAbiChecker checker = new MirrorAbiChecker(new MirrorBatchReader(processingEnv), baselineJar, Diagnostic.Kind.WARNING)) {
+                checker.check(ElementFilter.typesIn(environment.getRootElements()));
+                checker.finish();
+                changes.addAll(checker.getChanges());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        Assert.assertEquals(EXPECTED_CHANGES, changes.stream().map(MirrorAbiChange::toString).sorted().collect(Collectors.toList()));
+        List<String> warnings = diagnostics.stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .filter(message -> message.startsWith("Incompatible API change"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(diagnostics.toString(), EXPECTED_CHANGES.size(), warnings.size());
+    }
+
+    // the class files javac generates for the sources
+    private File compiledJar(List<JavaFileObject> sources) throws IOException {
+        File classes = temporaryFolder.newFolder();
+        ProcessingFixture.compile(sources, Arrays.asList("-d", classes.getPath()), (processingEnv, environment) -> {});
+        File jar = temporaryFolder.newFile("baseline.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)); Stream<Path> paths = Files.walk(classes.toPath())) {
+            for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                out.putNextEntry(new ZipEntry(classes.toPath().relativize(path).toString().replace(File.separatorChar, '/')));
+                out.write(Files.readAllBytes(path));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    // header classes generated from the mirrors of the sources
+    private File headerJar(List<JavaFileObject> sources) throws IOException {
+        File jar = temporaryFolder.newFile("baseline.jar");
+        ProcessingFixture.compile(sources, Collections.singletonList("-proc:only"), (processingEnv, environment) -> {
+            try (OutputStream out = new FileOutputStream(jar)) {
+                new MirrorHeaderJar(processingEnv).write(out, ElementFilter.typesIn(environment.getRootElements()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return jar;
+    }
+}
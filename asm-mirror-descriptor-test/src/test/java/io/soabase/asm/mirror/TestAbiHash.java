@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.mirrortype.MirrorTypeCheck;
+import io.soabase.asm.mirror.test.types.AbiTypes;
+import io.soabase.asm.mirror.test.types.AsmGuideTypes;
+import io.soabase.asm.mirror.test.types.ComplexExtends;
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimpleGeneric;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import io.soabase.asm.mirror.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestAbiHash {
+    private static final List<Class<?>> CLASSES = Arrays.asList(SimplePojo.class, SimpleGeneric.class, HighlyAnnotated.class, ComplexGeneric.class, AsmGuideTypes.class, ComplexExtends.class, NestedTypes.class, AbiTypes.class, MirrorTypeCheck.class);
+
+    @Test
+    public void testMirrorHashMatchesClassHash() {
+        Set<MirrorAbiHasher.Hash> hashes = new HashSet<>();
+        for (Class<?> clazz : CLASSES) {
+            MirrorAbiHasher.Hash classHash = MirrorAbiHasher.hash(readClass(clazz.getName()));
+            MirrorAbiHasher.Hash mirrorHash = MirrorAbiHasher.Hash.parse(TestOutput.getSoabaseGenerated(clazz, "abihash"));
+            Assert.assertEquals(clazz.getName(), classHash, mirrorHash);
+            hashes.add(classHash);
+        }
+        Assert.assertEquals(CLASSES.size(), hashes.size());
+    }
+
+    @Test
+    public void testStubHashMatchesClassHash() {
+        // includes nested and inner classes
+        TestStubs.readStubs().forEach((name, bytes) -> {
+            if (name.endsWith(".class")) {
+                String className = name.substring(0, name.length() - ".class".length());
+                Assert.assertEquals(className, MirrorAbiHasher.hash(readClass(className)), MirrorAbiHasher.hash(new ClassReader(bytes)));
+            }
+        });
+    }
+
+    @Test
+    public void testParse() {
+        MirrorAbiHasher.Hash hash = MirrorAbiHasher.hash(readClass(AbiTypes.class.getName()));
+        Assert.assertEquals(32, hash.toString().length());
+        Assert.assertEquals(hash, MirrorAbiHasher.Hash.parse(hash.toString()));
+        Assert.assertEquals(new MirrorAbiHasher.Hash(-1, 1), MirrorAbiHasher.Hash.parse("ffffffffffffffff0000000000000001"));
+    }
+
+    private static ClassReader readClass(String name) {
+        try {
+            return new ClassReader(Util.toSlash(name));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
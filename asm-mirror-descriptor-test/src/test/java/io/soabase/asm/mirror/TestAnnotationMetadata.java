@@ -0,0 +1,73 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.AnnotationTypeMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+
+public class TestAnnotationMetadata {
+    private static final String SAMPLE = "package metadata;\n"
+            + "import java.lang.annotation.*;\n"
+            + "public class Sample {\n"
+            + "    @Retention(RetentionPolicy.RUNTIME)\n"
+            + "    @Target({ElementType.METHOD, ElementType.TYPE_USE, ElementType.TYPE})\n"
+            + "    public @interface Marker {}\n"
+            + "    @Marker public void one() {}\n"
+            + "    @Marker public void two() {}\n"
+            + "}\n";
+
+    @Test
+    public void testTargetsAndReuse() {
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("metadata.Sample", SAMPLE)), (processingEnv, environment) -> {
+            TypeElement sample = processingEnv.getElementUtils().getTypeElement("metadata.Sample");
+            MirrorAnnotationReader annotationReader = new MirrorAnnotationReader(processingEnv);
+            AnnotationMirror one = annotation(sample, 0);
+            AnnotationMirror two = annotation(sample, 1);
+
+            // the declared order - not the ElementType ordinal order
+            ElementType[] declared = {ElementType.METHOD, ElementType.TYPE_USE, ElementType.TYPE};
+            Assert.assertArrayEquals(declared, annotationReader.getAnnotationTargets(one));
+            Assert.assertArrayEquals(declared, annotationReader.getAnnotationTargets(two));
+
+            AnnotationTypeMetadata metadata = annotationReader.getAnnotationMetadata(one);
+            Assert.assertSame(metadata, annotationReader.getAnnotationMetadata(two));
+            Assert.assertEquals("Lmetadata/Sample$Marker;", metadata.getDescriptor());
+            Assert.assertEquals(RetentionPolicy.RUNTIME, metadata.getRetention());
+            Assert.assertTrue(metadata.hasTarget(ElementType.TYPE_USE));
+            Assert.assertFalse(metadata.hasTarget(ElementType.FIELD));
+            Assert.assertTrue(annotationReader.isVisibleAnnotation(two));
+            Assert.assertTrue(annotationReader.isTypeUseAnnotation(two));
+
+            // callers can't change the cached targets
+            annotationReader.getAnnotationTargets(one)[0] = ElementType.FIELD;
+            Assert.assertArrayEquals(declared, annotationReader.getAnnotationTargets(two));
+        });
+    }
+
+    private static AnnotationMirror annotation(TypeElement sample, int methodIndex) {
+        ExecutableElement method = ElementFilter.methodsIn(sample.getEnclosedElements()).get(methodIndex);
+        return method.getAnnotationMirrors().get(0);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.CheckClassAdapter;
+
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestClassEmitter {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOrderAndBackPressure() {
+        List<String> written = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        AtomicInteger verifiedCount = new AtomicInteger();
+        MirrorClassEmitter.Transform verify = (className, bytes) -> {
+            new ClassReader(bytes).accept(new CheckClassAdapter(new ClassWriter(0), true), 0);
+            verifiedCount.incrementAndGet();
+            return bytes;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MirrorClassEmitter emitter = new MirrorClassEmitter((className, bytes, originatingElements) -> {
+                Assert.assertEquals(className.replace('.', '/'), new ClassReader(bytes).getClassName());
+                written.add(className);
+            }, executor, 8, verify);
+            for (int i = 0; i < 100; ++i) {
+                String className = "test.Emitted" + i;
+                int delay = (i % 8 == 0) ? 20 : 0;  // some classes are slow - later classes finish first
+                emitter.emit(className, () -> {
+                    sleep(delay);
+                    return generate(className);
+                });
+                expected.add(className);
+                Assert.assertTrue(emitter.getPendingCount() <= 8);
+            }
+            emitter.flush();
+            Assert.assertEquals(expected, written);
+            Assert.assertEquals(100, emitter.getWrittenCount());
+            Assert.assertEquals(100, verifiedCount.get());
+            Assert.assertTrue(emitter.getBackPressureCount() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        List<String> written = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();   // run manually so that the failure surfaces in flush()
+        MirrorClassEmitter emitter = new MirrorClassEmitter((className, bytes, originatingElements) -> written.add(className), tasks::add, 10);
+        emitter.emit("test.One", () -> generate("test.One"));
+        emitter.emit("test.Two", () -> {
+            throw new IllegalArgumentException("bad");
+        });
+        emitter.emit("test.Three", () -> generate("test.Three"));
+        tasks.forEach(Runnable::run);
+        try {
+            emitter.flush();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        emitter.close();
+        Assert.assertEquals(Arrays.asList("test.One", "test.Three"), written);
+    }
+
+    @Test
+    public void testFiler() throws IOException {
+        File outputDirectory = temporaryFolder.newFolder();
+        List<JavaFileObject> sources = Collections.singletonList(ProcessingFixture.source("emitter.Sample", "package emitter;\npublic interface Sample {}\n"));
+        ProcessingFixture.compile(sources, Arrays.asList("-d", outputDirectory.getPath()), (processingEnv, environment) -> {
+            if (processingEnv.getElementUtils().getTypeElement("emitter.SampleImpl0") == null) {
+                TypeElement sample = processingEnv.getElementUtils().getTypeElement("emitter.Sample");
+                try (MirrorClassEmitter emitter = new MirrorClassEmitter(MirrorClassOutput.filer(processingEnv.getFiler()), 2)) {
+                    for (int i = 0; i < 10; ++i) {
+                        String className = "emitter.SampleImpl" + i;
+                        ClassWriter classWriter = new ClassWriter(0);
+                        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", new String[]{"emitter/Sample"});
+                        classWriter.visitEnd();
+                        emitter.emit(className, classWriter, sample);
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < 10; ++i) {
+            byte[] bytes = Files.readAllBytes(new File(outputDirectory, "emitter/SampleImpl" + i + ".class").toPath());
+            Assert.assertArrayEquals(new String[]{"emitter/Sample"}, new ClassReader(bytes).getInterfaces());
+        }
+    }
+
+    private static byte[] generate(String className) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", null);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void sleep(int millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.visitor.TestClassVisitor;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestCompletions {
+    private static final List<String> CLASSPATH_TYPES = Arrays.asList("java.util.stream.Collectors", "java.util.concurrent.ConcurrentSkipListMap", "java.util.concurrent.Executors");
+
+    @Test
+    public void testCompletionCount() {
+        List<Object> results = new ArrayList<>();
+        ProcessingFixture.process((processingEnv, environment) -> {
+            // a type that is only referenced (here: by a method of a completed type) isn't completed yet
+            TypeElement executors = processingEnv.getElementUtils().getTypeElement("java.util.concurrent.Executors");
+            ExecutableElement method = ElementFilter.methodsIn(executors.getEnclosedElements()).stream()
+                    .filter(element -> element.getSimpleName().contentEquals("privilegedThreadFactory"))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            TypeElement threadFactory = (TypeElement) ((DeclaredType) method.getReturnType()).asElement();
+            results.add(MirrorSignatures.isCompletionTracked(threadFactory));
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            Assert.assertEquals("java/util/concurrent/ThreadFactory", mirrorSignatures.internalName(threadFactory));
+            results.add(MirrorSignatures.isCompleted(threadFactory));
+            mirrorSignatures.beforeCompletion(threadFactory);
+            threadFactory.getKind();
+            results.add(MirrorSignatures.isCompleted(threadFactory));
+            mirrorSignatures.beforeCompletion(threadFactory);
+            results.add(mirrorSignatures.getCompletionCount());
+        });
+        Assume.assumeTrue("completion state can't be inspected", (Boolean) results.get(0));
+        Assert.assertEquals(Arrays.asList(true, false, true, 1L), results);
+    }
+
+    @Test
+    public void testLean() {
+        List<String> defaultOutput = new ArrayList<>();
+        List<String> leanOutput = new ArrayList<>();
+        long defaultCount = readClasspathTypes(false, defaultOutput);
+        long leanCount = readClasspathTypes(true, leanOutput);
+        Assert.assertEquals(defaultOutput, leanOutput);
+        Assert.assertTrue(defaultCount > 0);
+        Assert.assertTrue("lean " + leanCount + " default " + defaultCount, leanCount < defaultCount);
+    }
+
+    private static long readClasspathTypes(boolean completionLean, List<String> output) {
+        long[] count = new long[1];
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv, false, completionLean);
+            for (String name : CLASSPATH_TYPES) {
+                TestClassVisitor classVisitor = new TestClassVisitor();
+                new MirrorClassReader(mirrorSignatures, processingEnv.getElementUtils().getTypeElement(name)).accept(classVisitor);
+                output.add(classVisitor.toString());
+            }
+            count[0] = mirrorSignatures.getCompletionCount();
+        });
+        return count[0];
+    }
+}
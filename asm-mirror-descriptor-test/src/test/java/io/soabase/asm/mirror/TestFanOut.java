@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.visitor.SkippingClassVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import javax.lang.model.element.TypeElement;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class TestFanOut {
+    private static final int VISITOR_QTY = 4;
+
+    @Test
+    public void testEveryVisitorSeesEveryEvent() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                String direct = ProcessingFixture.trace(reader::accept);
+                String directSkipping = ProcessingFixture.traceSkipping(reader::accept);
+
+                StringWriter[] outs = new StringWriter[VISITOR_QTY];
+                ClassVisitor[] visitors = new ClassVisitor[VISITOR_QTY + 1];
+                for (int i = 0; i < VISITOR_QTY; ++i) {
+                    outs[i] = new StringWriter();
+                    visitors[i] = new TraceClassVisitor(null, new Textifier(), new PrintWriter(outs[i]));
+                }
+                // the skipping visitor returns null for some members/annotations - the others must still see them
+                StringWriter skippingOut = new StringWriter();
+                visitors[VISITOR_QTY] = new SkippingClassVisitor(new TraceClassVisitor(null, new Textifier(), new PrintWriter(skippingOut)));
+                reader.accept(visitors);
+
+                for (StringWriter out : outs) {
+                    Assert.assertEquals(direct, out.toString());
+                }
+                Assert.assertEquals(directSkipping, skippingOut.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testSingleTraversal() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            CountingMirrorSignatures mirrorSignatures = new CountingMirrorSignatures(batchReader.getMirrorSignatures().getProcessingEnv());
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = new MirrorClassReader(mirrorSignatures, element);
+                ProcessingFixture.trace(reader::accept);    // the first visit also reads annotation type metadata
+
+                int start = mirrorSignatures.getDescriptorCount();
+                ProcessingFixture.trace(reader::accept);
+                int single = mirrorSignatures.getDescriptorCount() - start;
+                Assert.assertTrue(single > 0);
+
+                start = mirrorSignatures.getDescriptorCount();
+                ClassVisitor[] visitors = new ClassVisitor[VISITOR_QTY];
+                for (int i = 0; i < VISITOR_QTY; ++i) {
+                    visitors[i] = new TraceClassVisitor(null, new Textifier(), null);
+                }
+                reader.accept(visitors);
+                Assert.assertEquals(single, mirrorSignatures.getDescriptorCount() - start);
+            }
+        });
+    }
+}
@@ -15,10 +15,15 @@
  */
 package io.soabase.asm.mirror;
 
+import io.soabase.asm.mirror.test.generate.MixinModel;
 import io.soabase.asm.mirror.test.generate.Model;
+import io.soabase.asm.mirror.test.processor.GeneratorBaseImpl;
+import io.soabase.asm.mirror.test.types.MixinA;
+import io.soabase.asm.mirror.test.types.MixinB;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
 
 public class TestGenerated {
@@ -29,4 +34,23 @@ public class TestGenerated {
         model.itsYou();
         Assert.assertEquals(model.toString(), Arrays.asList("This is itsMe", "This is itsYou").toString());
     }
+
+    @Test
+    public void testMixinModelGen() throws Exception {
+        MixinModel model = (MixinModel) Class.forName("io.soabase.asm.mirror.test.generate.MixinModelGen").getConstructor().newInstance();
+        model.itsUs();
+        Assert.assertNull(model.getA());
+        Assert.assertNull(((MixinA<String>) model).getA());    // via the bridge
+        Assert.assertNull(((MixinB<Integer>) model).getB());    // inherited
+        Assert.assertEquals(model.toString(), Arrays.asList("This is itsUs", "This is getA", "This is getA", "This is getB").toString());
+    }
+
+    @Test
+    public void testComputedFrames() throws Exception {
+        // the generated classes are written by MirrorClassWriter with COMPUTE_FRAMES - loading them verifies the frames
+        Model model = (Model) Class.forName("io.soabase.asm.mirror.test.generate.ModelGen").getConstructor().newInstance();
+        Method chooseBase = model.getClass().getMethod("chooseBase", boolean.class);
+        Assert.assertSame(model, chooseBase.invoke(model, true));
+        Assert.assertTrue(chooseBase.invoke(model, false) instanceof GeneratorBaseImpl);
+    }
 }
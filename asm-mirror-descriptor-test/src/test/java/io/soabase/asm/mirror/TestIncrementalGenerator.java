@@ -0,0 +1,135 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestIncrementalGenerator {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String BASE = "package inc;\n"
+            + "public interface Base { void b(); }\n";
+
+    private static final String BASE_CHANGED = "package inc;\n"
+            + "public interface Base { void b(); void d(); }\n";
+
+    private static final String API = "package inc;\n"
+            + "public interface Api extends Base { void a(); default void c() {} }\n";
+
+    private static final String API_NEW_BODY = "package inc;\n"
+            + "public interface Api extends Base { void a(); default void c() { System.out.println(); } }\n";
+
+    private static final String API_NEW_PARAMETER = "package inc;\n"
+            + "public interface Api extends Base { void a(int i); default void c() {} }\n";
+
+    private static final long OLD_TIME = 1_000_000L;
+
+    @Test
+    public void testIncremental() throws IOException {
+        File outputDirectory = temporaryFolder.newFolder("classes");
+        File output = new File(outputDirectory, "inc/ApiNames.class");
+
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.WRITTEN, generate(outputDirectory, BASE, API));
+        Assert.assertTrue(output.setLastModified(OLD_TIME));
+        byte[] bytes = Files.readAllBytes(output.toPath());
+
+        // unchanged - and changed code isn't part of the structural hash
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.REUSED, generate(outputDirectory, BASE, API));
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.REUSED, generate(outputDirectory, BASE, API_NEW_BODY));
+        Assert.assertEquals(OLD_TIME, output.lastModified());
+
+        // changed but the generated names are the same - not rewritten
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.IDENTICAL, generate(outputDirectory, BASE, API_NEW_PARAMETER));
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.REUSED, generate(outputDirectory, BASE, API_NEW_PARAMETER));
+        Assert.assertEquals(OLD_TIME, output.lastModified());
+        Assert.assertArrayEquals(bytes, Files.readAllBytes(output.toPath()));
+
+        // a changed supertype changes the output
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.WRITTEN, generate(outputDirectory, BASE_CHANGED, API_NEW_PARAMETER));
+        Assert.assertNotEquals(OLD_TIME, output.lastModified());
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.REUSED, generate(outputDirectory, BASE_CHANGED, API_NEW_PARAMETER));
+    }
+
+    @Test
+    public void testMissingOrModifiedOutput() throws IOException {
+        File outputDirectory = temporaryFolder.newFolder("classes");
+        File output = new File(outputDirectory, "inc/ApiNames.class");
+
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.WRITTEN, generate(outputDirectory, BASE, API));
+        byte[] bytes = Files.readAllBytes(output.toPath());
+
+        Assert.assertTrue(output.delete());
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.WRITTEN, generate(outputDirectory, BASE, API));
+        Assert.assertArrayEquals(bytes, Files.readAllBytes(output.toPath()));
+
+        Files.write(output.toPath(), new byte[]{1, 2, 3});
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.WRITTEN, generate(outputDirectory, BASE, API));
+        Assert.assertArrayEquals(bytes, Files.readAllBytes(output.toPath()));
+
+        // a different generator id doesn't share the state
+        Assert.assertEquals(MirrorIncrementalGenerator.Status.IDENTICAL, generate(outputDirectory, BASE, API, "other"));
+    }
+
+    private static MirrorIncrementalGenerator.Status generate(File outputDirectory, String base, String api) {
+        return generate(outputDirectory, base, api, "names");
+    }
+
+    // generates inc.ApiNames with a static field for each method name of inc.Api
+    private static MirrorIncrementalGenerator.Status generate(File outputDirectory, String base, String api, String generatorId) {
+        AtomicReference<MirrorIncrementalGenerator.Status> status = new AtomicReference<>();
+        List<String> options = Arrays.asList("-proc:only", "-d", outputDirectory.getPath());
+        List<JavaFileObject> sources = Arrays.asList(ProcessingFixture.source("inc.Base", base), ProcessingFixture.source("inc.Api", api));
+        ProcessingFixture.compile(sources, options, (processingEnv, environment) -> {
+            TypeElement apiElement = processingEnv.getElementUtils().getTypeElement("inc.Api");
+            if (environment.getRootElements().contains(apiElement)) {
+                MirrorIncrementalGenerator generator = new MirrorIncrementalGenerator(processingEnv, generatorId);
+                MirrorIncrementalGenerator.Result result = generator.generateClass(apiElement, "inc.ApiNames", () -> {
+                    ClassWriter classWriter = new ClassWriter(0);
+                    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "inc/ApiNames", null, "java/lang/Object", null);
+                    Set<String> names = new TreeSet<>();
+                    ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(apiElement)).stream()
+                            .map(ExecutableElement::getSimpleName)
+                            .forEach(name -> names.add(name.toString()));
+                    names.forEach(name -> classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, "Ljava/lang/Object;", null, null).visitEnd());
+                    classWriter.visitEnd();
+                    return classWriter.toByteArray();
+                });
+                Assert.assertEquals(1, generator.getReusedCount() + generator.getIdenticalCount() + generator.getWrittenCount());
+                status.set(result.getStatus());
+            }
+        });
+        return status.get();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class TestJarOutput {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testJar() throws Exception {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try (MirrorJarOutput jarOutput = new MirrorJarOutput(bytesOut, "test.jar")) {
+            jarOutput.writeClass("b.Second", generate("b.Second"));
+            jarOutput.writeClass("a.First", generate("a.First"));
+            jarOutput.writeClass("a.First$Nested", generate("a.First$Nested"));
+            jarOutput.writeClass("Root", generate("Root"));
+            Assert.assertEquals(4, jarOutput.getClassCount());
+        }
+
+        List<String> names = new ArrayList<>();
+        String index = null;
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(bytesOut.toByteArray()))) {
+            for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                Assert.assertEquals(ZipEntry.STORED, entry.getMethod());
+                names.add(entry.getName());
+                if (entry.getName().equals(MirrorJarOutput.INDEX_NAME)) {
+                    ByteArrayOutputStream indexOut = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    for (int count = zipIn.read(buffer); count > 0; count = zipIn.read(buffer)) {
+                        indexOut.write(buffer, 0, count);
+                    }
+                    index = new String(indexOut.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        Assert.assertEquals(Arrays.asList(JarFile.MANIFEST_NAME, "b/Second.class", "a/First.class", "a/First$Nested.class", "Root.class", MirrorJarOutput.INDEX_NAME), names);
+        Assert.assertEquals("JarIndex-Version: 1.0\n\ntest.jar\nRoot.class\na\nb\n\n", index);
+
+        // deterministic
+        ByteArrayOutputStream bytesOut2 = new ByteArrayOutputStream();
+        try (MirrorJarOutput jarOutput = new MirrorJarOutput(bytesOut2, "test.jar")) {
+            jarOutput.writeClass("b.Second", generate("b.Second"));
+            jarOutput.writeClass("a.First", generate("a.First"));
+            jarOutput.writeClass("a.First$Nested", generate("a.First$Nested"));
+            jarOutput.writeClass("Root", generate("Root"));
+        }
+        Assert.assertArrayEquals(bytesOut.toByteArray(), bytesOut2.toByteArray());
+
+        // loadable (with the index)
+        File jar = new File(temporaryFolder.getRoot(), "test.jar");
+        Files.write(jar.toPath(), bytesOut.toByteArray());
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null)) {
+            Assert.assertEquals("a.First$Nested", classLoader.loadClass("a.First$Nested").getName());
+            Assert.assertEquals("Root", classLoader.loadClass("Root").getName());
+        }
+    }
+
+    @Test
+    public void testFiler() throws IOException {
+        File outputDirectory = temporaryFolder.newFolder();
+        List<JavaFileObject> sources = Collections.singletonList(ProcessingFixture.source("jar.Sample", "package jar;\npublic interface Sample {}\n"));
+        ProcessingFixture.compile(sources, Arrays.asList("-proc:only", "-d", outputDirectory.getPath()), (processingEnv, environment) -> {
+            TypeElement sample = processingEnv.getElementUtils().getTypeElement("jar.Sample");
+            try (MirrorJarOutput jarOutput = new MirrorJarOutput(processingEnv.getFiler(), "generated.jar", sample);
+                 MirrorClassEmitter emitter = new MirrorClassEmitter(jarOutput, 2)) {
+                for (int i = 0; i < 10; ++i) {
+                    String className = "jar.SampleImpl" + i;
+                    emitter.emit(className, () -> generate(className));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try (JarFile jarFile = new JarFile(new File(outputDirectory, "generated.jar"))) {
+            for (int i = 0; i < 10; ++i) {
+                Assert.assertNotNull(jarFile.getEntry("jar/SampleImpl" + i + ".class"));
+            }
+        }
+    }
+
+    private static byte[] generate(String className) {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", null);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+}
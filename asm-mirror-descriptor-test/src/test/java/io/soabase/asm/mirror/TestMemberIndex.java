@@ -0,0 +1,122 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TestMemberIndex {
+    @Test
+    public void testSameAsAccept() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                MirrorMemberIndex index = new MirrorMemberIndex(reader);
+                String indexed = ProcessingFixture.trace(classVisitor -> {
+                    // class header from accept(), members via index lookups
+                    reader.accept(new ClassVisitor(Opcodes.ASM7, classVisitor) {
+                        @Override
+                        public void visitEnd() {
+                            // ended below
+                        }
+                    }, MirrorClassReader.SKIP_FIELDS | MirrorClassReader.SKIP_METHODS | MirrorClassReader.SKIP_CONSTRUCTORS);
+                    index.getFieldNames().forEach(name -> index.findField(name).accept(classVisitor));
+                    index.getMethodNames().forEach(name -> index.getMethods(name).forEach(overload -> index.findMethod(name, overload.getDescriptor()).accept(classVisitor)));
+                    classVisitor.visitEnd();
+                });
+                Assert.assertEquals(ProcessingFixture.trace(reader::accept), indexed);
+            }
+        });
+    }
+
+    @Test
+    public void testOverloads() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorMemberIndex index = new MirrorMemberIndex(processingEnv, processingEnv.getElementUtils().getTypeElement(String.class.getName()));
+            List<String> descriptors = index.getMethods("indexOf").stream().map(MirrorMember::getDescriptor).collect(Collectors.toList());
+            Assert.assertTrue(descriptors.toString(), descriptors.containsAll(Arrays.asList("(I)I", "(II)I", "(Ljava/lang/String;)I", "(Ljava/lang/String;I)I")));
+
+            MirrorMember indexOfInt = index.findMethod("indexOf", "(I)I");
+            MirrorMember indexOfIntInt = index.findMethod("indexOf", "(II)I");
+            MirrorMember indexOfString = index.findMethod("indexOf", "(Ljava/lang/String;)I");
+            MirrorMember indexOfStringInt = index.findMethod("indexOf", "(Ljava/lang/String;I)I");
+            Assert.assertEquals(Arrays.asList(TypeKind.INT), parameterKinds(indexOfInt));
+            Assert.assertEquals(Arrays.asList(TypeKind.INT, TypeKind.INT), parameterKinds(indexOfIntInt));
+            Assert.assertEquals(Arrays.asList(TypeKind.DECLARED), parameterKinds(indexOfString));
+            Assert.assertEquals(Arrays.asList(TypeKind.DECLARED, TypeKind.INT), parameterKinds(indexOfStringInt));
+            Assert.assertEquals(4, Arrays.asList(indexOfInt, indexOfIntInt, indexOfString, indexOfStringInt).stream().map(MirrorMember::getElement).distinct().count());
+
+            Assert.assertEquals(index.getMethods("<init>").size(), index.getMethods("<init>").stream().map(MirrorMember::getDescriptor).distinct().count());
+            Assert.assertNotNull(index.findMethod("<init>", "()V"));
+        });
+    }
+
+    @Test
+    public void testMisses() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorMemberIndex index = new MirrorMemberIndex(processingEnv, processingEnv.getElementUtils().getTypeElement(String.class.getName()));
+
+            // missing name
+            Assert.assertNull(index.findMethod("noSuchMethod", "()V"));
+            Assert.assertTrue(index.getMethods("noSuchMethod").isEmpty());
+            Assert.assertNull(index.findField("noSuchField"));
+
+            // right name, wrong descriptor
+            Assert.assertNotNull(index.findMethod("indexOf", "(I)I"));
+            Assert.assertNull(index.findMethod("indexOf", "(J)I"));
+            Assert.assertNull(index.findMethod("indexOf", "(I)J"));
+            Assert.assertNull(index.findMethod("indexOf", "(Ljava/lang/Object;)I"));
+            Assert.assertNull(index.findMethod("indexOf", ""));
+
+            // fields and methods are separate
+            Assert.assertNotNull(index.findField("hash"));
+            Assert.assertNull(index.findMethod("hash", "()I"));
+            Assert.assertFalse(index.getMethodNames().contains("hash"));
+            Assert.assertNull(index.findField("indexOf"));
+        });
+    }
+
+    @Test
+    public void testLookupsDoNotRegenerate() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            CountingMirrorSignatures mirrorSignatures = new CountingMirrorSignatures(batchReader.getMirrorSignatures().getProcessingEnv());
+            for (TypeElement element : elements) {
+                MirrorMemberIndex index = new MirrorMemberIndex(new MirrorClassReader(mirrorSignatures, element));
+                int built = mirrorSignatures.getDescriptorCount();
+                for (String name : index.getMethodNames()) {
+                    for (MirrorMember overload : index.getMethods(name)) {
+                        Assert.assertSame(overload, index.findMethod(name, overload.getDescriptor()));
+                    }
+                }
+                Assert.assertEquals(built, mirrorSignatures.getDescriptorCount());
+            }
+        });
+    }
+
+    private static List<TypeKind> parameterKinds(MirrorMember member) {
+        Assert.assertNotNull(member);
+        return ((ExecutableElement) member.getElement()).getParameters().stream().map(parameter -> parameter.asType().getKind()).collect(Collectors.toList());
+    }
+}
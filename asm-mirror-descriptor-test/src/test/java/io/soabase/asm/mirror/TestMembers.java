@@ -0,0 +1,101 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class TestMembers {
+    @Test
+    public void testSameAsAccept() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                String members = ProcessingFixture.trace(classVisitor -> {
+                    // class header from accept(), members from the lazy member views
+                    reader.accept(new ClassVisitor(Opcodes.ASM7, classVisitor) {
+                        @Override
+                        public void visitEnd() {
+                            // ended below
+                        }
+                    }, MirrorClassReader.SKIP_FIELDS | MirrorClassReader.SKIP_METHODS | MirrorClassReader.SKIP_CONSTRUCTORS);
+                    reader.members().forEach(member -> member.accept(classVisitor));
+                    classVisitor.visitEnd();
+                });
+                Assert.assertEquals(ProcessingFixture.trace(reader::accept), members);
+            }
+        });
+    }
+
+    @Test
+    public void testNothingGeneratedUntilAsked() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            CountingMirrorSignatures mirrorSignatures = new CountingMirrorSignatures(batchReader.getMirrorSignatures().getProcessingEnv());
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = new MirrorClassReader(mirrorSignatures, element);
+                List<MirrorMember> members = reader.members().collect(Collectors.toList());
+                List<String> names = members.stream().map(MirrorMember::getName).collect(Collectors.toList());
+                Assert.assertFalse(names.isEmpty());
+                Assert.assertEquals(0, mirrorSignatures.getDescriptorCount());
+
+                // only the member that is asked is generated - once
+                MirrorMember last = members.get(members.size() - 1);
+                String descriptor = last.getDescriptor();
+                Assert.assertSame(descriptor, last.getDescriptor());
+                Assert.assertEquals(1, mirrorSignatures.getDescriptorCount());
+
+                reader.members().forEach(MirrorMember::getDescriptor);
+                Assert.assertEquals(1 + members.size(), mirrorSignatures.getDescriptorCount());
+                mirrorSignatures.resetDescriptorCount();
+            }
+        });
+    }
+
+    @Test
+    public void testShortCircuit() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            CountingMirrorSignatures mirrorSignatures = new CountingMirrorSignatures(batchReader.getMirrorSignatures().getProcessingEnv());
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = new MirrorClassReader(mirrorSignatures, element);
+                List<MirrorMember> members = batchReader.newClassReader(element).members().collect(Collectors.toList());
+                int target = members.size() / 2;
+                String targetName = members.get(target).getName();
+                String targetDescriptor = members.get(target).getDescriptor();
+
+                // anyMatch() stops at the first match - later members are never pulled from the stream
+                AtomicInteger pulled = new AtomicInteger();
+                Assert.assertTrue(reader.members().peek(member -> pulled.incrementAndGet()).anyMatch(member -> member.getName().equals(targetName)));
+                int firstWithName = members.stream().map(MirrorMember::getName).collect(Collectors.toList()).indexOf(targetName);
+                Assert.assertEquals(firstWithName + 1, pulled.get());
+                Assert.assertEquals(0, mirrorSignatures.getDescriptorCount());
+
+                // findFirst() only generates the descriptors of the members it tested
+                MirrorMember found = reader.members().filter(member -> member.getDescriptor().equals(targetDescriptor)).findFirst().orElseThrow(AssertionError::new);
+                int firstWithDescriptor = members.stream().map(MirrorMember::getDescriptor).collect(Collectors.toList()).indexOf(targetDescriptor);
+                Assert.assertEquals(members.get(firstWithDescriptor).getElement(), found.getElement());
+                Assert.assertEquals(firstWithDescriptor + 1, mirrorSignatures.getDescriptorCount());
+                mirrorSignatures.resetDescriptorCount();
+            }
+        });
+    }
+}
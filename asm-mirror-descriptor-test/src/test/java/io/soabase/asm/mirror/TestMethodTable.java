@@ -0,0 +1,186 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+public class TestMethodTable {
+    private static final String SOURCE = "package table;\n"
+            + "public class Tables {\n"
+            + "    public static class Animal {}\n"
+            + "    public static class Dog extends Animal {}\n"
+            + "    public interface Shelter { Animal adopt(); }\n"
+            + "    public static abstract class DogShelter implements Shelter { public abstract Dog adopt(); }\n"
+
+            + "    public interface Consumer<T> { void accept(T value); }\n"
+            + "    public static abstract class StringConsumer implements Consumer<String> { public abstract void accept(String value); }\n"
+
+            + "    public interface Named { String name(); }\n"
+            + "    public interface Labeled { String name(); }\n"
+            + "    public interface Tag extends Named, Labeled {}\n"
+
+            + "    public interface Source<T> { T get(); }\n"
+            + "    public interface CharSource<T extends CharSequence> extends Source<T> { T get(); }\n"
+            + "    public interface Both extends Source<String>, CharSource<String> {}\n"
+            + "    public static abstract class StringSource implements CharSource<String> { public abstract String get(); }\n"
+            + "    public interface BuilderSource extends CharSource<StringBuilder> {}\n"
+
+            + "    public interface Greeter { String greet(); }\n"
+            + "    public interface DefaultGreeter extends Greeter { default String greet() { return \"\"; } }\n"
+            + "    public interface Mixed extends Greeter, DefaultGreeter {}\n"
+            + "    public static abstract class Base implements Greeter {}\n"
+            + "    public static class Impl extends Base implements DefaultGreeter {}\n"
+            + "}\n";
+
+    @Test
+    public void testCovariantReturn() {
+        process((builder, elements) -> {
+            MirrorMethodTable.Entry adopt = entry(builder.build(type(elements, "DogShelter")), "adopt");
+            Assert.assertEquals("table.Tables.DogShelter", adopt.getDeclaringType().getQualifiedName().toString());
+            Assert.assertEquals("()Ltable/Tables$Dog;", adopt.getDescriptor());
+            Assert.assertEquals(Collections.singleton("()Ltable/Tables$Animal;"), adopt.getBridgeDescriptors());
+            Assert.assertTrue(adopt.isAbstract());
+        });
+    }
+
+    @Test
+    public void testGenericParameterErasure() {
+        process((builder, elements) -> {
+            MirrorMethodTable table = builder.build(type(elements, "StringConsumer"));
+            MirrorMethodTable.Entry accept = entry(table, "accept");
+            Assert.assertEquals("table.Tables.StringConsumer", accept.getDeclaringType().getQualifiedName().toString());
+            Assert.assertEquals("(Ljava/lang/String;)V", accept.getDescriptor());
+            Assert.assertEquals(Collections.singleton("(Ljava/lang/Object;)V"), accept.getBridgeDescriptors());
+            // bridge descriptors are found too
+            Assert.assertSame(accept, table.find("accept", "(Ljava/lang/Object;)V"));
+            Assert.assertNull(table.find("accept", "(Ljava/lang/Integer;)V"));
+        });
+    }
+
+    @Test
+    public void testUnrelatedInterfaces() {
+        process((builder, elements) -> {
+            // the same method from two unrelated interfaces is one entry - the first seen
+            MirrorMethodTable table = builder.build(type(elements, "Tag"));
+            Assert.assertEquals(1, table.getEntries().size());
+            MirrorMethodTable.Entry name = entry(table, "name");
+            Assert.assertEquals("table.Tables.Named", name.getDeclaringType().getQualifiedName().toString());
+            Assert.assertEquals("()Ljava/lang/String;", name.getDescriptor());
+            Assert.assertEquals(Collections.emptySet(), name.getBridgeDescriptors());
+        });
+    }
+
+    @Test
+    public void testDiamondInterfaces() {
+        process((builder, elements) -> {
+            // Source.get() is seen first and then replaced by the CharSource method that overrides it
+            MirrorMethodTable.Entry get = entry(builder.build(type(elements, "Both")), "get");
+            Assert.assertEquals("table.Tables.CharSource", get.getDeclaringType().getQualifiedName().toString());
+            Assert.assertEquals("()Ljava/lang/CharSequence;", get.getDescriptor());
+            Assert.assertEquals(Collections.singleton("()Ljava/lang/Object;"), get.getBridgeDescriptors());
+        });
+    }
+
+    @Test
+    public void testBridgeAccumulation() {
+        process((builder, elements) -> {
+            MirrorMethodTable.Entry get = entry(builder.build(type(elements, "StringSource")), "get");
+            Assert.assertEquals("table.Tables.StringSource", get.getDeclaringType().getQualifiedName().toString());
+            Assert.assertEquals("()Ljava/lang/String;", get.getDescriptor());
+            Assert.assertEquals(new HashSet<>(Arrays.asList("()Ljava/lang/CharSequence;", "()Ljava/lang/Object;")), get.getBridgeDescriptors());
+        });
+    }
+
+    @Test
+    public void testDefaultMethods() {
+        process((builder, elements) -> {
+            // the abstract Greeter.greet() is seen first and replaced by the default method
+            for (String name : Arrays.asList("Mixed", "Impl")) {
+                MirrorMethodTable table = builder.build(type(elements, name));
+                MirrorMethodTable.Entry greet = entry(table, "greet");
+                Assert.assertEquals(name, "table.Tables.DefaultGreeter", greet.getDeclaringType().getQualifiedName().toString());
+                Assert.assertFalse(name, greet.isAbstract());
+                Assert.assertEquals(name, Collections.emptySet(), greet.getBridgeDescriptors());
+                Assert.assertTrue(name, table.getAbstractEntries().isEmpty());
+            }
+            Assert.assertEquals(Collections.singletonList("greet"), names(builder.build(type(elements, "Base")).getAbstractEntries()));
+        });
+    }
+
+    @Test
+    public void testSharedTables() {
+        process((builder, elements) -> {
+            MirrorMethodTable charSource = builder.build(type(elements, "CharSource"));
+            Assert.assertEquals(2, builder.getTableCount());   // CharSource and Source
+
+            // the new type's only new table is its own - its unchanged inherited entry is the supertype's
+            MirrorMethodTable builderSource = builder.build(type(elements, "BuilderSource"));
+            Assert.assertEquals(3, builder.getTableCount());
+            Assert.assertSame(entry(charSource, "get"), entry(builderSource, "get"));
+            Assert.assertSame(builderSource, builder.build(type(elements, "BuilderSource")));
+            Assert.assertEquals(3, builder.getTableCount());
+
+            // Object's table is built once for all classes
+            builder.build(type(elements, "DogShelter"));
+            builder.build(type(elements, "StringConsumer"));
+            Assert.assertEquals(8, builder.getTableCount());
+        });
+    }
+
+    private static void process(BiConsumer<MirrorMethodTableBuilder, List<TypeElement>> proc) {
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("table.Tables", SOURCE)), (processingEnv, environment) -> {
+            proc.accept(new MirrorMethodTableBuilder(processingEnv), types(processingEnv));
+        });
+    }
+
+    private static List<TypeElement> types(ProcessingEnvironment processingEnv) {
+        TypeElement tables = processingEnv.getElementUtils().getTypeElement("table.Tables");
+        return tables.getEnclosedElements().stream()
+                .filter(element -> element instanceof TypeElement)
+                .map(element -> (TypeElement) element)
+                .collect(Collectors.toList());
+    }
+
+    private static TypeElement type(List<TypeElement> elements, String simpleName) {
+        return elements.stream()
+                .filter(element -> element.getSimpleName().contentEquals(simpleName))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    // the only entry with the given name
+    private static MirrorMethodTable.Entry entry(MirrorMethodTable table, String name) {
+        List<MirrorMethodTable.Entry> entries = table.getEntries().stream()
+                .filter(entry -> entry.getName().equals(name))
+                .collect(Collectors.toList());
+        Assert.assertEquals(entries.toString(), 1, entries.size());
+        return entries.get(0);
+    }
+
+    private static List<String> names(List<MirrorMethodTable.Entry> entries) {
+        return entries.stream().map(MirrorMethodTable.Entry::getName).collect(Collectors.toList());
+    }
+}
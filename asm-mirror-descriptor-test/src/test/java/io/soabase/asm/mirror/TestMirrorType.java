@@ -19,8 +19,16 @@ import io.soabase.asm.mirror.test.mirrortype.MirrorTypeCheck;
 import io.soabase.asm.mirror.test.processor.visitor.TypeVisitor;
 import org.junit.Assert;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.io.IOException;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,6 +40,60 @@ public class TestMirrorType {
         Assert.assertEquals(asmGenerated, soaGenerated);
     }
 
+    @Test
+    public void testMirrorContext() {
+        String asmGenerated = getAsmGenerated(MirrorTypeCheck.class);
+        String soaGenerated = TestOutput.getSoabaseGenerated(MirrorTypeCheck.class, "mirrorcontext");
+        Assert.assertEquals(asmGenerated, soaGenerated);
+    }
+
+    @Test
+    public void testSignatures() throws IOException {
+        String[] classSignature = new String[1];
+        new ClassReader(MirrorTypeCheck.class.getName()).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                classSignature[0] = signature;
+            }
+        }, ClassReader.SKIP_CODE);
+        ProcessingFixture.process((processingEnv, environment) -> {
+            TypeElement element = processingEnv.getElementUtils().getTypeElement(MirrorTypeCheck.class.getName());
+            MirrorContext context = new MirrorContext(processingEnv);
+            Assert.assertEquals(classSignature[0], SignatureMirrorType.getType(processingEnv, element));
+            Assert.assertEquals(classSignature[0], context.getSignature(element));
+            for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+                Assert.assertEquals(SignatureMirrorType.getType(processingEnv, method), context.getSignature(method));
+                Assert.assertEquals(SignatureMirrorType.getReturnType(processingEnv, method), context.getReturnTypeSignature(method));
+            }
+        });
+    }
+
+    @Test
+    public void testContextReuse() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            TypeElement element = processingEnv.getElementUtils().getTypeElement(MirrorTypeCheck.class.getName());
+            List<ExecutableElement> methods = ElementFilter.methodsIn(element.getEnclosedElements());
+            MirrorContext context = new MirrorContext(processingEnv);
+
+            List<Type> types = context.getTypes(methods);
+            List<Type> returnTypes = context.getReturnTypes(methods);
+            for (int i = 0; i < methods.size(); ++i) {
+                Assert.assertSame(types.get(i), context.getType(methods.get(i)));
+                Assert.assertSame(returnTypes.get(i), context.getReturnType(methods.get(i)));
+                // the static facade creates a new instance each time
+                Assert.assertNotSame(MirrorType.getType(processingEnv, methods.get(i)), MirrorType.getType(processingEnv, methods.get(i)));
+            }
+
+            // different elements with the same descriptor share a Type: get(int) and maker(int, Object) return Object
+            Assert.assertSame(context.getReturnType(method(methods, "get")), context.getReturnType(method(methods, "maker")));
+            Assert.assertSame(context.getType("Ljava/lang/Object;"), context.getReturnType(method(methods, "get")));
+        });
+    }
+
+    private static ExecutableElement method(List<ExecutableElement> methods, String name) {
+        return methods.stream().filter(method -> method.getSimpleName().contentEquals(name)).findFirst().orElseThrow(AssertionError::new);
+    }
+
     private String getAsmGenerated(Class clazz) {
         TypeVisitor typeVisitor = new TypeVisitor();
 
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.types.AbiTypes;
+import io.soabase.asm.mirror.test.types.AsmGuideTypes;
+import io.soabase.asm.mirror.test.types.ComplexExtends;
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimpleGeneric;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestModel {
+    @Test
+    public void testModelReplay() {
+        internalTest(SimplePojo.class);
+        internalTest(SimpleGeneric.class);
+        internalTest(HighlyAnnotated.class);
+        internalTest(ComplexGeneric.class);
+        internalTest(AsmGuideTypes.class);
+        internalTest(ComplexExtends.class);
+        internalTest(NestedTypes.class);
+        internalTest(AbiTypes.class);
+    }
+
+    @Test
+    public void testModelAbiHash() {
+        for (Class<?> clazz : Arrays.asList(SimplePojo.class, HighlyAnnotated.class, ComplexGeneric.class, AbiTypes.class)) {
+            Assert.assertEquals(TestOutput.getSoabaseGenerated(clazz, "abihash"), TestOutput.getSoabaseGenerated(clazz, "modelabihash"));
+        }
+    }
+
+    @Test
+    public void testValues() {
+        String odd = "\u0000\uD800 é中";
+        MirrorModelWriter writer = new MirrorModelWriter();
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "a/B", null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_STATIC, "s", "Ljava/lang/String;", null, odd).visitEnd();
+        writer.visitField(Opcodes.ACC_STATIC, "l", "J", null, Long.MIN_VALUE).visitEnd();
+        writer.visitField(Opcodes.ACC_STATIC, "i", "I", null, -1).visitEnd();
+        writer.visitField(Opcodes.ACC_STATIC, "d", "D", null, Double.NaN).visitEnd();
+        AnnotationVisitor annotationVisitor = writer.visitAnnotation("La/A;", true);
+        annotationVisitor.visit("bytes", new byte[]{-128, 0, 127});
+        annotationVisitor.visit("c", 'x');
+        annotationVisitor.visit("t", Type.getType("[La/B;"));
+        annotationVisitor.visitEnd();
+        writer.visitEnd();
+        byte[] bytes = writer.toByteArray();
+
+        // replaying into another writer produces the same bytes
+        MirrorModelWriter copy = new MirrorModelWriter();
+        new MirrorModelReader(bytes).accept(copy);
+        Assert.assertArrayEquals(bytes, copy.toByteArray());
+
+        // the reader only reads between the buffer's position and limit
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2);
+        buffer.put((byte) 1).put(bytes).put((byte) 2).flip().position(1);
+        MirrorModelReader reader = new MirrorModelReader(buffer);
+        Assert.assertEquals(1, buffer.position());
+        Assert.assertEquals("a/B", reader.getClassName());
+        Assert.assertEquals("java/lang/Object", reader.getSuperName());
+        Assert.assertEquals(0, reader.getInterfaces().length);
+
+        List<Object> values = new ArrayList<>();
+        reader.accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                values.add(value);
+                return null;
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return new AnnotationVisitor(Opcodes.ASM7) {
+                    @Override
+                    public void visit(String name, Object value) {
+                        values.add(value);
+                    }
+                };
+            }
+        });
+        Assert.assertEquals(Arrays.asList(odd, Long.MIN_VALUE, -1, Double.NaN), values.subList(0, 4));
+        Assert.assertArrayEquals(new byte[]{-128, 0, 127}, (byte[]) values.get(4));
+        Assert.assertEquals(Arrays.asList('x', Type.getType("[La/B;")), values.subList(5, 7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedVersion() {
+        MirrorModelWriter writer = new MirrorModelWriter();
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "a/B", null, "java/lang/Object", null);
+        writer.visitEnd();
+        byte[] bytes = writer.toByteArray();
+        bytes[4] = (byte) (MirrorModelWriter.FORMAT_VERSION + 1);
+        new MirrorModelReader(bytes);
+    }
+
+    private void internalTest(Class clazz) {
+        Assert.assertEquals(TestOutput.getSoabaseGenerated(clazz, "test"), TestOutput.getSoabaseGenerated(clazz, "model"));
+        // the skipping visitor returns null for some members/annotations
+        Assert.assertEquals(TestOutput.getSoabaseGenerated(clazz, "options"), TestOutput.getSoabaseGenerated(clazz, "modeloptions"));
+    }
+}
@@ -18,26 +18,52 @@ package io.soabase.asm.mirror;
 import io.soabase.asm.mirror.test.mirrortype.MirrorTypeCheck;
 import io.soabase.asm.mirror.util.Util;
 import io.soabase.asm.mirror.test.processor.visitor.TestClassVisitor;
+import io.soabase.asm.mirror.test.types.AbiTypes;
 import io.soabase.asm.mirror.test.types.AsmGuideTypes;
 import io.soabase.asm.mirror.test.types.ComplexExtends;
 import io.soabase.asm.mirror.test.types.ComplexGeneric;
 import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
 import io.soabase.asm.mirror.test.types.SimpleGeneric;
 import io.soabase.asm.mirror.test.types.SimplePojo;
 import org.junit.Assert;
 import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
+import javax.lang.model.element.TypeElement;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.objectweb.asm.ClassReader.SKIP_CODE;
 import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
 
 public class TestOutput {
+    // compared in-process including their member types (interfaces, enums, annotations, nested classes)
+    private static final List<Class<?>> ALL_TYPES = Arrays.asList(
+            SimplePojo.class,
+            SimpleGeneric.class,
+            HighlyAnnotated.class,
+            ComplexGeneric.class,
+            AsmGuideTypes.class,
+            ComplexExtends.class,
+            NestedTypes.class,
+            AbiTypes.class
+    );
+
     @Test
     public void testSimplePojo() {
         internalTest(SimplePojo.class);
@@ -68,11 +94,262 @@ public class TestOutput {
         internalTest(ComplexExtends.class);
     }
 
+    @Test
+    public void testNestedTypes() {
+        internalTest(NestedTypes.class);
+    }
+
+    @Test
+    public void testAbiTypes() {
+        internalTest(AbiTypes.class);
+    }
+
     @Test
     public void testMirrorTypeCheck() {
         internalTest(MirrorTypeCheck.class);
     }
 
+    @Test
+    public void testClassKindAccess() {
+        // interface, annotation and enum flags - and no ACC_SUPER for interfaces
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                lines.add(Integer.toHexString(access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ANNOTATION | Opcodes.ACC_ENUM | Opcodes.ACC_SUPER)));
+            }
+        });
+    }
+
+    @Test
+    public void testNestedClassAccess() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                lines.add(Integer.toHexString(access));
+            }
+        });
+    }
+
+    @Test
+    public void testInterfaceSuperName() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                lines.add(String.valueOf(superName));
+            }
+        });
+    }
+
+    @Test
+    public void testEnumConstants() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                lines.add(name + " " + descriptor + " " + Integer.toHexString(access));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testVarargsAccess() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                lines.add(name + " " + Integer.toHexString(access));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testConstantValues() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if (value != null) {
+                    lines.add(name + " " + value.getClass().getName() + " " + value);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testClassAnnotationValues() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return visible ? new ValuesVisitor(lines, descriptor) : null;
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                return new FieldVisitor(Opcodes.ASM7) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                        return visible ? new ValuesVisitor(lines, name + " " + annotationDescriptor) : null;
+                    }
+                };
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM7) {
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                        return visible ? new ValuesVisitor(lines, name + " " + annotationDescriptor) : null;
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testAnnotationDefaults() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM7) {
+                    @Override
+                    public AnnotationVisitor visitAnnotationDefault() {
+                        return new ValuesVisitor(lines, name + " default");
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testMemberVisitEnd() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                return new FieldVisitor(Opcodes.ASM7) {
+                    @Override
+                    public void visitEnd() {
+                        lines.add(name + " end");
+                    }
+                };
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM7) {
+                    @Override
+                    public void visitEnd() {
+                        lines.add(name + " end");
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testAnnotatedParameterizedSignatures() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                lines.add(name + " " + signature);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                // not constructors - javac writes a signature for enum constructors to hide the synthetic name/ordinal parameters
+                if (!name.equals("<init>")) {
+                    lines.add(name + " " + signature);
+                }
+                return null;
+            }
+        });
+
+        // javac doesn't put type annotations on the types of class file elements - a source is needed to see them
+        String source = "package fixture;\n"
+                + "import java.lang.annotation.*;\n"
+                + "import java.util.List;\n"
+                + "public class Annotated<T> {\n"
+                + "    @Target(ElementType.TYPE_USE) @interface A {}\n"
+                + "    public @A List<T> field;\n"
+                + "    public @A List<String> method(@A List<T> values) { return null; }\n"
+                + "}\n";
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("fixture.Annotated", source)), (processingEnv, environment) -> {
+            List<String> signatures = new ArrayList<>();
+            TypeElement element = processingEnv.getElementUtils().getTypeElement("fixture.Annotated");
+            new MirrorBatchReader(processingEnv).newClassReader(element).accept(new ClassVisitor(Opcodes.ASM7) {
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    signatures.add(name + " " + signature);
+                    return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    signatures.add(name + " " + signature);
+                    return null;
+                }
+            });
+            Assert.assertEquals(Arrays.asList("<init> null", "field Ljava/util/List<TT;>;", "method (Ljava/util/List<TT;>;)Ljava/util/List<Ljava/lang/String;>;"), signatures);
+        });
+    }
+
+    @Test
+    public void testClassSignatures() {
+        compareWithClassFiles(lines -> new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                lines.add(String.valueOf(signature));
+            }
+        });
+    }
+
+    @Test
+    public void testSourceRetentionAnnotations() {
+        // SOURCE retention annotations (e.g. @Override) aren't in class files - a source is needed to see them
+        String source = "package fixture;\n"
+                + "@SuppressWarnings(\"all\")\n"
+                + "@Deprecated\n"
+                + "public class Annotated implements Runnable {\n"
+                + "    @SuppressWarnings(\"unused\") @Deprecated public int field;\n"
+                + "    @Override @Deprecated public void run() {}\n"
+                + "    @Override public String toString() { return \"\"; }\n"
+                + "}\n";
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("fixture.Annotated", source)), (processingEnv, environment) -> {
+            List<String> annotations = new ArrayList<>();
+            TypeElement element = processingEnv.getElementUtils().getTypeElement("fixture.Annotated");
+            new MirrorBatchReader(processingEnv).newClassReader(element).accept(new ClassVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    annotations.add("class " + descriptor);
+                    return null;
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    return new FieldVisitor(Opcodes.ASM7) {
+                        @Override
+                        public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                            annotations.add(name + " " + annotationDescriptor);
+                            return null;
+                        }
+                    };
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    return new MethodVisitor(Opcodes.ASM7) {
+                        @Override
+                        public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                            annotations.add(name + " " + annotationDescriptor);
+                            return null;
+                        }
+                    };
+                }
+            });
+            Assert.assertEquals(Arrays.asList("class Ljava/lang/Deprecated;", "field Ljava/lang/Deprecated;", "run Ljava/lang/Deprecated;"), annotations);
+        });
+    }
+
     private void internalTest(Class clazz) {
         String asmGenerated = getAsmGenerated(clazz);
         String soabaseGenerated = getSoabaseGenerated(clazz, "test");
@@ -102,4 +379,90 @@ public class TestOutput {
             throw new AssertionError(e);
         }
     }
+
+    // compares what the given visitor records for the class file and for the mirror of each type (sorted - the
+    // model's member order isn't always the class file's) - synthetic members and static initializers are not compared
+    private static void compareWithClassFiles(Function<List<String>, ClassVisitor> visitorProc) {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            for (Class<?> clazz : withMemberTypes(ALL_TYPES)) {
+                List<String> expected = new ArrayList<>();
+                try {
+                    new ClassReader(Util.toSlash(clazz.getName())).accept(new SourceMembersVisitor(visitorProc.apply(expected)), SKIP_CODE | SKIP_DEBUG);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                List<String> actual = new ArrayList<>();
+                TypeElement element = processingEnv.getElementUtils().getTypeElement(clazz.getCanonicalName());
+                batchReader.newClassReader(element).accept(new SourceMembersVisitor(visitorProc.apply(actual)));
+                expected.sort(String::compareTo);
+                actual.sort(String::compareTo);
+                Assert.assertEquals(clazz.getName(), expected, actual);
+            }
+        });
+    }
+
+    private static List<Class<?>> withMemberTypes(List<Class<?>> classes) {
+        List<Class<?>> all = new ArrayList<>();
+        for (Class<?> clazz : classes) {
+            all.add(clazz);
+            all.addAll(withMemberTypes(Arrays.asList(clazz.getDeclaredClasses())));
+        }
+        return all;
+    }
+
+    private static class SourceMembersVisitor extends ClassVisitor {
+        SourceMembersVisitor(ClassVisitor classVisitor) {
+            super(Opcodes.ASM7, classVisitor);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return ((access & Opcodes.ACC_SYNTHETIC) == 0) ? super.visitField(access, name, descriptor, signature, value) : null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return (((access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0) && !name.equals("<clinit>")) ? super.visitMethod(access, name, descriptor, signature, exceptions) : null;
+        }
+    }
+
+    // one line per value - primitive arrays (which ClassReader visits as a single value) are formatted like visitArray()
+    private static class ValuesVisitor extends AnnotationVisitor {
+        private final List<String> lines;
+        private final String prefix;
+
+        ValuesVisitor(List<String> lines, String prefix) {
+            super(Opcodes.ASM7);
+            this.lines = lines;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            if (value.getClass().isArray()) {
+                AnnotationVisitor arrayVisitor = visitArray(name);
+                for (int i = 0; i < Array.getLength(value); ++i) {
+                    arrayVisitor.visit(null, Array.get(value, i));
+                }
+            } else {
+                lines.add(prefix + " " + name + "=" + value.getClass().getSimpleName() + ":" + value);
+            }
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            lines.add(prefix + " " + name + "=" + descriptor + "." + value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            return new ValuesVisitor(lines, prefix + " " + name + "=@" + descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            return new ValuesVisitor(lines, prefix + " " + name + "[]");
+        }
+    }
 }
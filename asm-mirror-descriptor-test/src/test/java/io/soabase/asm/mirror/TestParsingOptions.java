@@ -0,0 +1,67 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.TestProcessor;
+import io.soabase.asm.mirror.test.processor.visitor.SkippingClassVisitor;
+import io.soabase.asm.mirror.test.processor.visitor.TestClassVisitor;
+import io.soabase.asm.mirror.test.types.AsmGuideTypes;
+import io.soabase.asm.mirror.test.types.ComplexExtends;
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimpleGeneric;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import io.soabase.asm.mirror.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+
+public class TestParsingOptions {
+    @Test
+    public void testParsingOptions() {
+        Assert.assertNotEquals(0, TestProcessor.PARSING_OPTIONS);
+        internalTest(SimplePojo.class);
+        internalTest(SimpleGeneric.class);
+        internalTest(HighlyAnnotated.class);
+        internalTest(ComplexGeneric.class);
+        internalTest(AsmGuideTypes.class);
+        internalTest(ComplexExtends.class);
+        internalTest(NestedTypes.class);
+    }
+
+    private void internalTest(Class clazz) {
+        String asmGenerated = getAsmGenerated(clazz);
+        String soabaseGenerated = TestOutput.getSoabaseGenerated(clazz, "options");
+        Assert.assertEquals(asmGenerated, soabaseGenerated);
+    }
+
+    private String getAsmGenerated(Class clazz) {
+        try {
+            ClassReader reader = new ClassReader(Util.toSlash(clazz.getName()));
+            TestClassVisitor testClassVisitor = new TestClassVisitor();
+            reader.accept(new SkippingClassVisitor(testClassVisitor), SKIP_CODE | SKIP_DEBUG);
+            return testClassVisitor.toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import javax.tools.JavaFileObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestSharedTypeCache {
+    @Test
+    public void testViews() {
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(100);
+        MirrorTypeCache view1 = sharedCache.view("one", name -> !name.startsWith("a/"));
+        MirrorTypeCache view2 = sharedCache.view("one", name -> true);
+        MirrorTypeCache view3 = sharedCache.view("two", name -> true);
+
+        view1.put(type("a/A"));
+        view1.put(type("b/B"));
+        Assert.assertEquals(1, sharedCache.size());
+        Assert.assertNull(view2.get("a/A"));
+        Assert.assertEquals(type("b/B"), view2.get("b/B"));
+        Assert.assertNull(view3.get("b/B"));
+
+        view2.put(type("a/A"));
+        Assert.assertNull(view1.get("a/A")); // not cacheable for view1
+        Assert.assertEquals(type("a/A"), view2.get("a/A"));
+        Assert.assertEquals(2, sharedCache.getHitCount());
+        Assert.assertEquals(2, sharedCache.getMissCount());
+
+        sharedCache.clear();
+        Assert.assertEquals(0, sharedCache.size());
+        Assert.assertNull(view2.get("b/B"));
+    }
+
+    @Test
+    public void testEviction() {
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(100);
+        MirrorTypeCache view = sharedCache.view("one", name -> true);
+        view.put(type("hot/Hot"));
+        int hotMisses = 0;
+        for (int i = 0; i < 1000; ++i) {
+            view.put(type("a/A" + i));
+            if (view.get("hot/Hot") == null) {
+                ++hotMisses;
+                view.put(type("hot/Hot"));
+            }
+            Assert.assertTrue(sharedCache.size() <= 100);
+        }
+        Assert.assertTrue(sharedCache.getEvictionCount() >= 900);
+        Assert.assertTrue("hot type evicted " + hotMisses + " times", hotMisses <= 5);
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int threadQty = 16;
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(500);
+        ExecutorService executor = Executors.newFixedThreadPool(threadQty);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threadQty; ++thread) {
+                MirrorTypeCache view = sharedCache.view("one", name -> true);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; ++i) {
+                        String name = "a/A" + (i % 1000);
+                        MirrorCachedType type = view.get(name);
+                        if (type == null) {
+                            view.put(type(name));
+                        } else {
+                            Assert.assertEquals(type(name), type);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("size " + sharedCache.size(), sharedCache.size() <= 500);
+        Assert.assertEquals(threadQty * 2000, sharedCache.getHitCount() + sharedCache.getMissCount());
+    }
+
+    @Test
+    public void testCompilations() {
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(1000);
+        Assert.assertEquals("java/util/AbstractList", compile(sharedCache));
+        long hits = sharedCache.getHitCount();
+        int size = sharedCache.size();
+        Assert.assertTrue(size > 0);
+        Assert.assertEquals("java/util/AbstractList", compile(sharedCache));
+        Assert.assertTrue(sharedCache.getHitCount() > hits);
+        Assert.assertEquals(size, sharedCache.size());
+    }
+
+    private static String compile(MirrorSharedTypeCache sharedCache) {
+        List<String> results = new ArrayList<>();
+        List<JavaFileObject> sources = Collections.singletonList(ProcessingFixture.source("shared.Sample", "package shared;\npublic abstract class Sample extends java.util.ArrayList<String> {}\n"));
+        ProcessingFixture.process(sources, (processingEnv, environment) -> {
+            MirrorTypeCache typeCache = sharedCache.view("test", MirrorTypeCache.excludingPackagesOf(environment.getRootElements()));
+            MirrorTypeHierarchy typeHierarchy = new MirrorTypeHierarchy(new MirrorSignatures(processingEnv), typeCache);
+            Assert.assertTrue(typeHierarchy.isAssignableFrom("java/util/List", "shared/Sample"));
+            Assert.assertNull(typeCache.get("shared/Sample"));
+            results.add(typeHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+        });
+        Assert.assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    private static MirrorCachedType type(String internalName) {
+        return new MirrorCachedType(internalName, Opcodes.ACC_PUBLIC, null, "java/lang/Object", new String[0], null);
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class TestSignatureCache {
+    private static final String SAMPLE = "package cache;\n"
+            + "import java.util.*;\n"
+            + "public class Sample {\n"
+            + "    public String a;\n"
+            + "    public String b;\n"
+            + "    public <T extends Comparable<T>> T first(List<T> values) { return null; }\n"
+            + "    public int size(String s, long l) { return 0; }\n"
+            + "}\n";
+
+    @Test
+    public void testDeclaredTypes() {
+        process((processingEnv, sample, erasures) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv, true);
+            List<? extends Element> fields = ElementFilter.fieldsIn(sample.getEnclosedElements());
+            // different TypeMirror instances of the same declared type share an entry
+            String a = mirrorSignatures.typeDescriptor(fields.get(0).asType());
+            String b = mirrorSignatures.typeDescriptor(fields.get(1).asType());
+            Assert.assertEquals("Ljava/lang/String;", a);
+            Assert.assertSame(a, b);
+            Assert.assertSame(a, mirrorSignatures.typeSignature(fields.get(1).asType()));
+            Assert.assertEquals(1, mirrorSignatures.getCacheMisses());
+            Assert.assertEquals(2, mirrorSignatures.getCacheHits());
+        });
+    }
+
+    @Test
+    public void testHitAvoidsRegeneration() {
+        process((processingEnv, sample, erasures) -> {
+            ExecutableElement first = method(sample, "first");
+            MirrorSignatures uncached = new MirrorSignatures(processingEnv);
+            String descriptor = methodTypeDescriptor(uncached, first);
+            Assert.assertEquals("(Ljava/util/List;)Ljava/lang/Comparable;", descriptor);
+            Assert.assertEquals(descriptor, methodTypeDescriptor(uncached, first));
+            Assert.assertEquals(2, erasures.get());  // the type variable return type is erased each time
+
+            erasures.set(0);
+            MirrorSignatures cached = new MirrorSignatures(processingEnv, true);
+            String value = methodTypeDescriptor(cached, first);
+            Assert.assertEquals(descriptor, value);
+            Assert.assertSame(value, methodTypeDescriptor(cached, first));
+            Assert.assertEquals(1, erasures.get());
+            Assert.assertEquals(1, cached.getCacheMisses());
+            Assert.assertEquals(1, cached.getCacheHits());
+
+            String signature = methodTypeSignature(cached, first);
+            Assert.assertEquals("<T::Ljava/lang/Comparable<TT;>;>(Ljava/util/List<TT;>;)TT;", signature);
+            Assert.assertSame(signature, methodTypeSignature(cached, first));
+            Assert.assertEquals(2, cached.getCacheHits());
+        });
+    }
+
+    @Test
+    public void testNotWorthCaching() {
+        process((processingEnv, sample, erasures) -> {
+            // non-generic method types only consist of (memoized) internal names - generated, never keyed
+            MirrorSignatures cached = new MirrorSignatures(processingEnv, true);
+            ExecutableElement size = method(sample, "size");
+            Assert.assertEquals("(Ljava/lang/String;J)I", methodTypeDescriptor(cached, size));
+            Assert.assertEquals("(Ljava/lang/String;J)I", methodTypeDescriptor(cached, size));
+            Assert.assertEquals(0, cached.getCacheHits() + cached.getCacheMisses());
+            Assert.assertEquals(0, cached.getCacheSize());
+        });
+    }
+
+    @Test
+    public void testBatchReaderSharesCache() {
+        process((processingEnv, sample, erasures) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            Assert.assertTrue(batchReader.getMirrorSignatures().isCaching());
+            batchReader.newClassReader(sample).accept(new ClassVisitor(Opcodes.ASM7) {});
+            long misses = batchReader.getMirrorSignatures().getCacheMisses();
+            Assert.assertTrue(misses > 0);
+            // a second reader from the same batch reader hits the values generated for the first
+            batchReader.newClassReader(sample).accept(new ClassVisitor(Opcodes.ASM7) {});
+            Assert.assertEquals(misses, batchReader.getMirrorSignatures().getCacheMisses());
+            Assert.assertTrue(batchReader.getMirrorSignatures().getCacheHits() >= misses);
+        });
+    }
+
+    @Test
+    public void testBatchStatistics() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            MirrorSignatures mirrorSignatures = batchReader.getMirrorSignatures();
+            TypeElement skipped = elements.get(0);
+            Function<TypeElement, ClassVisitor> visitorProc = element -> (element == skipped) ? null : new ClassVisitor(Opcodes.ASM7) {};
+
+            MirrorBatchReader.Statistics first = batchReader.read(elements, visitorProc);
+            Assert.assertEquals(elements.size() - 1, first.getClassCount());
+            Assert.assertEquals(1, first.getSkippedCount());
+            Assert.assertTrue(first.getElapsedNanos() > 0);
+            Assert.assertTrue(first.getCacheMisses() > 0);
+            Assert.assertEquals(mirrorSignatures.getCacheHits(), first.getCacheHits());
+            Assert.assertEquals(mirrorSignatures.getCacheMisses(), first.getCacheMisses());
+
+            // the same types again - the counts are for this batch only and everything is already cached
+            MirrorBatchReader.Statistics second = batchReader.read(elements, visitorProc);
+            Assert.assertEquals(elements.size() - 1, second.getClassCount());
+            Assert.assertEquals(1, second.getSkippedCount());
+            Assert.assertEquals(0, second.getCacheMisses());
+            Assert.assertTrue(second.getCacheHits() > 0);
+            Assert.assertEquals(mirrorSignatures.getCacheHits() - first.getCacheHits(), second.getCacheHits());
+        });
+    }
+
+    @FunctionalInterface
+    private interface Proc {
+        void accept(ProcessingEnvironment processingEnv, TypeElement sample, AtomicInteger erasures);
+    }
+
+    private static void process(Proc proc) {
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("cache.Sample", SAMPLE)), (processingEnv, environment) -> {
+            AtomicInteger erasures = new AtomicInteger();
+            ProcessingEnvironment countingEnv = countingErasures(processingEnv, erasures);
+            proc.accept(countingEnv, processingEnv.getElementUtils().getTypeElement("cache.Sample"), erasures);
+        });
+    }
+
+    private static ProcessingEnvironment countingErasures(ProcessingEnvironment processingEnv, AtomicInteger erasures) {
+        Types types = proxy(Types.class, processingEnv.getTypeUtils(), name -> {
+            if (name.equals("erasure")) {
+                erasures.incrementAndGet();
+            }
+            return null;
+        });
+        return proxy(ProcessingEnvironment.class, processingEnv, name -> name.equals("getTypeUtils") ? types : null);
+    }
+
+    // override returns a replacement result for the named method or null to call the target
+    private static <T> T proxy(Class<T> type, T target, Function<String, Object> override) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (instance, method, args) -> {
+            Object result = override.apply(method.getName());
+            if (result != null) {
+                return result;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    private static ExecutableElement method(TypeElement type, String name) {
+        return ElementFilter.methodsIn(type.getEnclosedElements()).stream()
+                .filter(method -> method.getSimpleName().contentEquals(name))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private static String methodTypeDescriptor(MirrorSignatures mirrorSignatures, ExecutableElement method) {
+        // new arrays each time - as the readers do
+        return mirrorSignatures.methodTypeDescriptor(typeParameters(method), parameters(method), method.getReturnType());
+    }
+
+    private static String methodTypeSignature(MirrorSignatures mirrorSignatures, ExecutableElement method) {
+        return mirrorSignatures.methodTypeSignature(typeParameters(method), parameters(method), method.getReturnType());
+    }
+
+    private static TypeMirror[] typeParameters(ExecutableElement method) {
+        return method.getTypeParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+    }
+
+    private static TypeMirror[] parameters(ExecutableElement method) {
+        return method.getParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import io.soabase.asm.mirror.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link MirrorSignatures} with the {@link org.objectweb.asm.signature.SignatureWriter} based emitter it
+ * replaced (see {@link LegacySignatures}) for every type, field, method and exception of the test corpus and several
+ * JDK packages.
+ */
+public class TestSignatureEmitter {
+    private static final String[] PACKAGES = {
+            "io.soabase.asm.mirror.test.types",
+            "java.lang",
+            "java.util",
+            "java.util.concurrent",
+            "java.util.function",
+            "java.util.stream"
+    };
+
+    @Test
+    public void testSameAsLegacy() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            Comparison comparison = new Comparison(processingEnv);
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+                    comparison.compare(type);
+                }
+            }
+            Assert.assertEquals(String.join("\n", comparison.differences), 0, comparison.differences.size());
+            Assert.assertTrue(comparison.compared > 60000);
+        });
+    }
+
+    @Test
+    public void testInterfaceSignatures() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            List<TypeElement> interfaces = new ArrayList<>();
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                addGenericInterfaces(interfaces, ElementFilter.typesIn(packageElement.getEnclosedElements()));
+            }
+            Assert.assertTrue(interfaces.size() > 50);
+            for (TypeElement type : interfaces) {
+                // same as javac: the implicit Object superclass is part of the signature
+                String internalName = mirrorSignatures.internalName(type);
+                Assert.assertEquals(internalName, classFileSignature(internalName), mirrorSignatures.classSignature(type.asType()));
+            }
+
+            TypeElement object = processingEnv.getElementUtils().getTypeElement(Object.class.getName());
+            Assert.assertEquals("", mirrorSignatures.classSignature(object.asType()));
+        });
+    }
+
+    @Test
+    public void testIntersectionBounds() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            TypeElement complexGeneric = processingEnv.getElementUtils().getTypeElement(ComplexGeneric.class.getName());
+            ExecutableElement max = method(complexGeneric, "max");
+            Assert.assertEquals("<N:Ljava/lang/Number;:Ljava/lang/Comparable<-TN;>;C::Ljava/util/Collection<TN;>;:Ljava/lang/Cloneable;>(TC;)TN;", methodSignature(mirrorSignatures, max));
+
+            // same as javac for every method with an intersection bound in the compared packages
+            int count = 0;
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+                    String internalName = mirrorSignatures.internalName(type);
+                    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                        if (hasIntersectionBound(method.getTypeParameters())) {
+                            String descriptor = mirrorSignatures.methodTypeDescriptor(typeParameters(method), parameters(method), method.getReturnType());
+                            Assert.assertEquals(method.toString(), classFileSignature(internalName, method.getSimpleName() + descriptor), methodSignature(mirrorSignatures, method));
+                            ++count;
+                        }
+                    }
+                }
+            }
+            Assert.assertTrue(count > 0);  // e.g. Collections.min()/max()
+        });
+    }
+
+    @Test
+    public void testTypeVariableThrows() {
+        ProcessingFixture.process((processingEnv, environment) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            TypeElement complexGeneric = processingEnv.getElementUtils().getTypeElement(ComplexGeneric.class.getName());
+            ExecutableElement fail = method(complexGeneric, "fail");
+            Assert.assertEquals("<X:Ljava/lang/Exception;>(Ljava/util/function/Supplier<TX;>;)V^TX;^Ljava/lang/InterruptedException;", mirrorSignatures.methodTypeSignature(typeParameters(fail), parameters(fail), fail.getReturnType(), thrownTypes(fail)));
+            Assert.assertEquals("java/lang/Exception", mirrorSignatures.exception(fail.getThrownTypes().get(0)));
+
+            // same as javac for every method that throws a type variable in the compared packages
+            int count = 0;
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+                    String internalName = mirrorSignatures.internalName(type);
+                    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                        if (method.getThrownTypes().stream().anyMatch(Util::isTypeVariable)) {
+                            String descriptor = mirrorSignatures.methodTypeDescriptor(typeParameters(method), parameters(method), method.getReturnType());
+                            String[] classFile = classFile(internalName, method.getSimpleName() + descriptor);
+                            Assert.assertEquals(method.toString(), classFile[0], mirrorSignatures.methodTypeSignature(typeParameters(method), parameters(method), method.getReturnType(), thrownTypes(method)));
+                            String exceptions = method.getThrownTypes().stream().map(mirrorSignatures::exception).collect(Collectors.joining(","));
+                            Assert.assertEquals(method.toString(), classFile[1], exceptions);
+                            ++count;
+                        }
+                    }
+                }
+            }
+            Assert.assertTrue(count > 0);  // e.g. Optional.orElseThrow()
+        });
+    }
+
+    private static ExecutableElement method(TypeElement type, String name) {
+        return ElementFilter.methodsIn(type.getEnclosedElements()).stream()
+                .filter(method -> method.getSimpleName().contentEquals(name))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private static TypeMirror[] thrownTypes(ExecutableElement method) {
+        return method.getThrownTypes().toArray(new TypeMirror[0]);
+    }
+
+    private static boolean hasIntersectionBound(List<? extends TypeParameterElement> typeParameters) {
+        return typeParameters.stream().anyMatch(typeParameter -> ((TypeVariable) typeParameter.asType()).getUpperBound().getKind() == TypeKind.INTERSECTION);
+    }
+
+    private static String methodSignature(MirrorSignatures mirrorSignatures, ExecutableElement method) {
+        return mirrorSignatures.methodTypeSignature(typeParameters(method), parameters(method), method.getReturnType());
+    }
+
+    private static TypeMirror[] typeParameters(ExecutableElement method) {
+        return method.getTypeParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+    }
+
+    private static TypeMirror[] parameters(ExecutableElement method) {
+        return method.getParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+    }
+
+    private static void addGenericInterfaces(List<TypeElement> interfaces, List<TypeElement> types) {
+        for (TypeElement type : types) {
+            if (type.getKind().isInterface() && Util.hasTypeArguments(type)) {
+                interfaces.add(type);
+            }
+            addGenericInterfaces(interfaces, ElementFilter.typesIn(type.getEnclosedElements()));
+        }
+    }
+
+    private static String classFileSignature(String internalName) {
+        return classFile(internalName, null)[0];
+    }
+
+    private static String classFileSignature(String internalName, String methodNameAndDescriptor) {
+        return classFile(internalName, methodNameAndDescriptor)[0];
+    }
+
+    // the class signature or, if methodNameAndDescriptor isn't null, the signature and exceptions of the method
+    private static String[] classFile(String internalName, String methodNameAndDescriptor) {
+        String[] values = new String[2];
+        try {
+            new ClassReader(internalName).accept(new ClassVisitor(Opcodes.ASM7) {
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    if (methodNameAndDescriptor == null) {
+                        values[0] = signature;
+                    }
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    if ((name + descriptor).equals(methodNameAndDescriptor)) {
+                        values[0] = signature;
+                        values[1] = (exceptions != null) ? String.join(",", exceptions) : null;
+                    }
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return values;
+    }
+
+    private static class Comparison {
+        private final LegacySignatures legacy;
+        private final MirrorSignatures mirrorSignatures;
+        private final List<String> differences = new ArrayList<>();
+        private int compared;
+
+        Comparison(ProcessingEnvironment processingEnv) {
+            legacy = new LegacySignatures(processingEnv);
+            mirrorSignatures = new MirrorSignatures(processingEnv);
+        }
+
+        void compare(TypeElement type) {
+            if (!type.getKind().isInterface() && !hasIntersectionBound(type.getTypeParameters())) {
+                // the legacy emitter omitted the superclass of interfaces - see testInterfaceSignatures()
+                compare("class", type, () -> legacy.classSignature(type.asType()), () -> mirrorSignatures.classSignature(type.asType()));
+            }
+            compare("type", type, () -> legacy.typeDescriptor(type.asType()), () -> mirrorSignatures.typeDescriptor(type.asType()));
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                compare("field descriptor", field, () -> legacy.typeDescriptor(field.asType()), () -> mirrorSignatures.typeDescriptor(field.asType()));
+                compare("field signature", field, () -> legacy.typeSignature(field.asType()), () -> mirrorSignatures.typeSignature(field.asType()));
+            }
+            List<ExecutableElement> methods = new ArrayList<>(ElementFilter.constructorsIn(type.getEnclosedElements()));
+            methods.addAll(ElementFilter.methodsIn(type.getEnclosedElements()));
+            for (ExecutableElement method : methods) {
+                TypeMirror[] typeParameters = method.getTypeParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+                TypeMirror[] parameters = method.getParameters().stream().map(Element::asType).toArray(TypeMirror[]::new);
+                TypeMirror returnType = method.getReturnType();
+                compare("method descriptor", method, () -> legacy.methodTypeDescriptor(typeParameters, parameters, returnType), () -> mirrorSignatures.methodTypeDescriptor(typeParameters, parameters, returnType));
+                if (!hasIntersectionBound(method.getTypeParameters())) {
+                    // the legacy emitter wrote intersection bounds as "T:" - see testIntersectionBounds()
+                    compare("method signature", method, () -> legacy.methodTypeSignature(typeParameters, parameters, returnType), () -> mirrorSignatures.methodTypeSignature(typeParameters, parameters, returnType));
+                }
+                compare("parameters descriptor", method, () -> legacy.parametersTypeDescriptor(parameters), () -> mirrorSignatures.parametersTypeDescriptor(parameters));
+                compare("parameters signature", method, () -> legacy.parametersTypeSignature(parameters), () -> mirrorSignatures.parametersTypeSignature(parameters));
+                compare("return descriptor", method, () -> legacy.typeDescriptor(returnType), () -> mirrorSignatures.returnTypeDescriptor(returnType));
+                compare("return signature", method, () -> legacy.typeSignature(returnType), () -> mirrorSignatures.returnTypeSignature(returnType));
+                for (TypeMirror thrownType : method.getThrownTypes()) {
+                    compare("exception", method, () -> legacy.exception(thrownType), () -> mirrorSignatures.exception(thrownType));
+                }
+            }
+            ElementFilter.typesIn(type.getEnclosedElements()).forEach(this::compare);
+        }
+
+        private void compare(String what, Element element, Supplier<String> legacyProc, Supplier<String> currentProc) {
+            String legacyValue;
+            try {
+                legacyValue = legacyProc.get();
+            } catch (RuntimeException e) {
+                // nothing to compare with, e.g. the legacy exception() fails for type variables and
+                // some non-API JDK types can't be completed
+                return;
+            }
+            ++compared;
+            String currentValue = currentProc.get();
+            if (!Objects.equals(legacyValue, currentValue)) {
+                differences.add(what + " " + element.getEnclosingElement() + "." + element + ": " + legacyValue + " / " + currentValue);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.TestProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+public class TestSnapshot {
+    @Test
+    public void testParallelReplay() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            List<String> direct = elements.stream()
+                    .map(element -> ProcessingFixture.trace(batchReader.newClassReader(element)::accept))
+                    .collect(Collectors.toList());
+            List<MirrorClassSnapshot> snapshots = batchReader.snapshot(elements, 0);
+
+            Set<Thread> replayThreads = ConcurrentHashMap.newKeySet();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                List<ThreadTraceVisitor> visitors = MirrorClassSnapshot.acceptAll(pool, snapshots, snapshot -> new ThreadTraceVisitor(replayThreads));
+                Assert.assertEquals(direct, visitors.stream().map(ThreadTraceVisitor::getTrace).collect(Collectors.toList()));
+
+                // null from visitorProc skips the snapshot but keeps the order of the others
+                List<ThreadTraceVisitor> some = MirrorClassSnapshot.acceptAll(pool, snapshots, snapshot -> snapshot.getName().endsWith("/NestedTypes") ? new ThreadTraceVisitor(replayThreads) : null);
+                for (int i = 0; i < snapshots.size(); ++i) {
+                    if (snapshots.get(i).getName().endsWith("/NestedTypes")) {
+                        Assert.assertEquals(direct.get(i), some.get(i).getTrace());
+                    } else {
+                        Assert.assertNull(some.get(i));
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            Assert.assertFalse(replayThreads.isEmpty());
+            Assert.assertFalse("replayed on the compiler thread", replayThreads.contains(Thread.currentThread()));
+        });
+    }
+
+    @Test
+    public void testRepeatedReplay() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (MirrorClassSnapshot snapshot : batchReader.snapshot(elements, 0)) {
+                Assert.assertEquals(ProcessingFixture.trace(snapshot::accept), ProcessingFixture.trace(snapshot::accept));
+                Assert.assertEquals(ProcessingFixture.traceSkipping(snapshot::accept), ProcessingFixture.traceSkipping(snapshot::accept));
+            }
+        });
+    }
+
+    @Test
+    public void testParsingOptions() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                MirrorClassSnapshot snapshot = MirrorClassSnapshot.read(reader, TestProcessor.PARSING_OPTIONS, member -> !member.getModifiers().contains(Modifier.STATIC));
+                String direct = ProcessingFixture.trace(visitor -> reader.accept(visitor, TestProcessor.PARSING_OPTIONS, member -> !member.getModifiers().contains(Modifier.STATIC)));
+                Assert.assertEquals(direct, ProcessingFixture.trace(snapshot::accept));
+                Assert.assertEquals(reader.getClassName(), snapshot.getName());
+                Assert.assertEquals(reader.getSuperName(), snapshot.getSuperName());
+                Assert.assertNull(snapshot.getSignature());
+            }
+        });
+    }
+
+    // traces like ProcessingFixture.trace() and records the replaying thread
+    private static class ThreadTraceVisitor extends ClassVisitor {
+        private final Set<Thread> threads;
+        private final Textifier textifier;
+
+        ThreadTraceVisitor(Set<Thread> threads) {
+            this(threads, new Textifier());
+        }
+
+        private ThreadTraceVisitor(Set<Thread> threads, Textifier textifier) {
+            super(Opcodes.ASM7, new TraceClassVisitor(null, textifier, null));
+            this.threads = threads;
+            this.textifier = textifier;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            threads.add(Thread.currentThread());
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        String getTrace() {
+            StringWriter out = new StringWriter();
+            PrintWriter printWriter = new PrintWriter(out);
+            textifier.print(printWriter);
+            printWriter.flush();
+            return out.toString();
+        }
+    }
+}
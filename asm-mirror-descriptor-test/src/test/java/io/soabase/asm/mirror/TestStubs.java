@@ -0,0 +1,209 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.processor.visitor.TestClassVisitor;
+import io.soabase.asm.mirror.test.types.AbiTypes;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+
+public class TestStubs {
+    @Test
+    public void testHeaderJar() {
+        Map<String, byte[]> stubs = readStubs();
+        List<String> names = new ArrayList<>(stubs.keySet());
+        Assert.assertEquals(JarFile.MANIFEST_NAME, names.get(0));
+        List<String> sorted = new ArrayList<>(names.subList(1, names.size()));
+        sorted.sort(String::compareTo);
+        Assert.assertEquals(sorted, names.subList(1, names.size()));
+
+        Assert.assertTrue(stubs.containsKey(entryName(AbiTypes.Inner.class)));
+        Assert.assertTrue(stubs.containsKey(entryName(AbiTypes.Config.class)));
+        Assert.assertTrue(stubs.containsKey(entryName(NestedTypes.StaticNested.Kind.class)));
+        Assert.assertFalse(stubs.containsKey("io/soabase/asm/mirror/test/types/AbiTypes$Hidden.class"));
+    }
+
+    @Test
+    public void testStubFidelity() {
+        Map<String, byte[]> stubs = readStubs();
+        stubs.forEach((name, bytes) -> {
+            if (name.endsWith(".class")) {
+                String className = name.substring(0, name.length() - ".class".length());
+                Assert.assertEquals(className, getAbi(readClass(className)), getAbi(bytes));
+            }
+        });
+    }
+
+    @Test
+    public void testStubsLoad() throws Exception {
+        Map<String, byte[]> stubs = readStubs();
+        StubClassLoader classLoader = new StubClassLoader(stubs);
+        for (String name : stubs.keySet()) {
+            if (name.endsWith(".class")) {
+                // initializing forces verification
+                Class.forName(name.substring(0, name.length() - ".class".length()).replace('/', '.'), true, classLoader);
+            }
+        }
+
+        Class<?> abiTypes = Class.forName(AbiTypes.class.getName(), true, classLoader);
+        Assert.assertNotSame(AbiTypes.class, abiTypes);
+        Assert.assertEquals(AbiTypes.INT_CONSTANT, abiTypes.getField("INT_CONSTANT").getInt(null));
+        Assert.assertEquals(AbiTypes.STRING_CONSTANT, abiTypes.getField("STRING_CONSTANT").get(null));
+        Assert.assertNull(abiTypes.getField("notConstant").get(null));
+        try {
+            abiTypes.getConstructor().newInstance();
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof UnsupportedOperationException);
+            Assert.assertEquals(MirrorStubGenerator.STUB_MESSAGE, e.getCause().getMessage());
+        }
+
+        Class<?> pojo = Class.forName(SimplePojo.class.getName(), true, classLoader);
+        Assert.assertEquals(SimplePojo.class.getMethods().length, pojo.getMethods().length);
+    }
+
+    private static String entryName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    static Map<String, byte[]> readStubs() {
+        InputStream inputStream = TestStubs.class.getClassLoader().getResourceAsStream("stubs/stubs.jar");
+        Assert.assertNotNull(inputStream);
+        Map<String, byte[]> stubs = new LinkedHashMap<>();
+        try (JarInputStream jarIn = new JarInputStream(inputStream)) {
+            // JarInputStream consumes the manifest
+            Assert.assertNotNull(jarIn.getManifest());
+            stubs.put(JarFile.MANIFEST_NAME, new byte[0]);
+            JarEntry entry;
+            while ((entry = jarIn.getNextJarEntry()) != null) {
+                Assert.assertEquals(MirrorHeaderJar.ENTRY_TIME, entry.getTime());
+                stubs.put(entry.getName(), readAll(jarIn));
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return stubs;
+    }
+
+    private static byte[] readClass(String className) {
+        InputStream inputStream = TestStubs.class.getClassLoader().getResourceAsStream(className + ".class");
+        Assert.assertNotNull(className, inputStream);
+        try (InputStream in = inputStream) {
+            return readAll(in);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    // the parts of a class file that make up its ABI: no private or synthetic members, no static initializer and only the
+    // InnerClasses entries for the class itself and its non-private member types
+    private static String getAbi(byte[] bytes) {
+        TestClassVisitor testClassVisitor = new TestClassVisitor();
+        List<String> innerClasses = new ArrayList<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM7, testClassVisitor) {
+            private String className;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                className = name;
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                if ((name.equals(className) || className.equals(outerName)) && ((access & Opcodes.ACC_PRIVATE) == 0)) {
+                    innerClasses.add(name + " " + outerName + " " + innerName + " " + access);
+                }
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                return isAbi(access) ? super.visitField(access, name, descriptor, signature, value) : null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                // static initializers (e.g. enum constants) aren't part of the ABI
+                return (isAbi(access) && !name.equals("<clinit>")) ? super.visitMethod(access, name, descriptor, signature, exceptions) : null;
+            }
+
+            private boolean isAbi(int access) {
+                return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+            }
+        }, SKIP_CODE | SKIP_DEBUG);
+        innerClasses.sort(String::compareTo);
+        return testClassVisitor.toString() + "\n== INNER CLASSES ==\n" + String.join("\n", innerClasses);
+    }
+
+    private static class StubClassLoader extends ClassLoader {
+        private final Map<String, byte[]> stubs;
+
+        StubClassLoader(Map<String, byte[]> stubs) {
+            super(TestStubs.class.getClassLoader());
+            this.stubs = stubs;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                byte[] bytes = stubs.get(name.replace('.', '/') + ".class");
+                if (bytes == null) {
+                    return super.loadClass(name, resolve);
+                }
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+                return clazz;
+            }
+        }
+    }
+}
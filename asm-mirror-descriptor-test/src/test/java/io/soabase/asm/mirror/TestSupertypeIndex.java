@@ -0,0 +1,202 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.test.types.AsmGuideTypes;
+import io.soabase.asm.mirror.test.types.ComplexExtends;
+import io.soabase.asm.mirror.test.types.ComplexGeneric;
+import io.soabase.asm.mirror.test.types.HighlyAnnotated;
+import io.soabase.asm.mirror.test.types.NestedTypes;
+import io.soabase.asm.mirror.test.types.SimpleGeneric;
+import io.soabase.asm.mirror.test.types.SimplePojo;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+public class TestSupertypeIndex {
+    private static final String HIERARCHY = "package index;\n"
+            + "public class Hierarchy {\n"
+            + "    public interface A {}\n"
+            + "    public interface B extends A {}\n"
+            + "    public interface C extends A {}\n"
+            + "    public static class Base implements B {}\n"
+            + "    public static class Left extends Base implements C {}\n"
+            + "    public static class Right extends Base {}\n"
+            + "}\n";
+
+    @Test
+    public void testAncestors() {
+        internalTest(SimplePojo.class);
+        internalTest(SimpleGeneric.class);
+        internalTest(HighlyAnnotated.class);
+        internalTest(ComplexGeneric.class);
+        internalTest(AsmGuideTypes.class);
+        internalTest(ComplexExtends.class);
+        internalTest(NestedTypes.class);
+    }
+
+    @Test
+    public void testIsSubtypeMatchesTypes() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            MirrorSignatures mirrorSignatures = batchReader.getMirrorSignatures();
+            Map<String, TypeElement> types = new LinkedHashMap<>();
+            elements.forEach(element -> addWithMemberTypes(types, mirrorSignatures, element));
+            MirrorSupertypeIndex index = new MirrorSupertypeIndex(mirrorSignatures);
+            index.addAll(types.values());
+            Assert.assertEquals(types.size(), index.size());
+
+            Types typeUtils = mirrorSignatures.getProcessingEnv().getTypeUtils();
+            types.forEach((name, element) -> types.forEach((superName, superElement) -> {
+                boolean expected = typeUtils.isSubtype(typeUtils.erasure(element.asType()), typeUtils.erasure(superElement.asType()));
+                Assert.assertEquals(name + " " + superName, expected, index.isSubtype(name, superName));
+                Assert.assertEquals(name + " " + superName, expected, index.isSubtype(index.getId(name), index.getId(superName)));
+            }));
+        });
+    }
+
+    @Test
+    public void testCommonAncestors() {
+        processHierarchy((index, names) -> {
+            index.addAll(Arrays.asList(names.apply("Left"), names.apply("Right")));
+            Assert.assertEquals(Arrays.asList("java/lang/Object", "index/Hierarchy$A", "index/Hierarchy$B", "index/Hierarchy$Base"), index.toNames(index.getCommonAncestors("index/Hierarchy$Left", "index/Hierarchy$Right")));
+            // includes the type itself if it is an ancestor of the other
+            Assert.assertEquals(Arrays.asList("java/lang/Object", "index/Hierarchy$A", "index/Hierarchy$B", "index/Hierarchy$Base"), index.toNames(index.getCommonAncestors("index/Hierarchy$Base", "index/Hierarchy$Left")));
+            Assert.assertEquals(Arrays.asList("java/lang/Object", "index/Hierarchy$A"), index.toNames(index.getCommonAncestors("index/Hierarchy$B", "index/Hierarchy$C")));
+        });
+    }
+
+    @Test
+    public void testSubtypes() {
+        processHierarchy((index, names) -> {
+            index.add(names.apply("Left"));
+            Assert.assertEquals(Arrays.asList("index/Hierarchy$B", "index/Hierarchy$Base", "index/Hierarchy$C", "index/Hierarchy$Left"), index.toNames(index.getSubtypes("index/Hierarchy$A")));
+            Assert.assertEquals(Collections.singletonList("index/Hierarchy$Left"), index.toNames(index.getSubtypes("index/Hierarchy$Base")));
+
+            // results are copies of the memoized value
+            index.getSubtypes("index/Hierarchy$Base").clear();
+            Assert.assertEquals(Collections.singletonList("index/Hierarchy$Left"), index.toNames(index.getSubtypes("index/Hierarchy$Base")));
+
+            // adding a type invalidates the memoized values
+            index.add(names.apply("Right"));
+            Assert.assertEquals(Arrays.asList("index/Hierarchy$Left", "index/Hierarchy$Right"), index.toNames(index.getSubtypes("index/Hierarchy$Base")));
+            Assert.assertEquals(Arrays.asList("index/Hierarchy$B", "index/Hierarchy$Base", "index/Hierarchy$C", "index/Hierarchy$Left", "index/Hierarchy$Right"), index.toNames(index.getSubtypes("index/Hierarchy$A")));
+            Assert.assertEquals(new BitSet(), index.getSubtypes("index/Hierarchy$Right"));
+        });
+    }
+
+    @Test
+    public void testUnknownTypes() {
+        processHierarchy((index, names) -> {
+            int leftId = index.add(names.apply("Left"));
+            Assert.assertEquals(leftId, index.add(names.apply("Left")));
+            Assert.assertEquals(leftId, index.getId("index/Hierarchy$Left"));
+            Assert.assertEquals(-1, index.getId("index/Hierarchy$Right"));
+            Assert.assertTrue(index.isInterface("index/Hierarchy$C"));
+            Assert.assertFalse(index.isInterface("index/Hierarchy$Left"));
+
+            // an unknown super type is never a super type
+            Assert.assertFalse(index.isSubtype("index/Hierarchy$Left", "index/Hierarchy$Right"));
+            Assert.assertFalse(index.isSubtype(leftId, -1));
+            Assert.assertTrue(index.isSubtype(leftId, leftId));
+
+            // unknown types otherwise are errors
+            assertUnknown(() -> index.isSubtype("index/Hierarchy$Right", "index/Hierarchy$Left"));
+            assertUnknown(() -> index.isInterface("index/Hierarchy$Right"));
+            assertUnknown(() -> index.getAncestors("index/Hierarchy$Right"));
+            assertUnknown(() -> index.getCommonAncestors("index/Hierarchy$Left", "index/Hierarchy$Right"));
+            assertUnknown(() -> index.getSubtypes("index/Hierarchy$Right"));
+        });
+    }
+
+    private static void processHierarchy(BiConsumer<MirrorSupertypeIndex, Function<String, TypeElement>> proc) {
+        ProcessingFixture.process(Collections.singletonList(ProcessingFixture.source("index.Hierarchy", HIERARCHY)), (processingEnv, environment) -> {
+            TypeElement hierarchy = processingEnv.getElementUtils().getTypeElement("index.Hierarchy");
+            Function<String, TypeElement> names = simpleName -> ElementFilter.typesIn(hierarchy.getEnclosedElements()).stream()
+                    .filter(element -> element.getSimpleName().contentEquals(simpleName))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            proc.accept(new MirrorSupertypeIndex(processingEnv), names);
+        });
+    }
+
+    private static void assertUnknown(Runnable proc) {
+        try {
+            proc.run();
+            Assert.fail("unknown type accepted");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    // the type and all of its supertypes
+    private static void addWithSupertypes(Map<String, TypeElement> types, MirrorSignatures mirrorSignatures, TypeElement element) {
+        if (types.putIfAbsent(mirrorSignatures.internalName(element), element) != null) {
+            return;
+        }
+        addSupertype(types, mirrorSignatures, element.getSuperclass());
+        element.getInterfaces().forEach(type -> addSupertype(types, mirrorSignatures, type));
+    }
+
+    private static void addWithMemberTypes(Map<String, TypeElement> types, MirrorSignatures mirrorSignatures, TypeElement element) {
+        addWithSupertypes(types, mirrorSignatures, element);
+        ElementFilter.typesIn(element.getEnclosedElements()).forEach(memberType -> addWithMemberTypes(types, mirrorSignatures, memberType));
+    }
+
+    private static void addSupertype(Map<String, TypeElement> types, MirrorSignatures mirrorSignatures, TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            Element element = ((DeclaredType) type).asElement();
+            addWithSupertypes(types, mirrorSignatures, (TypeElement) element);
+        }
+    }
+
+    private void internalTest(Class clazz) {
+        Set<String> expected = new TreeSet<>();
+        addAncestors(expected, clazz);
+        Assert.assertEquals(String.join("\n", expected), TestOutput.getSoabaseGenerated(clazz, "supertypes"));
+    }
+
+    private void addAncestors(Set<String> ancestors, Class clazz) {
+        if (clazz.getSuperclass() != null) {
+            ancestors.add(Type.getInternalName(clazz.getSuperclass()));
+            addAncestors(ancestors, clazz.getSuperclass());
+        }
+        for (Class interfaceClass : clazz.getInterfaces()) {
+            ancestors.add(Type.getInternalName(interfaceClass));
+            addAncestors(ancestors, interfaceClass);
+        }
+        if (clazz.isInterface()) {
+            ancestors.add("java/lang/Object");
+        }
+    }
+}
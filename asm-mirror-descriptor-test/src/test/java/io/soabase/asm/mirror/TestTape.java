@@ -0,0 +1,64 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.lang.model.element.TypeElement;
+import java.util.concurrent.CompletableFuture;
+
+public class TestTape {
+    @Test
+    public void testReplayOrder() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                MirrorClassTape tape = MirrorClassTape.record(reader);
+                Assert.assertEquals(ProcessingFixture.trace(reader::accept), ProcessingFixture.trace(tape::accept));
+                // blocks skipped via their recorded length when the visitor returns null
+                Assert.assertEquals(ProcessingFixture.traceSkipping(reader::accept), ProcessingFixture.traceSkipping(tape::accept));
+            }
+        });
+    }
+
+    @Test
+    public void testReplayDoesNotReadModel() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            CountingMirrorSignatures mirrorSignatures = new CountingMirrorSignatures(batchReader.getMirrorSignatures().getProcessingEnv());
+            for (TypeElement element : elements) {
+                MirrorClassTape tape = MirrorClassTape.record(new MirrorClassReader(mirrorSignatures, element));
+                int recorded = mirrorSignatures.getDescriptorCount();
+                Assert.assertTrue(recorded > 0);
+                String trace = ProcessingFixture.trace(tape::accept);
+                Assert.assertEquals(trace, ProcessingFixture.trace(tape::accept));
+                Assert.assertEquals(recorded, mirrorSignatures.getDescriptorCount());
+            }
+        });
+    }
+
+    @Test
+    public void testReplayFromAnotherThread() {
+        ProcessingFixture.processCorpus((batchReader, elements) -> {
+            for (TypeElement element : elements) {
+                MirrorClassReader reader = batchReader.newClassReader(element);
+                MirrorClassTape tape = MirrorClassTape.record(reader);
+                String replayed = CompletableFuture.supplyAsync(() -> ProcessingFixture.trace(tape::accept)).join();
+                Assert.assertEquals(ProcessingFixture.trace(reader::accept), replayed);
+            }
+        });
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.AnnotationTypeMetadata;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class TestTypeCache {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String SAMPLE = "package cache;\n"
+            + "@Deprecated @FunctionalInterface\n"
+            + "public interface Sample extends java.util.function.Supplier<String> {}\n";
+
+    @Test
+    public void testSharedFile() throws IOException {
+        File cacheFile = new File(temporaryFolder.getRoot(), "types.cache");
+        MirrorCachedType list = new MirrorCachedType("java/util/List", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "<E:Ljava/lang/Object;>Ljava/lang/Object;Ljava/util/Collection<TE;>;", "java/lang/Object", new String[]{"java/util/Collection"}, null);
+        MirrorCachedType target = new MirrorCachedType("java/lang/annotation/Target", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ANNOTATION, null, "java/lang/Object", new String[]{"java/lang/annotation/Annotation"},
+                new AnnotationTypeMetadata("Ljava/lang/annotation/Target;", RetentionPolicy.RUNTIME, new ElementType[]{ElementType.METHOD, ElementType.ANNOTATION_TYPE, ElementType.TYPE}, null));
+        MirrorCachedType excluded = new MirrorCachedType("cache/Sample", Opcodes.ACC_PUBLIC, null, "java/lang/Object", new String[0], null);
+
+        // two instances on the same file - as if two processes
+        try (MirrorMappedTypeCache cache1 = new MirrorMappedTypeCache(cacheFile, "one", name -> !name.startsWith("cache/"), 1024 * 1024);
+             MirrorMappedTypeCache cache2 = new MirrorMappedTypeCache(cacheFile, "one", name -> !name.startsWith("cache/"))) {
+            Assert.assertNull(cache2.get("java/util/List"));
+            cache1.put(list);
+            cache1.put(target);
+            cache1.put(excluded);
+            Assert.assertEquals(2, cache1.getStoreCount());
+            Assert.assertEquals(list, cache2.get("java/util/List"));
+            Assert.assertEquals(target, cache2.get("java/lang/annotation/Target"));
+            Assert.assertArrayEquals(new ElementType[]{ElementType.METHOD, ElementType.ANNOTATION_TYPE, ElementType.TYPE}, cache2.get("java/lang/annotation/Target").getAnnotationMetadata().getTargetTypes());
+            Assert.assertNull(cache2.get("cache/Sample"));
+            Assert.assertEquals(3, cache2.getHitCount());
+            Assert.assertEquals(1, cache2.getMissCount());
+
+            // already stored
+            cache2.put(list);
+            Assert.assertEquals(0, cache2.getStoreCount());
+        }
+
+        // persistent, keyed by fingerprint
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, "one", name -> true)) {
+            Assert.assertEquals(list, cache.get("java/util/List"));
+            Assert.assertEquals(1024 * 1024, cacheFile.length());
+        }
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, "two", name -> true)) {
+            Assert.assertNull(cache.get("java/util/List"));
+        }
+    }
+
+    @Test
+    public void testFull() throws IOException {
+        File cacheFile = new File(temporaryFolder.getRoot(), "small.cache");
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, "one", name -> true, 100)) {
+            cache.put(new MirrorCachedType("a/A", Opcodes.ACC_PUBLIC, null, "java/lang/Object", new String[0], null));
+            cache.put(new MirrorCachedType("a/B", Opcodes.ACC_PUBLIC, null, "java/lang/Object", new String[0], null));
+            Assert.assertEquals(1, cache.getStoreCount());
+            Assert.assertTrue(cache.getUsedSize() <= 100);
+        }
+    }
+
+    @Test
+    public void testFingerprint() throws IOException {
+        File jar = temporaryFolder.newFile("lib.jar");
+        writeJar(jar, "a");
+        String fingerprint = MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar));
+        Assert.assertEquals(fingerprint, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)));
+        writeJar(jar, "b");
+        Assert.assertNotEquals(fingerprint, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)));
+    }
+
+    @Test
+    public void testChangedJarMisses() throws IOException {
+        File cacheFile = new File(temporaryFolder.getRoot(), "types.cache");
+        File jar = temporaryFolder.newFile("lib.jar");
+        MirrorCachedType type = new MirrorCachedType("a/A", Opcodes.ACC_PUBLIC, null, "java/lang/Object", new String[0], null);
+
+        writeJar(jar, "a");
+        String fingerprint = MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar));
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, fingerprint, name -> true, 1024 * 1024)) {
+            cache.put(type);
+        }
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)), name -> true)) {
+            Assert.assertEquals(type, cache.get("a/A"));
+            Assert.assertEquals(1, cache.getHitCount());
+        }
+
+        // a new build of the jar - the record of the old jar must not be used
+        writeJar(jar, "b");
+        try (MirrorMappedTypeCache cache = new MirrorMappedTypeCache(cacheFile, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)), name -> true)) {
+            Assert.assertNull(cache.get("a/A"));
+            Assert.assertEquals(0, cache.getHitCount());
+            Assert.assertEquals(1, cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void testFingerprintIncludesJdk() throws IOException {
+        File jar = temporaryFolder.newFile("lib.jar");
+        writeJar(jar, "a");
+        String fingerprint = MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar));
+        String javaVersion = System.getProperty("java.version");
+        try {
+            // as if the same classpath were used with another JDK
+            System.setProperty("java.version", javaVersion + ".other");
+            Assert.assertNotEquals(fingerprint, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)));
+        } finally {
+            System.setProperty("java.version", javaVersion);
+        }
+        Assert.assertEquals(fingerprint, MirrorMappedTypeCache.fingerprint(Collections.singletonList(jar)));
+    }
+
+    @Test
+    public void testHierarchyAndAnnotations() throws IOException {
+        File cacheFile = new File(temporaryFolder.getRoot(), "types.cache");
+        List<String> first = compile(cacheFile);
+        List<String> second = compile(cacheFile);
+        Assert.assertEquals(first.subList(0, 3), second.subList(0, 3));
+        Assert.assertEquals("hits=0", first.get(3));
+        Assert.assertNotEquals("stored=0", first.get(4));
+        Assert.assertNotEquals("hits=0", second.get(3));
+        Assert.assertEquals("stored=0", second.get(4));
+    }
+
+    // each compilation is a new "process" with a new cache instance
+    private static List<String> compile(File cacheFile) {
+        List<String> results = new ArrayList<>();
+        List<JavaFileObject> sources = Collections.singletonList(ProcessingFixture.source("cache.Sample", SAMPLE));
+        ProcessingFixture.compile(sources, Collections.singletonList("-proc:only"), (processingEnv, environment) -> {
+            try (MirrorMappedTypeCache typeCache = new MirrorMappedTypeCache(cacheFile, "test", MirrorTypeCache.excludingPackagesOf(environment.getRootElements()))) {
+                MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+                MirrorTypeHierarchy typeHierarchy = new MirrorTypeHierarchy(mirrorSignatures, typeCache);
+                MirrorAnnotationReader annotationReader = new MirrorAnnotationReader(processingEnv, mirrorSignatures, typeCache);
+
+                results.add(typeHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+                results.add(String.valueOf(typeHierarchy.isAssignableFrom("java/util/function/Supplier", "cache/Sample")));
+                TypeElement sample = processingEnv.getElementUtils().getTypeElement("cache.Sample");
+                StringBuilder metadata = new StringBuilder();
+                for (AnnotationMirror annotation : sample.getAnnotationMirrors()) {
+                    metadata.append(annotationReader.getAnnotationMetadata(annotation));
+                }
+                results.add(metadata.toString());
+                Assert.assertNull(typeCache.get("cache/Sample"));
+                results.add("hits=" + typeCache.getHitCount());
+                results.add("stored=" + typeCache.getStoreCount());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Assert.assertEquals(Arrays.asList("java/util/AbstractList", "true"), results.subList(0, 2));
+        return results;
+    }
+
+    private static void writeJar(File jar, String content) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("a/A.class"));
+            out.write(content.getBytes());
+            out.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles a generated corpus of classes in-process and runs a benchmark body from inside annotation
+ * processing (i.e. with a live javac model). Benchmarks are main() programs - they are not run by the build.
+ */
+public class BenchmarkHarness {
+    public static final int WARMUP_ITERATIONS = 5;
+    public static final int ITERATIONS = 10;
+
+    @FunctionalInterface
+    public interface Body {
+        void run(ProcessingEnvironment processingEnv, RoundEnvironment environment, List<TypeElement> types);
+    }
+
+    /**
+     * Generate a corpus of the given size and run the body once, during the first processing round,
+     * with all of the generated top level types
+     *
+     * @param classCount number of classes to generate
+     * @param body benchmark
+     */
+    public static void run(int classCount, Body body) {
+        run(classCount, Collections.emptyList(), body);
+    }
+
+    /**
+     * Same as {@link #run(int, Body)} with additional javac options (e.g. <code>-d</code> for the Filer's class output)
+     *
+     * @param classCount number of classes to generate
+     * @param options additional javac options
+     * @param body benchmark
+     */
+    public static void run(int classCount, List<String> options, Body body) {
+        List<String> allOptions = new ArrayList<>(Arrays.asList("-proc:only", "-Xlint:none"));
+        allOptions.addAll(options);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, allOptions, null, generateSources(classCount));
+        task.setProcessors(Collections.singletonList(new AbstractProcessor() {
+            private boolean hasRun = false;
+
+            @Override
+            public Set<String> getSupportedAnnotationTypes() {
+                return Collections.singleton("*");
+            }
+
+            @Override
+            public SourceVersion getSupportedSourceVersion() {
+                return SourceVersion.latestSupported();
+            }
+
+            @Override
+            public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+                if (!hasRun) {
+                    hasRun = true;
+                    List<TypeElement> types = ElementFilter.typesIn(environment.getRootElements()).stream()
+                            .filter(type -> type.getSimpleName().toString().startsWith("Generated"))
+                            .sorted((a, b) -> a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString()))
+                            .collect(Collectors.toList());
+                    body.run(processingEnv, environment, types);
+                }
+                return false;
+            }
+        }));
+        if (!task.call()) {
+            throw new IllegalStateException("Compilation failed");
+        }
+    }
+
+    /**
+     * Run the given proc for {@link #WARMUP_ITERATIONS} + {@link #ITERATIONS} and print the average time of the measured iterations
+     *
+     * @param label label to print
+     * @param unitCount number of units (e.g. classes) processed per iteration
+     * @param proc the work
+     * @return average nanoseconds per iteration
+     */
+    public static long measure(String label, int unitCount, Runnable proc) {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            proc.run();
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            proc.run();
+        }
+        long averageNanos = (System.nanoTime() - startNanos) / ITERATIONS;
+        double unitsPerSecond = (averageNanos > 0) ? (unitCount * 1_000_000_000.0) / averageNanos : 0;
+        System.out.println(String.format("%-40s %10.2f ms/iteration %12.0f units/second", label, averageNanos / 1_000_000.0, unitsPerSecond));
+        return averageNanos;
+    }
+
+    /**
+     * Generate sources: an annotation type, an enum and <code>classCount</code> generic, annotated classes
+     *
+     * @param classCount number of classes
+     * @return sources
+     */
+    public static List<JavaFileObject> generateSources(int classCount) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        sources.add(source("bench.Level", "package bench;\npublic enum Level { LOW, HIGH }\n"));
+        sources.add(source("bench.Marker", "package bench;\n"
+                + "import java.lang.annotation.*;\n"
+                + "@Retention(RetentionPolicy.RUNTIME)\n"
+                + "@Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})\n"
+                + "public @interface Marker {\n"
+                + "    String value() default \"\";\n"
+                + "    int[] sizes() default {};\n"
+                + "    Level level() default Level.LOW;\n"
+                + "}\n"));
+        for (int i = 0; i < classCount; ++i) {
+            String name = "Generated" + i;
+            String previous = "Generated" + Math.max(i - 1, 0);
+            String source = "package bench;\n"
+                    + "import java.util.*;\n"
+                    + "@Marker(value = \"" + name + "\", sizes = {1, 2, " + i + "}, level = Level.HIGH)\n"
+                    + "public class " + name + "<T extends Comparable<T>, U> extends AbstractMap<String, T> implements java.io.Serializable, Comparable<" + name + "<T, U>> {\n"
+                    + "    public static final int ID = " + i + ";\n"
+                    + "    public static final String NAME = \"" + name + "\";\n"
+                    + "    @Marker(\"field\") private List<Map<String, T>> values;\n"
+                    + "    protected " + previous + "<T, U> previous;\n"
+                    + "    private final Map<String, ? extends U> extras = null;\n"
+                    + "    private int count;\n"
+                    + "    public " + name + "() {}\n"
+                    + "    public " + name + "(@Marker(\"p\") List<Map<String, T>> values, int count) { this.values = values; this.count = count; }\n"
+                    + "    @Override public Set<Map.Entry<String, T>> entrySet() { return null; }\n"
+                    + "    @Override public int compareTo(" + name + "<T, U> o) { return 0; }\n"
+                    + "    @Marker(level = Level.LOW) public <R extends List<? super T>> R convert(Map<? extends U, R> map, T... values) throws java.io.IOException { return null; }\n"
+                    + "    public List<Map<String, T>> getValues() { return values; }\n"
+                    + "    public void setValues(List<Map<String, T>> values) { this.values = values; }\n"
+                    + "    public int getCount() { return count; }\n"
+                    + "    public void setCount(int count) { this.count = count; }\n"
+                    + "    private static String helper(String a, long b, double c) { return a; }\n"
+                    + "    public static class Nested<N> { public N value; public Nested<N> next() { return this; } }\n"
+                    + "}\n";
+            sources.add(source("bench." + name, source));
+        }
+        return sources;
+    }
+
+    private static JavaFileObject source(String className, String content) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    private BenchmarkHarness() {
+    }
+}
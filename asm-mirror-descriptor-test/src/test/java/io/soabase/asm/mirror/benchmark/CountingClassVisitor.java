@@ -0,0 +1,125 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+/**
+ * Visits everything and counts the events (so that the work can't be optimized away)
+ */
+public class CountingClassVisitor extends ClassVisitor {
+    private long count;
+
+    public CountingClassVisitor() {
+        super(Opcodes.ASM7);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        count += name.length() + ((signature != null) ? signature.length() : 0);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        count += descriptor.length();
+        return annotationVisitor;
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        count += descriptor.length();
+        return annotationVisitor;
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        count += name.length() + descriptor.length();
+        return fieldVisitor;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        count += name.length() + descriptor.length();
+        return methodVisitor;
+    }
+
+    private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(Opcodes.ASM7) {
+        @Override
+        public void visit(String name, Object value) {
+            ++count;
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            ++count;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            ++count;
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            ++count;
+            return this;
+        }
+    };
+
+    private final FieldVisitor fieldVisitor = new FieldVisitor(Opcodes.ASM7) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            count += descriptor.length();
+            return annotationVisitor;
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            count += descriptor.length();
+            return annotationVisitor;
+        }
+    };
+
+    private final MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM7) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            count += descriptor.length();
+            return annotationVisitor;
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            count += descriptor.length();
+            return annotationVisitor;
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+            count += descriptor.length();
+            return annotationVisitor;
+        }
+    };
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorAbiChecker;
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorHeaderJar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Measures checking a whole compilation against a baseline jar with {@link MirrorAbiChecker} (the baseline
+ * is the header jar of the same classes so every class is read and compared)
+ */
+public class MirrorAbiCheckerBenchmark {
+    public static void main(String[] args) throws IOException {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        File baselineJar = File.createTempFile("baseline", ".jar");
+        baselineJar.deleteOnExit();
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            try (OutputStream out = new FileOutputStream(baselineJar)) {
+                new MirrorHeaderJar(processingEnv).write(out, types);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.out.println(String.format("baseline jar: %d KB", baselineJar.length() / 1024));
+
+            BenchmarkHarness.measure("check all classes", types.size(), () -> {
+                try (MirrorAbiChecker checker = new MirrorAbiChecker(batchReader, baselineJar, null)) {
+                    if (!checker.check(types).isEmpty() || !checker.finish().isEmpty()) {
+                        throw new IllegalStateException("Unexpected changes");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        });
+    }
+}
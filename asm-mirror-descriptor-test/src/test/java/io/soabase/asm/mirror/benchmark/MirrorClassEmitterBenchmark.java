@@ -0,0 +1,94 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorClassEmitter;
+import io.soabase.asm.mirror.MirrorClassOutput;
+import io.soabase.asm.mirror.MirrorClassSnapshot;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Generates, transforms (ClassReader round trip + compression) and writes a class per type - sequentially on the
+ * compiler thread vs. with a {@link MirrorClassEmitter}. Output is written to a temp directory.
+ */
+public class MirrorClassEmitterBenchmark {
+    public static void main(String[] args) throws IOException {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        File outputDirectory = Files.createTempDirectory("emitter").toFile();
+        MirrorClassOutput output = (className, bytes, originatingElements) -> Files.write(new File(outputDirectory, className + ".class").toPath(), bytes);
+        System.out.println(String.format("%d processors", Runtime.getRuntime().availableProcessors()));
+
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            List<MirrorClassSnapshot> snapshots = types.stream().map(type -> MirrorClassSnapshot.read(batchReader.newClassReader(type))).collect(Collectors.toList());
+
+            BenchmarkHarness.measure("sequential", types.size(), () -> {
+                try {
+                    for (MirrorClassSnapshot snapshot : snapshots) {
+                        output.writeClass(snapshot.getName().replace('/', '.'), compress(roundTrip(generate(snapshot))));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            try (MirrorClassEmitter emitter = new MirrorClassEmitter(output, (className, bytes) -> roundTrip(bytes), (className, bytes) -> compress(bytes))) {
+                BenchmarkHarness.measure("MirrorClassEmitter", types.size(), () -> {
+                    for (int i = 0; i < snapshots.size(); ++i) {
+                        MirrorClassSnapshot snapshot = snapshots.get(i);
+                        emitter.emit(snapshot.getName().replace('/', '.'), () -> generate(snapshot), types.get(i));
+                    }
+                    emitter.flush();
+                });
+                System.out.println(String.format("back pressure waits: %d", emitter.getBackPressureCount()));
+            }
+        });
+    }
+
+    private static byte[] generate(MirrorClassSnapshot snapshot) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        snapshot.accept(classWriter);
+        return classWriter.toByteArray();
+    }
+
+    private static byte[] roundTrip(byte[] bytes) {
+        ClassWriter classWriter = new ClassWriter(0);
+        new ClassReader(bytes).accept(classWriter, 0);
+        return classWriter.toByteArray();
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytesOut, new Deflater(Deflater.BEST_COMPRESSION))) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytesOut.toByteArray();
+    }
+}
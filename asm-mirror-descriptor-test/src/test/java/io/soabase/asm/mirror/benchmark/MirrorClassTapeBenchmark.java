@@ -0,0 +1,49 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorClassReader;
+import io.soabase.asm.mirror.MirrorClassTape;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares replaying recorded {@link MirrorClassTape}s against fresh {@link MirrorClassReader#accept(org.objectweb.asm.ClassVisitor)}s
+ */
+public class MirrorClassTapeBenchmark {
+    public static void main(String[] args) {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            MirrorBatchReader cachingBatchReader = new MirrorBatchReader(new MirrorSignatures(processingEnv, true));
+
+            BenchmarkHarness.measure("accept() - new reader per class", types.size(), () -> types.forEach(type -> new MirrorClassReader(processingEnv, type).accept(new CountingClassVisitor())));
+            BenchmarkHarness.measure("accept() - shared batch reader", types.size(), () -> batchReader.read(types, type -> new CountingClassVisitor()));
+            BenchmarkHarness.measure("accept() - batch reader, signature cache", types.size(), () -> cachingBatchReader.read(types, type -> new CountingClassVisitor()));
+            BenchmarkHarness.measure("record tapes", types.size(), () -> types.forEach(type -> MirrorClassTape.record(batchReader.newClassReader(type))));
+
+            List<MirrorClassTape> tapes = types.stream().map(type -> MirrorClassTape.record(batchReader.newClassReader(type))).collect(Collectors.toList());
+            BenchmarkHarness.measure("replay tapes", types.size(), () -> tapes.forEach(tape -> tape.accept(new CountingClassVisitor())));
+
+            int codes = tapes.stream().mapToInt(MirrorClassTape::getCodeSize).sum();
+            int constants = tapes.stream().mapToInt(MirrorClassTape::getConstantCount).sum();
+            System.out.println(String.format("average tape: %d codes, %d constants", codes / tapes.size(), constants / tapes.size()));
+        });
+    }
+}
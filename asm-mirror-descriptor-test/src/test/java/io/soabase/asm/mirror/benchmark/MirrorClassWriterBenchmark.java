@@ -0,0 +1,164 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorClassReader;
+import io.soabase.asm.mirror.MirrorClassWriter;
+import io.soabase.asm.mirror.MirrorTypeHierarchy;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generates a delegating class for each corpus class and compares hand written frames against
+ * {@link ClassWriter#COMPUTE_FRAMES} with {@link MirrorClassWriter}
+ */
+public class MirrorClassWriterBenchmark {
+    private static final String COMMON_SUPER = "java/util/AbstractMap";
+
+    private static class Delegate {
+        private final String name;
+        private final String delegateName;
+        private final String previousName;
+        private final List<String[]> methods;
+
+        Delegate(String name, String delegateName, String previousName, List<String[]> methods) {
+            this.name = name;
+            this.delegateName = delegateName;
+            this.previousName = previousName;
+            this.methods = methods;
+        }
+    }
+
+    public static void main(String[] args) {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+            List<Delegate> delegates = new ArrayList<>();
+            String previousName = null;
+            for (int i = 0; i < types.size(); ++i) {
+                MirrorClassReader reader = batchReader.newClassReader(types.get(i));
+                String delegateName = reader.getClassName();
+                List<String[]> methods = reader.members(MirrorClassReader.SKIP_FIELDS | MirrorClassReader.SKIP_CONSTRUCTORS | MirrorClassReader.SKIP_PRIVATE, member -> !member.getModifiers().contains(Modifier.STATIC))
+                        .map(member -> new String[]{member.getName(), member.getDescriptor()})
+                        .collect(Collectors.toList());
+                delegates.add(new Delegate("bench/Delegate" + i, delegateName, (previousName != null) ? previousName : delegateName, methods));
+                previousName = delegateName;
+            }
+
+            MirrorTypeHierarchy typeHierarchy = new MirrorTypeHierarchy(batchReader.getMirrorSignatures());
+            Runnable manualFrames = () -> delegates.forEach(delegate -> {
+                ClassWriter classWriter = new ClassWriter(0);
+                generate(classWriter, delegate, true);
+                classWriter.toByteArray();
+            });
+            Runnable newHierarchy = () -> delegates.forEach(delegate -> {
+                MirrorClassWriter classWriter = new MirrorClassWriter(processingEnv, ClassWriter.COMPUTE_FRAMES);
+                generate(classWriter.asClassVisitor(), delegate, false);
+                classWriter.toByteArray();
+            });
+            Runnable sharedHierarchy = () -> delegates.forEach(delegate -> {
+                MirrorClassWriter classWriter = new MirrorClassWriter(typeHierarchy, ClassWriter.COMPUTE_FRAMES);
+                generate(classWriter.asClassVisitor(), delegate, false);
+                classWriter.toByteArray();
+            });
+
+            // the variants share most of ASM's writer code - warm it all up first so that the first variant isn't penalized
+            for (int i = 0; i < BenchmarkHarness.WARMUP_ITERATIONS; ++i) {
+                manualFrames.run();
+                newHierarchy.run();
+                sharedHierarchy.run();
+            }
+
+            BenchmarkHarness.measure("manual frames", delegates.size(), manualFrames);
+            BenchmarkHarness.measure("COMPUTE_FRAMES - new hierarchy", delegates.size(), newHierarchy);
+            BenchmarkHarness.measure("COMPUTE_FRAMES - shared hierarchy", delegates.size(), sharedHierarchy);
+            System.out.println(String.format("hierarchy size: %d", typeHierarchy.size()));
+        });
+    }
+
+    private static void generate(ClassVisitor classVisitor, Delegate delegate, boolean manualFrames) {
+        String delegateDescriptor = "L" + delegate.delegateName + ";";
+        classVisitor.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, delegate.name, null, "java/lang/Object", null);
+        classVisitor.visitField(Opcodes.ACC_PRIVATE, "delegate", delegateDescriptor, null, null).visitEnd();
+        classVisitor.visitField(Opcodes.ACC_PRIVATE, "previous", "L" + delegate.previousName + ";", null, null).visitEnd();
+
+        for (String[] method : delegate.methods) {
+            Type[] arguments = Type.getArgumentTypes(method[1]);
+            Type returnType = Type.getReturnType(method[1]);
+            MethodVisitor methodVisitor = classVisitor.visitMethod(Opcodes.ACC_PUBLIC, method[0], method[1], null, null);
+            methodVisitor.visitCode();
+            Label delegateLabel = new Label();
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitFieldInsn(Opcodes.GETFIELD, delegate.name, "delegate", delegateDescriptor);
+            methodVisitor.visitJumpInsn(Opcodes.IFNONNULL, delegateLabel);
+            methodVisitor.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalStateException");
+            methodVisitor.visitInsn(Opcodes.DUP);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "()V", false);
+            methodVisitor.visitInsn(Opcodes.ATHROW);
+            methodVisitor.visitLabel(delegateLabel);
+            if (manualFrames) {
+                methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            }
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitFieldInsn(Opcodes.GETFIELD, delegate.name, "delegate", delegateDescriptor);
+            int local = 1;
+            for (Type argument : arguments) {
+                methodVisitor.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), local);
+                local += argument.getSize();
+            }
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, delegate.delegateName, method[0], method[1], false);
+            methodVisitor.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+            methodVisitor.visitMaxs(Math.max(2, Math.max(local, returnType.getSize())), local);
+            methodVisitor.visitEnd();
+        }
+
+        // merges the delegate and previous types
+        MethodVisitor methodVisitor = classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "choose", "(Z)L" + COMMON_SUPER + ";", null, null);
+        methodVisitor.visitCode();
+        Label previousLabel = new Label();
+        Label returnLabel = new Label();
+        methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+        methodVisitor.visitJumpInsn(Opcodes.IFEQ, previousLabel);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        methodVisitor.visitFieldInsn(Opcodes.GETFIELD, delegate.name, "delegate", delegateDescriptor);
+        methodVisitor.visitJumpInsn(Opcodes.GOTO, returnLabel);
+        methodVisitor.visitLabel(previousLabel);
+        if (manualFrames) {
+            methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        }
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        methodVisitor.visitFieldInsn(Opcodes.GETFIELD, delegate.name, "previous", "L" + delegate.previousName + ";");
+        methodVisitor.visitLabel(returnLabel);
+        if (manualFrames) {
+            methodVisitor.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{COMMON_SUPER});
+        }
+        methodVisitor.visitInsn(Opcodes.ARETURN);
+        methodVisitor.visitMaxs(1, 2);
+        methodVisitor.visitEnd();
+
+        classVisitor.visitEnd();
+    }
+}
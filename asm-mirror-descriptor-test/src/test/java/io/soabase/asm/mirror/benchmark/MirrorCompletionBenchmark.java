@@ -0,0 +1,71 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorSharedTypeCache;
+import io.soabase.asm.mirror.MirrorTypeCache;
+import io.soabase.asm.mirror.MirrorTypeHierarchy;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads classpath (JDK) types in fresh compilations in the default and in the completion lean mode and reports
+ * the javac completions the library triggered (see {@link MirrorSignatures#getCompletionCount()}). Lean mode avoids
+ * completions of well known platform types - combined with a {@link MirrorTypeCache} most completions are avoided.
+ */
+public class MirrorCompletionBenchmark {
+    private static final String[] PACKAGES = {"java.util", "java.util.concurrent", "java.util.stream", "java.nio.file", "java.time", "javax.swing"};
+
+    public static void main(String[] args) {
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(MirrorSharedTypeCache.DEFAULT_MAXIMUM_SIZE);
+        for (int i = 0; i < 3; ++i) {   // first runs are warmup
+            run("default", false, null);
+            run("completion lean", true, null);
+            run("completion lean + type cache", true, sharedCache);
+        }
+    }
+
+    private static void run(String label, boolean completionLean, MirrorSharedTypeCache sharedCache) {
+        BenchmarkHarness.run(1, (processingEnv, environment, types) -> {
+            List<TypeElement> classpathTypes = new ArrayList<>();
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                for (Element element : packageElement.getEnclosedElements()) {
+                    classpathTypes.add((TypeElement) element);
+                }
+            }
+
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv, false, completionLean);
+            MirrorTypeCache typeCache = (sharedCache != null) ? sharedCache.view("jdk", MirrorTypeCache.excludingPackagesOf(environment.getRootElements())) : null;
+            MirrorBatchReader batchReader = new MirrorBatchReader(mirrorSignatures, Opcodes.V1_8, Opcodes.ACC_SUPER, typeCache);
+            MirrorTypeHierarchy typeHierarchy = new MirrorTypeHierarchy(mirrorSignatures, typeCache);
+            long startNanos = System.nanoTime();
+            batchReader.read(classpathTypes, type -> new CountingClassVisitor());
+            for (TypeElement type : classpathTypes) {
+                typeHierarchy.isAssignableFrom("java/io/Serializable", mirrorSignatures.internalName(type));
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            System.out.println(String.format("%-30s %10.2f ms %6d types read %6d completions triggered", label, elapsedNanos / 1_000_000.0, classpathTypes.size(), mirrorSignatures.getCompletionCount()));
+        });
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorClassOutput;
+import io.soabase.asm.mirror.MirrorJarOutput;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.Element;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes many small generated classes through the {@link javax.annotation.processing.Filer} - a file per class vs.
+ * one {@link MirrorJarOutput} - and reports the wall time and the files created in the class output directory
+ */
+public class MirrorJarOutputBenchmark {
+    public static void main(String[] args) throws IOException {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+        List<byte[]> fileClasses = new ArrayList<>();
+        List<byte[]> jarClasses = new ArrayList<>();
+        for (int i = 0; i < classCount; ++i) {
+            fileClasses.add(generate("files." + className(i)));
+            jarClasses.add(generate("jar." + className(i)));
+        }
+
+        for (int i = 0; i < 3; ++i) {   // first runs are warmup
+            File outputDirectory = Files.createTempDirectory("jar-output").toFile();
+            try {
+                BenchmarkHarness.run(1, Arrays.asList("-d", outputDirectory.getPath()), (processingEnv, environment, types) -> {
+                    try {
+                        long startNanos = System.nanoTime();
+                        MirrorClassOutput filerOutput = MirrorClassOutput.filer(processingEnv.getFiler());
+                        for (int j = 0; j < classCount; ++j) {
+                            filerOutput.writeClass("files." + className(j), fileClasses.get(j));
+                        }
+                        report("Filer - file per class", startNanos, classCount, new File(outputDirectory, "files"));
+
+                        startNanos = System.nanoTime();
+                        try (MirrorJarOutput jarOutput = new MirrorJarOutput(processingEnv.getFiler(), "generated.jar", types.toArray(new Element[0]))) {
+                            for (int j = 0; j < classCount; ++j) {
+                                jarOutput.writeClass("jar." + className(j), jarClasses.get(j));
+                            }
+                        }
+                        report("MirrorJarOutput", startNanos, classCount, new File(outputDirectory, "generated.jar"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } finally {
+                delete(outputDirectory.toPath());
+            }
+        }
+    }
+
+    private static String className(int index) {
+        return "p" + (index % 100) + ".Generated" + index;
+    }
+
+    private static byte[] generate(String className) {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", null);
+        classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "NAME", "Ljava/lang/String;", null, className).visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void report(String label, long startNanos, int classCount, File output) throws IOException {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long fileCount;
+        long size;
+        try (Stream<Path> paths = Files.walk(output.toPath())) {
+            List<Path> files = new ArrayList<>();
+            paths.filter(Files::isRegularFile).forEach(files::add);
+            fileCount = files.size();
+            size = 0;
+            for (Path path : files) {
+                size += Files.size(path);
+            }
+        }
+        System.out.println(String.format("%-30s %10.2f ms %10.0f classes/second %8d files %10d KB", label, elapsedNanos / 1_000_000.0, (classCount * 1_000_000_000.0) / elapsedNanos, fileCount, size / 1024));
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorBatchReader;
+import io.soabase.asm.mirror.MirrorClassTape;
+import io.soabase.asm.mirror.MirrorModelReader;
+import io.soabase.asm.mirror.MirrorModelWriter;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares serializing with {@link MirrorModelWriter} and replaying with {@link MirrorModelReader} against reading the javac model
+ */
+public class MirrorModelBenchmark {
+    public static void main(String[] args) {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            MirrorBatchReader batchReader = new MirrorBatchReader(processingEnv);
+
+            BenchmarkHarness.measure("accept() - shared batch reader", types.size(), () -> batchReader.read(types, type -> new CountingClassVisitor()));
+            BenchmarkHarness.measure("serialize", types.size(), () -> types.forEach(type -> MirrorModelWriter.write(batchReader.newClassReader(type))));
+
+            List<byte[]> models = types.stream().map(type -> MirrorModelWriter.write(batchReader.newClassReader(type))).collect(Collectors.toList());
+            List<ByteBuffer> buffers = models.stream().map(bytes -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes).flip();
+                return buffer;
+            }).collect(Collectors.toList());
+            BenchmarkHarness.measure("read + replay (heap)", types.size(), () -> models.forEach(bytes -> new MirrorModelReader(bytes).accept(new CountingClassVisitor())));
+            BenchmarkHarness.measure("read + replay (direct)", types.size(), () -> buffers.forEach(buffer -> new MirrorModelReader(buffer).accept(new CountingClassVisitor())));
+            BenchmarkHarness.measure("read class names only", types.size(), () -> models.forEach(bytes -> new MirrorModelReader(bytes).getClassName()));
+
+            List<MirrorClassTape> tapes = types.stream().map(type -> MirrorClassTape.record(batchReader.newClassReader(type))).collect(Collectors.toList());
+            BenchmarkHarness.measure("replay tapes", types.size(), () -> tapes.forEach(tape -> tape.accept(new CountingClassVisitor())));
+
+            long totalBytes = models.stream().mapToLong(bytes -> bytes.length).sum();
+            System.out.println(String.format("average model: %d bytes", totalBytes / models.size()));
+        });
+    }
+}
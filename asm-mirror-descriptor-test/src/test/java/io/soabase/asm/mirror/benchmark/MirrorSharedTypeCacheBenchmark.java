@@ -0,0 +1,142 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorCachedType;
+import io.soabase.asm.mirror.MirrorSharedTypeCache;
+import io.soabase.asm.mirror.MirrorTypeCache;
+import io.soabase.asm.mirror.MirrorTypeHierarchy;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs 16 concurrent compilations in one JVM (as a build daemon would) that each read the hierarchies of JDK types -
+ * without a cache and with a {@link MirrorSharedTypeCache}. Then measures raw lookup contention of the shared cache
+ * against a synchronized map.
+ */
+public class MirrorSharedTypeCacheBenchmark {
+    private static final int COMPILATIONS = 16;
+    private static final String[] PACKAGES = {"java.lang", "java.util", "java.util.concurrent", "java.io", "java.nio", "java.net", "java.time", "java.util.stream", "javax.swing"};
+
+    public static void main(String[] args) throws Exception {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        MirrorSharedTypeCache sharedCache = new MirrorSharedTypeCache(MirrorSharedTypeCache.DEFAULT_MAXIMUM_SIZE);
+
+        compilations("no cache", classCount, rootElements -> null);
+        compilations("shared cache (cold)", classCount, rootElements -> sharedCache.view("jdk", MirrorTypeCache.excludingPackagesOf(rootElements)));
+        compilations("shared cache (warm)", classCount, rootElements -> sharedCache.view("jdk", MirrorTypeCache.excludingPackagesOf(rootElements)));
+        System.out.println(String.format("shared cache: %d types, %d hits, %d misses", sharedCache.size(), sharedCache.getHitCount(), sharedCache.getMissCount()));
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            names.add("a/A" + i);
+        }
+        MirrorTypeCache view = sharedCache.view("contention", name -> true);
+        Map<String, MirrorCachedType> synchronizedMap = Collections.synchronizedMap(new HashMap<>());
+        for (String name : names) {
+            MirrorCachedType type = new MirrorCachedType(name, 0, null, "java/lang/Object", new String[0], null);
+            view.put(type);
+            synchronizedMap.put(name, type);
+        }
+        for (int i = 0; i < 3; ++i) {   // first runs are warmup
+            contention("lookups - synchronized HashMap", names, synchronizedMap::get);
+            contention("lookups - MirrorSharedTypeCache", names, view::get);
+        }
+    }
+
+    private static void compilations(String label, int classCount, Function<List<Element>, MirrorTypeCache> cacheProc) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(COMPILATIONS);
+        AtomicLong hierarchyNanos = new AtomicLong();
+        try {
+            long startNanos = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < COMPILATIONS; ++i) {
+                futures.add(executor.submit(() -> BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+                    MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+                    List<String> names = new ArrayList<>();
+                    for (String packageName : PACKAGES) {
+                        PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                        for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+                            names.add(mirrorSignatures.internalName(type));
+                        }
+                    }
+                    types.forEach(type -> names.add(mirrorSignatures.internalName(type)));
+
+                    MirrorTypeCache typeCache = cacheProc.apply(new ArrayList<>(environment.getRootElements()));
+                    MirrorTypeHierarchy typeHierarchy = (typeCache != null) ? new MirrorTypeHierarchy(mirrorSignatures, typeCache) : new MirrorTypeHierarchy(mirrorSignatures);
+                    long hierarchyStartNanos = System.nanoTime();
+                    for (String name : names) {
+                        typeHierarchy.isAssignableFrom("java/io/Serializable", name);
+                    }
+                    hierarchyNanos.addAndGet(System.nanoTime() - hierarchyStartNanos);
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            System.out.println(String.format("%-40s %10.2f ms wall clock %10.2f ms/compilation reading hierarchies", label, elapsedNanos / 1_000_000.0, hierarchyNanos.get() / (COMPILATIONS * 1_000_000.0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void contention(String label, List<String> names, Function<String, MirrorCachedType> lookup) throws Exception {
+        int lookupsPerThread = 2_000_000;
+        ExecutorService executor = Executors.newFixedThreadPool(COMPILATIONS);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < COMPILATIONS; ++i) {
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    int found = 0;
+                    for (int j = 0; j < lookupsPerThread; ++j) {
+                        if (lookup.apply(names.get(j % names.size())) != null) {
+                            ++found;
+                        }
+                    }
+                    return found;
+                }));
+            }
+            long startNanos = System.nanoTime();
+            startLatch.countDown();
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            double lookupsPerSecond = (COMPILATIONS * (double) lookupsPerThread * 1_000_000_000.0) / elapsedNanos;
+            System.out.println(String.format("%-40s %10.2f ms %14.0f lookups/second (%d threads)", label, elapsedNanos / 1_000_000.0, lookupsPerSecond, COMPILATIONS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorSupertypeIndex;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link Types#isSubtype(TypeMirror, TypeMirror)} against {@link MirrorSupertypeIndex#isSubtype(String, String)}
+ * for every corpus class against a set of "SPI" types
+ */
+public class MirrorSupertypeIndexBenchmark {
+    private static final List<String> spis = Arrays.asList("java.io.Serializable", "java.lang.Comparable", "java.util.Map", "java.util.AbstractMap", "java.lang.Cloneable", "java.util.Collection", "java.lang.Runnable", "java.lang.AutoCloseable");
+
+    private static int matches;
+
+    public static void main(String[] args) {
+        int classCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        BenchmarkHarness.run(classCount, (processingEnv, environment, types) -> {
+            Types typeUtils = processingEnv.getTypeUtils();
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            List<TypeElement> spiElements = spis.stream().map(processingEnv.getElementUtils()::getTypeElement).collect(Collectors.toList());
+            List<TypeMirror> spiTypes = spiElements.stream().map(spi -> typeUtils.erasure(spi.asType())).collect(Collectors.toList());
+            List<String> spiNames = spiElements.stream().map(mirrorSignatures::internalName).collect(Collectors.toList());
+            List<TypeMirror> erasedTypes = types.stream().map(type -> typeUtils.erasure(type.asType())).collect(Collectors.toList());
+            List<String> names = types.stream().map(mirrorSignatures::internalName).collect(Collectors.toList());
+            int checks = types.size() * spis.size();
+
+            BenchmarkHarness.measure("Types.isSubtype()", checks, () -> {
+                matches = 0;
+                erasedTypes.forEach(type -> spiTypes.forEach(spi -> matches += typeUtils.isSubtype(type, spi) ? 1 : 0));
+            });
+            System.out.println("matches: " + matches);
+
+            BenchmarkHarness.measure("build index", types.size(), () -> new MirrorSupertypeIndex(mirrorSignatures).addAll(types));
+
+            MirrorSupertypeIndex index = new MirrorSupertypeIndex(mirrorSignatures);
+            index.addAll(types);
+            BenchmarkHarness.measure("MirrorSupertypeIndex.isSubtype()", checks, () -> {
+                matches = 0;
+                names.forEach(name -> spiNames.forEach(spi -> matches += index.isSubtype(name, spi) ? 1 : 0));
+            });
+            System.out.println("matches: " + matches);
+
+            int[] ids = names.stream().mapToInt(index::getId).toArray();
+            int[] spiIds = spiNames.stream().mapToInt(index::getId).toArray();
+            BenchmarkHarness.measure("MirrorSupertypeIndex.isSubtype() - ids", checks, () -> {
+                matches = 0;
+                for (int id : ids) {
+                    for (int spiId : spiIds) {
+                        matches += index.isSubtype(id, spiId) ? 1 : 0;
+                    }
+                }
+            });
+            System.out.println("matches: " + matches);
+
+            BenchmarkHarness.measure("MirrorSupertypeIndex.getSubtypes()", checks, () -> {
+                matches = 0;
+                spiNames.forEach(spi -> matches += (index.getId(spi) >= 0) ? index.getSubtypes(spi).cardinality() : 0);
+            });
+            System.out.println("matches (including non-corpus types): " + matches);
+        });
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.benchmark;
+
+import io.soabase.asm.mirror.MirrorMappedTypeCache;
+import io.soabase.asm.mirror.MirrorTypeCache;
+import io.soabase.asm.mirror.MirrorTypeHierarchy;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the hierarchies of JDK types in fresh compilations (i.e. javac has to complete the types) with and without
+ * a {@link MirrorMappedTypeCache} that was filled by a previous compilation
+ */
+public class MirrorTypeCacheBenchmark {
+    private static final String[] PACKAGES = {"java.lang", "java.util", "java.util.concurrent", "java.io", "java.nio", "java.net", "java.time", "java.util.stream", "javax.swing"};
+
+    public static void main(String[] args) throws IOException {
+        File cacheFile = File.createTempFile("types", ".cache");
+        cacheFile.deleteOnExit();
+        List<String> names = new ArrayList<>();
+
+        // compilation 1: no cache, fill the cache
+        BenchmarkHarness.run(1, (processingEnv, environment, types) -> {
+            MirrorSignatures mirrorSignatures = new MirrorSignatures(processingEnv);
+            for (String packageName : PACKAGES) {
+                PackageElement packageElement = processingEnv.getElementUtils().getPackageElement(packageName);
+                for (TypeElement type : ElementFilter.typesIn(packageElement.getEnclosedElements())) {
+                    names.add(mirrorSignatures.internalName(type));
+                }
+            }
+            time("first pass, no cache", names, new MirrorTypeHierarchy(mirrorSignatures));
+            try (MirrorMappedTypeCache typeCache = new MirrorMappedTypeCache(cacheFile, "jdk", MirrorTypeCache.excludingPackagesOf(environment.getRootElements()))) {
+                time("first pass, filling the cache", names, new MirrorTypeHierarchy(mirrorSignatures, typeCache));
+                System.out.println(String.format("cached %d types in %d KB", typeCache.getStoreCount(), typeCache.getUsedSize() / 1024));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // compilation 2: fresh javac symbols, the cache from compilation 1
+        BenchmarkHarness.run(1, (processingEnv, environment, types) -> {
+            try (MirrorMappedTypeCache typeCache = new MirrorMappedTypeCache(cacheFile, "jdk", MirrorTypeCache.excludingPackagesOf(environment.getRootElements()))) {
+                time("first pass, cache", names, new MirrorTypeHierarchy(new MirrorSignatures(processingEnv), typeCache));
+                System.out.println(String.format("cache hits %d misses %d", typeCache.getHitCount(), typeCache.getMissCount()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void time(String label, List<String> names, MirrorTypeHierarchy typeHierarchy) {
+        long startNanos = System.nanoTime();
+        int count = 0;
+        for (String name : names) {
+            if (typeHierarchy.isAssignableFrom("java/io/Serializable", name)) {
+                ++count;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        System.out.println(String.format("%-40s %10.2f ms (%d types, %d serializable, %d in hierarchy)", label, elapsedNanos / 1_000_000.0, names.size(), count, typeHierarchy.size()));
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.lang.model.element.Element;
+
+/**
+ * One incompatible API change found by {@link MirrorAbiChecker}
+ */
+public class MirrorAbiChange {
+    private final Kind kind;
+    private final String className;
+    private final String member;
+    private final String details;
+    private final Element element;
+
+    public enum Kind {
+        CLASS_REMOVED,
+        CLASS_ACCESS_NARROWED,
+        SUPER_CLASS_CHANGED,
+        INTERFACE_REMOVED,
+        FIELD_REMOVED,
+        FIELD_DESCRIPTOR_CHANGED,
+        FIELD_ACCESS_NARROWED,
+        CONSTANT_CHANGED,
+        METHOD_REMOVED,
+        METHOD_DESCRIPTOR_CHANGED,
+        METHOD_ACCESS_NARROWED
+    }
+
+    /**
+     * @param kind kind of change
+     * @param className internal name of the class
+     * @param member the baseline member (e.g. {@code name(I)V} or {@code name:I}) or {@literal null} for class changes
+     * @param details description of the change
+     * @param element the current element for the change or {@literal null} if it has been removed
+     */
+    public MirrorAbiChange(Kind kind, String className, String member, String details, Element element) {
+        this.kind = kind;
+        this.className = className;
+        this.member = member;
+        this.details = details;
+        this.element = element;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+
+    @Override
+    public String toString() {
+        String location = (member != null) ? (className + "." + member) : className;
+        return kind + " " + location + ((details != null) ? (": " + details) : "");
+    }
+}
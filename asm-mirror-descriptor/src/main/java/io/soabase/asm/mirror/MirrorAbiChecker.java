@@ -0,0 +1,283 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compile time binary compatibility check. Types being compiled are read with {@link MirrorClassReader}s, the same
+ * classes of a baseline jar (e.g. the previous release) are read with ASM's {@link ClassReader} (skipping code) and
+ * both are normalized to {@link MirrorAbiClass}es and compared - see {@link #diff(MirrorAbiClass, MirrorAbiClass)}.
+ * Changes are reported via the {@link Messager}. Baseline classes are read on demand from a {@link ZipFile} (whose
+ * central directory the JDK memory maps) so only the classes being checked are parsed. E.g. in a processor:
+ *
+ * <pre>
+ * checker.check(ElementFilter.typesIn(environment.getRootElements()));
+ * if (environment.processingOver()) {
+ *     checker.finish();    // reports baseline classes that no longer exist
+ *     checker.close();
+ * }
+ * </pre>
+ *
+ * Note: like the javac model itself, checkers are not thread safe.
+ */
+public class MirrorAbiChecker implements Closeable {
+    private final MirrorBatchReader batchReader;
+    private final ZipFile baseline;
+    private final Diagnostic.Kind diagnosticKind;
+    private final Set<String> checkedClasses = new HashSet<>();
+    private final List<MirrorAbiChange> changes = new ArrayList<>();
+
+    /**
+     * New checker that reports changes as errors
+     *
+     * @param processingEnv current processing environment
+     * @param baselineJar baseline classes
+     * @throws IOException if the jar cannot be opened
+     */
+    public MirrorAbiChecker(ProcessingEnvironment processingEnv, File baselineJar) throws IOException {
+        this(new MirrorBatchReader(processingEnv), baselineJar, Diagnostic.Kind.ERROR);
+    }
+
+    /**
+     * New checker
+     *
+     * @param batchReader reader to use for the current types
+     * @param baselineJar baseline classes
+     * @param diagnosticKind the kind used to report changes or {@literal null} to not report changes (see {@link #getChanges()})
+     * @throws IOException if the jar cannot be opened
+     */
+    public MirrorAbiChecker(MirrorBatchReader batchReader, File baselineJar, Diagnostic.Kind diagnosticKind) throws IOException {
+        this.batchReader = batchReader;
+        this.baseline = new ZipFile(baselineJar);
+        this.diagnosticKind = diagnosticKind;
+    }
+
+    /**
+     * Check the given types - see {@link #check(TypeElement)}
+     *
+     * @param elements types
+     * @return changes found
+     */
+    public List<MirrorAbiChange> check(Collection<? extends TypeElement> elements) {
+        List<MirrorAbiChange> found = new ArrayList<>();
+        elements.forEach(element -> found.addAll(check(element)));
+        return found;
+    }
+
+    /**
+     * Check the given type and (recursively) its member types against the baseline. Types that aren't in
+     * the baseline are new and aren't checked.
+     *
+     * @param element type
+     * @return changes found
+     */
+    public List<MirrorAbiChange> check(TypeElement element) {
+        MirrorClassReader reader = batchReader.newClassReader(element);
+        String className = reader.getClassName();
+        List<MirrorAbiChange> found = new ArrayList<>();
+        if (checkedClasses.add(className)) {
+            ZipEntry entry = baseline.getEntry(className + ".class");
+            if (entry != null) {
+                MirrorAbiClass baselineClass = MirrorAbiClass.read(readBaseline(entry));
+                diff(baselineClass, MirrorAbiClass.read(reader)).forEach(change -> found.add(report(change, element)));
+            }
+        }
+        ElementFilter.typesIn(element.getEnclosedElements()).forEach(memberType -> found.addAll(check(memberType)));
+        return found;
+    }
+
+    /**
+     * Report public classes of the baseline that haven't been checked as removed. Call once after every
+     * type of the compilation has been checked.
+     *
+     * @return changes found
+     */
+    public List<MirrorAbiChange> finish() {
+        List<MirrorAbiChange> found = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = baseline.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class") || name.endsWith("package-info.class")) {
+                continue;
+            }
+            String className = name.substring(0, name.length() - ".class".length());
+            if (!checkedClasses.contains(className) && MirrorAbiClass.isApi(readBaseline(entry).getAccess())) {
+                found.add(report(new MirrorAbiChange(MirrorAbiChange.Kind.CLASS_REMOVED, className, null, null, null), null));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns all of the changes found so far
+     *
+     * @return changes
+     */
+    public List<MirrorAbiChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        baseline.close();
+    }
+
+    /**
+     * Compare the API (public and protected classes and members) of two versions of a class. Reports removed fields and methods, changed field and method
+     * descriptors, narrowed access (less visible, newly {@code final}, {@code abstract} or changed {@code static}),
+     * changed constant values and class header changes (super class, removed direct interfaces).
+     *
+     * @param baseline previous version
+     * @param current current version
+     * @return changes (empty if compatible)
+     */
+    public static List<MirrorAbiChange> diff(MirrorAbiClass baseline, MirrorAbiClass current) {
+        List<MirrorAbiChange> found = new ArrayList<>();
+        String className = baseline.getName();
+        if (!baseline.isApi()) {
+            return found;
+        }
+        if (!current.isApi() || isNarrowed(baseline.getAccess(), current.getAccess())) {
+            found.add(new MirrorAbiChange(MirrorAbiChange.Kind.CLASS_ACCESS_NARROWED, className, null, accessChange(baseline.getAccess(), current.getAccess()), null));
+            if (!current.isApi()) {
+                return found;
+            }
+        }
+        if (!Objects.equals(baseline.getSuperName(), current.getSuperName())) {
+            found.add(new MirrorAbiChange(MirrorAbiChange.Kind.SUPER_CLASS_CHANGED, className, null, baseline.getSuperName() + " -> " + current.getSuperName(), null));
+        }
+        baseline.getInterfaces().stream()
+                .filter(name -> !current.getInterfaces().contains(name))
+                .forEach(name -> found.add(new MirrorAbiChange(MirrorAbiChange.Kind.INTERFACE_REMOVED, className, null, name, null)));
+
+        for (MirrorAbiClass.Member field : baseline.getFields()) {
+            if (!MirrorAbiClass.isApi(field.getAccess())) {
+                continue;
+            }
+            MirrorAbiClass.Member currentField = current.findField(field.getName());
+            if (currentField == null) {
+                found.add(new MirrorAbiChange(MirrorAbiChange.Kind.FIELD_REMOVED, className, field.toString(), null, null));
+                continue;
+            }
+            if (!field.getDescriptor().equals(currentField.getDescriptor())) {
+                found.add(new MirrorAbiChange(MirrorAbiChange.Kind.FIELD_DESCRIPTOR_CHANGED, className, field.toString(), currentField.toString(), currentField.getElement()));
+            }
+            if (isNarrowed(field.getAccess(), currentField.getAccess())) {
+                found.add(new MirrorAbiChange(MirrorAbiChange.Kind.FIELD_ACCESS_NARROWED, className, field.toString(), accessChange(field.getAccess(), currentField.getAccess()), currentField.getElement()));
+            }
+            if ((field.getValue() != null) && !field.getValue().equals(currentField.getValue())) {
+                found.add(new MirrorAbiChange(MirrorAbiChange.Kind.CONSTANT_CHANGED, className, field.toString(), field.getValue() + " -> " + currentField.getValue(), currentField.getElement()));
+            }
+        }
+
+        for (MirrorAbiClass.Member method : baseline.getMethods()) {
+            if (!MirrorAbiClass.isApi(method.getAccess())) {
+                continue;
+            }
+            MirrorAbiClass.Member currentMethod = current.findMethod(method.getName(), method.getDescriptor());
+            if (currentMethod == null) {
+                // if there are new overloads of the same name, the descriptor changed - otherwise the method was removed
+                List<MirrorAbiClass.Member> newOverloads = current.getMethods(method.getName()).stream()
+                        .filter(overload -> baseline.findMethod(overload.getName(), overload.getDescriptor()) == null)
+                        .collect(Collectors.toList());
+                if (newOverloads.isEmpty()) {
+                    found.add(new MirrorAbiChange(MirrorAbiChange.Kind.METHOD_REMOVED, className, method.toString(), null, null));
+                } else {
+                    String details = newOverloads.stream().map(MirrorAbiClass.Member::toString).collect(Collectors.joining(", "));
+                    found.add(new MirrorAbiChange(MirrorAbiChange.Kind.METHOD_DESCRIPTOR_CHANGED, className, method.toString(), details, newOverloads.get(0).getElement()));
+                }
+                continue;
+            }
+            if (isNarrowed(method.getAccess(), currentMethod.getAccess())) {
+                found.add(new MirrorAbiChange(MirrorAbiChange.Kind.METHOD_ACCESS_NARROWED, className, method.toString(), accessChange(method.getAccess(), currentMethod.getAccess()), currentMethod.getElement()));
+            }
+        }
+        return found;
+    }
+
+    private MirrorAbiChange report(MirrorAbiChange change, TypeElement classElement) {
+        changes.add(change);
+        if (diagnosticKind != null) {
+            Messager messager = batchReader.getMirrorSignatures().getProcessingEnv().getMessager();
+            Element element = (change.getElement() != null) ? change.getElement() : classElement;
+            if (element != null) {
+                messager.printMessage(diagnosticKind, "Incompatible API change: " + change, element);
+            } else {
+                messager.printMessage(diagnosticKind, "Incompatible API change: " + change);
+            }
+        }
+        return change;
+    }
+
+    private ClassReader readBaseline(ZipEntry entry) {
+        try (InputStream in = baseline.getInputStream(entry)) {
+            return new ClassReader(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read baseline class: " + entry.getName(), e);
+        }
+    }
+
+    private static boolean isNarrowed(int baselineAccess, int currentAccess) {
+        if (visibility(currentAccess) < visibility(baselineAccess)) {
+            return true;
+        }
+        int added = currentAccess & ~baselineAccess;
+        if ((added & (Opcodes.ACC_FINAL | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE)) != 0) {
+            return true;
+        }
+        return ((baselineAccess ^ currentAccess) & Opcodes.ACC_STATIC) != 0;
+    }
+
+    private static int visibility(int access) {
+        if ((access & Opcodes.ACC_PUBLIC) != 0) {
+            return 3;
+        }
+        if ((access & Opcodes.ACC_PROTECTED) != 0) {
+            return 2;
+        }
+        return ((access & Opcodes.ACC_PRIVATE) != 0) ? 0 : 1;
+    }
+
+    private static String accessChange(int baselineAccess, int currentAccess) {
+        return "access 0x" + Integer.toHexString(baselineAccess) + " -> 0x" + Integer.toHexString(currentAccess);
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.Element;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Normalized model of the API of a class: the class header plus its fields and methods indexed by name and
+ * descriptor. The same model is read from mirrors ({@link #read(MirrorClassReader)}) and from
+ * compiled classes ({@link #read(ClassReader)}) so that the two can be compared - see {@link MirrorAbiChecker}.
+ * Like {@link MirrorAbiHasher}, synthetic/bridge members and static initializers are not included, {@link Opcodes#ACC_SUPER}
+ * and {@link Opcodes#ACC_DEPRECATED} are removed and constructors of inner classes include the enclosing instance parameter.
+ */
+public class MirrorAbiClass {
+    private static final int ACCESS_MASK = ~(Opcodes.ACC_SUPER | Opcodes.ACC_DEPRECATED);
+
+    private final String name;
+    private final int access;
+    private final String superName;
+    private final List<String> interfaces;
+    private final Map<String, Member> fields;
+    private final Map<String, Member> methods;
+    private final Map<String, List<Member>> methodsByName;
+
+    /**
+     * A field, method or constructor
+     */
+    public static class Member {
+        private final boolean isField;
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final Object value;
+        private final Element element;
+
+        public Member(boolean isField, int access, String name, String descriptor, Object value, Element element) {
+            this.isField = isField;
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.value = value;
+            this.element = element;
+        }
+
+        public boolean isField() {
+            return isField;
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * Returns the field's constant value (see {@link ClassVisitor#visitField(int, String, String, String, Object)})
+         *
+         * @return value or {@literal null}
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the member's element if the model was read from mirrors
+         *
+         * @return element or {@literal null}
+         */
+        public Element getElement() {
+            return element;
+        }
+
+        @Override
+        public String toString() {
+            return isField ? (name + ":" + descriptor) : (name + descriptor);
+        }
+    }
+
+    /**
+     * Read the model of the class passed to the given reader
+     *
+     * @param reader reader
+     * @return model
+     */
+    public static MirrorAbiClass read(MirrorClassReader reader) {
+        String enclosingInstanceDescriptor = MirrorStubGenerator.enclosingInstanceDescriptor(reader.getMirrorSignatures(), reader.getElement());
+        List<Member> members = reader.members(MirrorClassReader.SKIP_SIGNATURES)
+                .map(member -> member.isField()
+                        ? new Member(true, member.getAccess() & ACCESS_MASK, member.getName(), member.getDescriptor(), member.getValue(), member.getElement())
+                        : new Member(false, member.getAccess() & ACCESS_MASK, member.getName(), adjustDescriptor(member.getName(), member.getDescriptor(), enclosingInstanceDescriptor), null, member.getElement()))
+                .collect(Collectors.toList());
+        return new MirrorAbiClass(reader.getClassName(), reader.getAccess() & ACCESS_MASK, reader.getSuperName(), Arrays.asList(reader.getInterfaces()), members);
+    }
+
+    /**
+     * Read the model of the given compiled class
+     *
+     * @param classReader reader
+     * @return model
+     */
+    public static MirrorAbiClass read(ClassReader classReader) {
+        ModelVisitor visitor = new ModelVisitor();
+        classReader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return visitor.build();
+    }
+
+    public MirrorAbiClass(String name, int access, String superName, Collection<String> interfaces, Collection<Member> members) {
+        this.name = name;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = Collections.unmodifiableList(new ArrayList<>(interfaces));
+        Map<String, Member> fields = new LinkedHashMap<>();
+        Map<String, Member> methods = new LinkedHashMap<>();
+        Map<String, List<Member>> methodsByName = new HashMap<>();
+        members.forEach(member -> {
+            if (member.isField()) {
+                fields.put(member.getName(), member);
+            } else {
+                methods.put(member.getName().concat(member.getDescriptor()), member);
+                methodsByName.computeIfAbsent(member.getName(), __ -> new ArrayList<>()).add(member);
+            }
+        });
+        this.fields = Collections.unmodifiableMap(fields);
+        this.methods = Collections.unmodifiableMap(methods);
+        this.methodsByName = methodsByName;
+    }
+
+    /**
+     * Returns the internal name of the class
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the class's access flags as a class file would have them (without {@link Opcodes#ACC_SUPER})
+     *
+     * @return access flags
+     */
+    public int getAccess() {
+        return access;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    /**
+     * Return true if the class is part of an API, i.e. it is public (or protected for nested classes)
+     *
+     * @return true/false
+     */
+    public boolean isApi() {
+        return isApi(access);
+    }
+
+    /**
+     * Returns the fields in declaration order
+     *
+     * @return fields
+     */
+    public Collection<Member> getFields() {
+        return fields.values();
+    }
+
+    /**
+     * Returns the methods and constructors in declaration order
+     *
+     * @return methods
+     */
+    public Collection<Member> getMethods() {
+        return methods.values();
+    }
+
+    /**
+     * Find a field
+     *
+     * @param name field name
+     * @return field or {@literal null}
+     */
+    public Member findField(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Find a method
+     *
+     * @param name method name
+     * @param descriptor method descriptor
+     * @return method or {@literal null}
+     */
+    public Member findMethod(String name, String descriptor) {
+        return methods.get(name.concat(descriptor));
+    }
+
+    /**
+     * Returns the overloads of the given method name
+     *
+     * @param name method name
+     * @return methods (possibly empty)
+     */
+    public List<Member> getMethods(String name) {
+        return Collections.unmodifiableList(methodsByName.getOrDefault(name, Collections.emptyList()));
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorAbiClass{" + "name='" + name + '\'' + ", fields=" + fields.size() + ", methods=" + methods.size() + '}';
+    }
+
+    // public, or protected (nested classes are ACC_PUBLIC in the class file)
+    static boolean isApi(int access) {
+        return (access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) != 0;
+    }
+
+    private static String adjustDescriptor(String name, String descriptor, String enclosingInstanceDescriptor) {
+        if ((enclosingInstanceDescriptor != null) && name.equals("<init>")) {
+            return "(" + enclosingInstanceDescriptor + descriptor.substring(1);
+        }
+        return descriptor;
+    }
+
+    private static class ModelVisitor extends ClassVisitor {
+        private final List<Member> members = new ArrayList<>();
+        private String name;
+        private int access;
+        private String superName;
+        private List<String> interfaces;
+
+        ModelVisitor() {
+            super(Opcodes.ASM7);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            this.access = access & ACCESS_MASK;
+            this.superName = superName;
+            this.interfaces = (interfaces != null) ? Arrays.asList(interfaces) : Collections.emptyList();
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
+                members.add(new Member(true, access & ACCESS_MASK, name, descriptor, value, null));
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (((access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0) && !name.equals("<clinit>")) {
+                members.add(new Member(false, access & ACCESS_MASK, name, descriptor, null, null));
+            }
+            return null;
+        }
+
+        MirrorAbiClass build() {
+            return new MirrorAbiClass(name, access, superName, interfaces, members);
+        }
+    }
+}
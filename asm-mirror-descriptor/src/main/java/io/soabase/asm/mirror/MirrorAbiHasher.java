@@ -0,0 +1,525 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+/**
+ * A {@link ClassVisitor} that computes a 128-bit fingerprint of a class's ABI: access flags, names, descriptors,
+ * signatures, exceptions, constant values, annotation defaults and retained (class file) annotations of the class and
+ * its non-private, non-synthetic members. Values are streamed into the hash - no intermediate strings are built.
+ * Members and annotations (and annotation element values) are combined without regard to their order so
+ * re-ordering a source file does not change the hash. Static initializers, code, debug info and inner class
+ * attributes are not part of the hash.<br><br>
+ * The same hash is produced for a {@link MirrorClassReader} ({@link #hash(MirrorClassReader)}) and for ASM's
+ * {@link ClassReader} of the compiled class ({@link #hash(ClassReader)}) so either side can be used, e.g. as a build
+ * avoidance cache key. Hashers are single use.
+ */
+public class MirrorAbiHasher extends ClassVisitor {
+    private static final int CLASS_ACCESS_MASK = ~(Opcodes.ACC_SUPER | Opcodes.ACC_DEPRECATED);
+    private static final int MEMBER_ACCESS_MASK = ~Opcodes.ACC_DEPRECATED;
+
+    private static final int TAG_CLASS = 1;
+    private static final int TAG_FIELD = 2;
+    private static final int TAG_METHOD = 3;
+    private static final int TAG_ANNOTATION = 4;
+    private static final int TAG_TYPE_ANNOTATION = 5;
+    private static final int TAG_PARAMETER_ANNOTATION = 6;
+    private static final int TAG_ANNOTATION_DEFAULT = 7;
+    private static final int TAG_ELEMENT_VALUE = 8;
+
+    private static final int VALUE_NULL = 20;
+    private static final int VALUE_STRING = 21;
+    private static final int VALUE_INT = 22;
+    private static final int VALUE_LONG = 23;
+    private static final int VALUE_FLOAT = 24;
+    private static final int VALUE_DOUBLE = 25;
+    private static final int VALUE_BYTE = 26;
+    private static final int VALUE_SHORT = 27;
+    private static final int VALUE_CHAR = 28;
+    private static final int VALUE_BOOLEAN = 29;
+    private static final int VALUE_TYPE = 30;
+    private static final int VALUE_ENUM = 31;
+    private static final int VALUE_ANNOTATION = 32;
+    private static final int VALUE_ARRAY = 33;
+    private static final int VALUE_ARRAY_END = 34;
+
+    private final String enclosingInstanceDescriptor;
+    private Digest classDigest;
+    private Hash hash;
+
+    /**
+     * A 128-bit ABI hash
+     */
+    public static final class Hash {
+        private final long high;
+        private final long low;
+
+        public Hash(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        /**
+         * Parse a hash in the format of {@link #toString()}
+         *
+         * @param str 32 hex digits
+         * @return hash
+         * @throws IllegalArgumentException if the string is not a valid hash
+         */
+        public static Hash parse(String str) {
+            if (str.length() != 32) {
+                throw new IllegalArgumentException("Not a hash: " + str);
+            }
+            try {
+                return new Hash(Long.parseUnsignedLong(str.substring(0, 16), 16), Long.parseUnsignedLong(str.substring(16), 16));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a hash: " + str, e);
+            }
+        }
+
+        public long getHigh() {
+            return high;
+        }
+
+        public long getLow() {
+            return low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Hash hash = (Hash) o;
+            return (high == hash.high) && (low == hash.low);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 + Long.hashCode(low);
+        }
+
+        /**
+         * Returns the hash as 32 hex digits
+         *
+         * @return hex string
+         */
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * Compute the ABI hash of the class passed to the given reader
+     *
+     * @param reader reader
+     * @return hash
+     */
+    public static Hash hash(MirrorClassReader reader) {
+        MirrorAbiHasher hasher = new MirrorAbiHasher(MirrorStubGenerator.enclosingInstanceDescriptor(reader.getMirrorSignatures(), reader.getElement()));
+        reader.accept(hasher, MirrorClassReader.SKIP_PRIVATE);
+        return hasher.getHash();
+    }
+
+    /**
+     * Compute the ABI hash of the given compiled class
+     *
+     * @param classReader reader
+     * @return hash
+     */
+    public static Hash hash(ClassReader classReader) {
+        MirrorAbiHasher hasher = new MirrorAbiHasher();
+        classReader.accept(hasher, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return hasher.getHash();
+    }
+
+    // ordered combination of hashes (e.g. of a type and its supertypes) salted with the given key
+    static Hash combine(String key, List<Hash> hashes) {
+        Digest digest = new Digest(TAG_CLASS).putString(key).putInt(hashes.size());
+        hashes.forEach(hash -> digest.putLong(hash.getHigh()).putLong(hash.getLow()));
+        return digest.finish();
+    }
+
+    /**
+     * New hasher for visits of compiled classes (i.e. where constructors of inner classes have the
+     * enclosing instance parameter) or of {@link MirrorClassReader}s of classes that aren't inner classes. Prefer
+     * {@link #hash(MirrorClassReader)} or {@link #hash(ClassReader)}.
+     */
+    public MirrorAbiHasher() {
+        this(null);
+    }
+
+    private MirrorAbiHasher(String enclosingInstanceDescriptor) {
+        super(Opcodes.ASM7);
+        this.enclosingInstanceDescriptor = enclosingInstanceDescriptor;
+    }
+
+    /**
+     * Return the hash
+     *
+     * @return hash
+     * @throws IllegalStateException if the class visit has not ended
+     */
+    public Hash getHash() {
+        if (hash == null) {
+            throw new IllegalStateException("visitEnd() has not been called");
+        }
+        return hash;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        classDigest = new Digest(TAG_CLASS)
+                .putInt(access & CLASS_ACCESS_MASK)
+                .putString(name)
+                .putString(signature)
+                .putString(superName)
+                .putStrings(interfaces);
+    }
+
+    @Override
+    public ModuleVisitor visitModule(String name, int access, String version) {
+        return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        return annotation(classDigest, new Digest(TAG_ANNOTATION), descriptor, visible);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        return annotation(classDigest, new Digest(TAG_TYPE_ANNOTATION).putInt(typeRef).putTypePath(typePath), descriptor, visible);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        if ((access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) != 0) {
+            return null;
+        }
+        Digest fieldDigest = new Digest(TAG_FIELD)
+                .putInt(access & MEMBER_ACCESS_MASK)
+                .putString(name)
+                .putString(descriptor)
+                .putString(signature);
+        putValue(fieldDigest, value);
+        return new FieldVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return annotation(fieldDigest, new Digest(TAG_ANNOTATION), descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                return annotation(fieldDigest, new Digest(TAG_TYPE_ANNOTATION).putInt(typeRef).putTypePath(typePath), descriptor, visible);
+            }
+
+            @Override
+            public void visitEnd() {
+                classDigest.addUnordered(fieldDigest);
+            }
+        };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        if (((access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0) || name.equals("<clinit>")) {
+            return null;
+        }
+        if ((enclosingInstanceDescriptor != null) && name.equals("<init>")) {
+            descriptor = "(" + enclosingInstanceDescriptor + descriptor.substring(1);
+        }
+        Digest methodDigest = new Digest(TAG_METHOD)
+                .putInt(access & MEMBER_ACCESS_MASK)
+                .putString(name)
+                .putString(descriptor)
+                .putString(signature)
+                .putStrings(exceptions);
+        return new MethodVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                Digest defaultDigest = new Digest(TAG_ANNOTATION_DEFAULT);
+                return new HashingAnnotationVisitor(defaultDigest, true, () -> methodDigest.addUnordered(defaultDigest));
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return annotation(methodDigest, new Digest(TAG_ANNOTATION), descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                return annotation(methodDigest, new Digest(TAG_TYPE_ANNOTATION).putInt(typeRef).putTypePath(typePath), descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                return annotation(methodDigest, new Digest(TAG_PARAMETER_ANNOTATION).putInt(parameter), descriptor, visible);
+            }
+
+            @Override
+            public void visitEnd() {
+                classDigest.addUnordered(methodDigest);
+            }
+        };
+    }
+
+    @Override
+    public void visitEnd() {
+        hash = classDigest.finish();
+    }
+
+    private static AnnotationVisitor annotation(Digest ownerDigest, Digest annotationDigest, String descriptor, boolean visible) {
+        annotationDigest.putString(descriptor).putInt(visible ? 1 : 0);
+        return new HashingAnnotationVisitor(annotationDigest, false, () -> ownerDigest.addUnordered(annotationDigest));
+    }
+
+    private static void putValue(Digest digest, Object value) {
+        if (value == null) {
+            digest.putInt(VALUE_NULL);
+        } else if (value instanceof String) {
+            digest.putInt(VALUE_STRING).putString((String) value);
+        } else if (value instanceof Integer) {
+            digest.putInt(VALUE_INT).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            digest.putInt(VALUE_LONG).putLong((Long) value);
+        } else if (value instanceof Float) {
+            digest.putInt(VALUE_FLOAT).putInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Double) {
+            digest.putInt(VALUE_DOUBLE).putLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Byte) {
+            digest.putInt(VALUE_BYTE).putInt((Byte) value);
+        } else if (value instanceof Short) {
+            digest.putInt(VALUE_SHORT).putInt((Short) value);
+        } else if (value instanceof Character) {
+            digest.putInt(VALUE_CHAR).putInt((Character) value);
+        } else if (value instanceof Boolean) {
+            digest.putInt(VALUE_BOOLEAN).putInt(((Boolean) value) ? 1 : 0);
+        } else if (value instanceof Type) {
+            digest.putInt(VALUE_TYPE).putString(((Type) value).getDescriptor());
+        } else if (value.getClass().isArray()) {
+            // ClassReader visits arrays of primitives as one value - hash it the same as AnnotationVisitor.visitArray()
+            digest.putInt(VALUE_ARRAY);
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; ++i) {
+                putValue(digest, Array.get(value, i));
+            }
+            digest.putInt(VALUE_ARRAY_END);
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+        }
+    }
+
+    // annotation element values are unordered, array elements (and annotation defaults) are ordered
+    private static class HashingAnnotationVisitor extends AnnotationVisitor {
+        private final Digest digest;
+        private final boolean isOrdered;
+        private final Runnable endProc;
+
+        HashingAnnotationVisitor(Digest digest, boolean isOrdered, Runnable endProc) {
+            super(Opcodes.ASM7);
+            this.digest = digest;
+            this.isOrdered = isOrdered;
+            this.endProc = endProc;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            Digest valueDigest = startValue(name);
+            putValue(valueDigest, value);
+            endValue(valueDigest);
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            Digest valueDigest = startValue(name);
+            valueDigest.putInt(VALUE_ENUM).putString(descriptor).putString(value);
+            endValue(valueDigest);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            Digest valueDigest = startValue(name);
+            Digest annotationDigest = new Digest(VALUE_ANNOTATION).putString(descriptor);
+            return new HashingAnnotationVisitor(annotationDigest, false, () -> {
+                annotationDigest.finishInto(valueDigest);
+                endValue(valueDigest);
+            });
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            Digest valueDigest = startValue(name);
+            valueDigest.putInt(VALUE_ARRAY);
+            return new HashingAnnotationVisitor(valueDigest, true, () -> {
+                valueDigest.putInt(VALUE_ARRAY_END);
+                endValue(valueDigest);
+            });
+        }
+
+        @Override
+        public void visitEnd() {
+            endProc.run();
+        }
+
+        private Digest startValue(String name) {
+            return isOrdered ? digest : new Digest(TAG_ELEMENT_VALUE).putString(name);
+        }
+
+        private void endValue(Digest valueDigest) {
+            if (!isOrdered) {
+                digest.addUnordered(valueDigest);
+            }
+        }
+    }
+
+    // streaming MurmurHash3 (x64, 128-bit) style mixing of 64-bit words. Unordered parts (members, annotations, ...)
+    // are finished separately and summed so their order doesn't matter.
+    private static class Digest {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1 = 0x9368e53c2f6af274L;
+        private long h2 = 0x586dcd208f7cd3fdL;
+        private long length = 0;
+        private long sum1 = 0;
+        private long sum2 = 0;
+
+        Digest(int tag) {
+            putInt(tag);
+        }
+
+        Digest putInt(int value) {
+            return putLong(value);
+        }
+
+        Digest putLong(long value) {
+            ++length;
+
+            long k1 = value * C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            long k2 = value * C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+
+            return this;
+        }
+
+        Digest putString(String str) {
+            if (str == null) {
+                return putLong(-1);
+            }
+            int strLength = str.length();
+            putLong(strLength);
+            // four chars per word
+            long word = 0;
+            for (int i = 0; i < strLength; ++i) {
+                word = (word << 16) | str.charAt(i);
+                if ((i & 3) == 3) {
+                    putLong(word);
+                    word = 0;
+                }
+            }
+            if ((strLength & 3) != 0) {
+                putLong(word);
+            }
+            return this;
+        }
+
+        Digest putStrings(String[] strs) {
+            if (strs == null) {
+                return putLong(-1);
+            }
+            putLong(strs.length);
+            for (String str : strs) {
+                putString(str);
+            }
+            return this;
+        }
+
+        Digest putTypePath(TypePath typePath) {
+            if (typePath == null) {
+                return putLong(-1);
+            }
+            putLong(typePath.getLength());
+            for (int i = 0; i < typePath.getLength(); ++i) {
+                putInt(typePath.getStep(i)).putInt(typePath.getStepArgument(i));
+            }
+            return this;
+        }
+
+        void addUnordered(Digest digest) {
+            Hash hash = digest.finish();
+            sum1 += hash.getHigh();
+            sum2 += hash.getLow();
+        }
+
+        void finishInto(Digest digest) {
+            Hash hash = finish();
+            digest.putLong(hash.getHigh()).putLong(hash.getLow());
+        }
+
+        Hash finish() {
+            putLong(sum1);
+            putLong(sum2);
+
+            long f1 = h1 ^ length;
+            long f2 = h2 ^ length;
+            f1 += f2;
+            f2 += f1;
+            f1 = fmix(f1);
+            f2 = fmix(f2);
+            f1 += f2;
+            f2 += f1;
+            return new Hash(f1, f2);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package io.soabase.asm.mirror;
 
 import io.soabase.asm.mirror.util.AnnotationMirrorValueVisitor;
+import io.soabase.asm.mirror.util.AnnotationTypeMetadata;
 import io.soabase.asm.mirror.util.MirrorSignatures;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.TypePath;
@@ -24,12 +25,14 @@ import org.objectweb.asm.TypeReference;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.IntStream;
 
 /**
@@ -37,16 +40,53 @@ import java.util.stream.IntStream;
  * by {@link MirrorClassReader} but available for reading individual annotations if needed.
  */
 public class MirrorAnnotationReader {
+    // retentions of platform annotations (none can be TYPE_USE) - used in completion lean mode instead of reading the annotation type
+    private static final Map<String, RetentionPolicy> platformRetentions = new HashMap<>();
+    static {
+        platformRetentions.put("java/lang/Override", RetentionPolicy.SOURCE);
+        platformRetentions.put("java/lang/SuppressWarnings", RetentionPolicy.SOURCE);
+        platformRetentions.put("java/lang/Deprecated", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/FunctionalInterface", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/SafeVarargs", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/annotation/Documented", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/annotation/Inherited", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/annotation/Native", RetentionPolicy.SOURCE);
+        platformRetentions.put("java/lang/annotation/Repeatable", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/annotation/Retention", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/lang/annotation/Target", RetentionPolicy.RUNTIME);
+        platformRetentions.put("javax/annotation/Generated", RetentionPolicy.SOURCE);
+        platformRetentions.put("javax/annotation/processing/Generated", RetentionPolicy.SOURCE);
+        platformRetentions.put("java/beans/ConstructorProperties", RetentionPolicy.RUNTIME);
+        platformRetentions.put("java/beans/Transient", RetentionPolicy.RUNTIME);
+        platformRetentions.put("sun/reflect/CallerSensitive", RetentionPolicy.RUNTIME);
+        platformRetentions.put("jdk/internal/reflect/CallerSensitive", RetentionPolicy.RUNTIME);
+        platformRetentions.put("sun/misc/Contended", RetentionPolicy.RUNTIME);
+        platformRetentions.put("jdk/internal/vm/annotation/Contended", RetentionPolicy.RUNTIME);
+    }
+
     private final ProcessingEnvironment processingEnv;
     private final MirrorSignatures mirrorSignatures;
+    private final MirrorTypeCache typeCache;
+    private final Map<Element, AnnotationTypeMetadata> metadataCache = new HashMap<>();
 
     public MirrorAnnotationReader(ProcessingEnvironment processingEnv) {
         this(processingEnv, new MirrorSignatures(processingEnv));
     }
 
     public MirrorAnnotationReader(ProcessingEnvironment processingEnv, MirrorSignatures mirrorSignatures) {
+        this(processingEnv, mirrorSignatures, null);
+    }
+
+    /**
+     * @param processingEnv current processing environment
+     * @param mirrorSignatures used to generate descriptors
+     * @param typeCache if not {@literal null}, annotation type metadata is looked up in the cache before reading
+     *                  the annotation type and metadata read is added to it
+     */
+    public MirrorAnnotationReader(ProcessingEnvironment processingEnv, MirrorSignatures mirrorSignatures, MirrorTypeCache typeCache) {
         this.processingEnv = processingEnv;
         this.mirrorSignatures = mirrorSignatures;
+        this.typeCache = typeCache;
     }
 
     @FunctionalInterface
@@ -98,6 +138,23 @@ public class MirrorAnnotationReader {
         AnnotationVisitor visit(int parameter, String descriptor, boolean visible);
     }
 
+    /**
+     * Return the metadata for the given annotation's type. Metadata is cached per annotation
+     * type for the life of this reader.
+     *
+     * @param annotation annotation
+     * @return metadata
+     */
+    public AnnotationTypeMetadata getAnnotationMetadata(AnnotationMirror annotation) {
+        Element element = annotation.getAnnotationType().asElement();
+        AnnotationTypeMetadata metadata = metadataCache.get(element);
+        if (metadata == null) {
+            metadata = readAnnotationMetadata((TypeElement) element);
+            metadataCache.put(element, metadata);
+        }
+        return metadata;
+    }
+
     /**
      * Return the {@link Target}s for the given annotation.
      *
@@ -105,9 +162,7 @@ public class MirrorAnnotationReader {
      * @return list of Targets or empty array
      */
     public ElementType[] getAnnotationTargets(AnnotationMirror annotation) {
-        Element element = processingEnv.getTypeUtils().asElement(annotation.getAnnotationType());
-        Target target = element.getAnnotation(Target.class);
-        return (target != null) ? target.value() : new ElementType[0];
+        return getAnnotationMetadata(annotation).getTargetTypes();
     }
 
     /**
@@ -117,9 +172,44 @@ public class MirrorAnnotationReader {
      * @return true/false
      */
     public boolean isVisibleAnnotation(AnnotationMirror annotation) {
-        Element element = processingEnv.getTypeUtils().asElement(annotation.getAnnotationType());
-        Retention retention = element.getAnnotation(Retention.class);
-        return (retention != null) && (retention.value() == RetentionPolicy.RUNTIME);
+        return getRetention(annotation) == RetentionPolicy.RUNTIME;
+    }
+
+    /**
+     * Return true if the given annotation's type has the {@link ElementType#TYPE_USE} target. In completion lean
+     * mode (see {@link MirrorSignatures#isCompletionLean()}) well known platform annotations are known not to be
+     * TYPE_USE annotations without reading the annotation type.
+     *
+     * @param annotation annotation
+     * @return true/false
+     */
+    public boolean isTypeUseAnnotation(AnnotationMirror annotation) {
+        if (mirrorSignatures.isCompletionLean() && platformRetentions.containsKey(mirrorSignatures.internalName((TypeElement) annotation.getAnnotationType().asElement()))) {
+            return false;
+        }
+        return getAnnotationMetadata(annotation).hasTarget(ElementType.TYPE_USE);
+    }
+
+    /**
+     * Return the retention of the given annotation. In completion lean mode (see {@link MirrorSignatures#isCompletionLean()})
+     * the retention of well known platform annotations is known without reading the annotation type.
+     *
+     * @param annotation annotation
+     * @return retention
+     */
+    public RetentionPolicy getRetention(AnnotationMirror annotation) {
+        if (mirrorSignatures.isCompletionLean()) {
+            TypeElement element = (TypeElement) annotation.getAnnotationType().asElement();
+            AnnotationTypeMetadata metadata = metadataCache.get(element);
+            if (metadata != null) {
+                return metadata.getRetention();
+            }
+            RetentionPolicy retention = platformRetentions.get(mirrorSignatures.internalName(element));
+            if (retention != null) {
+                return retention;
+            }
+        }
+        return getAnnotationMetadata(annotation).getRetention();
     }
 
     /**
@@ -174,14 +264,19 @@ public class MirrorAnnotationReader {
     }
 
     /**
-     * Makes the given visitor visit the given annotation
+     * Makes the given visitor visit the given annotation. As with {@link org.objectweb.asm.ClassReader}, annotations
+     * with {@link RetentionPolicy#SOURCE} retention are not visited (they aren't in class files).
      *
      * @param annotation annotation to read
      * @param visitAnnotationProc visitor
      */
     public void readAnnotationValue(AnnotationMirror annotation, VisitAnnotationProc visitAnnotationProc) {
-        String annotationDescriptor = mirrorSignatures.typeDescriptor(annotation.getAnnotationType());
-        AnnotationVisitor annotationVisitor = visitAnnotationProc.visit(annotationDescriptor, isVisibleAnnotation(annotation));
+        RetentionPolicy retention = getRetention(annotation);
+        if (retention == RetentionPolicy.SOURCE) {
+            return;
+        }
+        String descriptor = mirrorSignatures.typeDescriptor(annotation.getAnnotationType());
+        AnnotationVisitor annotationVisitor = visitAnnotationProc.visit(descriptor, retention == RetentionPolicy.RUNTIME);
         if (annotationVisitor != null) {
             annotation.getElementValues().forEach((element, annotationValue) -> {
                 AnnotationMirrorValueVisitor mirrorValueVisitor = new AnnotationMirrorValueVisitor(element.getSimpleName().toString(), mirrorSignatures);
@@ -190,4 +285,19 @@ public class MirrorAnnotationReader {
             annotationVisitor.visitEnd();
         }
     }
+
+    private AnnotationTypeMetadata readAnnotationMetadata(TypeElement element) {
+        if (typeCache != null) {
+            MirrorCachedType cachedType = typeCache.get(mirrorSignatures.internalName(element));
+            if ((cachedType != null) && (cachedType.getAnnotationMetadata() != null)) {
+                return cachedType.getAnnotationMetadata();
+            }
+        }
+        mirrorSignatures.beforeCompletion(element);
+        AnnotationTypeMetadata metadata = AnnotationTypeMetadata.read(element, mirrorSignatures);
+        if (typeCache != null) {
+            typeCache.put(MirrorCachedType.read(mirrorSignatures, element, metadata));
+        }
+        return metadata;
+    }
 }
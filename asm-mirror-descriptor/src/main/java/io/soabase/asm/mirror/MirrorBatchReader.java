@@ -0,0 +1,288 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Reads a batch of classes (e.g. all of the types annotated with a processor's annotation in a round)
+ * using one shared set of readers. Unlike separate {@link MirrorClassReader}s, internal names, annotation
+ * type metadata and (if enabled) the signature cache are shared by every class in the batch and by subsequent
+ * batches read with the same instance. Note: like the javac model itself, batch readers are not thread safe.
+ */
+public class MirrorBatchReader {
+    private final MirrorSignatures mirrorSignatures;
+    private final MirrorAnnotationReader annotationReader;
+    private final MirrorMethodReader methodReader;
+    private final MirrorFieldReader fieldReader;
+    private final int classVersion;
+    private final int extraAccessFlags;
+
+    /**
+     * Statistics for one batch
+     */
+    public static class Statistics {
+        private final int classCount;
+        private final int skippedCount;
+        private final long elapsedNanos;
+        private final long cacheHits;
+        private final long cacheMisses;
+
+        public Statistics(int classCount, int skippedCount, long elapsedNanos, long cacheHits, long cacheMisses) {
+            this.classCount = classCount;
+            this.skippedCount = skippedCount;
+            this.elapsedNanos = elapsedNanos;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+        }
+
+        /**
+         * Return the number of classes that were visited
+         *
+         * @return count
+         */
+        public int getClassCount() {
+            return classCount;
+        }
+
+        /**
+         * Return the number of classes that were skipped because the visitor function returned {@literal null}
+         *
+         * @return count
+         */
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        /**
+         * Return the time spent reading the batch (including time spent in the visitors)
+         *
+         * @return elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Return the number of signature cache hits during the batch
+         *
+         * @return hit count (always 0 if the {@link MirrorSignatures} isn't caching)
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * Return the number of signature cache misses during the batch
+         *
+         * @return miss count (always 0 if the {@link MirrorSignatures} isn't caching)
+         */
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" + "classCount=" + classCount + ", skippedCount=" + skippedCount + ", elapsedNanos=" + elapsedNanos + ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + '}';
+        }
+    }
+
+    /**
+     * New batch reader with a new caching {@link MirrorSignatures}. {@link ClassVisitor}s will be called
+     * with class version {@link Opcodes#V1_8} and {@link Opcodes#ACC_SUPER} will be
+     * added to the access flags.
+     *
+     * @param processingEnv current processing environment
+     */
+    public MirrorBatchReader(ProcessingEnvironment processingEnv) {
+        this(new MirrorSignatures(processingEnv, true));
+    }
+
+    /**
+     * New batch reader that uses the given {@link MirrorSignatures}. {@link ClassVisitor}s will be called
+     * with class version {@link Opcodes#V1_8} and {@link Opcodes#ACC_SUPER} will be
+     * added to the access flags.
+     *
+     * @param mirrorSignatures signature generator to use
+     */
+    public MirrorBatchReader(MirrorSignatures mirrorSignatures) {
+        this(mirrorSignatures, Opcodes.V1_8, Opcodes.ACC_SUPER);
+    }
+
+    /**
+     * New batch reader that uses the given {@link MirrorSignatures}. {@link ClassVisitor}s will be called
+     * with the given class version and extraAccessFlags will be
+     * added to the access flags.
+     *
+     * @param mirrorSignatures signature generator to use
+     * @param classVersion class version to use
+     * @param extraAccessFlags extra access flags to add or 0
+     */
+    public MirrorBatchReader(MirrorSignatures mirrorSignatures, int classVersion, int extraAccessFlags) {
+        this(mirrorSignatures, classVersion, extraAccessFlags, null);
+    }
+
+    /**
+     * New batch reader that uses the given {@link MirrorSignatures} and {@link MirrorTypeCache}. {@link ClassVisitor}s
+     * will be called with the given class version and extraAccessFlags will be added to the access flags.
+     *
+     * @param mirrorSignatures signature generator to use
+     * @param classVersion class version to use
+     * @param extraAccessFlags extra access flags to add or 0
+     * @param typeCache if not {@literal null}, used for annotation type metadata - see {@link MirrorAnnotationReader#MirrorAnnotationReader(ProcessingEnvironment, MirrorSignatures, MirrorTypeCache)}
+     */
+    public MirrorBatchReader(MirrorSignatures mirrorSignatures, int classVersion, int extraAccessFlags, MirrorTypeCache typeCache) {
+        this.mirrorSignatures = mirrorSignatures;
+        annotationReader = new MirrorAnnotationReader(mirrorSignatures.getProcessingEnv(), mirrorSignatures, typeCache);
+        methodReader = new MirrorMethodReader(mirrorSignatures, annotationReader);
+        fieldReader = new MirrorFieldReader(mirrorSignatures, annotationReader);
+        this.classVersion = classVersion;
+        this.extraAccessFlags = extraAccessFlags;
+    }
+
+    /**
+     * Return the shared signature generator
+     *
+     * @return signature generator
+     */
+    public MirrorSignatures getMirrorSignatures() {
+        return mirrorSignatures;
+    }
+
+    /**
+     * Return the shared annotation reader
+     *
+     * @return annotation reader
+     */
+    public MirrorAnnotationReader getAnnotationReader() {
+        return annotationReader;
+    }
+
+    /**
+     * Return a class reader for the given element that shares this batch reader's readers and caches
+     *
+     * @param element element
+     * @return class reader
+     */
+    public MirrorClassReader newClassReader(TypeElement element) {
+        return new MirrorClassReader(mirrorSignatures, annotationReader, methodReader, fieldReader, element, classVersion, extraAccessFlags);
+    }
+
+    /**
+     * Read all of the types annotated with the given annotation in the round. Elements that are not types are ignored.
+     *
+     * @param environment the round
+     * @param annotation the annotation
+     * @param visitorProc returns the visitor for a type or {@literal null} to skip the type
+     * @return batch statistics
+     */
+    public Statistics read(RoundEnvironment environment, TypeElement annotation, Function<? super TypeElement, ? extends ClassVisitor> visitorProc) {
+        return read(environment, annotation, 0, visitorProc);
+    }
+
+    /**
+     * Read all of the types annotated with the given annotation in the round. Elements that are not types are ignored.
+     *
+     * @param environment the round
+     * @param annotation the annotation
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param visitorProc returns the visitor for a type or {@literal null} to skip the type
+     * @return batch statistics
+     */
+    public Statistics read(RoundEnvironment environment, TypeElement annotation, int parsingOptions, Function<? super TypeElement, ? extends ClassVisitor> visitorProc) {
+        return read(ElementFilter.typesIn(environment.getElementsAnnotatedWith(annotation)), parsingOptions, visitorProc);
+    }
+
+    /**
+     * Read the given types
+     *
+     * @param elements types to read
+     * @param visitorProc returns the visitor for a type or {@literal null} to skip the type
+     * @return batch statistics
+     */
+    public Statistics read(Collection<? extends TypeElement> elements, Function<? super TypeElement, ? extends ClassVisitor> visitorProc) {
+        return read(elements, 0, visitorProc);
+    }
+
+    /**
+     * Read the given types
+     *
+     * @param elements types to read
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param visitorProc returns the visitor for a type or {@literal null} to skip the type
+     * @return batch statistics
+     */
+    public Statistics read(Collection<? extends TypeElement> elements, int parsingOptions, Function<? super TypeElement, ? extends ClassVisitor> visitorProc) {
+        return read(elements, parsingOptions, null, visitorProc);
+    }
+
+    /**
+     * Read the given types
+     *
+     * @param elements types to read
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param memberFilter member filter or {@literal null} - see {@link MirrorClassReader#accept(ClassVisitor, int, Predicate)}
+     * @param visitorProc returns the visitor for a type or {@literal null} to skip the type
+     * @return batch statistics
+     */
+    public Statistics read(Collection<? extends TypeElement> elements, int parsingOptions, Predicate<? super Element> memberFilter, Function<? super TypeElement, ? extends ClassVisitor> visitorProc) {
+        long startNanos = System.nanoTime();
+        long startHits = mirrorSignatures.getCacheHits();
+        long startMisses = mirrorSignatures.getCacheMisses();
+        int classCount = 0;
+        int skippedCount = 0;
+        for (TypeElement element : elements) {
+            ClassVisitor classVisitor = visitorProc.apply(element);
+            if (classVisitor == null) {
+                ++skippedCount;
+            } else {
+                newClassReader(element).accept(classVisitor, parsingOptions, memberFilter);
+                ++classCount;
+            }
+        }
+        return new Statistics(classCount, skippedCount, System.nanoTime() - startNanos, mirrorSignatures.getCacheHits() - startHits, mirrorSignatures.getCacheMisses() - startMisses);
+    }
+
+    /**
+     * Read snapshots of the given types. The snapshots can then be replayed on other threads - see
+     * {@link MirrorClassSnapshot#acceptAll(java.util.concurrent.ForkJoinPool, List, Function)}. Must be called
+     * on the compiler thread.
+     *
+     * @param elements types to read
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @return snapshots in the same order as the elements
+     */
+    public List<MirrorClassSnapshot> snapshot(Collection<? extends TypeElement> elements, int parsingOptions) {
+        List<MirrorClassSnapshot> snapshots = new ArrayList<>(elements.size());
+        for (TypeElement element : elements) {
+            snapshots.add(MirrorClassSnapshot.read(newClassReader(element), parsingOptions, null));
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.AnnotationTypeMetadata;
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import io.soabase.asm.mirror.util.Util;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable, precomputed details of a (classpath) type as stored in a {@link MirrorTypeCache}: the class header
+ * (access flags, internal name, class signature, super class, interfaces) and, for annotation types, the
+ * {@link AnnotationTypeMetadata}
+ */
+public final class MirrorCachedType {
+    private final String internalName;
+    private final int access;
+    private final String signature;
+    private final String superName;
+    private final String[] interfaces;
+    private final AnnotationTypeMetadata annotationMetadata;
+
+    /**
+     * Read the details of the given type
+     *
+     * @param mirrorSignatures used to generate names and signatures
+     * @param element type
+     * @return details
+     */
+    public static MirrorCachedType read(MirrorSignatures mirrorSignatures, TypeElement element) {
+        AnnotationTypeMetadata annotationMetadata = (element.getKind() == ElementKind.ANNOTATION_TYPE) ? AnnotationTypeMetadata.read(element, mirrorSignatures) : null;
+        return read(mirrorSignatures, element, annotationMetadata);
+    }
+
+    /**
+     * Read the details of the given type using the given, already read, annotation metadata
+     *
+     * @param mirrorSignatures used to generate names and signatures
+     * @param element type
+     * @param annotationMetadata the metadata if the type is an annotation type or {@literal null}
+     * @return details
+     */
+    public static MirrorCachedType read(MirrorSignatures mirrorSignatures, TypeElement element, AnnotationTypeMetadata annotationMetadata) {
+        MirrorClassReader reader = new MirrorClassReader(mirrorSignatures, element);
+        String signature = Util.hasTypeArguments(element) ? mirrorSignatures.classSignature(element.asType()) : null;
+        return new MirrorCachedType(reader.getClassName(), reader.getAccess(), signature, reader.getSuperName(), reader.getInterfaces(), annotationMetadata);
+    }
+
+    /**
+     * @param internalName internal name of the type
+     * @param access class file access flags
+     * @param signature class signature or {@literal null}
+     * @param superName internal name of the super class (for interfaces {@code java/lang/Object}) or {@literal null}
+     * @param interfaces internal names of the directly implemented interfaces
+     * @param annotationMetadata the metadata if the type is an annotation type or {@literal null}
+     */
+    public MirrorCachedType(String internalName, int access, String signature, String superName, String[] interfaces, AnnotationTypeMetadata annotationMetadata) {
+        this.internalName = Objects.requireNonNull(internalName, "internalName cannot be null");
+        this.access = access;
+        this.signature = signature;
+        this.superName = superName;
+        this.interfaces = interfaces.clone();
+        this.annotationMetadata = annotationMetadata;
+    }
+
+    public String getInternalName() {
+        return internalName;
+    }
+
+    /**
+     * Return the type's descriptor
+     *
+     * @return descriptor
+     */
+    public String getDescriptor() {
+        return "L" + internalName + ";";
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public boolean isInterface() {
+        return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * Return the internal names of the directly implemented interfaces
+     *
+     * @return new array of names
+     */
+    public String[] getInterfaces() {
+        return interfaces.clone();
+    }
+
+    /**
+     * Return the annotation metadata
+     *
+     * @return metadata or {@literal null} if the type is not an annotation type
+     */
+    public AnnotationTypeMetadata getAnnotationMetadata() {
+        return annotationMetadata;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MirrorCachedType that = (MirrorCachedType) o;
+        return (access == that.access)
+                && internalName.equals(that.internalName)
+                && Objects.equals(signature, that.signature)
+                && Objects.equals(superName, that.superName)
+                && Arrays.equals(interfaces, that.interfaces)
+                && isSameMetadata(annotationMetadata, that.annotationMetadata);
+    }
+
+    @Override
+    public int hashCode() {
+        return internalName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorCachedType{" + "internalName='" + internalName + '\'' + ", access=" + access + ", signature='" + signature + '\'' + ", superName='" + superName + '\'' + ", interfaces=" + Arrays.toString(interfaces) + ", annotationMetadata=" + annotationMetadata + '}';
+    }
+
+    byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(internalName);
+        out.writeInt(access);
+        writeNullable(out, signature);
+        writeNullable(out, superName);
+        out.writeShort(interfaces.length);
+        for (String interfaceName : interfaces) {
+            out.writeUTF(interfaceName);
+        }
+        out.writeBoolean(annotationMetadata != null);
+        if (annotationMetadata != null) {
+            out.writeByte(annotationMetadata.getRetention().ordinal());
+            ElementType[] targetTypes = annotationMetadata.getTargetTypes();
+            out.writeByte(targetTypes.length);
+            for (ElementType targetType : targetTypes) {
+                out.writeByte(targetType.ordinal());
+            }
+            writeNullable(out, annotationMetadata.getRepeatableContainer());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static MirrorCachedType fromBytes(DataInputStream in) throws IOException {
+        String internalName = in.readUTF();
+        int access = in.readInt();
+        String signature = readNullable(in);
+        String superName = readNullable(in);
+        String[] interfaces = new String[in.readUnsignedShort()];
+        for (int i = 0; i < interfaces.length; ++i) {
+            interfaces[i] = in.readUTF();
+        }
+        AnnotationTypeMetadata annotationMetadata = null;
+        if (in.readBoolean()) {
+            RetentionPolicy retention = RetentionPolicy.values()[in.readByte()];
+            ElementType[] targetTypes = new ElementType[in.readUnsignedByte()];
+            for (int i = 0; i < targetTypes.length; ++i) {
+                targetTypes[i] = ElementType.values()[in.readUnsignedByte()];
+            }
+            annotationMetadata = new AnnotationTypeMetadata("L" + internalName + ";", retention, targetTypes, readNullable(in));
+        }
+        return new MirrorCachedType(internalName, access, signature, superName, interfaces, annotationMetadata);
+    }
+
+    private static boolean isSameMetadata(AnnotationTypeMetadata metadata1, AnnotationTypeMetadata metadata2) {
+        if ((metadata1 == null) || (metadata2 == null)) {
+            return metadata1 == metadata2;
+        }
+        return metadata1.getDescriptor().equals(metadata2.getDescriptor())
+                && (metadata1.getRetention() == metadata2.getRetention())
+                && Arrays.equals(metadata1.getTargetTypes(), metadata2.getTargetTypes())
+                && Objects.equals(metadata1.getRepeatableContainer(), metadata2.getRepeatableContainer());
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
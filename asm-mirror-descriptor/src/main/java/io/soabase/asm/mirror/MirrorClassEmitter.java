@@ -0,0 +1,277 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.ClassWriter;
+
+import javax.lang.model.element.Element;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pipeline for generated class files. Class file bytes are generated (e.g. {@link ClassWriter#toByteArray()}) and
+ * transformed (e.g. verified or compressed - see {@link Transform}) on worker threads while the compiler thread
+ * continues. The generated classes are written to the {@link MirrorClassOutput} on the compiler thread in the
+ * order they were emitted, with their originating elements. At most <code>maximumPending</code> classes are in
+ * flight: when the limit is reached {@link #emit(String, Supplier, Element...)} writes (waiting if needed) the oldest
+ * class first. Completed classes are written as new classes are emitted so that generation and I/O overlap.
+ * Call {@link #flush()} before the end of the round.<br><br>
+ * Generators run on worker threads so they must not use the javac model - read what is needed on the compiler
+ * thread first (e.g. a {@link MirrorClassSnapshot} or a fully visited {@link ClassWriter}). Instances must only be used
+ * from the compiler thread. If a generator or transform fails, the exception is thrown when the class would have
+ * been written (from <code>emit()</code> or <code>flush()</code>) - other pending classes are unaffected.
+ */
+public class MirrorClassEmitter implements Closeable {
+    /**
+     * Default maximum number of classes in flight
+     */
+    public static final int DEFAULT_MAXIMUM_PENDING = 256;
+
+    private final MirrorClassOutput output;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int maximumPending;
+    private final List<Transform> transforms;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private boolean isClosed = false;
+    private int emittedCount = 0;
+    private int writtenCount = 0;
+    private int backPressureCount = 0;
+
+    /**
+     * Applied to the generated bytes on the worker thread, in order
+     */
+    @FunctionalInterface
+    public interface Transform {
+        /**
+         * Transform (or verify) the bytes of a generated class
+         *
+         * @param className binary name of the class
+         * @param bytes generated bytes (or the result of the previous transform)
+         * @return the bytes to write
+         * @throws Exception errors - thrown when the class would be written
+         */
+        byte[] apply(String className, byte[] bytes) throws Exception;
+    }
+
+    private static class Pending {
+        private final String className;
+        private final Element[] originatingElements;
+        private final FutureTask<byte[]> task;
+
+        Pending(String className, Element[] originatingElements, FutureTask<byte[]> task) {
+            this.className = className;
+            this.originatingElements = originatingElements;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Emitter with a worker thread per available processor and {@link #DEFAULT_MAXIMUM_PENDING}
+     *
+     * @param output where to write classes
+     * @param transforms transforms to apply (in order)
+     */
+    public MirrorClassEmitter(MirrorClassOutput output, Transform... transforms) {
+        this(output, Runtime.getRuntime().availableProcessors(), transforms);
+    }
+
+    /**
+     * Emitter with the given number of worker threads (stopped by {@link #close()}) and {@link #DEFAULT_MAXIMUM_PENDING}
+     *
+     * @param output where to write classes
+     * @param threadQty number of worker threads
+     * @param transforms transforms to apply (in order)
+     */
+    public MirrorClassEmitter(MirrorClassOutput output, int threadQty, Transform... transforms) {
+        this(output, newExecutor(threadQty), true, DEFAULT_MAXIMUM_PENDING, transforms);
+    }
+
+    /**
+     * @param output where to write classes
+     * @param executor executes generators and transforms (not shut down by {@link #close()})
+     * @param maximumPending maximum number of classes in flight
+     * @param transforms transforms to apply (in order)
+     */
+    public MirrorClassEmitter(MirrorClassOutput output, Executor executor, int maximumPending, Transform... transforms) {
+        this(output, executor, false, maximumPending, transforms);
+    }
+
+    private MirrorClassEmitter(MirrorClassOutput output, Executor executor, boolean ownsExecutor, int maximumPending, Transform[] transforms) {
+        if (maximumPending <= 0) {
+            throw new IllegalArgumentException("maximumPending must be positive: " + maximumPending);
+        }
+        this.output = output;
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.maximumPending = maximumPending;
+        this.transforms = Arrays.asList(transforms.clone());
+    }
+
+    /**
+     * Emit a class. The generator (and the transforms) run on a worker thread.
+     *
+     * @param className binary name of the class (e.g. {@code com.example.Foo$Bar})
+     * @param generator generates the class file - must not use the javac model
+     * @param originatingElements the elements the class is generated from (passed to the output)
+     * @throws UncheckedIOException if writing an earlier class fails
+     * @throws IllegalStateException if generating an earlier class fails or the emitter is closed
+     */
+    public void emit(String className, Supplier<byte[]> generator, Element... originatingElements) {
+        if (isClosed) {
+            throw new IllegalStateException("Emitter is closed");
+        }
+        while (pending.size() >= maximumPending) {
+            ++backPressureCount;
+            writeNext();
+        }
+        FutureTask<byte[]> task = new FutureTask<>(() -> {
+            byte[] bytes = generator.get();
+            for (Transform transform : transforms) {
+                bytes = transform.apply(className, bytes);
+            }
+            return bytes;
+        });
+        pending.add(new Pending(className, originatingElements.clone(), task));
+        ++emittedCount;
+        executor.execute(task);
+        writeCompleted();
+    }
+
+    /**
+     * Emit a class that has been fully visited. {@link ClassWriter#toByteArray()} is called on a worker thread.
+     *
+     * @param className binary name of the class (e.g. {@code com.example.Foo$Bar})
+     * @param classWriter the visited class writer - must not be used afterwards
+     * @param originatingElements the elements the class is generated from (passed to the output)
+     */
+    public void emit(String className, ClassWriter classWriter, Element... originatingElements) {
+        emit(className, classWriter::toByteArray, originatingElements);
+    }
+
+    /**
+     * Write all pending classes (waiting for them as needed)
+     *
+     * @throws UncheckedIOException if writing a class fails
+     * @throws IllegalStateException if generating a class fails
+     */
+    public void flush() {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Flush and, if the emitter created its worker threads, stop them. The output is not closed.
+     */
+    @Override
+    public void close() {
+        if (!isClosed) {
+            isClosed = true;
+            try {
+                flush();
+            } finally {
+                if (ownedExecutor != null) {
+                    ownedExecutor.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of classes emitted
+     *
+     * @return count
+     */
+    public int getEmittedCount() {
+        return emittedCount;
+    }
+
+    /**
+     * Return the number of classes written to the output
+     *
+     * @return count
+     */
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * Return the number of classes emitted but not yet written
+     *
+     * @return count
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Return the number of times emitting had to write a pending class first because the maximum was reached
+     *
+     * @return count
+     */
+    public int getBackPressureCount() {
+        return backPressureCount;
+    }
+
+    private void writeCompleted() {
+        while (!pending.isEmpty() && pending.peek().task.isDone()) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() {
+        Pending next = pending.remove();
+        byte[] bytes;
+        try {
+            bytes = next.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(p -> p.task.cancel(false));
+            pending.clear();
+            throw new IllegalStateException("Interrupted while generating " + next.className, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not generate " + next.className, e.getCause());
+        }
+        try {
+            output.writeClass(next.className, bytes, next.originatingElements);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ++writtenCount;
+    }
+
+    private static ExecutorService newExecutor(int threadQty) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threadQty, runnable -> {
+            Thread thread = new Thread(runnable, "mirror-class-emitter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
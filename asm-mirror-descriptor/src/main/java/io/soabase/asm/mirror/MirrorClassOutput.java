@@ -0,0 +1,65 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of generated class files - e.g. the {@link Filer} (see {@link #filer(Filer)}). Used by
+ * {@link MirrorClassEmitter} which always writes from the compiler thread, in emission order.
+ */
+@FunctionalInterface
+public interface MirrorClassOutput extends Closeable {
+    /**
+     * Write a class file
+     *
+     * @param className binary name of the class (e.g. {@code com.example.Foo$Bar})
+     * @param bytes class file
+     * @param originatingElements the elements the class was generated from (for incremental processing)
+     * @throws IOException errors
+     */
+    void writeClass(String className, byte[] bytes, Element... originatingElements) throws IOException;
+
+    /**
+     * Close the output. The default does nothing.
+     *
+     * @throws IOException errors
+     */
+    @Override
+    default void close() throws IOException {
+        // NOP
+    }
+
+    /**
+     * Return an output that creates class files with the given filer
+     *
+     * @param filer filer
+     * @return output
+     */
+    static MirrorClassOutput filer(Filer filer) {
+        return (className, bytes, originatingElements) -> {
+            JavaFileObject file = filer.createClassFile(className, originatingElements);
+            try (OutputStream out = file.openOutputStream()) {
+                out.write(bytes);
+            }
+        };
+    }
+}
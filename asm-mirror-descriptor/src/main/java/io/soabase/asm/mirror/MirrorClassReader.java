@@ -15,6 +15,7 @@
  */
 package io.soabase.asm.mirror;
 
+import io.soabase.asm.mirror.util.FanOutClassVisitor;
 import io.soabase.asm.mirror.util.MirrorSignatures;
 import io.soabase.asm.mirror.util.Util;
 import org.objectweb.asm.ClassVisitor;
@@ -26,11 +27,14 @@ import org.objectweb.asm.TypeReference;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Corollary to {@link org.objectweb.asm.ClassReader} but for {@link TypeMirror}s/{@link Element}s.
@@ -39,6 +43,42 @@ import javax.lang.model.type.TypeMirror;
  * Note: there is not bytecode in mirrors so those visitor methods are never called.
  */
 public class MirrorClassReader {
+    /**
+     * A flag to skip annotations (class, field, method and parameter). Type annotations are controlled
+     * separately via {@link #SKIP_TYPE_ANNOTATIONS}.
+     */
+    public static final int SKIP_ANNOTATIONS = 1;
+
+    /**
+     * A flag to skip type annotations.
+     */
+    public static final int SKIP_TYPE_ANNOTATIONS = 2;
+
+    /**
+     * A flag to skip generic signatures. Visitors receive {@literal null} signatures.
+     */
+    public static final int SKIP_SIGNATURES = 4;
+
+    /**
+     * A flag to skip fields.
+     */
+    public static final int SKIP_FIELDS = 8;
+
+    /**
+     * A flag to skip methods (not including constructors - see {@link #SKIP_CONSTRUCTORS}).
+     */
+    public static final int SKIP_METHODS = 16;
+
+    /**
+     * A flag to skip constructors.
+     */
+    public static final int SKIP_CONSTRUCTORS = 32;
+
+    /**
+     * A flag to skip private fields, methods and constructors.
+     */
+    public static final int SKIP_PRIVATE = 64;
+
     private final TypeElement mainElement;
     private final MirrorSignatures mirrorSignatures;
     private final MirrorAnnotationReader annotationReader;
@@ -70,22 +110,104 @@ public class MirrorClassReader {
      * @param extraAccessFlags extra access flags to add or 0
      */
     public MirrorClassReader(ProcessingEnvironment processingEnv, TypeElement element, int classVersion, int extraAccessFlags) {
+        this(new MirrorSignatures(processingEnv), element, classVersion, extraAccessFlags);
+    }
+
+    /**
+     * New class reader for the given element that uses the given {@link MirrorSignatures}. {@link ClassVisitor}s will be called
+     * with class version {@link Opcodes#V1_8} and {@link Opcodes#ACC_SUPER} will be
+     * added to the access flags. Pass a caching MirrorSignatures that is shared across readers
+     * to avoid re-generating descriptors/signatures for common types.
+     *
+     * @param mirrorSignatures signature generator to use
+     * @param element element
+     */
+    public MirrorClassReader(MirrorSignatures mirrorSignatures, TypeElement element) {
+        this(mirrorSignatures, element, Opcodes.V1_8, Opcodes.ACC_SUPER);
+    }
+
+    /**
+     * New class reader for the given element that uses the given {@link MirrorSignatures}. {@link ClassVisitor}s will be called
+     * with the given class version and extraAccessFlags will be
+     * added to the access flags.
+     *
+     * @param mirrorSignatures signature generator to use
+     * @param element element
+     * @param classVersion class version to use
+     * @param extraAccessFlags extra access flags to add or 0
+     */
+    public MirrorClassReader(MirrorSignatures mirrorSignatures, TypeElement element, int classVersion, int extraAccessFlags) {
+        this(mirrorSignatures, new MirrorAnnotationReader(mirrorSignatures.getProcessingEnv(), mirrorSignatures), element, classVersion, extraAccessFlags);
+    }
+
+    private MirrorClassReader(MirrorSignatures mirrorSignatures, MirrorAnnotationReader annotationReader, TypeElement element, int classVersion, int extraAccessFlags) {
+        this(mirrorSignatures, annotationReader, new MirrorMethodReader(mirrorSignatures, annotationReader), new MirrorFieldReader(mirrorSignatures, annotationReader), element, classVersion, extraAccessFlags);
+    }
+
+    // used by MirrorBatchReader to share readers (and their caches) between classes
+    MirrorClassReader(MirrorSignatures mirrorSignatures, MirrorAnnotationReader annotationReader, MirrorMethodReader methodReader, MirrorFieldReader fieldReader, TypeElement element, int classVersion, int extraAccessFlags) {
         this.mainElement = element;
-        mirrorSignatures = new MirrorSignatures(processingEnv);
-        annotationReader = new MirrorAnnotationReader(processingEnv, mirrorSignatures);
-        methodReader = new MirrorMethodReader(mirrorSignatures, annotationReader);
-        fieldReader = new MirrorFieldReader(mirrorSignatures, annotationReader);
+        this.mirrorSignatures = mirrorSignatures;
+        this.annotationReader = annotationReader;
+        this.methodReader = methodReader;
+        this.fieldReader = fieldReader;
         this.classVersion = classVersion;
         this.extraAccessFlags = extraAccessFlags;
     }
 
     /**
-     * Returns the class's access flags (see {@link Opcodes}).
+     * Returns the element passed to the constructor of this {@link MirrorClassReader}.
+     *
+     * @return element
+     */
+    public TypeElement getElement() {
+        return mainElement;
+    }
+
+    /**
+     * Returns the signature generator used by this reader
+     *
+     * @return mirror signatures
+     */
+    public MirrorSignatures getMirrorSignatures() {
+        return mirrorSignatures;
+    }
+
+    /**
+     * Returns the class's access flags (see {@link Opcodes}) as a class file would have them. i.e. for nested
+     * classes {@code private} and {@code static} are removed and {@code protected} becomes {@code public}. Use
+     * {@link #getInnerClassAccess()} for the original flags.
      *
      * @return the class access flags.
      */
     public int getAccess() {
-        return Util.modifiersToAccessFlags(mainElement.getModifiers());
+        int access = getInnerClassAccess();
+        if (isNested()) {
+            if ((access & Opcodes.ACC_PROTECTED) != 0) {
+                access |= Opcodes.ACC_PUBLIC;
+            }
+            access &= ~(Opcodes.ACC_PRIVATE | Opcodes.ACC_PROTECTED | Opcodes.ACC_STATIC);
+        }
+        return access;
+    }
+
+    /**
+     * Returns the class's access flags (see {@link Opcodes}) as declared in the source, i.e. the value
+     * used in {@link ClassVisitor#visitInnerClass(String, String, String, int)}.
+     *
+     * @return the declared access flags.
+     */
+    public int getInnerClassAccess() {
+        return Util.modifiersToAccessFlags(mainElement.getModifiers()) | Util.kindToAccessFlags(mainElement.getKind());
+    }
+
+    /**
+     * Returns true if the class is a member of another class
+     *
+     * @return true/false
+     */
+    public boolean isNested() {
+        return mainElement.getNestingKind().isNested();
     }
 
     /**
@@ -94,7 +216,7 @@ public class MirrorClassReader {
      * @return the internal class name.
      */
     public String getClassName() {
-        return Util.toSlash(mainElement.getQualifiedName().toString());
+        return mirrorSignatures.internalName(mainElement);
     }
 
     /**
@@ -105,10 +227,10 @@ public class MirrorClassReader {
      */
     public String getSuperName() {
         if (mainElement.getSuperclass().getKind() == TypeKind.NONE) {
-            return null;
+            // class files of interfaces (and annotations) have Object as the super class
+            return mainElement.getKind().isInterface() ? "java/lang/Object" : null;
         }
-        Element element = ((DeclaredType) mainElement.getSuperclass()).asElement();
-        return Util.toSlash(((TypeElement) element).getQualifiedName().toString());
+        return mirrorSignatures.internalName((TypeElement) ((DeclaredType) mainElement.getSuperclass()).asElement());
     }
 
     /**
@@ -118,10 +240,7 @@ public class MirrorClassReader {
      */
     public String[] getInterfaces() {
         return mainElement.getInterfaces().stream()
-                .map(type -> {
-                    Element element = ((DeclaredType) type).asElement();
-                    return Util.toSlash(((TypeElement) element).getQualifiedName().toString());
-                })
+                .map(type -> mirrorSignatures.internalName((TypeElement) ((DeclaredType) type).asElement()))
                 .toArray(String[]::new);
     }
 
@@ -132,26 +251,73 @@ public class MirrorClassReader {
      * @param classVisitor the visitor that must visit this class.
      */
     public void accept(ClassVisitor classVisitor) {
-        int accessFlags = getAccess() | extraAccessFlags;
+        accept(classVisitor, 0, null);
+    }
+
+    /**
+     * Makes the given visitors visit the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader}. The mirrors are traversed once and each event is dispatched to
+     * every visitor - see {@link FanOutClassVisitor}. To use parsing options, pass a {@link FanOutClassVisitor}
+     * to {@link #accept(ClassVisitor, int, Predicate)}.
+     *
+     * @param classVisitors the visitors that must visit this class.
+     */
+    public void accept(ClassVisitor... classVisitors) {
+        accept(FanOutClassVisitor.of(classVisitors), 0, null);
+    }
+
+    /**
+     * Makes the given visitor visit the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader}.
+     *
+     * @param classVisitor the visitor that must visit this class.
+     * @param parsingOptions the options to use to parse this class. One or more of {@link
+     *     #SKIP_ANNOTATIONS}, {@link #SKIP_TYPE_ANNOTATIONS}, {@link #SKIP_SIGNATURES}, {@link #SKIP_FIELDS},
+     *     {@link #SKIP_METHODS}, {@link #SKIP_CONSTRUCTORS} or {@link #SKIP_PRIVATE}. Skipped values are not generated.
+     */
+    public void accept(ClassVisitor classVisitor, int parsingOptions) {
+        accept(classVisitor, parsingOptions, null);
+    }
+
+    /**
+     * Makes the given visitor visit the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader}.
+     *
+     * @param classVisitor the visitor that must visit this class.
+     * @param parsingOptions the options to use to parse this class - see {@link #accept(ClassVisitor, int)}
+     * @param memberFilter if not null, only fields, methods and constructors that pass the filter are visited. The
+     *     filter is applied after the parsing options.
+     */
+    public void accept(ClassVisitor classVisitor, int parsingOptions, Predicate<? super Element> memberFilter) {
+        int accessAndExtraFlags = getAccess() | extraAccessFlags;
+        int accessFlags = ((accessAndExtraFlags & Opcodes.ACC_INTERFACE) != 0) ? (accessAndExtraFlags & ~Opcodes.ACC_SUPER) : accessAndExtraFlags;
         String thisClass = getClassName();
         String superClass = getSuperName();
         String[] interfaces = getInterfaces();
-        String signature = Util.hasTypeArguments(mainElement) ? mirrorSignatures.classSignature(mainElement.asType()) : null;
+        String signature = ((parsingOptions & SKIP_SIGNATURES) == 0) && Util.hasTypeArguments(mainElement) ? mirrorSignatures.classSignature(mainElement.asType()) : null;
         classVisitor.visit(classVersion, accessFlags, thisClass, signature, superClass, interfaces);
 
-        mainElement.getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationValue(annotation, classVisitor::visitAnnotation));
-        annotationReader.readTypeAnnotations(mainElement.getTypeParameters(), TypeReference.CLASS_TYPE_PARAMETER, classVisitor::visitTypeAnnotation);
+        if ((parsingOptions & SKIP_ANNOTATIONS) == 0) {
+            mainElement.getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationValue(annotation, classVisitor::visitAnnotation));
+        }
+        if ((parsingOptions & SKIP_TYPE_ANNOTATIONS) == 0) {
+            annotationReader.readTypeAnnotations(mainElement.getTypeParameters(), TypeReference.CLASS_TYPE_PARAMETER, classVisitor::visitTypeAnnotation);
+        }
 
         mainElement.getEnclosedElements().forEach(enclosed -> {
+            if (!includeMember(enclosed, parsingOptions, memberFilter)) {
+                return;
+            }
             switch (enclosed.getKind()) {
+                case ENUM_CONSTANT:
                 case FIELD: {
-                    fieldReader.readField(classVisitor, (VariableElement) enclosed);
+                    fieldReader.readField(classVisitor, (VariableElement) enclosed, parsingOptions);
                     break;
                 }
 
                 case CONSTRUCTOR:
                 case METHOD: {
-                    methodReader.readMethod(classVisitor, (ExecutableElement) enclosed);
+                    methodReader.readMethod(classVisitor, (ExecutableElement) enclosed, parsingOptions);
                     break;
                 }
             }
@@ -159,4 +325,73 @@ public class MirrorClassReader {
 
         classVisitor.visitEnd();
     }
+
+    /**
+     * Returns a lazy stream of the fields (including enum constants), methods and constructors of the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader}. Nothing is generated for a member until its {@link MirrorMember} is asked
+     * for a value and short-circuiting operations (e.g. {@code anyMatch()}, {@code findFirst()}) stop the traversal.
+     *
+     * @return stream of members
+     */
+    public Stream<MirrorMember> members() {
+        return members(0, null);
+    }
+
+    /**
+     * Returns a lazy stream of the fields, methods and constructors of the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader} - see {@link #members()}.
+     *
+     * @param parsingOptions the options to use - see {@link #accept(ClassVisitor, int)}. Skipped members are not included.
+     * @return stream of members
+     */
+    public Stream<MirrorMember> members(int parsingOptions) {
+        return members(parsingOptions, null);
+    }
+
+    /**
+     * Returns a lazy stream of the fields, methods and constructors of the Mirror/Element passed to the constructor of this
+     * {@link MirrorClassReader} - see {@link #members()}.
+     *
+     * @param parsingOptions the options to use - see {@link #accept(ClassVisitor, int)}. Skipped members are not included.
+     * @param memberFilter if not null, only fields, methods and constructors that pass the filter are included. The
+     *     filter is applied after the parsing options.
+     * @return stream of members
+     */
+    public Stream<MirrorMember> members(int parsingOptions, Predicate<? super Element> memberFilter) {
+        return mainElement.getEnclosedElements().stream()
+                .filter(enclosed -> includeMember(enclosed, parsingOptions, memberFilter))
+                .map(enclosed -> new MirrorMember(enclosed, mirrorSignatures, annotationReader, methodReader, fieldReader, parsingOptions));
+    }
+
+    private static boolean includeMember(Element member, int parsingOptions, Predicate<? super Element> memberFilter) {
+        int skipFlag;
+        switch (member.getKind()) {
+            case ENUM_CONSTANT:
+            case FIELD: {
+                skipFlag = SKIP_FIELDS;
+                break;
+            }
+
+            case CONSTRUCTOR: {
+                skipFlag = SKIP_CONSTRUCTORS;
+                break;
+            }
+
+            case METHOD: {
+                skipFlag = SKIP_METHODS;
+                break;
+            }
+
+            default: {
+                return false;
+            }
+        }
+        if ((parsingOptions & skipFlag) != 0) {
+            return false;
+        }
+        if (((parsingOptions & SKIP_PRIVATE) != 0) && member.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return (memberFilter == null) || memberFilter.test(member);
+    }
 }
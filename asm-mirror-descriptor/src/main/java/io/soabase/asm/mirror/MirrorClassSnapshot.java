@@ -0,0 +1,514 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import javax.lang.model.element.Element;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, thread safe copy of everything a {@link MirrorClassReader} visits: access flags, names,
+ * descriptors, signatures and annotation values. The javac model can only be used from the compiler thread
+ * so snapshots are read there (which is cheap) and then replayed to {@link ClassVisitor}s on any thread. Use
+ * {@link #acceptAll(ForkJoinPool, List, Function)} to replay many snapshots in parallel so that visitor work
+ * (e.g. {@link org.objectweb.asm.ClassWriter#toByteArray()}) uses all available cores.
+ */
+public final class MirrorClassSnapshot {
+    private final int version;
+    private final int access;
+    private final String name;
+    private final String signature;
+    private final String superName;
+    private final String[] interfaces;
+    private final List<AnnotationSnapshot> annotations;
+    private final List<MemberSnapshot> members;
+
+    /**
+     * Read a snapshot of the given reader's class. Must be called on the compiler thread.
+     *
+     * @param reader reader
+     * @return snapshot
+     */
+    public static MirrorClassSnapshot read(MirrorClassReader reader) {
+        return read(reader, 0, null);
+    }
+
+    /**
+     * Read a snapshot of the given reader's class. Must be called on the compiler thread.
+     *
+     * @param reader reader
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param memberFilter member filter or {@literal null} - see {@link MirrorClassReader#accept(ClassVisitor, int, Predicate)}
+     * @return snapshot
+     */
+    public static MirrorClassSnapshot read(MirrorClassReader reader, int parsingOptions, Predicate<? super Element> memberFilter) {
+        RecordingClassVisitor recorder = new RecordingClassVisitor();
+        reader.accept(recorder, parsingOptions, memberFilter);
+        return new MirrorClassSnapshot(recorder);
+    }
+
+    /**
+     * Replay the given snapshots in parallel using the given pool. For each snapshot, <code>visitorProc</code>
+     * is called (from a pool thread) to get the visitor. Note: the visitors (and <code>visitorProc</code>) must
+     * therefore be thread safe with respect to each other. Work that requires the compiler thread (e.g. writing
+     * to the {@link javax.annotation.processing.Filer}) should be done with the returned visitors after this method returns.
+     *
+     * @param pool pool to use
+     * @param snapshots snapshots to replay
+     * @param visitorProc returns the visitor for a snapshot or {@literal null} to skip it
+     * @param <V> visitor type
+     * @return the visitors in the same order as the snapshots (with {@literal null} for skipped snapshots)
+     */
+    public static <V extends ClassVisitor> List<V> acceptAll(ForkJoinPool pool, List<MirrorClassSnapshot> snapshots, Function<? super MirrorClassSnapshot, ? extends V> visitorProc) {
+        List<ForkJoinTask<V>> tasks = new ArrayList<>(snapshots.size());
+        for (MirrorClassSnapshot snapshot : snapshots) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                V classVisitor = visitorProc.apply(snapshot);
+                if (classVisitor != null) {
+                    snapshot.accept(classVisitor);
+                }
+                return classVisitor;
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        List<V> visitors = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<V> task : tasks) {
+            visitors.add(task.join());
+        }
+        return visitors;
+    }
+
+    /**
+     * Makes the given visitor visit this snapshot. Can be called from any thread and any number of times.
+     *
+     * @param classVisitor the visitor that must visit this class.
+     */
+    public void accept(ClassVisitor classVisitor) {
+        classVisitor.visit(version, access, name, signature, superName, getInterfaces());
+        for (AnnotationSnapshot annotation : annotations) {
+            annotation.accept(classVisitor);
+        }
+        for (MemberSnapshot member : members) {
+            member.accept(classVisitor);
+        }
+        classVisitor.visitEnd();
+    }
+
+    /**
+     * Returns the class version
+     *
+     * @return version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the class's access flags (see {@link Opcodes}).
+     *
+     * @return the class access flags.
+     */
+    public int getAccess() {
+        return access;
+    }
+
+    /**
+     * Returns the internal name of the class (see {@link org.objectweb.asm.Type#getInternalName()}).
+     *
+     * @return the internal class name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the class signature
+     *
+     * @return signature or {@literal null}
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Returns the internal of name of the super class (see {@link org.objectweb.asm.Type#getInternalName()}).
+     *
+     * @return the internal name of the super class or {@literal null}
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * Returns the internal names of the implemented interfaces (see {@link org.objectweb.asm.Type#getInternalName()}).
+     *
+     * @return new array of the internal names of the directly implemented interfaces.
+     */
+    public String[] getInterfaces() {
+        return (interfaces != null) ? interfaces.clone() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorClassSnapshot{" + "name='" + name + '\'' + ", members=" + members.size() + '}';
+    }
+
+    private MirrorClassSnapshot(RecordingClassVisitor recorder) {
+        version = recorder.version;
+        access = recorder.access;
+        name = recorder.name;
+        signature = recorder.signature;
+        superName = recorder.superName;
+        interfaces = (recorder.interfaces != null) ? recorder.interfaces.clone() : null;
+        annotations = recorder.annotations;
+        members = recorder.members;
+    }
+
+    private interface MemberSnapshot {
+        void accept(ClassVisitor classVisitor);
+    }
+
+    private static final class FieldSnapshot implements MemberSnapshot {
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final String signature;
+        private final Object value;
+        private final List<AnnotationSnapshot> annotations = new ArrayList<>();
+        private boolean ended;
+
+        private FieldSnapshot(int access, String name, String descriptor, String signature, Object value) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.signature = signature;
+            this.value = value;
+        }
+
+        @Override
+        public void accept(ClassVisitor classVisitor) {
+            FieldVisitor fieldVisitor = classVisitor.visitField(access, name, descriptor, signature, value);
+            if (fieldVisitor != null) {
+                for (AnnotationSnapshot annotation : annotations) {
+                    annotation.accept(fieldVisitor);
+                }
+                if (ended) {
+                    fieldVisitor.visitEnd();
+                }
+            }
+        }
+    }
+
+    private static final class MethodSnapshot implements MemberSnapshot {
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final String signature;
+        private final String[] exceptions;
+        private final List<AnnotationSnapshot> annotations = new ArrayList<>();
+        private boolean ended;
+
+        private MethodSnapshot(int access, String name, String descriptor, String signature, String[] exceptions) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.signature = signature;
+            this.exceptions = (exceptions != null) ? exceptions.clone() : null;
+        }
+
+        @Override
+        public void accept(ClassVisitor classVisitor) {
+            MethodVisitor methodVisitor = classVisitor.visitMethod(access, name, descriptor, signature, (exceptions != null) ? exceptions.clone() : null);
+            if (methodVisitor != null) {
+                for (AnnotationSnapshot annotation : annotations) {
+                    annotation.accept(methodVisitor);
+                }
+                if (ended) {
+                    methodVisitor.visitEnd();
+                }
+            }
+        }
+    }
+
+    private enum AnnotationKind {
+        ANNOTATION,
+        TYPE_ANNOTATION,
+        PARAMETER_ANNOTATION,
+        ANNOTATION_DEFAULT
+    }
+
+    private static final class AnnotationSnapshot {
+        private final AnnotationKind kind;
+        private final int typeRef;
+        private final TypePath typePath;
+        private final int parameter;
+        private final String descriptor;
+        private final boolean visible;
+        private final List<ValueSnapshot> values = new ArrayList<>();
+
+        private AnnotationSnapshot(AnnotationKind kind, int typeRef, TypePath typePath, int parameter, String descriptor, boolean visible) {
+            this.kind = kind;
+            this.typeRef = typeRef;
+            this.typePath = typePath;
+            this.parameter = parameter;
+            this.descriptor = descriptor;
+            this.visible = visible;
+        }
+
+        void accept(ClassVisitor classVisitor) {
+            AnnotationVisitor annotationVisitor = (kind == AnnotationKind.TYPE_ANNOTATION) ? classVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible) : classVisitor.visitAnnotation(descriptor, visible);
+            ValueSnapshot.accept(annotationVisitor, values);
+        }
+
+        void accept(FieldVisitor fieldVisitor) {
+            AnnotationVisitor annotationVisitor = (kind == AnnotationKind.TYPE_ANNOTATION) ? fieldVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible) : fieldVisitor.visitAnnotation(descriptor, visible);
+            ValueSnapshot.accept(annotationVisitor, values);
+        }
+
+        void accept(MethodVisitor methodVisitor) {
+            AnnotationVisitor annotationVisitor;
+            switch (kind) {
+                case TYPE_ANNOTATION: {
+                    annotationVisitor = methodVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+                    break;
+                }
+
+                case PARAMETER_ANNOTATION: {
+                    annotationVisitor = methodVisitor.visitParameterAnnotation(parameter, descriptor, visible);
+                    break;
+                }
+
+                case ANNOTATION_DEFAULT: {
+                    annotationVisitor = methodVisitor.visitAnnotationDefault();
+                    break;
+                }
+
+                default: {
+                    annotationVisitor = methodVisitor.visitAnnotation(descriptor, visible);
+                    break;
+                }
+            }
+            ValueSnapshot.accept(annotationVisitor, values);
+        }
+    }
+
+    private enum ValueKind {
+        VALUE,
+        ENUM,
+        ANNOTATION,
+        ARRAY
+    }
+
+    private static final class ValueSnapshot {
+        private final ValueKind kind;
+        private final String name;
+        private final String descriptor;
+        private final Object value;
+        private final List<ValueSnapshot> values;
+
+        private ValueSnapshot(ValueKind kind, String name, String descriptor, Object value, List<ValueSnapshot> values) {
+            this.kind = kind;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.value = value;
+            this.values = values;
+        }
+
+        static void accept(AnnotationVisitor annotationVisitor, List<ValueSnapshot> values) {
+            if (annotationVisitor != null) {
+                for (ValueSnapshot value : values) {
+                    value.accept(annotationVisitor);
+                }
+                annotationVisitor.visitEnd();
+            }
+        }
+
+        private void accept(AnnotationVisitor annotationVisitor) {
+            switch (kind) {
+                case VALUE: {
+                    annotationVisitor.visit(name, copyValue(value));
+                    break;
+                }
+
+                case ENUM: {
+                    annotationVisitor.visitEnum(name, descriptor, (String) value);
+                    break;
+                }
+
+                case ANNOTATION: {
+                    accept(annotationVisitor.visitAnnotation(name, descriptor), values);
+                    break;
+                }
+
+                case ARRAY: {
+                    accept(annotationVisitor.visitArray(name), values);
+                    break;
+                }
+            }
+        }
+    }
+
+    // primitive arrays are the only mutable annotation values
+    static Object copyValue(Object value) {
+        if ((value != null) && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        return value;
+    }
+
+    private static class RecordingAnnotationVisitor extends AnnotationVisitor {
+        private final List<ValueSnapshot> values;
+
+        RecordingAnnotationVisitor(List<ValueSnapshot> values) {
+            super(Opcodes.ASM7);
+            this.values = values;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            values.add(new ValueSnapshot(ValueKind.VALUE, name, null, copyValue(value), null));
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            values.add(new ValueSnapshot(ValueKind.ENUM, name, descriptor, value, null));
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            List<ValueSnapshot> nested = new ArrayList<>();
+            values.add(new ValueSnapshot(ValueKind.ANNOTATION, name, descriptor, null, nested));
+            return new RecordingAnnotationVisitor(nested);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            List<ValueSnapshot> nested = new ArrayList<>();
+            values.add(new ValueSnapshot(ValueKind.ARRAY, name, null, null, nested));
+            return new RecordingAnnotationVisitor(nested);
+        }
+    }
+
+    private static AnnotationVisitor record(List<AnnotationSnapshot> annotations, AnnotationKind kind, int typeRef, TypePath typePath, int parameter, String descriptor, boolean visible) {
+        AnnotationSnapshot annotation = new AnnotationSnapshot(kind, typeRef, typePath, parameter, descriptor, visible);
+        annotations.add(annotation);
+        return new RecordingAnnotationVisitor(annotation.values);
+    }
+
+    private static class RecordingClassVisitor extends ClassVisitor {
+        private int version;
+        private int access;
+        private String name;
+        private String signature;
+        private String superName;
+        private String[] interfaces;
+        private final List<AnnotationSnapshot> annotations = new ArrayList<>();
+        private final List<MemberSnapshot> members = new ArrayList<>();
+
+        RecordingClassVisitor() {
+            super(Opcodes.ASM7);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.version = version;
+            this.access = access;
+            this.name = name;
+            this.signature = signature;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            return record(annotations, AnnotationKind.ANNOTATION, 0, null, -1, descriptor, visible);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return record(annotations, AnnotationKind.TYPE_ANNOTATION, typeRef, typePath, -1, descriptor, visible);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            FieldSnapshot field = new FieldSnapshot(access, name, descriptor, signature, value);
+            members.add(field);
+            return new FieldVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return record(field.annotations, AnnotationKind.ANNOTATION, 0, null, -1, descriptor, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                    return record(field.annotations, AnnotationKind.TYPE_ANNOTATION, typeRef, typePath, -1, descriptor, visible);
+                }
+
+                @Override
+                public void visitEnd() {
+                    field.ended = true;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            MethodSnapshot method = new MethodSnapshot(access, name, descriptor, signature, exceptions);
+            members.add(method);
+            return new MethodVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    return record(method.annotations, AnnotationKind.ANNOTATION_DEFAULT, 0, null, -1, null, false);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return record(method.annotations, AnnotationKind.ANNOTATION, 0, null, -1, descriptor, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                    return record(method.annotations, AnnotationKind.TYPE_ANNOTATION, typeRef, typePath, -1, descriptor, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                    return record(method.annotations, AnnotationKind.PARAMETER_ANNOTATION, 0, null, parameter, descriptor, visible);
+                }
+
+                @Override
+                public void visitEnd() {
+                    method.ended = true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import javax.lang.model.element.Element;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A compact recording of everything a {@link MirrorClassReader} visits. Use it when the same class must be
+ * visited by several {@link ClassVisitor}s: the javac model is queried (and descriptors, signatures, etc. are
+ * generated) once and the tape can then be replayed any number of times. Events are stored as int codes in
+ * a single array with strings and other values in a de-duplicated constant table. Blocks (fields, methods,
+ * annotations, arrays) record their length so that they are skipped in one step when a visitor returns
+ * {@literal null}. Tapes are immutable once recorded and can be replayed from any thread.
+ */
+public final class MirrorClassTape {
+    private static final int VISIT = 1;
+    private static final int ANNOTATION = 2;
+    private static final int TYPE_ANNOTATION = 3;
+    private static final int PARAMETER_ANNOTATION = 4;
+    private static final int ANNOTATION_DEFAULT = 5;
+    private static final int FIELD = 6;
+    private static final int METHOD = 7;
+    private static final int MEMBER_END = 8;
+    private static final int VALUE = 9;
+    private static final int ENUM = 10;
+    private static final int NESTED_ANNOTATION = 11;
+    private static final int ARRAY = 12;
+    private static final int VALUES_END = 13;
+    private static final int CLASS_END = 14;
+
+    private static final int NULL = -1;
+
+    private final int[] codes;
+    private final Object[] constants;
+
+    /**
+     * Record the given reader's class. Must be called on the compiler thread.
+     *
+     * @param reader reader
+     * @return tape
+     */
+    public static MirrorClassTape record(MirrorClassReader reader) {
+        return record(reader, 0, null);
+    }
+
+    /**
+     * Record the given reader's class. Must be called on the compiler thread.
+     *
+     * @param reader reader
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param memberFilter member filter or {@literal null} - see {@link MirrorClassReader#accept(ClassVisitor, int, Predicate)}
+     * @return tape
+     */
+    public static MirrorClassTape record(MirrorClassReader reader, int parsingOptions, Predicate<? super Element> memberFilter) {
+        Recorder recorder = new Recorder();
+        reader.accept(recorder, parsingOptions, memberFilter);
+        return new MirrorClassTape(Arrays.copyOf(recorder.codes, recorder.size), recorder.constants.toArray());
+    }
+
+    /**
+     * Makes the given visitor visit the recorded class. Can be called from any thread and any number of times.
+     *
+     * @param classVisitor the visitor that must visit this class.
+     */
+    public void accept(ClassVisitor classVisitor) {
+        int position = 0;
+        while (position < codes.length) {
+            int code = codes[position];
+            switch (code) {
+                case VISIT: {
+                    int interfaceCount = codes[position + 6];
+                    String[] interfaces = null;
+                    if (interfaceCount != NULL) {
+                        interfaces = new String[interfaceCount];
+                        for (int i = 0; i < interfaceCount; ++i) {
+                            interfaces[i] = string(codes[position + 7 + i]);
+                        }
+                    }
+                    classVisitor.visit(codes[position + 1], codes[position + 2], string(codes[position + 3]), string(codes[position + 4]), string(codes[position + 5]), interfaces);
+                    position += 7 + Math.max(interfaceCount, 0);
+                    break;
+                }
+
+                case ANNOTATION: {
+                    position = acceptValues(classVisitor.visitAnnotation(string(codes[position + 2]), codes[position + 3] != 0), position + 4, codes[position + 1]);
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    position = acceptValues(classVisitor.visitTypeAnnotation(codes[position + 2], (TypePath) constant(codes[position + 3]), string(codes[position + 4]), codes[position + 5] != 0), position + 6, codes[position + 1]);
+                    break;
+                }
+
+                case FIELD: {
+                    FieldVisitor fieldVisitor = classVisitor.visitField(codes[position + 2], string(codes[position + 3]), string(codes[position + 4]), string(codes[position + 5]), constant(codes[position + 6]));
+                    acceptField(fieldVisitor, position + 7, codes[position + 1]);
+                    position = codes[position + 1];
+                    break;
+                }
+
+                case METHOD: {
+                    int exceptionCount = codes[position + 6];
+                    String[] exceptions = null;
+                    if (exceptionCount != NULL) {
+                        exceptions = new String[exceptionCount];
+                        for (int i = 0; i < exceptionCount; ++i) {
+                            exceptions[i] = string(codes[position + 7 + i]);
+                        }
+                    }
+                    MethodVisitor methodVisitor = classVisitor.visitMethod(codes[position + 2], string(codes[position + 3]), string(codes[position + 4]), string(codes[position + 5]), exceptions);
+                    acceptMethod(methodVisitor, position + 7 + Math.max(exceptionCount, 0), codes[position + 1]);
+                    position = codes[position + 1];
+                    break;
+                }
+
+                case CLASS_END: {
+                    classVisitor.visitEnd();
+                    ++position;
+                    break;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of int codes in the tape
+     *
+     * @return size
+     */
+    public int getCodeSize() {
+        return codes.length;
+    }
+
+    /**
+     * Returns the number of entries in the constant table
+     *
+     * @return count
+     */
+    public int getConstantCount() {
+        return constants.length;
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorClassTape{" + "codes=" + codes.length + ", constants=" + constants.length + '}';
+    }
+
+    private MirrorClassTape(int[] codes, Object[] constants) {
+        this.codes = codes;
+        this.constants = constants;
+    }
+
+    private void acceptField(FieldVisitor fieldVisitor, int position, int end) {
+        if (fieldVisitor == null) {
+            return;
+        }
+        while (position < end) {
+            int code = codes[position];
+            switch (code) {
+                case ANNOTATION: {
+                    position = acceptValues(fieldVisitor.visitAnnotation(string(codes[position + 2]), codes[position + 3] != 0), position + 4, codes[position + 1]);
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    position = acceptValues(fieldVisitor.visitTypeAnnotation(codes[position + 2], (TypePath) constant(codes[position + 3]), string(codes[position + 4]), codes[position + 5] != 0), position + 6, codes[position + 1]);
+                    break;
+                }
+
+                case MEMBER_END: {
+                    fieldVisitor.visitEnd();
+                    ++position;
+                    break;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + position);
+                }
+            }
+        }
+    }
+
+    private void acceptMethod(MethodVisitor methodVisitor, int position, int end) {
+        if (methodVisitor == null) {
+            return;
+        }
+        while (position < end) {
+            int code = codes[position];
+            switch (code) {
+                case ANNOTATION: {
+                    position = acceptValues(methodVisitor.visitAnnotation(string(codes[position + 2]), codes[position + 3] != 0), position + 4, codes[position + 1]);
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    position = acceptValues(methodVisitor.visitTypeAnnotation(codes[position + 2], (TypePath) constant(codes[position + 3]), string(codes[position + 4]), codes[position + 5] != 0), position + 6, codes[position + 1]);
+                    break;
+                }
+
+                case PARAMETER_ANNOTATION: {
+                    position = acceptValues(methodVisitor.visitParameterAnnotation(codes[position + 2], string(codes[position + 3]), codes[position + 4] != 0), position + 5, codes[position + 1]);
+                    break;
+                }
+
+                case ANNOTATION_DEFAULT: {
+                    position = acceptValues(methodVisitor.visitAnnotationDefault(), position + 2, codes[position + 1]);
+                    break;
+                }
+
+                case MEMBER_END: {
+                    methodVisitor.visitEnd();
+                    ++position;
+                    break;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + position);
+                }
+            }
+        }
+    }
+
+    // returns the position after the block
+    private int acceptValues(AnnotationVisitor annotationVisitor, int position, int skipTo) {
+        if (annotationVisitor == null) {
+            return skipTo;
+        }
+        while (true) {
+            int code = codes[position];
+            switch (code) {
+                case VALUE: {
+                    annotationVisitor.visit(string(codes[position + 1]), MirrorClassSnapshot.copyValue(constant(codes[position + 2])));
+                    position += 3;
+                    break;
+                }
+
+                case ENUM: {
+                    annotationVisitor.visitEnum(string(codes[position + 1]), string(codes[position + 2]), string(codes[position + 3]));
+                    position += 4;
+                    break;
+                }
+
+                case NESTED_ANNOTATION: {
+                    position = acceptValues(annotationVisitor.visitAnnotation(string(codes[position + 2]), string(codes[position + 3])), position + 4, codes[position + 1]);
+                    break;
+                }
+
+                case ARRAY: {
+                    position = acceptValues(annotationVisitor.visitArray(string(codes[position + 2])), position + 3, codes[position + 1]);
+                    break;
+                }
+
+                case VALUES_END: {
+                    annotationVisitor.visitEnd();
+                    return position + 1;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + position);
+                }
+            }
+        }
+    }
+
+    private String string(int index) {
+        return (String) constant(index);
+    }
+
+    private Object constant(int index) {
+        return (index != NULL) ? constants[index] : null;
+    }
+
+    private static class Recorder extends ClassVisitor {
+        private int[] codes = new int[256];
+        private int size;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> constantIndexes = new HashMap<>();
+        private int openMember = NULL;    // position of the open field/method's skip slot
+
+        Recorder() {
+            super(Opcodes.ASM7);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            add(VISIT, version, access, constant(name), constant(signature), constant(superName), (interfaces != null) ? interfaces.length : NULL);
+            if (interfaces != null) {
+                for (String interfaceName : interfaces) {
+                    add(constant(interfaceName));
+                }
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            closeMember();
+            return startAnnotation(ANNOTATION, constant(descriptor), visible ? 1 : 0);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            closeMember();
+            return startAnnotation(TYPE_ANNOTATION, typeRef, constant(typePath), constant(descriptor), visible ? 1 : 0);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            closeMember();
+            openMember = size + 1;
+            add(FIELD, NULL, access, constant(name), constant(descriptor), constant(signature), constant(value));
+            return new FieldVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return startAnnotation(ANNOTATION, constant(descriptor), visible ? 1 : 0);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                    return startAnnotation(TYPE_ANNOTATION, typeRef, constant(typePath), constant(descriptor), visible ? 1 : 0);
+                }
+
+                @Override
+                public void visitEnd() {
+                    add(MEMBER_END);
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            closeMember();
+            openMember = size + 1;
+            add(METHOD, NULL, access, constant(name), constant(descriptor), constant(signature), (exceptions != null) ? exceptions.length : NULL);
+            if (exceptions != null) {
+                for (String exception : exceptions) {
+                    add(constant(exception));
+                }
+            }
+            return new MethodVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    return startAnnotation(ANNOTATION_DEFAULT);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    return startAnnotation(ANNOTATION, constant(descriptor), visible ? 1 : 0);
+                }
+
+                @Override
+                public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                    return startAnnotation(TYPE_ANNOTATION, typeRef, constant(typePath), constant(descriptor), visible ? 1 : 0);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                    return startAnnotation(PARAMETER_ANNOTATION, parameter, constant(descriptor), visible ? 1 : 0);
+                }
+
+                @Override
+                public void visitEnd() {
+                    add(MEMBER_END);
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            closeMember();
+            add(CLASS_END);
+        }
+
+        // fields/methods don't have to be ended so they are closed by the next class level event
+        private void closeMember() {
+            if (openMember != NULL) {
+                codes[openMember] = size;
+                openMember = NULL;
+            }
+        }
+
+        private AnnotationVisitor startAnnotation(int code, int... arguments) {
+            int skipSlot = size + 1;
+            add(code, NULL);
+            add(arguments);
+            return new ValuesRecorder(skipSlot);
+        }
+
+        private class ValuesRecorder extends AnnotationVisitor {
+            private final int skipSlot;
+
+            ValuesRecorder(int skipSlot) {
+                super(Opcodes.ASM7);
+                this.skipSlot = skipSlot;
+            }
+
+            @Override
+            public void visit(String name, Object value) {
+                add(VALUE, constant(name), constant(MirrorClassSnapshot.copyValue(value)));
+            }
+
+            @Override
+            public void visitEnum(String name, String descriptor, String value) {
+                add(ENUM, constant(name), constant(descriptor), constant(value));
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+                return startAnnotation(NESTED_ANNOTATION, constant(name), constant(descriptor));
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                return startAnnotation(ARRAY, constant(name));
+            }
+
+            @Override
+            public void visitEnd() {
+                add(VALUES_END);
+                codes[skipSlot] = size;
+            }
+        }
+
+        private int constant(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+            if (value.getClass().isArray()) {
+                // arrays don't have value equality
+                constants.add(value);
+                return constants.size() - 1;
+            }
+            Integer index = constantIndexes.get(value);
+            if (index == null) {
+                index = constants.size();
+                constants.add(value);
+                constantIndexes.put(value, index);
+            }
+            return index;
+        }
+
+        private void add(int... values) {
+            if ((size + values.length) > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(codes.length * 2, size + values.length));
+            }
+            System.arraycopy(values, 0, codes, size, values.length);
+            size += values.length;
+        }
+    }
+}
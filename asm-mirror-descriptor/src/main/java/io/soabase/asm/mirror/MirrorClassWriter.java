@@ -0,0 +1,100 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * A {@link ClassWriter} that can be used with {@link ClassWriter#COMPUTE_FRAMES} during annotation processing.
+ * {@link #getCommonSuperClass(String, String)} is answered from a {@link MirrorTypeHierarchy} instead of loading
+ * classes (which usually do not exist yet or are not on the processor classpath). Visit the class via {@link #asClassVisitor()}
+ * so that the class being written is registered with the hierarchy. Share a hierarchy between writers to reuse it.
+ */
+public class MirrorClassWriter extends ClassWriter {
+    private final MirrorTypeHierarchy typeHierarchy;
+
+    /**
+     * @param processingEnv current processing environment
+     * @param flags option flags - see {@link ClassWriter#ClassWriter(int)}
+     */
+    public MirrorClassWriter(ProcessingEnvironment processingEnv, int flags) {
+        this(new MirrorTypeHierarchy(processingEnv), flags);
+    }
+
+    /**
+     * @param typeHierarchy the hierarchy to use
+     * @param flags option flags - see {@link ClassWriter#ClassWriter(int)}
+     */
+    public MirrorClassWriter(MirrorTypeHierarchy typeHierarchy, int flags) {
+        super(flags);
+        this.typeHierarchy = typeHierarchy;
+    }
+
+    /**
+     * @param classReader the {@link ClassReader} used to read the original class - see {@link ClassWriter#ClassWriter(ClassReader, int)}
+     * @param typeHierarchy the hierarchy to use
+     * @param flags option flags - see {@link ClassWriter#ClassWriter(int)}
+     */
+    public MirrorClassWriter(ClassReader classReader, MirrorTypeHierarchy typeHierarchy, int flags) {
+        super(classReader, flags);
+        this.typeHierarchy = typeHierarchy;
+    }
+
+    /**
+     * Return the hierarchy used by this writer
+     *
+     * @return hierarchy
+     */
+    public MirrorTypeHierarchy getTypeHierarchy() {
+        return typeHierarchy;
+    }
+
+    /**
+     * Returns a visitor that registers the class being written with the hierarchy (see {@link MirrorTypeHierarchy#register(String, String, String[], boolean)})
+     * and then delegates to this writer. Note: {@link ClassWriter#visit(int, int, String, String, String, String[])} is final. If the class
+     * is visited directly on this writer and computed frames can merge the class being written with other types (e.g. {@code this}
+     * and another type at a branch target) the class must be registered manually.
+     *
+     * @return registering visitor
+     */
+    public ClassVisitor asClassVisitor() {
+        return new ClassVisitor(Opcodes.ASM7, this) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                typeHierarchy.register(name, superName, interfaces, (access & Opcodes.ACC_INTERFACE) != 0);
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+        };
+    }
+
+    /**
+     * Returns the common super type of the two given types using the {@link MirrorTypeHierarchy}
+     *
+     * @param type1 the internal name of a class.
+     * @param type2 the internal name of another class.
+     * @return the internal name of the common super class of the two given classes.
+     * @throws TypeNotPresentException if a type is not known to the hierarchy
+     */
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        return typeHierarchy.getCommonSuperClass(type1, type2);
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.Type;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reusable version of {@link MirrorType} and {@link SignatureMirrorType}. The static methods of those classes
+ * create a new {@link MirrorSignatures} for each call. A context is bound to one {@link ProcessingEnvironment}
+ * and shares a single (caching) MirrorSignatures. The {@link Type}s it creates are also cached. Create one context
+ * per processing round (or per processor) and use it for all lookups. Note: like the javac model itself, contexts
+ * are not thread safe.
+ */
+public class MirrorContext {
+    private final MirrorSignatures mirrorSignatures;
+    private final Map<String, Type> descriptorTypes = new HashMap<>();
+    private final Map<Element, Type> elementTypes = new HashMap<>();
+    private final Map<Element, Type> returnTypes = new HashMap<>();
+
+    /**
+     * New context with a new caching {@link MirrorSignatures}
+     *
+     * @param processingEnv current processing environment
+     */
+    public MirrorContext(ProcessingEnvironment processingEnv) {
+        this(new MirrorSignatures(processingEnv, true));
+    }
+
+    /**
+     * New context that uses the given {@link MirrorSignatures}. Use this to share the signature
+     * cache with {@link MirrorClassReader}s, etc.
+     *
+     * @param mirrorSignatures signature generator to use
+     */
+    public MirrorContext(MirrorSignatures mirrorSignatures) {
+        this.mirrorSignatures = mirrorSignatures;
+    }
+
+    /**
+     * Return the processing environment this context is bound to
+     *
+     * @return processing environment
+     */
+    public ProcessingEnvironment getProcessingEnv() {
+        return mirrorSignatures.getProcessingEnv();
+    }
+
+    /**
+     * Return the shared signature generator
+     *
+     * @return signature generator
+     */
+    public MirrorSignatures getMirrorSignatures() {
+        return mirrorSignatures;
+    }
+
+    /**
+     * Return a new class reader for the given element that shares this context's signature generator
+     *
+     * @param element element
+     * @return class reader
+     */
+    public MirrorClassReader newClassReader(TypeElement element) {
+        return new MirrorClassReader(mirrorSignatures, element);
+    }
+
+    /**
+     * Returns the descriptor corresponding to the type mirror.
+     *
+     * @param typeMirror type mirror
+     * @return the descriptor corresponding to the given class.
+     */
+    public String getDescriptor(TypeMirror typeMirror) {
+        return mirrorSignatures.typeDescriptor(typeMirror);
+    }
+
+    /**
+     * Returns the {@link Type} corresponding to the given type descriptor. The same Type
+     * instance is returned for the same descriptor.
+     *
+     * @param spec a field or method type descriptor or type signature
+     * @return the {@link Type} corresponding to the given type descriptor.
+     */
+    public Type getType(String spec) {
+        return descriptorTypes.computeIfAbsent(spec, Type::getType);
+    }
+
+    /**
+     * Returns the {@link Type} corresponding to the type mirror.
+     *
+     * @param typeMirror type mirror
+     * @return the {@link Type} corresponding to the given type mirror.
+     */
+    public Type getType(TypeMirror typeMirror) {
+        return getType(getDescriptor(typeMirror));
+    }
+
+    /**
+     * Returns the {@link Type} corresponding to the element
+     *
+     * @param element element
+     * @return the {@link Type} corresponding to the given type element or null if element is invalid
+     */
+    public Type getType(Element element) {
+        Type type = elementTypes.get(element);
+        if (type == null) {
+            switch (element.getKind()) {
+                case ENUM:
+                case CLASS:
+                case INTERFACE: {
+                    type = getType(mirrorSignatures.typeDescriptor(element.asType()));
+                    break;
+                }
+
+                case METHOD:
+                case CONSTRUCTOR: {
+                    ExecutableElement executableElement = (ExecutableElement) element;
+                    type = getType(mirrorSignatures.methodTypeDescriptor(typeParameters(executableElement), parameters(executableElement), executableElement.getReturnType()));
+                    break;
+                }
+
+                default: {
+                    return null;
+                }
+            }
+            elementTypes.put(element, type);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the {@link Type}s corresponding to the given elements (see {@link #getType(Element)})
+     *
+     * @param elements elements
+     * @return list of types in the same order as the elements. Invalid elements have a {@literal null} entry.
+     */
+    public List<Type> getTypes(Collection<? extends Element> elements) {
+        List<Type> types = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            types.add(getType(element));
+        }
+        return types;
+    }
+
+    /**
+     * Returns the {@link Type} corresponding to the return type of the given method.
+     *
+     * @param method a method.
+     * @return the {@link Type} corresponding to the return type of the given method.
+     */
+    public Type getReturnType(ExecutableElement method) {
+        return returnTypes.computeIfAbsent(method, key -> getType(mirrorSignatures.returnTypeDescriptor(method.getReturnType())));
+    }
+
+    /**
+     * Returns the {@link Type}s corresponding to the return types of the given methods
+     *
+     * @param methods methods
+     * @return list of types in the same order as the methods
+     */
+    public List<Type> getReturnTypes(Collection<? extends ExecutableElement> methods) {
+        List<Type> types = new ArrayList<>(methods.size());
+        for (ExecutableElement method : methods) {
+            types.add(getReturnType(method));
+        }
+        return types;
+    }
+
+    /**
+     * Returns the signature corresponding to the type mirror.
+     *
+     * @param typeMirror type mirror
+     * @return the signature corresponding to the given type mirror.
+     */
+    public String getSignature(TypeMirror typeMirror) {
+        return mirrorSignatures.typeSignature(typeMirror);
+    }
+
+    /**
+     * Returns the signature corresponding to the element
+     *
+     * @param element element
+     * @return the signature corresponding to the given type element or null if element is invalid
+     */
+    public String getSignature(Element element) {
+        switch (element.getKind()) {
+            case ENUM:
+            case CLASS:
+            case INTERFACE: {
+                return mirrorSignatures.classSignature(element.asType());
+            }
+
+            case METHOD:
+            case CONSTRUCTOR: {
+                ExecutableElement executableElement = (ExecutableElement) element;
+                return mirrorSignatures.methodTypeSignature(typeParameters(executableElement), parameters(executableElement), executableElement.getReturnType());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the signatures corresponding to the given elements (see {@link #getSignature(Element)})
+     *
+     * @param elements elements
+     * @return list of signatures in the same order as the elements. Invalid elements have a {@literal null} entry.
+     */
+    public List<String> getSignatures(Collection<? extends Element> elements) {
+        List<String> signatures = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            signatures.add(getSignature(element));
+        }
+        return signatures;
+    }
+
+    /**
+     * Returns the signature corresponding to the return type of the given method.
+     *
+     * @param method a method.
+     * @return the signature corresponding to the return type of the given method.
+     */
+    public String getReturnTypeSignature(ExecutableElement method) {
+        return mirrorSignatures.returnTypeSignature(method.getReturnType());
+    }
+
+    private static TypeMirror[] typeParameters(ExecutableElement executableElement) {
+        return executableElement.getTypeParameters().stream()
+                .map(Element::asType)
+                .toArray(TypeMirror[]::new);
+    }
+
+    private static TypeMirror[] parameters(ExecutableElement executableElement) {
+        return executableElement.getParameters().stream()
+                .map(Element::asType)
+                .toArray(TypeMirror[]::new);
+    }
+}
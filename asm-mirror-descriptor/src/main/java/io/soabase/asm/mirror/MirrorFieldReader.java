@@ -36,7 +36,11 @@ public class MirrorFieldReader {
     private final MirrorAnnotationReader annotationReader;
 
     public MirrorFieldReader(ProcessingEnvironment processingEnv) {
-        this(new MirrorSignatures(processingEnv), new MirrorAnnotationReader(processingEnv));
+        this(new MirrorSignatures(processingEnv));
+    }
+
+    public MirrorFieldReader(MirrorSignatures mirrorSignatures) {
+        this(mirrorSignatures, new MirrorAnnotationReader(mirrorSignatures.getProcessingEnv(), mirrorSignatures));
     }
 
     public MirrorFieldReader(MirrorSignatures mirrorSignatures, MirrorAnnotationReader annotationReader) {
@@ -75,7 +79,20 @@ public class MirrorFieldReader {
      * @param field the field
      */
     public void readField(ClassVisitor classVisitor, VariableElement field) {
-        readField(classVisitor::visitField, field);
+        readField(classVisitor::visitField, field, 0);
+    }
+
+    /**
+     * Makes the given visitor visit the given field.
+     *
+     * @param classVisitor the visitor that must visit this field. Only {@link ClassVisitor#visitField(int, String, String, String, Object)}
+     *                     will be called
+     * @param field the field
+     * @param parsingOptions {@link MirrorClassReader#SKIP_ANNOTATIONS}, {@link MirrorClassReader#SKIP_TYPE_ANNOTATIONS} and/or
+     *                       {@link MirrorClassReader#SKIP_SIGNATURES}. Other options are ignored.
+     */
+    public void readField(ClassVisitor classVisitor, VariableElement field, int parsingOptions) {
+        readField(classVisitor::visitField, field, parsingOptions);
     }
 
     /**
@@ -85,15 +102,56 @@ public class MirrorFieldReader {
      * @param field the field
      */
     public void readField(VisitFieldProc visitFieldProc, VariableElement field) {
-        int accessFlags = Util.modifiersToAccessFlags(field.getModifiers());
+        readField(visitFieldProc, field, 0);
+    }
+
+    /**
+     * Makes the given visitor visit the given field.
+     *
+     * @param visitFieldProc visit field proc
+     * @param field the field
+     * @param parsingOptions {@link MirrorClassReader#SKIP_ANNOTATIONS}, {@link MirrorClassReader#SKIP_TYPE_ANNOTATIONS} and/or
+     *                       {@link MirrorClassReader#SKIP_SIGNATURES}. Other options are ignored.
+     */
+    public void readField(VisitFieldProc visitFieldProc, VariableElement field, int parsingOptions) {
+        int accessFlags = fieldAccess(field);
         String name = field.getSimpleName().toString();
         TypeMirror type = field.asType();
         String descriptor = mirrorSignatures.typeDescriptor(type);
-        String signature = Util.hasTypeArguments(field) ? mirrorSignatures.typeSignature(type) : null;
-        Object constantValue = field.getConstantValue();
+        String signature = ((parsingOptions & MirrorClassReader.SKIP_SIGNATURES) == 0) && Util.hasTypeArguments(field) ? mirrorSignatures.typeSignature(type) : null;
+        Object constantValue = constantValue(field);
         FieldVisitor fieldVisitor = visitFieldProc.visitField(accessFlags, name, descriptor, signature, constantValue);
         if (fieldVisitor != null) {
+            readFieldAnnotations(fieldVisitor, field, parsingOptions);
+            fieldVisitor.visitEnd();
+        }
+    }
+
+    static int fieldAccess(VariableElement field) {
+        return Util.modifiersToAccessFlags(field.getModifiers()) | Util.kindToAccessFlags(field.getKind());
+    }
+
+    static Object constantValue(VariableElement field) {
+        // class files (and ClassReader) use ints for boolean, byte, char and short constants
+        Object value = field.getConstantValue();
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        if (value instanceof Character) {
+            return (int) (Character) value;
+        }
+        if ((value instanceof Byte) || (value instanceof Short)) {
+            return ((Number) value).intValue();
+        }
+        return value;
+    }
+
+    // also used by MirrorMember which generates the visitField() arguments itself
+    void readFieldAnnotations(FieldVisitor fieldVisitor, VariableElement field, int parsingOptions) {
+        if ((parsingOptions & MirrorClassReader.SKIP_ANNOTATIONS) == 0) {
             field.getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationValue(annotation, fieldVisitor::visitAnnotation));
+        }
+        if ((parsingOptions & MirrorClassReader.SKIP_TYPE_ANNOTATIONS) == 0) {
             field.asType().getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationTypeValue(annotation, TypeReference.FIELD, fieldVisitor::visitTypeAnnotation));
         }
     }
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes ABI stubs (see {@link MirrorStubGenerator}) to a "header" jar that can be used as a compile classpath
+ * entry. The output is deterministic: entries are sorted by name and have a fixed timestamp so the same ABI always
+ * produces the same bytes. E.g. from a processor:
+ *
+ * <pre>
+ * try (OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "abi.jar").openOutputStream()) {
+ *     new MirrorHeaderJar(processingEnv).write(out, elements);
+ * }
+ * </pre>
+ */
+public class MirrorHeaderJar {
+    /**
+     * Timestamp of every entry - the earliest DOS date (1980-01-01 00:00) in the local time zone
+     */
+    public static final long ENTRY_TIME = new GregorianCalendar(1980, 0, 1, 0, 0, 0).getTimeInMillis();
+
+    private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\nCreated-By: asm-mirror-descriptor\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private final MirrorStubGenerator stubGenerator;
+
+    /**
+     * New header jar writer that uses a new {@link MirrorStubGenerator}
+     *
+     * @param processingEnv current processing environment
+     */
+    public MirrorHeaderJar(ProcessingEnvironment processingEnv) {
+        this(new MirrorStubGenerator(processingEnv));
+    }
+
+    /**
+     * New header jar writer that uses the given stub generator
+     *
+     * @param stubGenerator generator
+     */
+    public MirrorHeaderJar(MirrorStubGenerator stubGenerator) {
+        this.stubGenerator = stubGenerator;
+    }
+
+    /**
+     * Generate stubs for the given elements (and their member types) and write them as a jar to the given stream.
+     * The stream is not closed.
+     *
+     * @param out stream
+     * @param elements elements
+     * @throws IOException errors
+     */
+    public void write(OutputStream out, Collection<? extends TypeElement> elements) throws IOException {
+        write(out, stubGenerator.generateAll(elements));
+    }
+
+    /**
+     * Write the given stubs as a jar to the given stream. The stream is not closed.
+     *
+     * @param out stream
+     * @param stubs map of internal name to class file bytes (e.g. from {@link MirrorStubGenerator#generateAll(Collection)})
+     * @throws IOException errors
+     */
+    public static void write(OutputStream out, Map<String, byte[]> stubs) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        stubs.forEach((name, bytes) -> entries.put(name + ".class", bytes));
+        JarOutputStream jarOut = new JarOutputStream(out);
+        writeEntry(jarOut, JarFile.MANIFEST_NAME, MANIFEST);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            writeEntry(jarOut, entry.getKey(), entry.getValue());
+        }
+        jarOut.finish();
+    }
+
+    private static void writeEntry(JarOutputStream jarOut, String name, byte[] bytes) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+        zipEntry.setTime(ENTRY_TIME);
+        jarOut.putNextEntry(zipEntry);
+        jarOut.write(bytes);
+        jarOut.closeEntry();
+    }
+}
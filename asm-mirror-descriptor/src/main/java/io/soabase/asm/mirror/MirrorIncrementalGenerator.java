@@ -0,0 +1,304 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Incremental class file generation. Before generating a class for a type, a structural hash of the type is computed
+ * from the mirror model: the {@link MirrorAbiHasher} hashes of the type and of all of its supertypes, salted with a
+ * generator id (change the id when the generator itself changes). The hash is kept in a small state file in
+ * {@link StandardLocation#CLASS_OUTPUT} (one per generated class, see {@link #STATE_DIRECTORY}). When the hash is
+ * unchanged and the previous output is intact, the previous bytes are reused and the generator isn't run. Output
+ * that is identical to the previous output is never rewritten so timestamps don't change and downstream builds
+ * aren't triggered.<br><br>
+ * Every file is created with the type as its single originating element so processors that use this class can be
+ * registered as Gradle "isolating" processors. Note: the hash does not include private members, code or member
+ * types - generators that depend on them can't use this class. ABI hashes are cached for the life of the
+ * instance - create a new instance for each round.
+ */
+public class MirrorIncrementalGenerator {
+    /**
+     * Directory (in {@link StandardLocation#CLASS_OUTPUT}) of the state files. The state of a generated class is
+     * in <code>STATE_DIRECTORY/generator id/class name</code>
+     */
+    public static final String STATE_DIRECTORY = "META-INF/mirror-incremental";
+
+    private final MirrorBatchReader batchReader;
+    private final Filer filer;
+    private final String generatorId;
+    private final Types types;
+    private final Map<String, MirrorAbiHasher.Hash> abiHashes = new HashMap<>();
+    private int reusedCount = 0;
+    private int identicalCount = 0;
+    private int writtenCount = 0;
+
+    /**
+     * What happened to a generated class
+     */
+    public enum Status {
+        /**
+         * The type did not change - the previous output was reused without running the generator
+         */
+        REUSED,
+
+        /**
+         * The type changed but the generator produced the same bytes as before - the output was not rewritten
+         */
+        IDENTICAL,
+
+        /**
+         * The output was written
+         */
+        WRITTEN
+    }
+
+    /**
+     * The result of {@link #generateClass(TypeElement, String, Supplier)}
+     */
+    public static class Result {
+        private final Status status;
+        private final byte[] bytes;
+
+        public Result(Status status, byte[] bytes) {
+            this.status = status;
+            this.bytes = bytes;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Return the class file bytes - either newly generated or the reused previous output
+         *
+         * @return bytes
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + "status=" + status + ", length=" + bytes.length + '}';
+        }
+    }
+
+    /**
+     * New generator that uses the processing environment's filer
+     *
+     * @param processingEnv current processing environment
+     * @param generatorId id of the generator - a valid file name. Change it when the generator changes.
+     */
+    public MirrorIncrementalGenerator(ProcessingEnvironment processingEnv, String generatorId) {
+        this(new MirrorBatchReader(processingEnv), processingEnv.getFiler(), generatorId);
+    }
+
+    /**
+     * New generator
+     *
+     * @param batchReader reader used to hash types
+     * @param filer filer for reading/writing output and state
+     * @param generatorId id of the generator - a valid file name. Change it when the generator changes.
+     */
+    public MirrorIncrementalGenerator(MirrorBatchReader batchReader, Filer filer, String generatorId) {
+        this.batchReader = batchReader;
+        this.filer = filer;
+        this.generatorId = generatorId;
+        this.types = batchReader.getMirrorSignatures().getProcessingEnv().getTypeUtils();
+    }
+
+    /**
+     * Generate the given class unless the type hasn't changed since the previous generation
+     *
+     * @param element the type the class is generated from (it is the originating element of the output)
+     * @param className fully qualified (binary) name of the generated class
+     * @param generator generates the class file bytes
+     * @return result
+     */
+    public Result generateClass(TypeElement element, String className, Supplier<byte[]> generator) {
+        MirrorAbiHasher.Hash inputHash = structuralHash(element);
+        String statePath = STATE_DIRECTORY + "/" + generatorId + "/" + className;
+        State previousState = State.parse(read("", statePath));
+        int lastDot = className.lastIndexOf('.');
+        String packageName = (lastDot < 0) ? "" : className.substring(0, lastDot);
+        byte[] previousBytes = read(packageName, className.substring(lastDot + 1) + ".class");
+
+        if ((previousState != null) && (previousBytes != null) && previousState.inputHash.equals(inputHash) && previousState.isOutput(previousBytes)) {
+            ++reusedCount;
+            return new Result(Status.REUSED, previousBytes);
+        }
+
+        byte[] bytes = generator.get();
+        Status status;
+        if (Arrays.equals(previousBytes, bytes)) {
+            ++identicalCount;
+            status = Status.IDENTICAL;
+        } else {
+            try (OutputStream out = filer.createClassFile(className, element).openOutputStream()) {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ++writtenCount;
+            status = Status.WRITTEN;
+        }
+
+        try (Writer out = filer.createResource(StandardLocation.CLASS_OUTPUT, "", statePath, element).openWriter()) {
+            out.write(new State(inputHash, checksum(bytes), bytes.length).toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Result(status, bytes);
+    }
+
+    /**
+     * Return the structural hash of the given type: the ABI hashes of the type and of its supertypes (recursively)
+     * salted with the generator id
+     *
+     * @param element type
+     * @return hash
+     */
+    public MirrorAbiHasher.Hash structuralHash(TypeElement element) {
+        List<MirrorAbiHasher.Hash> hashes = new ArrayList<>();
+        addHashes(element, hashes, new HashSet<>());
+        return MirrorAbiHasher.combine(generatorId, hashes);
+    }
+
+    /**
+     * Return the number of classes whose previous output was reused
+     *
+     * @return count
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Return the number of classes that were generated but were identical to the previous output
+     *
+     * @return count
+     */
+    public int getIdenticalCount() {
+        return identicalCount;
+    }
+
+    /**
+     * Return the number of classes that were written
+     *
+     * @return count
+     */
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    private void addHashes(TypeElement element, List<MirrorAbiHasher.Hash> hashes, Set<String> seen) {
+        String name = batchReader.getMirrorSignatures().internalName(element);
+        if (seen.add(name)) {
+            hashes.add(abiHashes.computeIfAbsent(name, __ -> MirrorAbiHasher.hash(batchReader.newClassReader(element))));
+            for (TypeMirror supertype : types.directSupertypes(element.asType())) {
+                Element supertypeElement = types.asElement(supertype);
+                if (supertypeElement instanceof TypeElement) {
+                    addHashes((TypeElement) supertypeElement, hashes, seen);
+                }
+            }
+        }
+    }
+
+    // previous output/state - null if it doesn't exist (or can't be read)
+    private byte[] read(String packageName, String relativeName) {
+        try {
+            FileObject fileObject = filer.getResource(StandardLocation.CLASS_OUTPUT, packageName, relativeName);
+            try (InputStream in = fileObject.openInputStream()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) >= 0) {
+                    bytes.write(buffer, 0, count);
+                }
+                return bytes.toByteArray();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    // state file: "<input hash> <output crc> <output length>"
+    private static class State {
+        private final MirrorAbiHasher.Hash inputHash;
+        private final long outputChecksum;
+        private final int outputLength;
+
+        State(MirrorAbiHasher.Hash inputHash, long outputChecksum, int outputLength) {
+            this.inputHash = inputHash;
+            this.outputChecksum = outputChecksum;
+            this.outputLength = outputLength;
+        }
+
+        static State parse(byte[] bytes) {
+            if (bytes == null) {
+                return null;
+            }
+            String[] parts = new String(bytes, StandardCharsets.UTF_8).trim().split(" ");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new State(MirrorAbiHasher.Hash.parse(parts[0]), Long.parseLong(parts[1], 16), Integer.parseInt(parts[2]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        boolean isOutput(byte[] bytes) {
+            return (bytes.length == outputLength) && (checksum(bytes) == outputChecksum);
+        }
+
+        @Override
+        public String toString() {
+            return inputHash + " " + Long.toHexString(outputChecksum) + " " + outputLength + "\n";
+        }
+    }
+}
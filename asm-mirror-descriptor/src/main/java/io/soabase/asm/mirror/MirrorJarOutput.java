@@ -0,0 +1,140 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.StandardLocation;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * A {@link MirrorClassOutput} that packs generated classes into a single jar (e.g. in
+ * {@link StandardLocation#CLASS_OUTPUT}) instead of writing a file per class. Entries are written sequentially
+ * through one buffered stream and are stored uncompressed (the CRC is computed up front) so writing is little more
+ * than copying bytes. When closed, a {@link #INDEX_NAME} jar index listing the jar's packages is added so class
+ * loaders that support jar indexes (Java 8 through 17 {@code URLClassLoader}) don't have to scan the jar. Entries
+ * have a fixed timestamp ({@link MirrorHeaderJar#ENTRY_TIME}) so the same classes written in the same order produce
+ * the same bytes.<br><br>
+ * The jar is a single output file so the originating elements passed to {@link #writeClass(String, byte[], Element...)}
+ * are ignored - pass all originating elements when creating the jar (i.e. processors using a jar output are
+ * "aggregating" for incremental builds). Instances are not thread safe - use from the compiler thread (e.g. via
+ * {@link MirrorClassEmitter}) and close at the end of processing.
+ */
+public class MirrorJarOutput implements MirrorClassOutput {
+    /**
+     * Name of the jar index entry
+     */
+    public static final String INDEX_NAME = "META-INF/INDEX.LIST";
+
+    private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\nCreated-By: asm-mirror-descriptor\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JarOutputStream jarOut;
+    private final String jarName;
+    private final Set<String> packages = new TreeSet<>();   // jar index entries
+    private final CRC32 crc = new CRC32();
+    private int classCount = 0;
+    private boolean isClosed = false;
+
+    /**
+     * Create the jar as a resource in {@link StandardLocation#CLASS_OUTPUT}. Note: the jar is written through the
+     * Filer's stream - javac 9+ passes the buffered writes on as is but javac 8's stream writes them to the file a
+     * byte at a time.
+     *
+     * @param filer filer
+     * @param jarName the jar's file name (e.g. {@code generated.jar})
+     * @param originatingElements the elements all of the jar's classes are generated from
+     * @throws IOException errors
+     */
+    public MirrorJarOutput(Filer filer, String jarName, Element... originatingElements) throws IOException {
+        this(filer.createResource(StandardLocation.CLASS_OUTPUT, "", jarName, originatingElements).openOutputStream(), jarName);
+    }
+
+    /**
+     * @param out stream to write the jar to - closed by {@link #close()}
+     * @param jarName the jar's file name - used in the jar index
+     * @throws IOException errors
+     */
+    public MirrorJarOutput(OutputStream out, String jarName) throws IOException {
+        this.jarOut = new JarOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.jarName = jarName;
+        writeEntry(JarFile.MANIFEST_NAME, MANIFEST);
+    }
+
+    @Override
+    public void writeClass(String className, byte[] bytes, Element... originatingElements) throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Jar is closed");
+        }
+        String internalName = className.replace('.', '/');
+        String entryName = internalName + ".class";
+        int lastSlash = internalName.lastIndexOf('/');
+        packages.add((lastSlash > 0) ? internalName.substring(0, lastSlash) : entryName);   // jar indexes list root entries by name
+        writeEntry(entryName, bytes);
+        ++classCount;
+    }
+
+    /**
+     * Return the number of classes written
+     *
+     * @return count
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Write the jar index and close the jar
+     *
+     * @throws IOException errors
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            try {
+                StringBuilder index = new StringBuilder("JarIndex-Version: 1.0\n\n").append(jarName).append('\n');
+                packages.forEach(packageName -> index.append(packageName).append('\n'));
+                writeEntry(INDEX_NAME, index.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+            } finally {
+                jarOut.close();
+            }
+        }
+    }
+
+    private void writeEntry(String name, byte[] bytes) throws IOException {
+        crc.reset();
+        crc.update(bytes);
+        ZipEntry zipEntry = new ZipEntry(name);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(bytes.length);
+        zipEntry.setCompressedSize(bytes.length);
+        zipEntry.setCrc(crc.getValue());
+        zipEntry.setTime(MirrorHeaderJar.ENTRY_TIME);
+        jarOut.putNextEntry(zipEntry);
+        jarOut.write(bytes);
+        jarOut.closeEntry();
+    }
+}
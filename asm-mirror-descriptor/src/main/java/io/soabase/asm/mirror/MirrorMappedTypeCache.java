@@ -0,0 +1,345 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A persistent {@link MirrorTypeCache} in a memory mapped, append-only file that can be shared (read-mostly) by
+ * parallel compiler processes, e.g. on a build agent. Records are keyed by a classpath fingerprint (see
+ * {@link #fingerprint(Collection)}) plus the type's internal name so a changed classpath simply uses new records.
+ * Appends are serialized between processes with a file lock and become visible to other processes when the
+ * header's end offset is updated - readers pick up new records on a cache miss. When the file's capacity is
+ * reached new types are no longer stored.<br><br>
+ * Only types accepted by the <code>isCacheable</code> predicate are cached: exclude the types being compiled (e.g. with
+ * {@link MirrorTypeCache#excludingPackagesOf(Collection)}) and any classpath directories whose classes change but
+ * that aren't part of the fingerprint. Instances are thread safe.
+ */
+public class MirrorMappedTypeCache implements MirrorTypeCache, Closeable {
+    /**
+     * Default capacity of new cache files
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4d54434d;   // "MTCM"
+    private static final int FORMAT_VERSION = 2;
+    private static final int END_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+
+    // FileChannel locks are per JVM - instances for the same file in one JVM also synchronize on a shared object
+    private static final Map<String, Object> fileMutexes = new ConcurrentHashMap<>();
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Object fileMutex;
+    private final String fingerprint;
+    private final Predicate<String> isCacheable;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final Map<String, MirrorCachedType> types = new HashMap<>();
+    private int scannedEnd = HEADER_SIZE;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long storeCount = 0;
+
+    /**
+     * Returns a fingerprint of the given classpath and of the running JDK (<code>java.home</code> and
+     * <code>java.version</code> - the platform classes aren't on the classpath). Jars are fingerprinted by the names,
+     * CRCs and sizes in their central directory (no entries are read), directories by the paths, sizes and
+     * modification times of their files.
+     *
+     * @param classpath classpath entries
+     * @return fingerprint (hex)
+     * @throws UncheckedIOException if a classpath entry cannot be read
+     */
+    public static String fingerprint(Collection<File> classpath) {
+        MessageDigest digest = newDigest();
+        update(digest, "java:" + System.getProperty("java.home") + ":" + System.getProperty("java.version"));
+        for (File entry : classpath) {
+            update(digest, "entry:" + entry.getAbsolutePath());
+            try {
+                if (entry.isDirectory()) {
+                    Path root = entry.toPath();
+                    try (Stream<Path> paths = Files.walk(root)) {
+                        List<Path> files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                        for (Path path : files) {
+                            update(digest, root.relativize(path) + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis());
+                        }
+                    }
+                } else if (entry.isFile()) {
+                    try (ZipFile zipFile = new ZipFile(entry)) {
+                        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                        while (entries.hasMoreElements()) {
+                            ZipEntry zipEntry = entries.nextElement();
+                            update(digest, zipEntry.getName() + ":" + zipEntry.getCrc() + ":" + zipEntry.getSize());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Open (or create with {@link #DEFAULT_CAPACITY}) the given cache file
+     *
+     * @param cacheFile cache file
+     * @param fingerprint classpath fingerprint - see {@link #fingerprint(Collection)}
+     * @param isCacheable returns true for internal names of types that can be cached
+     * @throws IOException if the file cannot be opened or is not a cache file
+     */
+    public MirrorMappedTypeCache(File cacheFile, String fingerprint, Predicate<String> isCacheable) throws IOException {
+        this(cacheFile, fingerprint, isCacheable, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Open (or create) the given cache file
+     *
+     * @param cacheFile cache file
+     * @param fingerprint classpath fingerprint - see {@link #fingerprint(Collection)}
+     * @param isCacheable returns true for internal names of types that can be cached
+     * @param capacity capacity in bytes if the file is new - existing files keep their capacity
+     * @throws IOException if the file cannot be opened or is not a cache file
+     */
+    public MirrorMappedTypeCache(File cacheFile, String fingerprint, Predicate<String> isCacheable, int capacity) throws IOException {
+        this.fingerprint = fingerprint;
+        this.isCacheable = isCacheable;
+        fileMutex = fileMutexes.computeIfAbsent(cacheFile.getCanonicalPath(), __ -> new Object());
+        file = new RandomAccessFile(cacheFile, "rw");
+        channel = file.getChannel();
+        try {
+            MappedByteBuffer mapped;
+            synchronized (fileMutex) {
+                try (FileLock ignore = channel.lock(0, HEADER_SIZE, false)) {
+                    if (file.length() < HEADER_SIZE) {
+                        file.setLength(Math.max(capacity, HEADER_SIZE));
+                    }
+                    mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+                    if (mapped.getInt(0) == 0) {
+                        mapped.putInt(4, FORMAT_VERSION);
+                        mapped.putInt(END_OFFSET, HEADER_SIZE);
+                        mapped.putInt(0, MAGIC);
+                    } else if ((mapped.getInt(0) != MAGIC) || (mapped.getInt(4) != FORMAT_VERSION)) {
+                        throw new IOException("Not a type cache file (or an unsupported version): " + cacheFile);
+                    }
+                }
+            }
+            buffer = mapped;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized MirrorCachedType get(String internalName) {
+        if (!isCacheable.test(internalName)) {
+            return null;
+        }
+        MirrorCachedType type = types.get(internalName);
+        if (type == null) {
+            Integer offset = index.get(internalName);
+            if (offset == null) {
+                scan();     // records appended by other processes
+                offset = index.get(internalName);
+            }
+            if (offset != null) {
+                type = readRecord(offset);
+                types.put(internalName, type);
+            }
+        }
+        if (type != null) {
+            ++hitCount;
+        } else {
+            ++missCount;
+        }
+        return type;
+    }
+
+    @Override
+    public synchronized void put(MirrorCachedType type) {
+        if (!isCacheable.test(type.getInternalName())) {
+            return;
+        }
+        byte[] record;
+        try {
+            record = toRecord(type);
+        } catch (IOException e) {
+            return;     // e.g. a signature too long for modified UTF-8 - don't cache
+        }
+        try {
+            synchronized (fileMutex) {
+                try (FileLock ignore = channel.lock(0, HEADER_SIZE, false)) {
+                    scan();
+                    int end = buffer.getInt(END_OFFSET);
+                    if (index.containsKey(type.getInternalName()) || ((long) end + 4 + record.length > buffer.capacity())) {
+                        return;
+                    }
+                    buffer.putInt(end, record.length);
+                    ByteBuffer recordBuffer = buffer.duplicate();
+                    recordBuffer.position(end + 4);
+                    recordBuffer.put(record);
+                    // publish - the record is complete before the end offset includes it
+                    buffer.putInt(END_OFFSET, end + 4 + record.length);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        types.put(type.getInternalName(), type);
+        ++storeCount;
+    }
+
+    /**
+     * Return the number of lookups that found a type
+     *
+     * @return count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Return the number of lookups of cacheable types that did not find a type
+     *
+     * @return count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Return the number of types this instance stored
+     *
+     * @return count
+     */
+    public synchronized long getStoreCount() {
+        return storeCount;
+    }
+
+    /**
+     * Return the number of bytes used in the file (by all fingerprints)
+     *
+     * @return size
+     */
+    public int getUsedSize() {
+        return buffer.getInt(END_OFFSET);
+    }
+
+    /**
+     * Close the file. Note: the JDK releases the mapping itself when the instance is garbage collected.
+     *
+     * @throws IOException errors
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    // index new records of this fingerprint - record: length, fingerprint, internal name, type
+    private void scan() {
+        int end = buffer.getInt(END_OFFSET);
+        while (scannedEnd < end) {
+            int length = buffer.getInt(scannedEnd);
+            try {
+                DataInputStream in = recordStream(scannedEnd + 4, length);
+                if (in.readUTF().equals(fingerprint)) {
+                    index.putIfAbsent(in.readUTF(), scannedEnd + 4);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            scannedEnd += 4 + length;
+        }
+    }
+
+    private MirrorCachedType readRecord(int offset) {
+        try {
+            DataInputStream in = recordStream(offset, buffer.getInt(offset - 4));
+            in.readUTF();
+            in.readUTF();
+            return MirrorCachedType.fromBytes(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private DataInputStream recordStream(int offset, int length) {
+        // bulk copy - a duplicate so that the shared buffer's position isn't used
+        byte[] bytes = new byte[length];
+        ByteBuffer recordBuffer = buffer.duplicate();
+        recordBuffer.position(offset);
+        recordBuffer.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private byte[] toRecord(MirrorCachedType type) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(fingerprint);
+        out.writeUTF(type.getInternalName());
+        out.write(type.toBytes());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
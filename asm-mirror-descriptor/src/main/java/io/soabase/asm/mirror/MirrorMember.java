@@ -0,0 +1,233 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import io.soabase.asm.mirror.util.Util;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A lazy view of one field, method or constructor of a class - see {@link MirrorClassReader#members()}.
+ * Nothing is generated until it is asked for: the descriptor, signature and exceptions are generated on
+ * first use (and then retained) and annotations are only read by {@link #readAnnotations(MirrorAnnotationReader.VisitAnnotationProc)}
+ * or {@link #accept(ClassVisitor)}. Like the readers, member views are not thread safe.
+ */
+public class MirrorMember {
+    private final Element element;
+    private final MirrorSignatures mirrorSignatures;
+    private final MirrorAnnotationReader annotationReader;
+    private final MirrorMethodReader methodReader;
+    private final MirrorFieldReader fieldReader;
+    private final int parsingOptions;
+    private TypeMirror[] typeParameters;
+    private TypeMirror[] parameters;
+    private String descriptor;
+    private String signature;
+    private boolean signatureGenerated;
+    private String[] exceptions;
+    private boolean exceptionsGenerated;
+
+    MirrorMember(Element element, MirrorSignatures mirrorSignatures, MirrorAnnotationReader annotationReader, MirrorMethodReader methodReader, MirrorFieldReader fieldReader, int parsingOptions) {
+        this.element = element;
+        this.mirrorSignatures = mirrorSignatures;
+        this.annotationReader = annotationReader;
+        this.methodReader = methodReader;
+        this.fieldReader = fieldReader;
+        this.parsingOptions = parsingOptions;
+    }
+
+    /**
+     * Return the member's element - a {@link VariableElement} for fields and an {@link ExecutableElement} for
+     * methods and constructors
+     *
+     * @return element
+     */
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * Return the member's kind: {@link ElementKind#FIELD}, {@link ElementKind#ENUM_CONSTANT}, {@link ElementKind#METHOD} or {@link ElementKind#CONSTRUCTOR}
+     *
+     * @return kind
+     */
+    public ElementKind getKind() {
+        return element.getKind();
+    }
+
+    /**
+     * Return true if this member is a field or enum constant
+     *
+     * @return true/false
+     */
+    public boolean isField() {
+        return element.getKind().isField();
+    }
+
+    /**
+     * Return true if this member is a method or constructor
+     *
+     * @return true/false
+     */
+    public boolean isMethod() {
+        return !isField();
+    }
+
+    /**
+     * Returns the member's access flags (see {@link Opcodes}).
+     *
+     * @return the access flags
+     */
+    public int getAccess() {
+        return isField() ? MirrorFieldReader.fieldAccess((VariableElement) element) : MirrorMethodReader.methodAccess((ExecutableElement) element);
+    }
+
+    /**
+     * Returns the member's name. Constructors are named {@code <init>}.
+     *
+     * @return name
+     */
+    public String getName() {
+        return element.getSimpleName().toString();
+    }
+
+    /**
+     * Returns the member's descriptor (see {@link Type}). Generated on first call.
+     *
+     * @return descriptor
+     */
+    public String getDescriptor() {
+        if (descriptor == null) {
+            if (isField()) {
+                descriptor = mirrorSignatures.typeDescriptor(element.asType());
+            } else {
+                ExecutableElement method = (ExecutableElement) element;
+                descriptor = mirrorSignatures.methodTypeDescriptor(getTypeParameters(), getParameters(), method.getReturnType());
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the member's signature. Generated on first call.
+     *
+     * @return signature or {@literal null} if the member does not use generic types or {@link MirrorClassReader#SKIP_SIGNATURES}
+     *     was specified
+     */
+    public String getSignature() {
+        if (!signatureGenerated) {
+            signatureGenerated = true;
+            if ((parsingOptions & MirrorClassReader.SKIP_SIGNATURES) == 0) {
+                if (isField()) {
+                    signature = Util.hasTypeArguments(element) ? mirrorSignatures.typeSignature(element.asType()) : null;
+                } else {
+                    ExecutableElement method = (ExecutableElement) element;
+                    signature = Util.hasTypeArguments(method) ? mirrorSignatures.methodTypeSignature(getTypeParameters(), getParameters(), method.getReturnType(), MirrorMethodReader.thrownTypes(method)) : null;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the internal names of the method's exception classes (see {@link Type#getInternalName()}).
+     * Generated on first call.
+     *
+     * @return new array of internal names or {@literal null} for fields and methods that don't declare exceptions
+     */
+    public String[] getExceptions() {
+        if (!exceptionsGenerated) {
+            exceptionsGenerated = true;
+            exceptions = isField() ? null : methodReader.readExceptions((ExecutableElement) element);
+        }
+        return (exceptions != null) ? exceptions.clone() : null;
+    }
+
+    /**
+     * Returns the field's constant value (see {@link ClassVisitor#visitField(int, String, String, String, Object)})
+     *
+     * @return value or {@literal null} for non-constants and methods
+     */
+    public Object getValue() {
+        return isField() ? MirrorFieldReader.constantValue((VariableElement) element) : null;
+    }
+
+    /**
+     * Makes the given visitor visit the annotations of this member (not including type or parameter
+     * annotations). Each call reads the annotations again.
+     *
+     * @param visitAnnotationProc visitor
+     */
+    public void readAnnotations(MirrorAnnotationReader.VisitAnnotationProc visitAnnotationProc) {
+        element.getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationValue(annotation, visitAnnotationProc));
+    }
+
+    /**
+     * Makes the given visitor visit this member (as {@link MirrorClassReader#accept(ClassVisitor, int)} would)
+     * using the parsing options the member was created with. Only {@link ClassVisitor#visitField(int, String, String, String, Object)}
+     * or {@link ClassVisitor#visitMethod(int, String, String, String, String[])} will be called.
+     *
+     * @param classVisitor the visitor
+     */
+    public void accept(ClassVisitor classVisitor) {
+        if (isField()) {
+            FieldVisitor fieldVisitor = classVisitor.visitField(getAccess(), getName(), getDescriptor(), getSignature(), getValue());
+            if (fieldVisitor != null) {
+                fieldReader.readFieldAnnotations(fieldVisitor, (VariableElement) element, parsingOptions);
+                fieldVisitor.visitEnd();
+            }
+        } else {
+            MethodVisitor methodVisitor = classVisitor.visitMethod(getAccess(), getName(), getDescriptor(), getSignature(), getExceptions());
+            if (methodVisitor != null) {
+                methodReader.readMethodAnnotations(methodVisitor, (ExecutableElement) element, parsingOptions);
+                methodVisitor.visitEnd();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorMember{" + "element=" + element + ", kind=" + element.getKind() + '}';
+    }
+
+    private TypeMirror[] getTypeParameters() {
+        if (typeParameters == null) {
+            typeParameters = ((ExecutableElement) element).getTypeParameters().stream()
+                    .map(Element::asType)
+                    .toArray(TypeMirror[]::new);
+        }
+        return typeParameters;
+    }
+
+    private TypeMirror[] getParameters() {
+        if (parameters == null) {
+            parameters = ((ExecutableElement) element).getParameters().stream()
+                    .map(Element::asType)
+                    .toArray(TypeMirror[]::new);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash index of the members of one class: methods/constructors by name plus descriptor,
+ * method overloads by name and fields by name. Descriptors are generated once when the index is built
+ * so repeated lookups (e.g. resolving the target of each generated invoke instruction) do not
+ * scan the enclosed elements or regenerate descriptors. Signatures, exceptions and annotations are still
+ * generated lazily by the {@link MirrorMember}s. Like the readers, indexes are not thread safe.
+ */
+public class MirrorMemberIndex {
+    private final TypeElement element;
+    private final Map<String, MirrorMember> methods = new HashMap<>();
+    private final Map<String, List<MirrorMember>> overloads = new LinkedHashMap<>();
+    private final Map<String, MirrorMember> fields = new LinkedHashMap<>();
+
+    /**
+     * Index the given element
+     *
+     * @param processingEnv current processing environment
+     * @param element element
+     */
+    public MirrorMemberIndex(ProcessingEnvironment processingEnv, TypeElement element) {
+        this(new MirrorClassReader(processingEnv, element));
+    }
+
+    /**
+     * Index the element of the given reader (e.g. from {@link MirrorBatchReader#newClassReader(TypeElement)} to share
+     * readers/caches)
+     *
+     * @param reader class reader
+     */
+    public MirrorMemberIndex(MirrorClassReader reader) {
+        this.element = reader.getElement();
+        reader.members().forEach(member -> {
+            String name = member.getName();
+            if (member.isField()) {
+                fields.put(name, member);
+            } else {
+                methods.put(key(name, member.getDescriptor()), member);
+                overloads.computeIfAbsent(name, __ -> new ArrayList<>()).add(member);
+            }
+        });
+    }
+
+    /**
+     * Return the indexed element
+     *
+     * @return element
+     */
+    public TypeElement getElement() {
+        return element;
+    }
+
+    /**
+     * Find the method or constructor ({@code <init>}) with the given name and descriptor
+     *
+     * @param name method name
+     * @param descriptor method descriptor e.g. {@code (Ljava/lang/String;)V}
+     * @return the method or {@literal null}
+     */
+    public MirrorMember findMethod(String name, String descriptor) {
+        return methods.get(key(name, descriptor));
+    }
+
+    /**
+     * Return the overloads of the given method name in declaration order
+     *
+     * @param name method name ({@code <init>} for constructors)
+     * @return unmodifiable list - empty if there are no methods with the name
+     */
+    public List<MirrorMember> getMethods(String name) {
+        List<MirrorMember> list = overloads.get(name);
+        return (list != null) ? Collections.unmodifiableList(list) : Collections.emptyList();
+    }
+
+    /**
+     * Return the method/constructor names in declaration order
+     *
+     * @return unmodifiable set of names
+     */
+    public Set<String> getMethodNames() {
+        return Collections.unmodifiableSet(overloads.keySet());
+    }
+
+    /**
+     * Find the field with the given name
+     *
+     * @param name field name
+     * @return the field or {@literal null}
+     */
+    public MirrorMember findField(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Return the field names in declaration order
+     *
+     * @return unmodifiable set of names
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    private static String key(String name, String descriptor) {
+        // method names cannot contain '(' and descriptors start with it so this is unambiguous
+        return name.concat(descriptor);
+    }
+}
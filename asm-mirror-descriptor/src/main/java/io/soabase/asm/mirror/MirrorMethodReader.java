@@ -15,8 +15,10 @@
  */
 package io.soabase.asm.mirror;
 
+import io.soabase.asm.mirror.util.AnnotationMirrorValueVisitor;
 import io.soabase.asm.mirror.util.MirrorSignatures;
 import io.soabase.asm.mirror.util.Util;
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -24,12 +26,11 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.TypeReference;
 
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
-import java.lang.annotation.ElementType;
-import java.util.Arrays;
 import java.util.stream.IntStream;
 
 /**
@@ -41,7 +42,11 @@ public class MirrorMethodReader {
     private final MirrorAnnotationReader annotationReader;
 
     public MirrorMethodReader(ProcessingEnvironment processingEnv) {
-        this(new MirrorSignatures(processingEnv), new MirrorAnnotationReader(processingEnv));
+        this(new MirrorSignatures(processingEnv));
+    }
+
+    public MirrorMethodReader(MirrorSignatures mirrorSignatures) {
+        this(mirrorSignatures, new MirrorAnnotationReader(mirrorSignatures.getProcessingEnv(), mirrorSignatures));
     }
 
     public MirrorMethodReader(MirrorSignatures mirrorSignatures, MirrorAnnotationReader annotationReader) {
@@ -78,7 +83,20 @@ public class MirrorMethodReader {
      * @param method the method
      */
     public void readMethod(ClassVisitor classVisitor, ExecutableElement method) {
-        readMethod(classVisitor::visitMethod, method);
+        readMethod(classVisitor::visitMethod, method, 0);
+    }
+
+    /**
+     * Makes the given visitor visit the given method.
+     *
+     * @param classVisitor the visitor that must visit this field. Only {@link ClassVisitor#visitMethod(int, String, String, String, String[])}
+     *                     will be called
+     * @param method the method
+     * @param parsingOptions {@link MirrorClassReader#SKIP_ANNOTATIONS}, {@link MirrorClassReader#SKIP_TYPE_ANNOTATIONS} and/or
+     *                       {@link MirrorClassReader#SKIP_SIGNATURES}. Other options are ignored.
+     */
+    public void readMethod(ClassVisitor classVisitor, ExecutableElement method, int parsingOptions) {
+        readMethod(classVisitor::visitMethod, method, parsingOptions);
     }
 
     /**
@@ -88,8 +106,19 @@ public class MirrorMethodReader {
      * @param method method
      */
     public void readMethod(VisitMethodProc visitMethodProc, ExecutableElement method) {
-        int accessFlags = Util.modifiersToAccessFlags(method.getModifiers());
-        boolean isConstructor = Util.isConstructor(method);
+        readMethod(visitMethodProc, method, 0);
+    }
+
+    /**
+     * Makes the given visitor visit the given method.
+     *
+     * @param visitMethodProc visit method proc
+     * @param method method
+     * @param parsingOptions {@link MirrorClassReader#SKIP_ANNOTATIONS}, {@link MirrorClassReader#SKIP_TYPE_ANNOTATIONS} and/or
+     *                       {@link MirrorClassReader#SKIP_SIGNATURES}. Other options are ignored.
+     */
+    public void readMethod(VisitMethodProc visitMethodProc, ExecutableElement method, int parsingOptions) {
+        int accessFlags = methodAccess(method);
         String methodName = method.getSimpleName().toString();
         TypeMirror[] parameters = method.getParameters().stream()
                 .map(Element::asType)
@@ -98,31 +127,71 @@ public class MirrorMethodReader {
                 .map(Element::asType)
                 .toArray(TypeMirror[]::new);
         String descriptor = mirrorSignatures.methodTypeDescriptor(typeParameters, parameters, method.getReturnType());
-        String signature = Util.hasTypeArguments(method) ? mirrorSignatures.methodTypeSignature(typeParameters, parameters, method.getReturnType()) : null;
+        String signature = ((parsingOptions & MirrorClassReader.SKIP_SIGNATURES) == 0) && Util.hasTypeArguments(method) ? mirrorSignatures.methodTypeSignature(typeParameters, parameters, method.getReturnType(), thrownTypes(method)) : null;
         String[] exceptions = readExceptions(method);
         MethodVisitor methodVisitor = visitMethodProc.visitMethod(accessFlags, methodName, descriptor, signature, exceptions);
         if (methodVisitor != null) {
+            readMethodAnnotations(methodVisitor, method, parsingOptions);
+            methodVisitor.visitEnd();
+        }
+    }
+
+    static int methodAccess(ExecutableElement method) {
+        int accessFlags = Util.modifiersToAccessFlags(method.getModifiers());
+        return method.isVarArgs() ? (accessFlags | Opcodes.ACC_VARARGS) : accessFlags;
+    }
+
+    // also used by MirrorMember which generates the visitMethod() arguments itself
+    void readMethodAnnotations(MethodVisitor methodVisitor, ExecutableElement method, int parsingOptions) {
+        // ClassReader visits the annotation default first and it isn't affected by SKIP_ANNOTATIONS
+        AnnotationValue defaultValue = method.getDefaultValue();
+        if (defaultValue != null) {
+            AnnotationVisitor annotationVisitor = methodVisitor.visitAnnotationDefault();
+            if (annotationVisitor != null) {
+                defaultValue.accept(new AnnotationMirrorValueVisitor(null, mirrorSignatures), annotationVisitor);
+                annotationVisitor.visitEnd();
+            }
+        }
+
+        boolean isConstructor = Util.isConstructor(method);
+        boolean readAnnotations = (parsingOptions & MirrorClassReader.SKIP_ANNOTATIONS) == 0;
+        boolean readTypeAnnotations = (parsingOptions & MirrorClassReader.SKIP_TYPE_ANNOTATIONS) == 0;
+        if (readAnnotations || (isConstructor && readTypeAnnotations)) {
             method.getAnnotationMirrors().forEach(annotation -> {
-                annotationReader.readAnnotationValue(annotation, methodVisitor::visitAnnotation);
-                if (isConstructor) {
+                if (readAnnotations) {
+                    annotationReader.readAnnotationValue(annotation, methodVisitor::visitAnnotation);
+                }
+                if (isConstructor && readTypeAnnotations) {
                     // javac seems to infer this
-                    if (Arrays.asList(annotationReader.getAnnotationTargets(annotation)).contains(ElementType.TYPE_USE)) {
+                    if (annotationReader.isTypeUseAnnotation(annotation)) {
                         annotationReader.readAnnotationTypeValue(annotation, TypeReference.METHOD_RETURN, methodVisitor::visitTypeAnnotation);
                     }
                 }
             });
+        }
+        if (readTypeAnnotations) {
             method.getReturnType().getAnnotationMirrors().forEach(annotation -> annotationReader.readAnnotationTypeValue(annotation, TypeReference.METHOD_RETURN, methodVisitor::visitTypeAnnotation));
             annotationReader.readTypeAnnotations(method.getTypeParameters(), TypeReference.METHOD_TYPE_PARAMETER, methodVisitor::visitTypeAnnotation);
+        }
 
+        if (readAnnotations || readTypeAnnotations) {
             IntStream.range(0, method.getParameters().size()).forEach(parameter -> {
                 VariableElement parameterElement = method.getParameters().get(parameter);
-                parameterElement.asType().getAnnotationMirrors().forEach(annotation -> annotationReader.readParameterAnnotationTypeValue(annotation, parameter, TypeReference.METHOD_FORMAL_PARAMETER, methodVisitor::visitTypeAnnotation));
-                parameterElement.getAnnotationMirrors().forEach(annotation -> annotationReader.readParameterAnnotationValue(annotation, parameter, methodVisitor::visitParameterAnnotation));
+                if (readTypeAnnotations) {
+                    parameterElement.asType().getAnnotationMirrors().forEach(annotation -> annotationReader.readParameterAnnotationTypeValue(annotation, parameter, TypeReference.METHOD_FORMAL_PARAMETER, methodVisitor::visitTypeAnnotation));
+                }
+                if (readAnnotations) {
+                    parameterElement.getAnnotationMirrors().forEach(annotation -> annotationReader.readParameterAnnotationValue(annotation, parameter, methodVisitor::visitParameterAnnotation));
+                }
             });
         }
     }
 
-    private String[] readExceptions(ExecutableElement method) {
+    static TypeMirror[] thrownTypes(ExecutableElement method) {
+        return method.getThrownTypes().toArray(new TypeMirror[0]);
+    }
+
+    String[] readExceptions(ExecutableElement method) {
         if (method.getThrownTypes().isEmpty()) {
             return null;
         }
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.Util;
+import org.objectweb.asm.Opcodes;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The instance (i.e. virtual) methods of a type: the methods it declares plus the methods it inherits
+ * from its superclass and interfaces with overridden methods removed. Built by {@link MirrorMethodTableBuilder}.
+ * Tables are immutable.
+ */
+public class MirrorMethodTable {
+    private final TypeElement element;
+    private final List<Entry> entries;
+
+    /**
+     * One method of a method table
+     */
+    public static class Entry {
+        private final ExecutableElement method;
+        private final String name;
+        private final String descriptor;
+        private final Set<String> bridgeDescriptors;
+
+        public Entry(ExecutableElement method, String descriptor, Set<String> bridgeDescriptors) {
+            this.method = method;
+            this.name = method.getSimpleName().toString();
+            this.descriptor = descriptor;
+            this.bridgeDescriptors = Collections.unmodifiableSet(bridgeDescriptors);
+        }
+
+        /**
+         * Return the method
+         *
+         * @return method
+         */
+        public ExecutableElement getMethod() {
+            return method;
+        }
+
+        /**
+         * Return the type that declares the method
+         *
+         * @return declaring type
+         */
+        public TypeElement getDeclaringType() {
+            return (TypeElement) method.getEnclosingElement();
+        }
+
+        /**
+         * Return the method's name
+         *
+         * @return name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the method's (erased) descriptor as declared in its declaring type
+         *
+         * @return descriptor
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * Returns the method's access flags (see {@link Opcodes}).
+         *
+         * @return the access flags
+         */
+        public int getAccess() {
+            return Util.modifiersToAccessFlags(method.getModifiers());
+        }
+
+        /**
+         * Return true if the method is abstract (i.e. a concrete class must implement it)
+         *
+         * @return true/false
+         */
+        public boolean isAbstract() {
+            return method.getModifiers().contains(Modifier.ABSTRACT);
+        }
+
+        /**
+         * Return the descriptors (other than {@link #getDescriptor()}) of the methods that this method
+         * overrides. An implementation of the method needs a bridge method for each of these unless
+         * a superclass already provides it.
+         *
+         * @return unmodifiable set of descriptors - empty if no bridges are needed
+         */
+        public Set<String> getBridgeDescriptors() {
+            return bridgeDescriptors;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + "declaringType=" + getDeclaringType() + ", name='" + name + '\'' + ", descriptor='" + descriptor + '\'' + ", bridgeDescriptors=" + bridgeDescriptors + '}';
+        }
+    }
+
+    public MirrorMethodTable(TypeElement element, List<Entry> entries) {
+        this.element = element;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Return the type of this table
+     *
+     * @return type
+     */
+    public TypeElement getElement() {
+        return element;
+    }
+
+    /**
+     * Return all of the methods: declared methods first (in declaration order) followed by inherited methods
+     *
+     * @return unmodifiable list
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Return the abstract methods (i.e. the methods a concrete implementation must implement)
+     *
+     * @return new list
+     */
+    public List<Entry> getAbstractEntries() {
+        return entries.stream().filter(Entry::isAbstract).collect(Collectors.toList());
+    }
+
+    /**
+     * Find the method with the given name and descriptor. Bridge descriptors are also matched.
+     *
+     * @param name method name
+     * @param descriptor descriptor
+     * @return entry or {@literal null}
+     */
+    public Entry find(String name, String descriptor) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(name) && (entry.descriptor.equals(descriptor) || entry.bridgeDescriptors.contains(descriptor))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "MirrorMethodTable{" + "element=" + element + ", entries=" + entries + '}';
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds {@link MirrorMethodTable}s. Override resolution uses {@link Elements#overrides(ExecutableElement, ExecutableElement, TypeElement)}.
+ * Tables are memoized per type for the life of the builder so types that share supertypes
+ * (e.g. many interfaces that extend the same base interfaces) share the supertypes' tables. Like the readers, builders are not
+ * thread safe.
+ */
+public class MirrorMethodTableBuilder {
+    private final MirrorSignatures mirrorSignatures;
+    private final Elements elements;
+    private final Types types;
+    private final Map<TypeElement, MirrorMethodTable> tables = new HashMap<>();
+
+    public MirrorMethodTableBuilder(ProcessingEnvironment processingEnv) {
+        this(new MirrorSignatures(processingEnv));
+    }
+
+    /**
+     * @param mirrorSignatures used to generate descriptors (e.g. {@link MirrorBatchReader#getMirrorSignatures()} to share internal names)
+     */
+    public MirrorMethodTableBuilder(MirrorSignatures mirrorSignatures) {
+        this.mirrorSignatures = mirrorSignatures;
+        this.elements = mirrorSignatures.getProcessingEnv().getElementUtils();
+        this.types = mirrorSignatures.getProcessingEnv().getTypeUtils();
+    }
+
+    /**
+     * Return the method table for the given type, building it (and the tables of its supertypes) if needed
+     *
+     * @param element type
+     * @return table
+     */
+    public MirrorMethodTable build(TypeElement element) {
+        MirrorMethodTable table = tables.get(element);
+        if (table == null) {
+            table = internalBuild(element);
+            tables.put(element, table);
+        }
+        return table;
+    }
+
+    /**
+     * Return the number of memoized tables
+     *
+     * @return count
+     */
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    private static class Builder {
+        private final ExecutableElement method;
+        private final String descriptor;
+        private final Set<String> bridgeDescriptors;
+
+        Builder(ExecutableElement method, String descriptor, Set<String> bridgeDescriptors) {
+            this.method = method;
+            this.descriptor = descriptor;
+            this.bridgeDescriptors = new LinkedHashSet<>(bridgeDescriptors);
+        }
+
+        void addBridges(MirrorMethodTable.Entry overridden) {
+            if (!overridden.getDescriptor().equals(descriptor)) {
+                bridgeDescriptors.add(overridden.getDescriptor());
+            }
+            overridden.getBridgeDescriptors().stream().filter(bridge -> !bridge.equals(descriptor)).forEach(bridgeDescriptors::add);
+        }
+    }
+
+    private MirrorMethodTable internalBuild(TypeElement element) {
+        List<Builder> builders = new ArrayList<>();
+        Map<String, List<Builder>> byName = new HashMap<>();
+        List<MirrorMethodTable.Entry> originals = new ArrayList<>();   // entries that are used as-is
+
+        for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+            if (isVirtual(method)) {
+                Builder builder = new Builder(method, descriptor(method), new LinkedHashSet<>());
+                builders.add(builder);
+                originals.add(null);
+                byName.computeIfAbsent(method.getSimpleName().toString(), __ -> new ArrayList<>()).add(builder);
+            }
+        }
+
+        List<MirrorMethodTable> superTables = new ArrayList<>();
+        if (element.getSuperclass().getKind() == TypeKind.DECLARED) {
+            superTables.add(build(asElement(element.getSuperclass())));
+        }
+        element.getInterfaces().forEach(type -> superTables.add(build(asElement(type))));
+
+        for (MirrorMethodTable superTable : superTables) {
+            for (MirrorMethodTable.Entry inherited : superTable.getEntries()) {
+                List<Builder> sameName = byName.computeIfAbsent(inherited.getName(), __ -> new ArrayList<>());
+                boolean isHidden = false;
+                for (int i = 0; (i < sameName.size()) && !isHidden; ++i) {
+                    Builder existing = sameName.get(i);
+                    if ((existing.method == inherited.getMethod()) || elements.overrides(existing.method, inherited.getMethod(), element)) {
+                        existing.addBridges(inherited);
+                        isHidden = true;
+                    } else if (elements.overrides(inherited.getMethod(), existing.method, element) || (isOverrideEquivalent(element, existing.method, inherited.getMethod()) && isAbstract(existing.method) && !isAbstract(inherited.getMethod()))) {
+                        // e.g. a sub-interface that redeclares a method of an interface that was seen first or a
+                        // default method that implements an abstract method
+                        Builder replacement = new Builder(inherited.getMethod(), inherited.getDescriptor(), inherited.getBridgeDescriptors());
+                        replacement.addBridges(new MirrorMethodTable.Entry(existing.method, existing.descriptor, existing.bridgeDescriptors));
+                        int index = builders.indexOf(existing);
+                        builders.set(index, replacement);
+                        originals.set(index, null);
+                        sameName.set(i, replacement);
+                        isHidden = true;
+                    } else if (isOverrideEquivalent(element, existing.method, inherited.getMethod())) {
+                        // e.g. the same abstract method inherited from two unrelated interfaces
+                        existing.addBridges(inherited);
+                        isHidden = true;
+                    }
+                }
+                if (!isHidden) {
+                    Builder builder = new Builder(inherited.getMethod(), inherited.getDescriptor(), inherited.getBridgeDescriptors());
+                    builders.add(builder);
+                    originals.add(inherited);
+                    sameName.add(builder);
+                }
+            }
+        }
+
+        List<MirrorMethodTable.Entry> entries = new ArrayList<>(builders.size());
+        for (int i = 0; i < builders.size(); ++i) {
+            Builder builder = builders.get(i);
+            MirrorMethodTable.Entry original = originals.get(i);
+            // share the supertype's entry if nothing about it changed
+            if ((original != null) && original.getBridgeDescriptors().equals(builder.bridgeDescriptors)) {
+                entries.add(original);
+            } else {
+                entries.add(new MirrorMethodTable.Entry(builder.method, builder.descriptor, builder.bridgeDescriptors));
+            }
+        }
+        return new MirrorMethodTable(element, entries);
+    }
+
+    private String descriptor(ExecutableElement method) {
+        TypeMirror[] parameters = method.getParameters().stream()
+                .map(Element::asType)
+                .toArray(TypeMirror[]::new);
+        TypeMirror[] typeParameters = method.getTypeParameters().stream()
+                .map(Element::asType)
+                .toArray(TypeMirror[]::new);
+        return mirrorSignatures.methodTypeDescriptor(typeParameters, parameters, method.getReturnType());
+    }
+
+    private boolean isOverrideEquivalent(TypeElement element, ExecutableElement method1, ExecutableElement method2) {
+        DeclaredType type = (DeclaredType) element.asType();
+        ExecutableType type1 = (ExecutableType) types.asMemberOf(type, method1);
+        ExecutableType type2 = (ExecutableType) types.asMemberOf(type, method2);
+        return types.isSubsignature(type1, type2) || types.isSubsignature(type2, type1);
+    }
+
+    private static boolean isAbstract(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.ABSTRACT);
+    }
+
+    private static boolean isVirtual(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return !modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.PRIVATE);
+    }
+
+    private static TypeElement asElement(TypeMirror type) {
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+}
@@ -0,0 +1,543 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+import static io.soabase.asm.mirror.MirrorModelWriter.*;
+
+/**
+ * Reads classes serialized by {@link MirrorModelWriter} and makes {@link ClassVisitor}s visit them. The reader works
+ * directly on the given {@link ByteBuffer} (heap, direct or memory mapped) - nothing is copied up front. Only the
+ * offsets of the string table are indexed when the reader is created and strings are decoded on first use. Blocks
+ * (fields, methods, annotations) that a visitor returns {@literal null} for are skipped without being decoded.
+ * Readers can be used from any thread and {@link #accept(ClassVisitor)} can be called any number of times.
+ */
+public class MirrorModelReader {
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final int classStart;
+
+    /**
+     * New reader
+     *
+     * @param bytes serialized class
+     * @throws IllegalArgumentException if the bytes are not a serialized class of the current format version
+     */
+    public MirrorModelReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * New reader for the serialized class from the buffer's position to its limit. The buffer's position is not changed.
+     *
+     * @param buffer serialized class
+     * @throws IllegalArgumentException if the bytes are not a serialized class of the current format version
+     */
+    public MirrorModelReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        Cursor cursor = new Cursor(0);
+        if ((this.buffer.remaining() < 4) || (this.buffer.getInt(0) != MAGIC)) {
+            throw new IllegalArgumentException("Not a serialized mirror model");
+        }
+        cursor.position = 4;
+        int version = cursor.varint();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported format version: " + version);
+        }
+        int stringCount = cursor.varint();
+        stringOffsets = new int[stringCount];
+        strings = new String[stringCount];
+        for (int i = 0; i < stringCount; ++i) {
+            stringOffsets[i] = cursor.position;
+            int byteLength = cursor.varint();
+            cursor.position += byteLength;
+        }
+        classStart = cursor.position;
+    }
+
+    /**
+     * Return the internal name of the class
+     *
+     * @return name
+     */
+    public String getClassName() {
+        Cursor cursor = new Cursor(classStart);
+        cursor.varint();
+        cursor.varint();
+        return cursor.string();
+    }
+
+    /**
+     * Return the class's access flags
+     *
+     * @return flags
+     */
+    public int getAccess() {
+        Cursor cursor = new Cursor(classStart);
+        cursor.varint();
+        return cursor.varint();
+    }
+
+    /**
+     * Return the internal name of the super class
+     *
+     * @return name or {@literal null}
+     */
+    public String getSuperName() {
+        Cursor cursor = new Cursor(classStart);
+        cursor.varint();
+        cursor.varint();
+        cursor.varint();
+        cursor.varint();
+        return cursor.string();
+    }
+
+    /**
+     * Return the internal names of the interfaces
+     *
+     * @return names
+     */
+    public String[] getInterfaces() {
+        Cursor cursor = new Cursor(classStart);
+        for (int i = 0; i < 5; ++i) {
+            cursor.varint();
+        }
+        String[] interfaces = cursor.strings();
+        return (interfaces != null) ? interfaces : new String[0];
+    }
+
+    /**
+     * Return the number of entries in the string table
+     *
+     * @return count
+     */
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    /**
+     * Makes the given visitor visit the serialized class
+     *
+     * @param classVisitor the visitor that must visit this class.
+     */
+    public void accept(ClassVisitor classVisitor) {
+        Cursor cursor = new Cursor(classStart);
+        classVisitor.visit(cursor.varint(), cursor.varint(), cursor.string(), cursor.string(), cursor.string(), cursor.strings());
+        while (true) {
+            int code = cursor.code();
+            switch (code) {
+                case ANNOTATION: {
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, classVisitor.visitAnnotation(descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    int typeRef = cursor.varint();
+                    TypePath typePath = cursor.typePath();
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, classVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case FIELD: {
+                    FieldVisitor fieldVisitor = classVisitor.visitField(cursor.varint(), cursor.string(), cursor.string(), cursor.string(), cursor.constant());
+                    int end = cursor.end();
+                    if (fieldVisitor != null) {
+                        acceptField(cursor, fieldVisitor);
+                    }
+                    cursor.position = end;
+                    break;
+                }
+
+                case METHOD: {
+                    MethodVisitor methodVisitor = classVisitor.visitMethod(cursor.varint(), cursor.string(), cursor.string(), cursor.string(), cursor.strings());
+                    int end = cursor.end();
+                    if (methodVisitor != null) {
+                        acceptMethod(cursor, methodVisitor);
+                    }
+                    cursor.position = end;
+                    break;
+                }
+
+                case END: {
+                    classVisitor.visitEnd();
+                    return;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + (cursor.position - 1));
+                }
+            }
+        }
+    }
+
+    private void acceptField(Cursor cursor, FieldVisitor fieldVisitor) {
+        while (true) {
+            int code = cursor.code();
+            switch (code) {
+                case ANNOTATION: {
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, fieldVisitor.visitAnnotation(descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    int typeRef = cursor.varint();
+                    TypePath typePath = cursor.typePath();
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, fieldVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case END: {
+                    fieldVisitor.visitEnd();
+                    return;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + (cursor.position - 1));
+                }
+            }
+        }
+    }
+
+    private void acceptMethod(Cursor cursor, MethodVisitor methodVisitor) {
+        while (true) {
+            int code = cursor.code();
+            switch (code) {
+                case ANNOTATION: {
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, methodVisitor.visitAnnotation(descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case TYPE_ANNOTATION: {
+                    int typeRef = cursor.varint();
+                    TypePath typePath = cursor.typePath();
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, methodVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case PARAMETER_ANNOTATION: {
+                    int parameter = cursor.varint();
+                    String descriptor = cursor.string();
+                    acceptValues(cursor, methodVisitor.visitParameterAnnotation(parameter, descriptor, cursor.code() != 0));
+                    break;
+                }
+
+                case ANNOTATION_DEFAULT: {
+                    acceptValues(cursor, methodVisitor.visitAnnotationDefault());
+                    break;
+                }
+
+                case END: {
+                    methodVisitor.visitEnd();
+                    return;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + (cursor.position - 1));
+                }
+            }
+        }
+    }
+
+    // the cursor is at the length of the values block - on return it is after the block
+    private void acceptValues(Cursor cursor, AnnotationVisitor annotationVisitor) {
+        int end = cursor.end();
+        if (annotationVisitor == null) {
+            cursor.position = end;
+            return;
+        }
+        while (true) {
+            int code = cursor.code();
+            switch (code) {
+                case VALUE: {
+                    annotationVisitor.visit(cursor.string(), cursor.constant());
+                    break;
+                }
+
+                case ENUM: {
+                    annotationVisitor.visitEnum(cursor.string(), cursor.string(), cursor.string());
+                    break;
+                }
+
+                case NESTED_ANNOTATION: {
+                    String name = cursor.string();
+                    acceptValues(cursor, annotationVisitor.visitAnnotation(name, cursor.string()));
+                    break;
+                }
+
+                case ARRAY: {
+                    acceptValues(cursor, annotationVisitor.visitArray(cursor.string()));
+                    break;
+                }
+
+                case END: {
+                    annotationVisitor.visitEnd();
+                    return;
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected code " + code + " at " + (cursor.position - 1));
+                }
+            }
+        }
+    }
+
+    private String string(int index) {
+        // racy but benign - strings are immutable and decoding is idempotent
+        String value = strings[index];
+        if (value == null) {
+            Cursor cursor = new Cursor(stringOffsets[index]);
+            int byteLength = cursor.varint();
+            value = decode(cursor.position, byteLength);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    // modified UTF-8 - see MirrorModelWriter
+    private String decode(int position, int byteLength) {
+        char[] chars = new char[byteLength];
+        int charCount = 0;
+        int end = position + byteLength;
+        while (position < end) {
+            int b = buffer.get(position++) & 0xff;
+            if (b < 0x80) {
+                chars[charCount++] = (char) b;
+            } else if (b < 0xe0) {
+                chars[charCount++] = (char) (((b & 0x1f) << 6) | (buffer.get(position++) & 0x3f));
+            } else {
+                int b2 = buffer.get(position++) & 0x3f;
+                chars[charCount++] = (char) (((b & 0x0f) << 12) | (b2 << 6) | (buffer.get(position++) & 0x3f));
+            }
+        }
+        return new String(chars, 0, charCount);
+    }
+
+    // a read position - so that a reader can be used by several threads at once
+    private class Cursor {
+        private int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        int code() {
+            return buffer.get(position++) & 0xff;
+        }
+
+        int varint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long varlong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = buffer.get(position++);
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long fixed(int byteCount) {
+            long value = 0;
+            for (int i = 0; i < byteCount; ++i) {
+                value = (value << 8) | (buffer.get(position++) & 0xff);
+            }
+            return value;
+        }
+
+        // reads a block length and returns the position after the block
+        int end() {
+            int length = varint();
+            return position + length;
+        }
+
+        String string() {
+            int index = varint();
+            return (index != 0) ? MirrorModelReader.this.string(index - 1) : null;
+        }
+
+        String[] strings() {
+            int count = varint();
+            if (count == 0) {
+                return null;
+            }
+            String[] values = new String[count - 1];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = string();
+            }
+            return values;
+        }
+
+        TypePath typePath() {
+            String value = string();
+            return (value != null) ? TypePath.fromString(value) : null;
+        }
+
+        Object constant() {
+            int code = code();
+            switch (code) {
+                case CONSTANT_NULL: {
+                    return null;
+                }
+
+                case CONSTANT_ARRAY: {
+                    int elementCode = code();
+                    int length = varint();
+                    Object array = Array.newInstance(arrayComponentType(elementCode), length);
+                    for (int i = 0; i < length; ++i) {
+                        Array.set(array, i, constantValue(elementCode));
+                    }
+                    return array;
+                }
+
+                default: {
+                    return constantValue(code);
+                }
+            }
+        }
+
+        private Object constantValue(int code) {
+            switch (code) {
+                case CONSTANT_STRING: {
+                    return string();
+                }
+
+                case CONSTANT_INT: {
+                    return unZigZag(varint());
+                }
+
+                case CONSTANT_LONG: {
+                    return unZigZag(varlong());
+                }
+
+                case CONSTANT_FLOAT: {
+                    return Float.intBitsToFloat((int) fixed(4));
+                }
+
+                case CONSTANT_DOUBLE: {
+                    return Double.longBitsToDouble(fixed(8));
+                }
+
+                case CONSTANT_BYTE: {
+                    return (byte) code();
+                }
+
+                case CONSTANT_SHORT: {
+                    return (short) unZigZag(varint());
+                }
+
+                case CONSTANT_CHAR: {
+                    return (char) varint();
+                }
+
+                case CONSTANT_BOOLEAN: {
+                    return code() != 0;
+                }
+
+                case CONSTANT_TYPE: {
+                    return Type.getType(string());
+                }
+
+                default: {
+                    throw new IllegalStateException("Unexpected constant code " + code + " at " + (position - 1));
+                }
+            }
+        }
+    }
+
+    private static Class<?> arrayComponentType(int code) {
+        switch (code) {
+            case CONSTANT_INT: {
+                return int.class;
+            }
+
+            case CONSTANT_LONG: {
+                return long.class;
+            }
+
+            case CONSTANT_FLOAT: {
+                return float.class;
+            }
+
+            case CONSTANT_DOUBLE: {
+                return double.class;
+            }
+
+            case CONSTANT_BYTE: {
+                return byte.class;
+            }
+
+            case CONSTANT_SHORT: {
+                return short.class;
+            }
+
+            case CONSTANT_CHAR: {
+                return char.class;
+            }
+
+            case CONSTANT_BOOLEAN: {
+                return boolean.class;
+            }
+
+            case CONSTANT_STRING: {
+                return String.class;
+            }
+
+            case CONSTANT_TYPE: {
+                return Type.class;
+            }
+
+            default: {
+                throw new IllegalStateException("Unexpected array component code " + code);
+            }
+        }
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
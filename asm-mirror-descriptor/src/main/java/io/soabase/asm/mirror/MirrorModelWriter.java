@@ -0,0 +1,476 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import javax.lang.model.element.Element;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ClassVisitor} that serializes what a {@link MirrorClassReader} visits (flags, names, descriptors, signatures,
+ * exceptions, field constants and annotation values) into a compact, versioned binary format. The bytes can be
+ * persisted (e.g. between compilations or in a build cache) and replayed into any {@link ClassVisitor} with a
+ * {@link MirrorModelReader} - without the javac model.<br><br>
+ * Format: a header (magic, {@link #FORMAT_VERSION}), a table of de-duplicated strings (modified UTF-8, as in class
+ * files) and the events. Numbers are varints and strings are referenced by their index in the table. Fields, methods
+ * and annotations are length prefixed so that readers skip them in one step when a visitor returns {@literal null}.
+ * Writers are single use.
+ */
+public class MirrorModelWriter extends ClassVisitor {
+    /**
+     * Current format version - readers reject other versions
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    static final int MAGIC = 0x4d4d4f44;   // "MMOD"
+
+    static final int END = 0;
+    static final int ANNOTATION = 1;
+    static final int TYPE_ANNOTATION = 2;
+    static final int PARAMETER_ANNOTATION = 3;
+    static final int ANNOTATION_DEFAULT = 4;
+    static final int FIELD = 5;
+    static final int METHOD = 6;
+    static final int VALUE = 7;
+    static final int ENUM = 8;
+    static final int NESTED_ANNOTATION = 9;
+    static final int ARRAY = 10;
+
+    static final int CONSTANT_NULL = 0;
+    static final int CONSTANT_STRING = 1;
+    static final int CONSTANT_INT = 2;
+    static final int CONSTANT_LONG = 3;
+    static final int CONSTANT_FLOAT = 4;
+    static final int CONSTANT_DOUBLE = 5;
+    static final int CONSTANT_BYTE = 6;
+    static final int CONSTANT_SHORT = 7;
+    static final int CONSTANT_CHAR = 8;
+    static final int CONSTANT_BOOLEAN = 9;
+    static final int CONSTANT_TYPE = 10;
+    static final int CONSTANT_ARRAY = 11;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final Output body = new Output();
+    private Block openMember = null;
+    private byte[] bytes = null;
+
+    /**
+     * Serialize the given reader's class
+     *
+     * @param reader reader
+     * @return serialized class
+     */
+    public static byte[] write(MirrorClassReader reader) {
+        return write(reader, 0, null);
+    }
+
+    /**
+     * Serialize the given reader's class
+     *
+     * @param reader reader
+     * @param parsingOptions parsing options - see {@link MirrorClassReader#accept(ClassVisitor, int)}
+     * @param memberFilter member filter or {@literal null} - see {@link MirrorClassReader#accept(ClassVisitor, int, Predicate)}
+     * @return serialized class
+     */
+    public static byte[] write(MirrorClassReader reader, int parsingOptions, Predicate<? super Element> memberFilter) {
+        MirrorModelWriter writer = new MirrorModelWriter();
+        reader.accept(writer, parsingOptions, memberFilter);
+        return writer.toByteArray();
+    }
+
+    public MirrorModelWriter() {
+        super(Opcodes.ASM7);
+    }
+
+    /**
+     * Return the serialized class
+     *
+     * @return bytes
+     * @throws IllegalStateException if the class visit has not ended
+     */
+    public byte[] toByteArray() {
+        if (bytes == null) {
+            throw new IllegalStateException("visitEnd() has not been called");
+        }
+        return bytes;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        body.putVarint(version).putVarint(access).putVarint(string(name)).putVarint(string(signature)).putVarint(string(superName));
+        putStrings(body, interfaces);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        closeMember();
+        return startAnnotation(body, ANNOTATION, descriptor, visible);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        closeMember();
+        return startTypeAnnotation(body, typeRef, typePath, descriptor, visible);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        closeMember();
+        Block field = new Block(body);
+        field.header.putByte(FIELD).putVarint(access).putVarint(string(name)).putVarint(string(descriptor)).putVarint(string(signature));
+        putConstant(field.header, value);
+        openMember = field;
+        return new FieldVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return startAnnotation(field.content, ANNOTATION, descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                return startTypeAnnotation(field.content, typeRef, typePath, descriptor, visible);
+            }
+
+            @Override
+            public void visitEnd() {
+                closeMember();
+            }
+        };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        closeMember();
+        Block method = new Block(body);
+        method.header.putByte(METHOD).putVarint(access).putVarint(string(name)).putVarint(string(descriptor)).putVarint(string(signature));
+        putStrings(method.header, exceptions);
+        openMember = method;
+        return new MethodVisitor(Opcodes.ASM7) {
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                Block block = new Block(method.content);
+                block.header.putByte(ANNOTATION_DEFAULT);
+                return new ValuesWriter(block);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                return startAnnotation(method.content, ANNOTATION, descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+                return startTypeAnnotation(method.content, typeRef, typePath, descriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+                Block block = new Block(method.content);
+                block.header.putByte(PARAMETER_ANNOTATION).putVarint(parameter).putVarint(string(descriptor)).putByte(visible ? 1 : 0);
+                return new ValuesWriter(block);
+            }
+
+            @Override
+            public void visitEnd() {
+                closeMember();
+            }
+        };
+    }
+
+    @Override
+    public void visitEnd() {
+        closeMember();
+        body.putByte(END);
+
+        Output out = new Output();
+        out.putByte(MAGIC >>> 24).putByte(MAGIC >>> 16).putByte(MAGIC >>> 8).putByte(MAGIC);
+        out.putVarint(FORMAT_VERSION).putVarint(strings.size());
+        strings.forEach(out::putString);
+        out.put(body);
+        bytes = out.toByteArray();
+    }
+
+    // fields/methods don't have to be ended so they are closed by the next class level event
+    private void closeMember() {
+        if (openMember != null) {
+            openMember.content.putByte(END);
+            openMember.close();
+            openMember = null;
+        }
+    }
+
+    private AnnotationVisitor startAnnotation(Output parent, int code, String descriptor, boolean visible) {
+        Block block = new Block(parent);
+        block.header.putByte(code).putVarint(string(descriptor)).putByte(visible ? 1 : 0);
+        return new ValuesWriter(block);
+    }
+
+    private AnnotationVisitor startTypeAnnotation(Output parent, int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        Block block = new Block(parent);
+        block.header.putByte(TYPE_ANNOTATION).putVarint(typeRef).putVarint(string((typePath != null) ? typePath.toString() : null)).putVarint(string(descriptor)).putByte(visible ? 1 : 0);
+        return new ValuesWriter(block);
+    }
+
+    private void putStrings(Output output, String[] values) {
+        if (values == null) {
+            output.putVarint(0);
+        } else {
+            output.putVarint(values.length + 1);
+            for (String value : values) {
+                output.putVarint(string(value));
+            }
+        }
+    }
+
+    private void putConstant(Output output, Object value) {
+        if (value == null) {
+            output.putByte(CONSTANT_NULL);
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            output.putByte(CONSTANT_ARRAY).putByte(constantCode(value.getClass().getComponentType())).putVarint(length);
+            for (int i = 0; i < length; ++i) {
+                putConstantValue(output, Array.get(value, i));
+            }
+        } else {
+            output.putByte(constantCode(value.getClass()));
+            putConstantValue(output, value);
+        }
+    }
+
+    private void putConstantValue(Output output, Object value) {
+        if (value instanceof String) {
+            output.putVarint(string((String) value));
+        } else if (value instanceof Integer) {
+            output.putVarint(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            output.putVarlong(zigZag((Long) value));
+        } else if (value instanceof Float) {
+            output.putFixed(Float.floatToRawIntBits((Float) value), 4);
+        } else if (value instanceof Double) {
+            output.putFixed(Double.doubleToRawLongBits((Double) value), 8);
+        } else if (value instanceof Byte) {
+            output.putByte((Byte) value);
+        } else if (value instanceof Short) {
+            output.putVarint(zigZag((Short) value));
+        } else if (value instanceof Character) {
+            output.putVarint((Character) value);
+        } else if (value instanceof Boolean) {
+            output.putByte(((Boolean) value) ? 1 : 0);
+        } else if (value instanceof Type) {
+            output.putVarint(string(((Type) value).getDescriptor()));
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+        }
+    }
+
+    private static int constantCode(Class<?> type) {
+        if (type == String.class) {
+            return CONSTANT_STRING;
+        } else if ((type == Integer.class) || (type == int.class)) {
+            return CONSTANT_INT;
+        } else if ((type == Long.class) || (type == long.class)) {
+            return CONSTANT_LONG;
+        } else if ((type == Float.class) || (type == float.class)) {
+            return CONSTANT_FLOAT;
+        } else if ((type == Double.class) || (type == double.class)) {
+            return CONSTANT_DOUBLE;
+        } else if ((type == Byte.class) || (type == byte.class)) {
+            return CONSTANT_BYTE;
+        } else if ((type == Short.class) || (type == short.class)) {
+            return CONSTANT_SHORT;
+        } else if ((type == Character.class) || (type == char.class)) {
+            return CONSTANT_CHAR;
+        } else if ((type == Boolean.class) || (type == boolean.class)) {
+            return CONSTANT_BOOLEAN;
+        } else if (Type.class.isAssignableFrom(type)) {
+            return CONSTANT_TYPE;
+        }
+        throw new IllegalArgumentException("Unsupported value type: " + type);
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // 0 is null, otherwise index + 1
+    private int string(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+        }
+        return index + 1;
+    }
+
+    private class ValuesWriter extends AnnotationVisitor {
+        private final Block block;
+
+        ValuesWriter(Block block) {
+            super(Opcodes.ASM7);
+            this.block = block;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            block.content.putByte(VALUE).putVarint(string(name));
+            putConstant(block.content, value);
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            block.content.putByte(ENUM).putVarint(string(name)).putVarint(string(descriptor)).putVarint(string(value));
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            Block nested = new Block(block.content);
+            nested.header.putByte(NESTED_ANNOTATION).putVarint(string(name)).putVarint(string(descriptor));
+            return new ValuesWriter(nested);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            Block array = new Block(block.content);
+            array.header.putByte(ARRAY).putVarint(string(name));
+            return new ValuesWriter(array);
+        }
+
+        @Override
+        public void visitEnd() {
+            block.content.putByte(END);
+            block.close();
+        }
+    }
+
+    // header, then the length of the content, then the content
+    private static class Block {
+        private final Output parent;
+        private final Output header = new Output();
+        private final Output content = new Output();
+
+        Block(Output parent) {
+            this.parent = parent;
+        }
+
+        void close() {
+            parent.put(header).putVarint(content.size).put(content);
+        }
+    }
+
+    private static class Output {
+        private byte[] bytes = new byte[64];
+        private int size = 0;
+
+        Output putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Output putVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Output putVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Output putFixed(long value, int byteCount) {
+            ensure(byteCount);
+            for (int i = byteCount - 1; i >= 0; --i) {
+                bytes[size++] = (byte) (value >>> (i * 8));
+            }
+            return this;
+        }
+
+        // byte length, then modified UTF-8 (as in class files - so any String round trips)
+        Output putString(String value) {
+            int length = value.length();
+            int byteLength = 0;
+            for (int i = 0; i < length; ++i) {
+                char c = value.charAt(i);
+                byteLength += ((c >= 0x01) && (c <= 0x7f)) ? 1 : ((c <= 0x7ff) ? 2 : 3);
+            }
+            putVarint(byteLength);
+            ensure(byteLength);
+            for (int i = 0; i < length; ++i) {
+                char c = value.charAt(i);
+                if ((c >= 0x01) && (c <= 0x7f)) {
+                    bytes[size++] = (byte) c;
+                } else if (c <= 0x7ff) {
+                    bytes[size++] = (byte) (0xc0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                } else {
+                    bytes[size++] = (byte) (0xe0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return this;
+        }
+
+        Output put(Output output) {
+            ensure(output.size);
+            System.arraycopy(output.bytes, 0, bytes, size, output.size);
+            size += output.size;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int count) {
+            if ((size + count) > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+    }
+}
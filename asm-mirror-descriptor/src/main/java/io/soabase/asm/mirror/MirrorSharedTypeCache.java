@@ -0,0 +1,228 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * A JVM-wide, thread safe, bounded cache of {@link MirrorCachedType}s for compilations that run concurrently in one
+ * JVM (e.g. Gradle daemons or Bazel multiplex workers). Entries are keyed by a classpath fingerprint (see
+ * {@link MirrorMappedTypeCache#fingerprint(java.util.Collection)}) plus the type's internal name - never by javac
+ * objects - and only contain strings so the cache never retains a compilation's symbol table. Each compilation
+ * uses its own {@link #view(String, Predicate)}.<br><br>
+ * Lookups are lock-free ({@link ConcurrentHashMap}). When more than the maximum number of entries are stored, one
+ * thread removes entries that haven't been used since its previous pass (a "clock" approximation of LRU) while
+ * other threads continue.
+ */
+public class MirrorSharedTypeCache {
+    /**
+     * Maximum size of the {@link #shared()} cache
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private static final MirrorSharedTypeCache shared = new MirrorSharedTypeCache(DEFAULT_MAXIMUM_SIZE);
+
+    private final int maximumSize;
+    private final Map<String, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean isEvicting = new AtomicBoolean();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private static class Entry {
+        final MirrorCachedType type;
+        volatile boolean isReferenced = true;
+
+        Entry(MirrorCachedType type) {
+            this.type = type;
+        }
+    }
+
+    private class View implements MirrorTypeCache {
+        private final Map<String, Entry> types;
+        private final Predicate<String> isCacheable;
+
+        View(Map<String, Entry> types, Predicate<String> isCacheable) {
+            this.types = types;
+            this.isCacheable = isCacheable;
+        }
+
+        @Override
+        public MirrorCachedType get(String internalName) {
+            return isCacheable.test(internalName) ? MirrorSharedTypeCache.this.get(types, internalName) : null;
+        }
+
+        @Override
+        public void put(MirrorCachedType type) {
+            if (isCacheable.test(type.getInternalName())) {
+                MirrorSharedTypeCache.this.put(types, type);
+            }
+        }
+    }
+
+    /**
+     * Return the JVM-wide instance (maximum size {@link #DEFAULT_MAXIMUM_SIZE})
+     *
+     * @return shared cache
+     */
+    public static MirrorSharedTypeCache shared() {
+        return shared;
+    }
+
+    /**
+     * @param maximumSize maximum number of types (for all fingerprints)
+     */
+    public MirrorSharedTypeCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Return a {@link MirrorTypeCache} for one compilation. Views with the same fingerprint share entries. Views are
+     * thread safe and don't reference the compilation.
+     *
+     * @param fingerprint classpath fingerprint (include anything that changes the meaning of an internal name, e.g. the module)
+     * @param isCacheable returns true for internal names of types that can be cached - see {@link MirrorTypeCache#excludingPackagesOf(java.util.Collection)}
+     * @return view
+     */
+    public MirrorTypeCache view(String fingerprint, Predicate<String> isCacheable) {
+        return new View(entries.computeIfAbsent(fingerprint, __ -> new ConcurrentHashMap<>()), isCacheable);
+    }
+
+    /**
+     * Return the number of cached types (for all fingerprints)
+     *
+     * @return size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Return the maximum number of types
+     *
+     * @return maximum
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Return the number of lookups (of all views) that found a type
+     *
+     * @return count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Return the number of lookups (of all views) that didn't find a type
+     *
+     * @return count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Return the number of types removed to stay within the maximum size
+     *
+     * @return count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Remove all cached types. Existing views remain usable.
+     */
+    public void clear() {
+        for (Map<String, Entry> types : entries.values()) {
+            for (String internalName : types.keySet()) {
+                remove(types, internalName);
+            }
+        }
+    }
+
+    private MirrorCachedType get(Map<String, Entry> types, String internalName) {
+        Entry entry = types.get(internalName);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        if (!entry.isReferenced) {
+            entry.isReferenced = true;  // only write when needed - avoids contended cache lines for popular types
+        }
+        return entry.type;
+    }
+
+    private void put(Map<String, Entry> types, MirrorCachedType type) {
+        if (types.putIfAbsent(type.getInternalName(), new Entry(type)) == null) {
+            if (size.incrementAndGet() > maximumSize) {
+                evict();
+            }
+        }
+    }
+
+    private void evict() {
+        // if another thread is evicting the cache may briefly exceed its maximum size. The evicting thread
+        // re-checks the size when it's done so puts made during its eviction are not left over the maximum.
+        while ((size.get() > maximumSize) && isEvicting.compareAndSet(false, true)) {
+            try {
+                evictToTarget();
+            } finally {
+                isEvicting.set(false);
+            }
+        }
+    }
+
+    private void evictToTarget() {
+        int targetSize = maximumSize - (maximumSize / 8);  // some headroom so every put doesn't evict
+        // the first pass clears the referenced flags so the second pass can always reach the target
+        for (int pass = 0; (pass < 2) && (size.get() > targetSize); ++pass) {
+            for (Map<String, Entry> types : entries.values()) {
+                for (Map.Entry<String, Entry> entry : types.entrySet()) {
+                    if (size.get() <= targetSize) {
+                        return;
+                    }
+                    if (entry.getValue().isReferenced) {
+                        entry.getValue().isReferenced = false;
+                    } else if (remove(types, entry.getKey())) {
+                        evictionCount.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean remove(Map<String, Entry> types, String internalName) {
+        if (types.remove(internalName) != null) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+}
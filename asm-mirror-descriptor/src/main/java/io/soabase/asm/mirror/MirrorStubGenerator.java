@@ -0,0 +1,193 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generates ABI stub class files ("header" classes) from {@link TypeElement}s. A stub has the same class header,
+ * fields (including constant values), methods, annotations, annotation defaults and inner class attributes as the
+ * class javac would write but private members are omitted and methods that aren't abstract or native have a body
+ * that throws {@link UnsupportedOperationException}. Stubs can be loaded and compiled against. See {@link MirrorHeaderJar}
+ * to write stubs to a jar. Note: like the javac model itself, stub generators are not thread safe.
+ */
+public class MirrorStubGenerator {
+    /**
+     * Message of the exception thrown by stub methods
+     */
+    public static final String STUB_MESSAGE = "ABI stub";
+
+    private static final String EXCEPTION_NAME = "java/lang/UnsupportedOperationException";
+
+    private final MirrorBatchReader batchReader;
+
+    /**
+     * New generator that uses a new {@link MirrorBatchReader}
+     *
+     * @param processingEnv current processing environment
+     */
+    public MirrorStubGenerator(ProcessingEnvironment processingEnv) {
+        this(new MirrorBatchReader(processingEnv));
+    }
+
+    /**
+     * New generator that reads classes with the given batch reader (and its class version and extra access flags)
+     *
+     * @param batchReader reader to use
+     */
+    public MirrorStubGenerator(MirrorBatchReader batchReader) {
+        this.batchReader = batchReader;
+    }
+
+    /**
+     * Generate stubs for the given elements and their non-private member types - see {@link #generate(TypeElement)}
+     *
+     * @param elements elements
+     * @return map of internal name to class file bytes in generation order
+     */
+    public Map<String, byte[]> generateAll(Collection<? extends TypeElement> elements) {
+        Map<String, byte[]> stubs = new LinkedHashMap<>();
+        elements.forEach(element -> generate(element, stubs));
+        return stubs;
+    }
+
+    /**
+     * Generate stubs for the given element and (recursively) its non-private member types
+     *
+     * @param element element
+     * @return map of internal name to class file bytes in generation order
+     */
+    public Map<String, byte[]> generate(TypeElement element) {
+        Map<String, byte[]> stubs = new LinkedHashMap<>();
+        generate(element, stubs);
+        return stubs;
+    }
+
+    /**
+     * Generate the stub for only the given element
+     *
+     * @param element element
+     * @return class file bytes
+     */
+    public byte[] generateClass(TypeElement element) {
+        MirrorClassReader reader = batchReader.newClassReader(element);
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        reader.accept(new StubClassVisitor(classWriter, reader), MirrorClassReader.SKIP_PRIVATE);
+        return classWriter.toByteArray();
+    }
+
+    private void generate(TypeElement element, Map<String, byte[]> stubs) {
+        stubs.put(batchReader.getMirrorSignatures().internalName(element), generateClass(element));
+        memberTypes(element).forEach(memberType -> generate(memberType, stubs));
+    }
+
+    private static List<TypeElement> memberTypes(TypeElement element) {
+        return ElementFilter.typesIn(element.getEnclosedElements()).stream()
+                .filter(memberType -> !memberType.getModifiers().contains(Modifier.PRIVATE))
+                .collect(Collectors.toList());
+    }
+
+    // javac adds the enclosing instance as the first parameter of inner class constructors - returns null for other classes
+    static String enclosingInstanceDescriptor(MirrorSignatures mirrorSignatures, TypeElement element) {
+        boolean isInnerClass = (element.getKind() == ElementKind.CLASS) && (element.getNestingKind() == NestingKind.MEMBER) && !element.getModifiers().contains(Modifier.STATIC);
+        return isInnerClass ? "L" + mirrorSignatures.internalName((TypeElement) element.getEnclosingElement()) + ";" : null;
+    }
+
+    private class StubClassVisitor extends ClassVisitor {
+        private final MirrorClassReader reader;
+        private final String outerDescriptor;
+        private boolean innerClassesVisited = false;
+
+        StubClassVisitor(ClassVisitor classVisitor, MirrorClassReader reader) {
+            super(Opcodes.ASM7, classVisitor);
+            this.reader = reader;
+            outerDescriptor = enclosingInstanceDescriptor(batchReader.getMirrorSignatures(), reader.getElement());
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            visitInnerClasses();
+            return super.visitField(access, name, descriptor, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            visitInnerClasses();
+            if ((outerDescriptor != null) && name.equals("<init>")) {
+                descriptor = "(" + outerDescriptor + descriptor.substring(1);
+            }
+            MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if ((methodVisitor == null) || ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0)) {
+                return methodVisitor;
+            }
+            return new MethodVisitor(Opcodes.ASM7, methodVisitor) {
+                @Override
+                public void visitEnd() {
+                    // the body comes after any annotations
+                    visitCode();
+                    visitTypeInsn(Opcodes.NEW, EXCEPTION_NAME);
+                    visitInsn(Opcodes.DUP);
+                    visitLdcInsn(STUB_MESSAGE);
+                    visitMethodInsn(Opcodes.INVOKESPECIAL, EXCEPTION_NAME, "<init>", "(Ljava/lang/String;)V", false);
+                    visitInsn(Opcodes.ATHROW);
+                    visitMaxs(0, 0);
+                    super.visitEnd();
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            visitInnerClasses();
+            super.visitEnd();
+        }
+
+        // InnerClasses entries must be visited after the class annotations and before the members
+        private void visitInnerClasses() {
+            if (innerClassesVisited) {
+                return;
+            }
+            innerClassesVisited = true;
+
+            MirrorSignatures mirrorSignatures = batchReader.getMirrorSignatures();
+            TypeElement element = reader.getElement();
+            if (reader.isNested()) {
+                super.visitInnerClass(reader.getClassName(), mirrorSignatures.internalName((TypeElement) element.getEnclosingElement()), element.getSimpleName().toString(), reader.getInnerClassAccess());
+            }
+            memberTypes(element).forEach(memberType -> {
+                MirrorClassReader memberReader = batchReader.newClassReader(memberType);
+                super.visitInnerClass(memberReader.getClassName(), reader.getClassName(), memberType.getSimpleName().toString(), memberReader.getInnerClassAccess());
+            });
+        }
+    }
+}
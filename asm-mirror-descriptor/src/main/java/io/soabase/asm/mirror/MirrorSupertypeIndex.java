@@ -0,0 +1,251 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.Type;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transitive supertype closure of a set of types. Each type (and each of its supertypes) is given a dense
+ * int id and a {@link BitSet} of the ids of all of its ancestors so that subtype checks, common ancestor queries and
+ * "all known implementors of" queries are bit operations. Supertypes are always given ids before their subtypes
+ * which keeps the bit sets small. Relationships are between erased types (i.e. the class file hierarchy) - generic
+ * type arguments are not considered. Types are named by their internal names (see {@link Type#getInternalName()}). Build
+ * the index once (e.g. per round) and then query it. Like the readers, indexes are not thread safe.
+ */
+public class MirrorSupertypeIndex {
+    private final MirrorSignatures mirrorSignatures;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<BitSet> ancestors = new ArrayList<>();
+    private final BitSet interfaces = new BitSet();
+    private final Map<Integer, BitSet> descendants = new HashMap<>();
+
+    public MirrorSupertypeIndex(ProcessingEnvironment processingEnv) {
+        this(new MirrorSignatures(processingEnv));
+    }
+
+    /**
+     * @param mirrorSignatures used to generate internal names (e.g. {@link MirrorBatchReader#getMirrorSignatures()} to share internal names)
+     */
+    public MirrorSupertypeIndex(MirrorSignatures mirrorSignatures) {
+        this.mirrorSignatures = mirrorSignatures;
+    }
+
+    /**
+     * Add the given types (and their supertypes) to the index
+     *
+     * @param elements types
+     */
+    public void addAll(Collection<? extends TypeElement> elements) {
+        elements.forEach(this::add);
+    }
+
+    /**
+     * Add the given type (and its supertypes) to the index
+     *
+     * @param element type
+     * @return the type's id
+     */
+    public int add(TypeElement element) {
+        String name = mirrorSignatures.internalName(element);
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        BitSet bits = new BitSet();
+        boolean isInterface = element.getKind().isInterface();
+        if (element.getSuperclass().getKind() == TypeKind.DECLARED) {
+            addAncestor(bits, element.getSuperclass());
+        } else if (isInterface) {
+            // as in class files, interfaces extend Object
+            addAncestor(bits, add(mirrorSignatures.getProcessingEnv().getElementUtils().getTypeElement(Object.class.getName())));
+        }
+        element.getInterfaces().forEach(type -> addAncestor(bits, type));
+
+        id = names.size();
+        ids.put(name, id);
+        names.add(name);
+        ancestors.add(bits);
+        if (isInterface) {
+            interfaces.set(id);
+        }
+        descendants.clear();
+        return id;
+    }
+
+    /**
+     * Return the number of types in the index
+     *
+     * @return count
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Return the id of the given type
+     *
+     * @param internalName internal name
+     * @return id or -1 if the type is not in the index
+     */
+    public int getId(String internalName) {
+        Integer id = ids.get(internalName);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * Return the internal name of the type with the given id
+     *
+     * @param id id
+     * @return internal name
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Return true if the given type is an interface
+     *
+     * @param internalName internal name
+     * @return true/false
+     * @throws IllegalArgumentException if the type is not in the index
+     */
+    public boolean isInterface(String internalName) {
+        return interfaces.get(requireId(internalName));
+    }
+
+    /**
+     * Return true if type is the same as, or a subtype of, superType
+     *
+     * @param type internal name
+     * @param superType internal name
+     * @return true/false
+     * @throws IllegalArgumentException if type is not in the index
+     */
+    public boolean isSubtype(String type, String superType) {
+        return isSubtype(requireId(type), getId(superType));
+    }
+
+    /**
+     * Return true if type is the same as, or a subtype of, superType. Resolve ids once with {@link #getId(String)}
+     * for repeated queries.
+     *
+     * @param typeId id of the type
+     * @param superTypeId id of the super type - -1 (i.e. not in the index) is never a super type
+     * @return true/false
+     */
+    public boolean isSubtype(int typeId, int superTypeId) {
+        return (superTypeId >= 0) && ((typeId == superTypeId) || ancestors.get(typeId).get(superTypeId));
+    }
+
+    /**
+     * Return the ids of all of the ancestors (supertypes) of the given type
+     *
+     * @param internalName internal name
+     * @return new bit set of ids
+     * @throws IllegalArgumentException if the type is not in the index
+     */
+    public BitSet getAncestors(String internalName) {
+        return (BitSet) ancestors.get(requireId(internalName)).clone();
+    }
+
+    /**
+     * Return the ids of the ancestors that the given types have in common (including the types themselves
+     * if one is an ancestor of the other)
+     *
+     * @param type1 internal name
+     * @param type2 internal name
+     * @return new bit set of ids
+     * @throws IllegalArgumentException if a type is not in the index
+     */
+    public BitSet getCommonAncestors(String type1, String type2) {
+        int id1 = requireId(type1);
+        int id2 = requireId(type2);
+        BitSet bits1 = (BitSet) ancestors.get(id1).clone();
+        bits1.set(id1);
+        BitSet bits2 = (BitSet) ancestors.get(id2).clone();
+        bits2.set(id2);
+        bits1.and(bits2);
+        return bits1;
+    }
+
+    /**
+     * Return the ids of all of the types in the index that are subtypes (e.g. implementors) of the given type.
+     * The result is memoized until a type is added to the index.
+     *
+     * @param internalName internal name
+     * @return new bit set of ids
+     * @throws IllegalArgumentException if the type is not in the index
+     */
+    public BitSet getSubtypes(String internalName) {
+        int id = requireId(internalName);
+        BitSet bits = descendants.get(id);
+        if (bits == null) {
+            bits = new BitSet();
+            // supertypes always have lower ids than their subtypes
+            for (int i = id + 1; i < ancestors.size(); ++i) {
+                if (ancestors.get(i).get(id)) {
+                    bits.set(i);
+                }
+            }
+            descendants.put(id, bits);
+        }
+        return (BitSet) bits.clone();
+    }
+
+    /**
+     * Convert a bit set of ids to internal names
+     *
+     * @param ids ids
+     * @return new list of internal names in id order
+     */
+    public List<String> toNames(BitSet ids) {
+        List<String> list = new ArrayList<>(ids.cardinality());
+        ids.stream().forEach(id -> list.add(names.get(id)));
+        return list;
+    }
+
+    private void addAncestor(BitSet bits, TypeMirror type) {
+        addAncestor(bits, add((TypeElement) ((DeclaredType) type).asElement()));
+    }
+
+    private void addAncestor(BitSet bits, int id) {
+        bits.set(id);
+        bits.or(ancestors.get(id));
+    }
+
+    private int requireId(String internalName) {
+        int id = getId(internalName);
+        if (id < 0) {
+            throw new IllegalArgumentException("Type not in index: " + internalName);
+        }
+        return id;
+    }
+}
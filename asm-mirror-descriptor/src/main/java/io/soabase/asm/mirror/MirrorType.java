@@ -29,7 +29,8 @@ import java.util.Map;
 
 /**
  * Corollary to {@link Type}. A Java field or method type. This class can be used to make it easier to manipulate type and
- * method descriptors.
+ * method descriptors. Each call creates a new {@link MirrorSignatures}. When making many calls, use
+ * a {@link MirrorContext} instead.
  */
 public class MirrorType {
     private static final Map<TypeKind, Type> primitiveMirrorTypes;
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A cache of {@link MirrorCachedType}s keyed by internal name. Intended for types of the classpath (library jars, the
+ * JDK) that don't change between compilations. {@link MirrorTypeHierarchy} and {@link MirrorAnnotationReader} use a
+ * cache (when given one) before reading elements so a cache hit avoids javac completing the type. Implementations
+ * decide which types are cacheable (they must not cache types being compiled) and must be safe to use from the
+ * compiler thread. See {@link MirrorMappedTypeCache}.
+ */
+public interface MirrorTypeCache {
+    /**
+     * Return the cached type
+     *
+     * @param internalName internal name of the type
+     * @return type or {@literal null} if it isn't cached (or isn't cacheable)
+     */
+    MirrorCachedType get(String internalName);
+
+    /**
+     * Cache the given type. Implementations ignore types that aren't cacheable.
+     *
+     * @param type type
+     */
+    void put(MirrorCachedType type);
+
+    /**
+     * Return the type from the cache or read it (and cache it)
+     *
+     * @param mirrorSignatures used to read the type
+     * @param element type
+     * @return type
+     */
+    default MirrorCachedType get(MirrorSignatures mirrorSignatures, TypeElement element) {
+        MirrorCachedType type = get(mirrorSignatures.internalName(element));
+        if (type == null) {
+            type = MirrorCachedType.read(mirrorSignatures, element);
+            put(type);
+        }
+        return type;
+    }
+
+    /**
+     * Returns a predicate (for internal names) that excludes the packages of the given elements - e.g. pass
+     * the root elements of the first round to exclude the packages of the sources being compiled
+     *
+     * @param elements elements
+     * @return predicate that is true for types that aren't in the elements' packages
+     */
+    static Predicate<String> excludingPackagesOf(Collection<? extends Element> elements) {
+        Set<String> packages = new HashSet<>();
+        for (Element element : elements) {
+            while ((element != null) && !(element instanceof PackageElement)) {
+                element = element.getEnclosingElement();
+            }
+            if (element != null) {
+                packages.add(((PackageElement) element).getQualifiedName().toString().replace('.', '/'));
+            }
+        }
+        return internalName -> {
+            int lastSlash = internalName.lastIndexOf('/');
+            return !packages.contains((lastSlash < 0) ? "" : internalName.substring(0, lastSlash));
+        };
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror;
+
+import io.soabase.asm.mirror.util.MirrorSignatures;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class hierarchy keyed by internal name (see {@link Type#getInternalName()}) that is read from
+ * {@link Elements} instead of loading classes. Each type is read once and memoized for the life of
+ * the hierarchy. Types that do not exist as elements (e.g. classes being generated) can be registered
+ * - {@link MirrorClassWriter} registers the class it writes. With a {@link MirrorTypeCache}, classpath types
+ * are read from the cache without javac completing them. Supertypes are read from the elements that reference
+ * them (not looked up by name) and are reported to {@link MirrorSignatures#beforeCompletion(TypeElement)}. Like
+ * the readers, hierarchies are not thread safe.
+ */
+public class MirrorTypeHierarchy {
+    private static final String OBJECT = "java/lang/Object";
+
+    private final MirrorSignatures mirrorSignatures;
+    private final Elements elements;
+    private final MirrorTypeCache typeCache;
+    private final Map<String, TypeNode> nodes = new HashMap<>();
+    private final Map<String, TypeElement> referencedElements = new HashMap<>();   // supertypes seen - avoids lookups by name
+
+    private static class TypeNode {
+        private final String superName;
+        private final String[] interfaces;
+        private final boolean isInterface;
+        private Set<String> supertypes;
+
+        TypeNode(String superName, String[] interfaces, boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+
+    public MirrorTypeHierarchy(ProcessingEnvironment processingEnv) {
+        this(new MirrorSignatures(processingEnv));
+    }
+
+    /**
+     * @param mirrorSignatures used to generate internal names (e.g. {@link MirrorBatchReader#getMirrorSignatures()} to share internal names)
+     */
+    public MirrorTypeHierarchy(MirrorSignatures mirrorSignatures) {
+        this(mirrorSignatures, null);
+    }
+
+    /**
+     * @param mirrorSignatures used to generate internal names (e.g. {@link MirrorBatchReader#getMirrorSignatures()} to share internal names)
+     * @param typeCache if not {@literal null}, types are looked up in the cache before reading elements and types read are added to it
+     */
+    public MirrorTypeHierarchy(MirrorSignatures mirrorSignatures, MirrorTypeCache typeCache) {
+        this.mirrorSignatures = mirrorSignatures;
+        this.elements = mirrorSignatures.getProcessingEnv().getElementUtils();
+        this.typeCache = typeCache;
+    }
+
+    /**
+     * Register a type that is not available as an element (e.g. a class being generated). Replaces
+     * any previous value for the type.
+     *
+     * @param internalName the type's internal name
+     * @param superName internal name of the super class or {@literal null} for {@code java/lang/Object}
+     * @param interfaces internal names of the directly implemented interfaces (may be {@literal null})
+     * @param isInterface true if the type is an interface
+     */
+    public void register(String internalName, String superName, String[] interfaces, boolean isInterface) {
+        nodes.put(internalName, new TypeNode(superName, (interfaces != null) ? interfaces.clone() : new String[0], isInterface));
+    }
+
+    /**
+     * Returns the internal name of the super class of the given type. For interfaces this is {@code java/lang/Object}.
+     *
+     * @param internalName type's internal name
+     * @return super class or {@literal null} for {@code java/lang/Object}
+     * @throws TypeNotPresentException if the type cannot be found
+     */
+    public String getSuperName(String internalName) {
+        return getNode(internalName).superName;
+    }
+
+    /**
+     * Return true if the given type is an interface
+     *
+     * @param internalName type's internal name
+     * @return true/false
+     * @throws TypeNotPresentException if the type cannot be found
+     */
+    public boolean isInterface(String internalName) {
+        return getNode(internalName).isInterface;
+    }
+
+    /**
+     * Return true if type1 is the same as, or a supertype of, type2 (i.e. the equivalent of {@link Class#isAssignableFrom(Class)})
+     *
+     * @param type1 internal name
+     * @param type2 internal name
+     * @return true/false
+     * @throws TypeNotPresentException if a type cannot be found
+     */
+    public boolean isAssignableFrom(String type1, String type2) {
+        return type1.equals(type2) || type1.equals(OBJECT) || getSupertypes(type2).contains(type1);
+    }
+
+    /**
+     * Returns the common super type of the two given types with the same semantics as {@link ClassWriter#getCommonSuperClass(String, String)}
+     *
+     * @param type1 internal name
+     * @param type2 internal name
+     * @return internal name of the common super class
+     * @throws TypeNotPresentException if a type cannot be found
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (isInterface(type1) || isInterface(type2)) {
+            return OBJECT;
+        }
+        String superName = type1;
+        do {
+            superName = getSuperName(superName);
+        } while (!isAssignableFrom(superName, type2));
+        return superName;
+    }
+
+    /**
+     * Return the number of types currently in the hierarchy
+     *
+     * @return count
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    private Set<String> getSupertypes(String internalName) {
+        TypeNode node = getNode(internalName);
+        if (node.supertypes == null) {
+            Set<String> supertypes = new LinkedHashSet<>();
+            if (node.superName != null) {
+                supertypes.add(node.superName);
+                supertypes.addAll(getSupertypes(node.superName));
+            }
+            for (String interfaceName : node.interfaces) {
+                supertypes.add(interfaceName);
+                supertypes.addAll(getSupertypes(interfaceName));
+            }
+            node.supertypes = supertypes;
+        }
+        return node.supertypes;
+    }
+
+    private TypeNode getNode(String internalName) {
+        TypeNode node = nodes.get(internalName);
+        if (node == null) {
+            node = readNode(internalName);
+            nodes.put(internalName, node);
+        }
+        return node;
+    }
+
+    private TypeNode readNode(String internalName) {
+        if (typeCache != null) {
+            MirrorCachedType cachedType = typeCache.get(internalName);
+            if (cachedType != null) {
+                return new TypeNode(cachedType.getSuperName(), cachedType.getInterfaces(), cachedType.isInterface());
+            }
+        }
+
+        TypeElement element = referencedElements.remove(internalName);
+        if (element != null) {
+            mirrorSignatures.beforeCompletion(element);
+        } else {
+            element = findElement(internalName);
+            if (element == null) {
+                throw new TypeNotPresentException(internalName.replace('/', '.'), null);
+            }
+        }
+        boolean isInterface = element.getKind().isInterface();
+        String superName;
+        if (element.getSuperclass().getKind() == TypeKind.DECLARED) {
+            superName = internalName(element.getSuperclass());
+        } else {
+            superName = isInterface ? OBJECT : null;
+        }
+        String[] interfaces = element.getInterfaces().stream()
+                .map(this::internalName)
+                .toArray(String[]::new);
+        if (typeCache != null) {
+            typeCache.put(MirrorCachedType.read(mirrorSignatures, element));
+        }
+        return new TypeNode(superName, interfaces, isInterface);
+    }
+
+    private TypeElement findElement(String internalName) {
+        // Elements.getTypeElement() needs the canonical name but nested classes are '$' separated in internal names
+        String name = internalName.replace('/', '.');
+        while (true) {
+            TypeElement element = elements.getTypeElement(name);
+            if ((element != null) && mirrorSignatures.internalName(element).equals(internalName)) {
+                return element;
+            }
+            int index = name.lastIndexOf('$');
+            if (index < 0) {
+                return null;
+            }
+            name = name.substring(0, index) + '.' + name.substring(index + 1);
+        }
+    }
+
+    private String internalName(TypeMirror type) {
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String internalName = mirrorSignatures.internalName(element);
+        if (!nodes.containsKey(internalName)) {
+            referencedElements.put(internalName, element);
+        }
+        return internalName;
+    }
+}
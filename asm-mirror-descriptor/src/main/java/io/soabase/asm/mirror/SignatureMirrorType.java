@@ -25,7 +25,8 @@ import javax.lang.model.type.TypeMirror;
 
 /**
  * There is no version of this in the ASM library. This is similar to {@link Type} but
- * builds parameterized type signatures.
+ * builds parameterized type signatures. Each call creates a new {@link MirrorSignatures}. When
+ * making many calls, use a {@link MirrorContext} instead.
  */
 public class SignatureMirrorType {
     /**
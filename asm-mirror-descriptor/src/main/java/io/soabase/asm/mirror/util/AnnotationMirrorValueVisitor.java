@@ -16,6 +16,7 @@
 package io.soabase.asm.mirror.util;
 
 import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Type;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -99,6 +100,7 @@ public class AnnotationMirrorValueVisitor implements AnnotationValueVisitor<Void
 
     @Override
     public Void visitType(TypeMirror t, AnnotationVisitor visitor) {
+        visitor.visit(name, Type.getType(signatureReader.typeDescriptor(t)));
         return null;
     }
 
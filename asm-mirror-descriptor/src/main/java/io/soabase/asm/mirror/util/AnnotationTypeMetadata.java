@@ -0,0 +1,207 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.util;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable details about an annotation type: its descriptor, {@link Retention}, {@link Target}s
+ * and {@link Repeatable} container.
+ */
+public final class AnnotationTypeMetadata {
+    private static final ElementType[] elementTypes = ElementType.values();
+
+    private final String descriptor;
+    private final RetentionPolicy retention;
+    private final ElementType[] targetTypes;
+    private final int targets;
+    private final String repeatableContainer;
+
+    /**
+     * Read the metadata for the given annotation type. The meta-annotations are read
+     * from the annotation mirrors of the type (i.e. no reflective proxies are used)
+     *
+     * @param annotationType the annotation type
+     * @param mirrorSignatures used to generate descriptors
+     * @return metadata
+     */
+    public static AnnotationTypeMetadata read(TypeElement annotationType, MirrorSignatures mirrorSignatures) {
+        RetentionPolicy retention = RetentionPolicy.CLASS;  // the default per the JLS
+        List<ElementType> targets = new ArrayList<>();
+        String repeatableContainer = null;
+        for (AnnotationMirror metaAnnotation : annotationType.getAnnotationMirrors()) {
+            TypeElement metaAnnotationType = (TypeElement) metaAnnotation.getAnnotationType().asElement();
+            String name = metaAnnotationType.getQualifiedName().toString();
+            if (name.equals(Retention.class.getName())) {
+                Object value = getValue(metaAnnotation);
+                if (value instanceof VariableElement) {
+                    retention = RetentionPolicy.valueOf(((VariableElement) value).getSimpleName().toString());
+                }
+            } else if (name.equals(Target.class.getName())) {
+                Object value = getValue(metaAnnotation);
+                if (value instanceof List) {
+                    for (Object target : (List<?>) value) {
+                        addTarget(targets, ((AnnotationValue) target).getValue());
+                    }
+                } else {
+                    addTarget(targets, value);
+                }
+            } else if (name.equals(Repeatable.class.getName())) {
+                Object value = getValue(metaAnnotation);
+                if (value instanceof TypeMirror) {
+                    repeatableContainer = mirrorSignatures.typeDescriptor((TypeMirror) value);
+                }
+            }
+        }
+        return new AnnotationTypeMetadata(mirrorSignatures.typeDescriptor(annotationType.asType()), retention, targets.toArray(new ElementType[0]), repeatableContainer);
+    }
+
+    /**
+     * @param descriptor the annotation type's descriptor
+     * @param retention the annotation type's retention
+     * @param targetTypes the annotation type's targets in declared order (empty if there is no {@link Target})
+     * @param repeatableContainer descriptor of the repeatable container or null
+     */
+    public AnnotationTypeMetadata(String descriptor, RetentionPolicy retention, ElementType[] targetTypes, String repeatableContainer) {
+        this.descriptor = descriptor;
+        this.retention = retention;
+        this.targetTypes = targetTypes.clone();
+        int targets = 0;
+        for (ElementType elementType : targetTypes) {
+            targets |= targetBit(elementType);
+        }
+        this.targets = targets;
+        this.repeatableContainer = repeatableContainer;
+    }
+
+    /**
+     * Return the bit that represents the given target in {@link #getTargets()}
+     *
+     * @param elementType target
+     * @return bit
+     */
+    public static int targetBit(ElementType elementType) {
+        return 1 << elementType.ordinal();
+    }
+
+    /**
+     * Return the descriptor of the annotation type
+     *
+     * @return descriptor
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Return the annotation's retention. If the annotation type does not have a {@link Retention}
+     * this is {@link RetentionPolicy#CLASS}.
+     *
+     * @return retention
+     */
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    /**
+     * Return true if the annotation is "visible" i.e. it's retention is {@link RetentionPolicy#RUNTIME}.
+     *
+     * @return true/false
+     */
+    public boolean isVisible() {
+        return retention == RetentionPolicy.RUNTIME;
+    }
+
+    /**
+     * Return the bitmask of {@link Target}s (see {@link #targetBit(ElementType)}). 0 if the
+     * annotation type does not have a {@link Target}.
+     *
+     * @return bitmask
+     */
+    public int getTargets() {
+        return targets;
+    }
+
+    /**
+     * Return true if the annotation type's {@link Target} includes the given element type
+     *
+     * @param elementType element type
+     * @return true/false
+     */
+    public boolean hasTarget(ElementType elementType) {
+        return (targets & targetBit(elementType)) != 0;
+    }
+
+    /**
+     * Return the {@link Target}s as an array in the order they are declared in the annotation type's
+     * {@link Target} (i.e. the same order as {@link Target#value()})
+     *
+     * @return new array of targets or empty array
+     */
+    public ElementType[] getTargetTypes() {
+        return targetTypes.clone();
+    }
+
+    /**
+     * Return the descriptor of the {@link Repeatable} container annotation type
+     *
+     * @return descriptor or null if the annotation is not repeatable
+     */
+    public String getRepeatableContainer() {
+        return repeatableContainer;
+    }
+
+    @Override
+    public String toString() {
+        return "AnnotationTypeMetadata{" + "descriptor='" + descriptor + '\'' + ", retention=" + retention + ", targets=" + Arrays.toString(targetTypes) + ", repeatableContainer='" + repeatableContainer + '\'' + '}';
+    }
+
+    private static void addTarget(List<ElementType> targets, Object value) {
+        if (value instanceof VariableElement) {
+            String name = ((VariableElement) value).getSimpleName().toString();
+            for (ElementType elementType : elementTypes) {
+                if (elementType.name().equals(name)) {
+                    targets.add(elementType);
+                    return;
+                }
+            }
+        }
+        // otherwise unknown to this JVM (e.g. a newer ElementType)
+    }
+
+    private static Object getValue(AnnotationMirror annotation) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.util;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Arrays;
+
+// dispatches each annotation value to several annotation visitors - see FanOutClassVisitor
+final class FanOutAnnotationVisitor extends AnnotationVisitor {
+    private final AnnotationVisitor[] visitors;
+
+    static AnnotationVisitor of(AnnotationVisitor[] visitors, int count) {
+        switch (count) {
+            case 0: {
+                return null;
+            }
+
+            case 1: {
+                return visitors[0];
+            }
+
+            default: {
+                return new FanOutAnnotationVisitor(Arrays.copyOf(visitors, count));
+            }
+        }
+    }
+
+    private FanOutAnnotationVisitor(AnnotationVisitor[] visitors) {
+        super(Opcodes.ASM7);
+        this.visitors = visitors;
+    }
+
+    @Override
+    public void visit(String name, Object value) {
+        for (AnnotationVisitor visitor : visitors) {
+            visitor.visit(name, value);
+        }
+    }
+
+    @Override
+    public void visitEnum(String name, String descriptor, String value) {
+        for (AnnotationVisitor visitor : visitors) {
+            visitor.visitEnum(name, descriptor, value);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (AnnotationVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitAnnotation(name, descriptor);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return of(annotationVisitors, count);
+    }
+
+    @Override
+    public AnnotationVisitor visitArray(String name) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (AnnotationVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitArray(name);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return of(annotationVisitors, count);
+    }
+
+    @Override
+    public void visitEnd() {
+        for (AnnotationVisitor visitor : visitors) {
+            visitor.visitEnd();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.util;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link ClassVisitor} that dispatches each event it receives to several class visitors so that
+ * a {@link io.soabase.asm.mirror.MirrorClassReader} (or snapshot/tape) only needs to traverse the mirrors
+ * once. Descriptors, signatures and annotation values are generated once and shared by all of the visitors.
+ * Field, method and annotation visitors returned by the downstream visitors are combined: visitors that
+ * return {@literal null} drop out of that branch only and if every visitor returns {@literal null} so does
+ * this visitor, so the reader skips generating that branch entirely. Note: bytecode and module events are not
+ * dispatched - mirrors do not have them.
+ */
+public class FanOutClassVisitor extends ClassVisitor {
+    private final ClassVisitor[] visitors;
+
+    /**
+     * Return a visitor that dispatches to the given visitors. If there is only one visitor
+     * it is returned as is.
+     *
+     * @param visitors the visitors
+     * @return visitor
+     */
+    public static ClassVisitor of(ClassVisitor... visitors) {
+        return (visitors.length == 1) ? Objects.requireNonNull(visitors[0], "visitor cannot be null") : new FanOutClassVisitor(visitors);
+    }
+
+    /**
+     * @param visitors the visitors to dispatch to (in order)
+     */
+    public FanOutClassVisitor(ClassVisitor... visitors) {
+        super(Opcodes.ASM7);
+        for (ClassVisitor visitor : visitors) {
+            Objects.requireNonNull(visitor, "visitors cannot contain null");
+        }
+        this.visitors = Arrays.copyOf(visitors, visitors.length);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visit(version, access, name, signature, superName, interfaces);
+        }
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitSource(source, debug);
+        }
+    }
+
+    @Override
+    public void visitNestHost(String nestHost) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitNestHost(nestHost);
+        }
+    }
+
+    @Override
+    public void visitOuterClass(String owner, String name, String descriptor) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitOuterClass(owner, name, descriptor);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (ClassVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitAnnotation(descriptor, visible);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return FanOutAnnotationVisitor.of(annotationVisitors, count);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (ClassVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return FanOutAnnotationVisitor.of(annotationVisitors, count);
+    }
+
+    @Override
+    public void visitAttribute(Attribute attribute) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitAttribute(attribute);
+        }
+    }
+
+    @Override
+    public void visitNestMember(String nestMember) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitNestMember(nestMember);
+        }
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitInnerClass(name, outerName, innerName, access);
+        }
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        FieldVisitor[] fieldVisitors = new FieldVisitor[visitors.length];
+        int count = 0;
+        for (ClassVisitor visitor : visitors) {
+            FieldVisitor fieldVisitor = visitor.visitField(access, name, descriptor, signature, value);
+            if (fieldVisitor != null) {
+                fieldVisitors[count++] = fieldVisitor;
+            }
+        }
+        return FanOutFieldVisitor.of(fieldVisitors, count);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        MethodVisitor[] methodVisitors = new MethodVisitor[visitors.length];
+        int count = 0;
+        for (ClassVisitor visitor : visitors) {
+            MethodVisitor methodVisitor = visitor.visitMethod(access, name, descriptor, signature, exceptions);
+            if (methodVisitor != null) {
+                methodVisitors[count++] = methodVisitor;
+            }
+        }
+        return FanOutMethodVisitor.of(methodVisitors, count);
+    }
+
+    @Override
+    public void visitEnd() {
+        for (ClassVisitor visitor : visitors) {
+            visitor.visitEnd();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.util;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import java.util.Arrays;
+
+// dispatches each field event to several field visitors - see FanOutClassVisitor
+final class FanOutFieldVisitor extends FieldVisitor {
+    private final FieldVisitor[] visitors;
+
+    static FieldVisitor of(FieldVisitor[] visitors, int count) {
+        switch (count) {
+            case 0: {
+                return null;
+            }
+
+            case 1: {
+                return visitors[0];
+            }
+
+            default: {
+                return new FanOutFieldVisitor(Arrays.copyOf(visitors, count));
+            }
+        }
+    }
+
+    private FanOutFieldVisitor(FieldVisitor[] visitors) {
+        super(Opcodes.ASM7);
+        this.visitors = visitors;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (FieldVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitAnnotation(descriptor, visible);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return FanOutAnnotationVisitor.of(annotationVisitors, count);
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        AnnotationVisitor[] annotationVisitors = new AnnotationVisitor[visitors.length];
+        int count = 0;
+        for (FieldVisitor visitor : visitors) {
+            AnnotationVisitor annotationVisitor = visitor.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
+            if (annotationVisitor != null) {
+                annotationVisitors[count++] = annotationVisitor;
+            }
+        }
+        return FanOutAnnotationVisitor.of(annotationVisitors, count);
+    }
+
+    @Override
+    public void visitAttribute(Attribute attribute) {
+        for (FieldVisitor visitor : visitors) {
+            visitor.visitAttribute(attribute);
+        }
+    }
+
+    @Override
+    public void visitEnd() {
+        for (FieldVisitor visitor : visitors) {
+            visitor.visitEnd();
+        }
+    }
+}
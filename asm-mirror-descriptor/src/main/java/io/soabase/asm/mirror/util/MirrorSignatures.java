@@ -15,26 +15,83 @@
  */
 package io.soabase.asm.mirror.util;
 
-import org.objectweb.asm.signature.SignatureWriter;
-
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.IntersectionType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 import javax.lang.model.type.WildcardType;
-import java.util.ArrayList;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static io.soabase.asm.mirror.util.MirrorSignatures.Mode.*;
 
+/**
+ * Generates descriptors and signatures from {@link TypeMirror}s. Optionally, generated values
+ * can be cached. Declared types are cached by their element. Values that are expensive to generate (erased
+ * type variables, formal type parameters with their bounds, class signatures) are cached by the structure of
+ * the types (not the TypeMirror instances) so that the same type rendered from different elements shares a cache
+ * entry. Other values (e.g. <code>(Ljava/util/List&lt;Ljava/lang/String;&gt;;)V</code>) only consist of memoized
+ * internal names and are cheaper to generate than to key so they are never cached.
+ * Note: like the javac model itself, instances are not thread safe.<br><br>
+ * Reading details (kind, supertypes, annotations) of a referenced type makes javac "complete" the type, i.e.
+ * load and parse its class file. Names never need completion (they come from
+ * {@link javax.lang.model.util.Elements#getBinaryName(TypeElement)}). The library reports the completions it
+ * triggers to {@link #beforeCompletion(TypeElement)} - see {@link #getCompletionCount()}. In "completion lean"
+ * mode the library avoids completions where the answer can be derived from the type's name (well known platform
+ * types and annotations).
+ */
 public class MirrorSignatures {
     private final ProcessingEnvironment processingEnv;
+    private final Map<SignatureKey, String> cache;
+    private final Map<Element, String> declaredTypeCache;
+    private final Map<TypeMirror, Object> typeKeys;
+    private final boolean completionLean;
+    private long cacheHits;
+    private long cacheMisses;
+    private long completionCount;
+    private final Set<Element> completionRequests = new HashSet<>();
+
+    private final Map<Element, String> internalNames = new HashMap<>();
+    private final StringBuilder sharedBuilder = new StringBuilder(128);    // reused by all generate methods - see startBuilder()
+
+    private static final TypeMirror[] NO_TYPES = new TypeMirror[0];
+    private static final String OBJECT_SIGNATURE = "Ljava/lang/Object;";
+
+    // platform types whose kind can't change - used in completion lean mode
+    private static final Set<String> platformInterfaces = new HashSet<>(Arrays.asList(
+            "java/lang/Comparable", "java/lang/Iterable", "java/lang/CharSequence", "java/lang/Runnable", "java/lang/AutoCloseable",
+            "java/lang/Cloneable", "java/lang/annotation/Annotation", "java/io/Serializable", "java/io/Closeable", "java/util/Collection",
+            "java/util/List", "java/util/Set", "java/util/SortedSet", "java/util/Map", "java/util/SortedMap", "java/util/Queue",
+            "java/util/Deque", "java/util/Iterator", "java/util/Comparator", "java/util/concurrent/Callable"
+    ));
+    private static final Set<String> platformClasses = new HashSet<>(Arrays.asList(
+            "java/lang/Object", "java/lang/String", "java/lang/Number", "java/lang/Enum", "java/lang/Class",
+            "java/lang/Throwable", "java/lang/Exception", "java/lang/RuntimeException", "java/lang/Error"
+    ));
+
+    // javac 8's Symbol.completer is null once the symbol is completed - other compilers/versions aren't inspected
+    private static final boolean isJava8 = System.getProperty("java.specification.version", "").startsWith("1.");
+    private static volatile Field completerField;
+
+    private enum Operation {
+        CLASS,
+        METHOD,
+        PARAMETERS,
+        TYPE,
+        EXCEPTION
+    }
 
     protected enum Mode {
         DESCRIPTOR_EXCEPTION,
@@ -44,28 +101,203 @@ public class MirrorSignatures {
         SIGNATURE_SIMPLE
     }
 
+    /**
+     * New signature generator without caching
+     *
+     * @param processingEnv current processing environment
+     */
     public MirrorSignatures(ProcessingEnvironment processingEnv) {
+        this(processingEnv, false);
+    }
+
+    /**
+     * New signature generator. If <code>useCache</code> is true, generated descriptors and signatures
+     * are cached for the life of this instance. Share one instance (see {@link io.soabase.asm.mirror.MirrorClassReader})
+     * to share the cache.
+     *
+     * @param processingEnv current processing environment
+     * @param useCache true to cache generated values
+     */
+    public MirrorSignatures(ProcessingEnvironment processingEnv, boolean useCache) {
+        this(processingEnv, useCache, false);
+    }
+
+    /**
+     * New signature generator. If <code>useCache</code> is true, generated descriptors and signatures
+     * are cached for the life of this instance. If <code>completionLean</code> is true, readers that share this
+     * instance avoid javac completions where possible (see {@link #isCompletionLean()}).
+     *
+     * @param processingEnv current processing environment
+     * @param useCache true to cache generated values
+     * @param completionLean true to avoid completions where possible
+     */
+    public MirrorSignatures(ProcessingEnvironment processingEnv, boolean useCache, boolean completionLean) {
         this.processingEnv = processingEnv;
+        cache = useCache ? new HashMap<>() : null;
+        declaredTypeCache = useCache ? new HashMap<>() : null;
+        typeKeys = useCache ? new IdentityHashMap<>() : null;
+        this.completionLean = completionLean;
     }
 
-    public String classSignature(TypeMirror type) {
-        type = unwrapType(type);
+    /**
+     * Return the processing environment this instance was created with
+     *
+     * @return processing environment
+     */
+    public ProcessingEnvironment getProcessingEnv() {
+        return processingEnv;
+    }
 
-        if (type.getKind() == TypeKind.DECLARED) {
-            DeclaredType declaredType = (DeclaredType) type;
-            TypeElement typeElement = (TypeElement) declaredType.asElement();
-            SignatureWriter writer = new SignatureWriter();
-            for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
-                internalType(writer, typeArgument, SIGNATURE_WITH_TYPE_BOUNDS);
+    /**
+     * Return true if this instance caches generated values
+     *
+     * @return true/false
+     */
+    public boolean isCaching() {
+        return cache != null;
+    }
+
+    /**
+     * Return the number of requests that were served from the cache
+     *
+     * @return hit count (always 0 if not caching)
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Return the number of requests that had to be generated and were then added to the cache
+     *
+     * @return miss count (always 0 if not caching)
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Return the number of cached values
+     *
+     * @return cache size (always 0 if not caching)
+     */
+    public int getCacheSize() {
+        return (cache != null) ? (cache.size() + declaredTypeCache.size()) : 0;
+    }
+
+    /**
+     * Clear any cached values and reset the hit/miss counters
+     */
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+            declaredTypeCache.clear();
+            typeKeys.clear();
+        }
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+
+    /**
+     * Return true if this instance is in completion lean mode. In this mode the kind (class or interface) of
+     * well known platform types is derived from the name and {@link io.soabase.asm.mirror.MirrorAnnotationReader}
+     * derives the retention (and that they aren't TYPE_USE annotations) of well known platform annotations from
+     * the name so their annotation types aren't read. The metadata of other annotation types is read as usual.
+     *
+     * @return true/false
+     */
+    public boolean isCompletionLean() {
+        return completionLean;
+    }
+
+    /**
+     * Return the number of javac completions triggered through this instance (see {@link #beforeCompletion(TypeElement)}).
+     * If the compiler's completion state can't be inspected (see {@link #isCompletionTracked(TypeElement)}) this is the
+     * number of distinct types that were read, i.e. an upper bound.
+     *
+     * @return count
+     */
+    public long getCompletionCount() {
+        return completionCount;
+    }
+
+    /**
+     * Return true if the completion state of the given (kind of) element can be inspected (currently javac 8 only)
+     *
+     * @param element type
+     * @return true/false
+     */
+    public static boolean isCompletionTracked(TypeElement element) {
+        return completionState(element) != null;
+    }
+
+    /**
+     * Return true if javac has completed the given type, i.e. reading its details won't read its class file. If
+     * the state can't be inspected (see {@link #isCompletionTracked(TypeElement)}) false is returned.
+     *
+     * @param element type
+     * @return true/false
+     */
+    public static boolean isCompleted(TypeElement element) {
+        return Boolean.TRUE.equals(completionState(element));
+    }
+
+    /**
+     * Readers call this before reading the details (kind, supertypes, annotations, members) of a type
+     * that is only referenced (e.g. an annotation type or a type bound) so that completions can be counted
+     *
+     * @param element the type about to be read
+     */
+    public void beforeCompletion(TypeElement element) {
+        Boolean isCompleted = completionState(element);
+        if ((isCompleted != null) ? !isCompleted : completionRequests.add(element)) {
+            ++completionCount;
+        }
+    }
+
+    /**
+     * Return true if the given type is an interface. In completion lean mode, the kind of well known platform
+     * types is derived from the name. Otherwise, the type is read (see {@link #beforeCompletion(TypeElement)}).
+     *
+     * @param type type
+     * @return true/false
+     */
+    public boolean isInterface(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (completionLean) {
+            String internalName = internalName(element);
+            if (platformInterfaces.contains(internalName)) {
+                return true;
             }
-            writer.visitSuperclass();
-            internalType(writer, typeElement.getSuperclass(), SIGNATURE);
-            for (TypeMirror interfaceType : typeElement.getInterfaces()) {
-                internalType(writer, interfaceType, SIGNATURE);
+            if (platformClasses.contains(internalName)) {
+                return false;
             }
-            return writer.toString();
         }
-        return null;
+        beforeCompletion(element);
+        return Util.isInterface(type);
+    }
+
+    /**
+     * Return the internal name (see {@link org.objectweb.asm.Type#getInternalName()}) of the given
+     * type element. The name is derived from {@link javax.lang.model.util.Elements#getBinaryName(TypeElement)}
+     * and is memoized per element (regardless of whether this instance caches signatures).
+     *
+     * @param element type element
+     * @return internal name
+     */
+    public String internalName(TypeElement element) {
+        String internalName = internalNames.get(element);
+        if (internalName == null) {
+            internalName = processingEnv.getElementUtils().getBinaryName(element).toString().replace('.', '/');
+            internalNames.put(element, internalName);
+        }
+        return internalName;
+    }
+
+    public String classSignature(TypeMirror type) {
+        return cached(keyFor(Operation.CLASS, null, new TypeMirror[]{type}), () -> generateClassSignature(type));
     }
 
     public String methodTypeDescriptor(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType) {
@@ -76,6 +308,32 @@ public class MirrorSignatures {
         return methodType(typeParameters, parameters, returnType, SIGNATURE);
     }
 
+    /**
+     * Same as {@link #methodTypeSignature(TypeMirror[], TypeMirror[], TypeMirror)} but, the same as javac, the thrown
+     * types are part of the signature (<code>^</code>) if any of them is a type variable
+     *
+     * @param typeParameters the method's type parameters
+     * @param parameters the method's parameters
+     * @param returnType the method's return type
+     * @param thrownTypes the method's thrown types
+     * @return signature
+     */
+    public String methodTypeSignature(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType, TypeMirror[] thrownTypes) {
+        if (Arrays.stream(thrownTypes).noneMatch(Util::isTypeVariable)) {
+            return methodTypeSignature(typeParameters, parameters, returnType);
+        }
+        SignatureKey key = keyFor(Operation.METHOD, SIGNATURE, typeParameters, parameters, new TypeMirror[]{returnType}, thrownTypes);
+        return cached(key, () -> {
+            String signature = generateMethodType(typeParameters, parameters, returnType, SIGNATURE);
+            StringBuilder builder = startBuilder().append(signature);
+            for (TypeMirror thrownType : thrownTypes) {
+                builder.append('^');
+                appendType(builder, unwrapType(thrownType), SIGNATURE);
+            }
+            return builder.toString();
+        });
+    }
+
     public String parametersTypeDescriptor(TypeMirror[] parameters) {
         return parametersType(parameters, DESCRIPTOR);
     }
@@ -101,115 +359,168 @@ public class MirrorSignatures {
     }
 
     public String exception(TypeMirror type) {
-        type = unwrapType(type);
-
-        SignatureWriter writer = new SignatureWriter();
-        buildType(writer, type, DESCRIPTOR_EXCEPTION);
-        return writer.toString().substring(1);  // work around bug where the exception has the "L" prefix
+        if (type.getKind() == TypeKind.DECLARED) {
+            return internalName(((DeclaredType) type).asElement());    // already memoized
+        }
+        return cached(keyFor(Operation.EXCEPTION, DESCRIPTOR_EXCEPTION, new TypeMirror[]{type}), () -> generateType(type, DESCRIPTOR_EXCEPTION));
     }
 
     private String type(TypeMirror type, Mode mode) {
-        type = unwrapType(type);
-
-        SignatureWriter writer = new SignatureWriter();
-        internalType(writer, type, mode);
-        return writer.toString();
+        if ((cache != null) && (type.getKind() == TypeKind.DECLARED) && ((mode == DESCRIPTOR) || !Util.hasTypeArguments((DeclaredType) type))) {
+            // descriptors and non-parameterized signatures of a declared type are the same: L<internal name>;
+            Element element = ((DeclaredType) type).asElement();
+            String value = declaredTypeCache.get(element);
+            if (value != null) {
+                ++cacheHits;
+                return value;
+            }
+            ++cacheMisses;
+            value = generateType(type, mode);
+            declaredTypeCache.put(element, value);
+            return value;
+        }
+        return cached(keyFor(Operation.TYPE, mode, new TypeMirror[]{type}), () -> generateType(type, mode));
     }
 
     private String returnType(TypeMirror type, Mode mode) {
-        type = unwrapType(type);
-
-        SignatureWriter writer = new SignatureWriter();
-        internalType(writer, type, mode);
-        return writer.toString();
+        // a return type renders exactly the same as any other type
+        return type(type, mode);
     }
 
     private String parametersType(TypeMirror[] parameters, Mode mode) {
-        parameters = unwrapType(parameters);
-
-        SignatureWriter writer = new SignatureWriter();
-        internalParametersType(writer, parameters, mode);
-        return writer.toString();
+        return cached(keyFor(Operation.PARAMETERS, mode, parameters), () -> generateParametersType(parameters, mode));
     }
 
     private String methodType(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType, Mode mode) {
-        typeParameters = unwrapType(typeParameters);
-        parameters = unwrapType(parameters);
-        returnType = unwrapType(returnType);
-
-        SignatureWriter writer = new SignatureWriter();
-        switch (mode) {
-            case DESCRIPTOR: {
-                internalParametersType(writer, parameters, mode);
-                internalReturnType(writer, returnType, mode);
-                break;
+        // descriptors don't include type parameters so they don't need to be part of the key
+        TypeMirror[] keyTypeParameters = (mode == DESCRIPTOR) ? NO_TYPES : typeParameters;
+        SignatureKey key = keyFor(Operation.METHOD, mode, keyTypeParameters, parameters, new TypeMirror[]{returnType});
+        return cached(key, () -> generateMethodType(typeParameters, parameters, returnType, mode));
+    }
+
+    private String generateClassSignature(TypeMirror type) {
+        type = unwrapType(type);
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declaredType = (DeclaredType) type;
+            TypeElement typeElement = (TypeElement) declaredType.asElement();
+            StringBuilder builder = startBuilder();
+            appendFormalTypeParameters(builder, declaredType.getTypeArguments());
+            if (typeElement.getKind().isInterface()) {
+                // interfaces have no superclass in the model but the class file signature requires one
+                builder.append(OBJECT_SIGNATURE);
+            } else {
+                appendType(builder, typeElement.getSuperclass(), SIGNATURE);
+            }
+            for (TypeMirror interfaceType : typeElement.getInterfaces()) {
+                appendType(builder, interfaceType, SIGNATURE);
             }
+            return builder.toString();
+        }
+        return null;
+    }
 
-            case SIGNATURE_WITH_TYPE_BOUNDS:
-            case SIGNATURE_SIMPLE:
-            case SIGNATURE: {
-                internalTypeParametersType(writer, typeParameters, SIGNATURE_WITH_TYPE_BOUNDS);
-                internalParametersType(writer, parameters, mode);
-                internalReturnType(writer, returnType, mode);
-                break;
+    private String generateType(TypeMirror type, Mode mode) {
+        StringBuilder builder = startBuilder();
+        appendType(builder, unwrapType(type), mode);
+        return builder.toString();
+    }
+
+    private String generateParametersType(TypeMirror[] parameters, Mode mode) {
+        StringBuilder builder = startBuilder();
+        if (parameters.length > 0) {
+            builder.append('(');
+            for (TypeMirror parameter : parameters) {
+                appendType(builder, unwrapType(parameter), mode);
             }
         }
-        return writer.toString();
+        return builder.toString();
     }
 
-    private void internalTypeParametersType(SignatureWriter writer, TypeMirror[] parameters, Mode mode) {
+    private String generateMethodType(TypeMirror[] typeParameters, TypeMirror[] parameters, TypeMirror returnType, Mode mode) {
+        StringBuilder builder = startBuilder();
+        if (mode != DESCRIPTOR) {
+            appendFormalTypeParameters(builder, Arrays.asList(typeParameters));
+        }
+        builder.append('(');
         for (TypeMirror parameter : parameters) {
-            internalType(writer, parameter, mode);
+            appendType(builder, unwrapType(parameter), mode);
         }
+        builder.append(')');
+        appendType(builder, unwrapType(returnType), mode);
+        return builder.toString();
     }
 
-    private void internalParametersType(SignatureWriter writer, TypeMirror[] parameters, Mode mode) {
-        for (TypeMirror parameter : parameters) {
-            writer.visitParameterType();
-            internalType(writer, parameter, mode);
+    private StringBuilder startBuilder() {
+        sharedBuilder.setLength(0);
+        return sharedBuilder;
+    }
+
+    private void appendFormalTypeParameters(StringBuilder builder, List<? extends TypeMirror> typeParameters) {
+        if (!typeParameters.isEmpty()) {
+            builder.append('<');
+            for (TypeMirror typeParameter : typeParameters) {
+                appendFormalTypeParameter(builder, unwrapType(typeParameter));
+            }
+            builder.append('>');
+        }
+    }
+
+    private void appendFormalTypeParameter(StringBuilder builder, TypeMirror type) {
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            TypeVariable typeVariable = (TypeVariable) type;
+            builder.append(typeVariable.asElement().getSimpleName()).append(':');
+            TypeMirror upperBound = typeVariable.getUpperBound();
+            if (upperBound.getKind() == TypeKind.INTERSECTION) {
+                // e.g. <T extends Number & Comparable<T>> - each bound is written, javac puts the class bound first
+                for (TypeMirror bound : ((IntersectionType) upperBound).getBounds()) {
+                    appendTypeBound(builder, bound);
+                }
+            } else {
+                appendTypeBound(builder, upperBound);
+            }
         }
     }
 
-    private void internalReturnType(SignatureWriter writer, TypeMirror type, Mode mode) {
-        writer.visitReturnType();
-        internalType(writer, type, mode);
+    private void appendTypeBound(StringBuilder builder, TypeMirror bound) {
+        if (isInterface(bound)) {
+            builder.append(':');    // interface bounds have an empty class bound
+        }
+        appendType(builder, bound, SIGNATURE);
     }
 
-    private void internalType(SignatureWriter writer, TypeMirror type, Mode mode) {
+    private void appendType(StringBuilder builder, TypeMirror type, Mode mode) {
         Character baseType = Util.toBaseType(type.getKind());
         if (baseType != null) {
-            writer.visitBaseType(baseType);
-        } else {
-            buildType(writer, type, mode);
+            builder.append(baseType.charValue());
+            return;
         }
-    }
 
-    private void buildType(SignatureWriter writer, TypeMirror type, Mode mode) {
         switch (type.getKind()) {
             case ARRAY: {
-                ArrayType arrayType = (ArrayType) type;
-                writer.visitArrayType();
-                internalType(writer, arrayType.getComponentType(), mode);
+                builder.append('[');
+                appendType(builder, ((ArrayType) type).getComponentType(), mode);
                 break;
             }
 
             case DECLARED: {
                 switch (mode) {
                     case DESCRIPTOR_EXCEPTION: {
-                        writer.visitClassType(Util.toSlash(type.toString()));
+                        builder.append(internalName(((DeclaredType) type).asElement()));
                         break;
                     }
 
                     case DESCRIPTOR: {
-                        type = processingEnv.getTypeUtils().erasure(type);
-                        buildDeclaredTypeDescriptor(writer, type);
+                        builder.append('L').append(internalName(((DeclaredType) type).asElement())).append(';');
                         break;
                     }
 
                     case SIGNATURE:
                     case SIGNATURE_SIMPLE:
                     case SIGNATURE_WITH_TYPE_BOUNDS: {
-                        buildDeclaredTypeSignature(writer, type, mode);
+                        builder.append('L');
+                        appendClassTypeSignature(builder, (DeclaredType) type);
+                        builder.append(';');
                         break;
                     }
                 }
@@ -219,30 +530,20 @@ public class MirrorSignatures {
             case TYPEVAR: {
                 switch (mode) {
                     case SIGNATURE_WITH_TYPE_BOUNDS: {
-                        TypeVariable typeVariable = (TypeVariable) type;
-                        TypeParameterElement typeParameterElement = (TypeParameterElement) typeVariable.asElement();
-                        writer.visitFormalTypeParameter(typeParameterElement.getSimpleName().toString());
-                        if (Util.isInterface(typeVariable.getUpperBound())) {
-                            writer.visitInterfaceBound();
-                        }
-                        internalType(writer, typeVariable.getUpperBound(), SIGNATURE);
-                        if (typeVariable.getLowerBound().getKind() != TypeKind.NULL) {
-                            // TODO
-                        }
+                        appendFormalTypeParameter(builder, type);
                         break;
                     }
 
                     case SIGNATURE_SIMPLE:
                     case SIGNATURE: {
-                        TypeVariable typeVariable = (TypeVariable) type;
-                        TypeParameterElement typeParameterElement = (TypeParameterElement) typeVariable.asElement();
-                        writer.visitTypeVariable(typeParameterElement.getSimpleName().toString());
+                        builder.append('T').append(((TypeVariable) type).asElement().getSimpleName()).append(';');
                         break;
                     }
 
+                    case DESCRIPTOR_EXCEPTION:
                     case DESCRIPTOR: {
-                        type = processingEnv.getTypeUtils().erasure(type);
-                        buildDeclaredTypeDescriptor(writer, type);
+                        // e.g. "throws X" where X extends Exception is written as the erasure - same as javac
+                        appendType(builder, processingEnv.getTypeUtils().erasure(type), mode);
                         break;
                     }
                 }
@@ -256,13 +557,13 @@ public class MirrorSignatures {
                     case SIGNATURE_WITH_TYPE_BOUNDS: {
                         WildcardType wildcardType = (WildcardType) type;
                         if (wildcardType.getSuperBound() != null) {
-                            writer.visitTypeArgument('-');
-                            internalType(writer, wildcardType.getSuperBound(), SIGNATURE);
+                            builder.append('-');
+                            appendType(builder, wildcardType.getSuperBound(), SIGNATURE);
                         } else if (wildcardType.getExtendsBound() != null) {
-                            writer.visitTypeArgument('+');
-                            internalType(writer, wildcardType.getExtendsBound(), SIGNATURE);
+                            builder.append('+');
+                            appendType(builder, wildcardType.getExtendsBound(), SIGNATURE);
                         } else {
-                            writer.visitTypeArgument();
+                            builder.append('*');
                         }
                         break;
                     }
@@ -272,81 +573,120 @@ public class MirrorSignatures {
         }
     }
 
-    private void buildDeclaredTypeSignature(SignatureWriter writer, TypeMirror type, Mode mode) {
-        DeclaredType declaredType = (DeclaredType) type;
-        if (declaredType.getEnclosingType().getKind() != TypeKind.NONE) {
-            buildDeclaredTypeSignaturePortions(writer, declaredType, mode);
+    private void appendClassTypeSignature(StringBuilder builder, DeclaredType type) {
+        TypeMirror enclosingType = type.getEnclosingType();
+        if ((enclosingType.getKind() == TypeKind.DECLARED) && Util.hasTypeArguments((DeclaredType) enclosingType)) {
+            // same as javac - inner classes of parameterized types are written as Outer<...>.Inner
+            appendClassTypeSignature(builder, (DeclaredType) enclosingType);
+            builder.append('.').append(type.asElement().getSimpleName());
         } else {
-            buildDeclaredTypeSignatureStandard(writer, declaredType, mode);
+            builder.append(internalName(type.asElement()));
+        }
+        if (!type.getTypeArguments().isEmpty()) {
+            builder.append('<');
+            for (TypeMirror typeArgument : type.getTypeArguments()) {
+                appendType(builder, typeArgument, SIGNATURE);
+            }
+            builder.append('>');
         }
     }
 
-    private void buildDeclaredTypeSignaturePortions(SignatureWriter writer, DeclaredType declaredType, Mode mode) {
-        List<String> portions = new ArrayList<>();
-        buildPortionsSignature(declaredType, portions);
-        writer.visitClassType(Util.toDot(portions));
-        writer.visitEnd();
+    private String internalName(Element element) {
+        return internalName((TypeElement) element);
     }
 
-    private void buildDeclaredTypeSignatureStandard(SignatureWriter writer, DeclaredType declaredType, Mode mode) {
-        if (mode == SIGNATURE_SIMPLE) {
-            writer.visitInnerClassType(declaredType.asElement().getSimpleName().toString());
-        } else {
-            TypeMirror erasedType = processingEnv.getTypeUtils().erasure(declaredType);
-            writer.visitClassType(Util.toSlash(erasedType.toString()));
+    private static Boolean completionState(TypeElement element) {
+        if (!isJava8) {
+            return null;    // javac 9+ internals are encapsulated
         }
-        if (Util.hasTypeArguments(declaredType)) {
-            writer.visitTypeArgument('=');
-            for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
-                internalType(writer, typeArgument, mode);
+        Field field = completerField;
+        if ((field == null) || !field.getDeclaringClass().isInstance(element)) {
+            field = findCompleterField(element.getClass());
+            if (field == null) {
+                return null;
             }
+            completerField = field;
+        }
+        try {
+            return field.get(element) == null;
+        } catch (IllegalAccessException ignore) {
+            return null;
         }
-        writer.visitEnd();
     }
 
-    private void buildDeclaredTypeDescriptor(SignatureWriter writer, TypeMirror type) {
-        List<String> portions = new ArrayList<>();
-        buildPortionsDescriptor((DeclaredType) type, portions);
-        writer.visitClassType(Util.toSlash(portions));
-        writer.visitEnd();
+    private static Field findCompleterField(Class<?> clazz) {
+        for (; clazz != null; clazz = clazz.getSuperclass()) {
+            if (clazz.getName().equals("com.sun.tools.javac.code.Symbol")) {
+                try {
+                    return clazz.getField("completer");
+                } catch (NoSuchFieldException | SecurityException ignore) {
+                    return null;
+                }
+            }
+        }
+        return null;
     }
 
-    private void buildPortionsDescriptor(DeclaredType type, List<String> portions) {
-        TypeMirror enclosingType = type.getEnclosingType();
-        if (enclosingType.getKind() != TypeKind.NONE) {
-            buildPortionsDescriptor((DeclaredType) enclosingType, portions);
-            portions.add(type.asElement().getSimpleName().toString());
-        } else {
-            portions.add(Util.toSlash(type.toString()));
+    private SignatureKey keyFor(Operation operation, Mode mode, TypeMirror[]... typeGroups) {
+        if ((cache == null) || !isWorthCaching(operation, mode, typeGroups)) {
+            return null;
         }
+        return SignatureKey.forTypes(typeKeys, operation, mode, typeGroups);
     }
 
-    private void buildPortionsSignature(DeclaredType type, List<String> portions) {
-        SignatureWriter tempWriter = new SignatureWriter();
-        TypeMirror enclosingType = type.getEnclosingType();
-        if (enclosingType.getKind() != TypeKind.NONE) {
-            buildPortionsSignature((DeclaredType) enclosingType, portions);
-            buildDeclaredTypeSignatureStandard(tempWriter, type, SIGNATURE_SIMPLE);
-        } else {
-            buildDeclaredTypeSignatureStandard(tempWriter, type, SIGNATURE);
+    private static boolean isWorthCaching(Operation operation, Mode mode, TypeMirror[]... typeGroups) {
+        if (operation == Operation.CLASS) {
+            return true;
+        }
+        if ((mode == DESCRIPTOR) || (mode == DESCRIPTOR_EXCEPTION)) {
+            // type variables are erased
+            for (TypeMirror[] types : typeGroups) {
+                for (TypeMirror type : types) {
+                    if (SignatureKey.hasTypeVariable(type)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
         }
-        portions.add(tempWriter.toString());
+        // formal type parameters (bounds) - the first group of a method type
+        return (operation == Operation.METHOD) && (typeGroups[0].length > 0);
     }
 
-    private TypeMirror[] unwrapType(TypeMirror[] types) {
-        return Stream.of(types)
-                .map(this::unwrapType)
-                .toArray(TypeMirror[]::new);
+    private String cached(SignatureKey key, Supplier<String> proc) {
+        if (key == null) {
+            // not caching, not worth caching or the type(s) can't be keyed
+            return proc.get();
+        }
+        String value = cache.get(key);
+        if (value != null) {
+            ++cacheHits;
+            return value;
+        }
+        ++cacheMisses;
+        value = proc.get();
+        if (value != null) {
+            cache.put(key, value);
+        }
+        return value;
     }
 
     private TypeMirror unwrapType(TypeMirror type) {
         if (type.getKind() == TypeKind.DECLARED) {
             if (!type.getAnnotationMirrors().isEmpty()) {
                 // for some reason, annotated types are an internal compound "annotation type" - this normalizes that
-                Element element = ((DeclaredType) type).asElement();
+                DeclaredType declaredType = (DeclaredType) type;
+                Element element = declaredType.asElement();
                 Element typeElement = processingEnv.getTypeUtils().asElement(element.asType());
                 if (typeElement != null) {
-                    type = typeElement.asType();
+                    // keep the type arguments - the element's type would be the generic declaration (e.g. List<E>)
+                    TypeMirror[] typeArguments = declaredType.getTypeArguments().toArray(new TypeMirror[0]);
+                    TypeMirror enclosingType = declaredType.getEnclosingType();
+                    if ((enclosingType.getKind() == TypeKind.DECLARED) && Util.hasTypeArguments((DeclaredType) enclosingType)) {
+                        type = processingEnv.getTypeUtils().getDeclaredType((DeclaredType) enclosingType, (TypeElement) typeElement, typeArguments);
+                    } else {
+                        type = processingEnv.getTypeUtils().getDeclaredType((TypeElement) typeElement, typeArguments);
+                    }
                 }
             }
         }
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 Jordan Zimmerman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.soabase.asm.mirror.util;
+
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Structural key for a {@link TypeMirror}. TypeMirror instances are not canonical (javac creates
+ * new instances freely) but the elements they refer to are. So, a key is built from the type's kind,
+ * its element and the keys of any component types. Types without structure (primitives, non-parameterized
+ * declared types and type variables) are keyed by their kind or element. The keys of arrays, wildcards and
+ * parameterized types are memoized per TypeMirror instance (javac returns the same instance each time a
+ * declaration is read). Type annotations are ignored as they do not change descriptors or signatures.
+ */
+final class SignatureKey {
+    private final Object[] parts;
+    private final int hashCode;
+
+    SignatureKey(Object... parts) {
+        this.parts = parts;
+        hashCode = Arrays.hashCode(parts);
+    }
+
+    /**
+     * Return true if the given type is or contains a type variable
+     *
+     * @param type type
+     * @return true/false
+     */
+    static boolean hasTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY: {
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            }
+
+            case DECLARED: {
+                for (TypeMirror current = type; current.getKind() == TypeKind.DECLARED; current = ((DeclaredType) current).getEnclosingType()) {
+                    for (TypeMirror typeArgument : ((DeclaredType) current).getTypeArguments()) {
+                        if (hasTypeVariable(typeArgument)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+
+            case WILDCARD: {
+                WildcardType wildcardType = (WildcardType) type;
+                return ((wildcardType.getExtendsBound() != null) && hasTypeVariable(wildcardType.getExtendsBound()))
+                        || ((wildcardType.getSuperBound() != null) && hasTypeVariable(wildcardType.getSuperBound()));
+            }
+
+            case TYPEVAR: {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a key part for the given type or null if the type cannot be keyed (error types, intersections, etc.)
+     *
+     * @param type type
+     * @return key part (a kind, an element or a key) or null
+     */
+    static Object forType(TypeMirror type, Map<TypeMirror, Object> memo) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+            case VOID: {
+                return type.getKind();
+            }
+
+            case ARRAY: {
+                Object key = memo.get(type);
+                if (key == null) {
+                    Object component = forType(((ArrayType) type).getComponentType(), memo);
+                    if (component == null) {
+                        return null;
+                    }
+                    key = new SignatureKey(TypeKind.ARRAY, component);
+                    memo.put(type, key);
+                }
+                return key;
+            }
+
+            case DECLARED: {
+                DeclaredType declaredType = (DeclaredType) type;
+                if (!Util.hasTypeArguments(declaredType)) {
+                    return declaredType.asElement();
+                }
+                Object key = memo.get(type);
+                if (key != null) {
+                    return key;
+                }
+                Object[] parts = new Object[declaredType.getTypeArguments().size() + 3];
+                parts[0] = TypeKind.DECLARED;
+                parts[1] = declaredType.asElement();
+                if (declaredType.getEnclosingType().getKind() == TypeKind.NONE) {
+                    parts[2] = TypeKind.NONE;
+                } else {
+                    parts[2] = forType(declaredType.getEnclosingType(), memo);
+                    if (parts[2] == null) {
+                        return null;
+                    }
+                }
+                int index = 3;
+                for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                    Object argumentKey = forType(typeArgument, memo);
+                    if (argumentKey == null) {
+                        return null;
+                    }
+                    parts[index++] = argumentKey;
+                }
+                key = new SignatureKey(parts);
+                memo.put(type, key);
+                return key;
+            }
+
+            case TYPEVAR: {
+                return ((TypeVariable) type).asElement();
+            }
+
+            case WILDCARD: {
+                WildcardType wildcardType = (WildcardType) type;
+                Object extendsKey = TypeKind.NONE;
+                Object superKey = TypeKind.NONE;
+                if (wildcardType.getExtendsBound() != null) {
+                    extendsKey = forType(wildcardType.getExtendsBound(), memo);
+                }
+                if (wildcardType.getSuperBound() != null) {
+                    superKey = forType(wildcardType.getSuperBound(), memo);
+                }
+                return ((extendsKey != null) && (superKey != null)) ? new SignatureKey(TypeKind.WILDCARD, extendsKey, superKey) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return a key made up of the given operation and mode followed by the keys for each group of
+     * types or null if any of the types cannot be keyed
+     *
+     * @param operation the operation being keyed
+     * @param mode the generation mode or null
+     * @param typeGroups groups of types (e.g. type parameters, parameters, return type)
+     * @return key or null
+     */
+    static SignatureKey forTypes(Map<TypeMirror, Object> memo, Object operation, Object mode, TypeMirror[]... typeGroups) {
+        int size = 2 + typeGroups.length;
+        for (TypeMirror[] types : typeGroups) {
+            size += types.length;
+        }
+        Object[] parts = new Object[size];
+        parts[0] = operation;
+        parts[1] = mode;
+        int index = 2;
+        for (TypeMirror[] types : typeGroups) {
+            parts[index++] = types.length;
+            for (TypeMirror type : types) {
+                Object key = forType(type, memo);
+                if (key == null) {
+                    return null;
+                }
+                parts[index++] = key;
+            }
+        }
+        return new SignatureKey(parts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SignatureKey that = (SignatureKey) o;
+        return (hashCode == that.hashCode) && Arrays.equals(parts, that.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
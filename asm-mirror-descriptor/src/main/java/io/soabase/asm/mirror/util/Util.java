@@ -22,6 +22,7 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -79,6 +80,24 @@ public class Util {
         return flags;
     }
 
+    public static int kindToAccessFlags(ElementKind kind) {
+        switch (kind) {
+            case INTERFACE: {
+                return Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT;
+            }
+
+            case ANNOTATION_TYPE: {
+                return Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ANNOTATION;
+            }
+
+            case ENUM:
+            case ENUM_CONSTANT: {
+                return Opcodes.ACC_ENUM;
+            }
+        }
+        return 0;
+    }
+
     public static String toSlash(String fqn) {
         return fqn.replace('.', '/');
     }
@@ -111,8 +130,17 @@ public class Util {
                 return hasTypeArguments(element.asType());
             }
 
-            case CLASS: {
-                return hasTypeArguments((DeclaredType) element.asType());
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE: {
+                // same as javac: the class's own type parameters or generic super types - an inner class of a
+                // generic class doesn't need a class signature
+                TypeElement typeElement = (TypeElement) element;
+                if (!typeElement.getTypeParameters().isEmpty() || hasTypeArguments(typeElement.getSuperclass())) {
+                    return true;
+                }
+                return typeElement.getInterfaces().stream().anyMatch(Util::hasTypeArguments);
             }
 
             // TODO
@@ -127,9 +155,16 @@ public class Util {
         if (hasTypeArguments(element.getReturnType())) {
             return true;
         }
+        if (element.getThrownTypes().stream().anyMatch(Util::isTypeVariable)) {
+            return true;
+        }
         return element.getParameters().stream().anyMatch(Util::hasTypeArguments);
     }
 
+    public static boolean isTypeVariable(TypeMirror type) {
+        return type.getKind() == TypeKind.TYPEVAR;
+    }
+
     public static boolean hasTypeArguments(TypeMirror type) {
         if (type.getKind() == TypeKind.TYPEVAR) {
             return true;
@@ -138,7 +173,15 @@ public class Util {
     }
 
     public static boolean hasTypeArguments(DeclaredType type) {
-        return !type.getTypeArguments().isEmpty();
+        // type arguments of an enclosing type (i.e. Outer<T>.Inner) count as well
+        TypeMirror current = type;
+        while (current.getKind() == TypeKind.DECLARED) {
+            if (!((DeclaredType) current).getTypeArguments().isEmpty()) {
+                return true;
+            }
+            current = ((DeclaredType) current).getEnclosingType();
+        }
+        return false;
     }
 
     public static boolean isInterface(TypeMirror type) {